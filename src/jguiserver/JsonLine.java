@@ -0,0 +1,314 @@
+/*
+ * Minimal JSON reading / writing for the one-line messages of the StateServer
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jguiserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Objects are read as Map, arrays as List, numbers as Double, true/false as
+ * Boolean and null as null.
+ *
+ * @author Shawn E. Gano
+ */
+class JsonLine
+{
+    private static final int MAX_DEPTH = 64; // nested objects / arrays (the parser is recursive)
+
+    private final String s;
+    private int pos = 0;
+    private int depth = 0;
+
+    private JsonLine(String s)
+    {
+        this.s = s;
+    }
+
+    /**
+     * @param line one JSON value
+     * @return the value
+     * @throws IllegalArgumentException if the line isn't valid JSON
+     */
+    static Object parse(String line)
+    {
+        JsonLine p = new JsonLine(line);
+        Object value = p.readValue();
+        p.skipSpace();
+        if(p.pos != line.length())
+        {
+            throw p.error("unexpected text");
+        }
+        return value;
+    }
+
+    private Object readValue()
+    {
+        skipSpace();
+        if(pos >= s.length())
+        {
+            throw error("unexpected end");
+        }
+
+        char c = s.charAt(pos);
+        if(c == '{')
+        {
+            return readObject();
+        }
+        else if(c == '[')
+        {
+            return readArray();
+        }
+        else if(c == '"')
+        {
+            return readString();
+        }
+        else if(s.startsWith("true", pos))
+        {
+            pos += 4;
+            return Boolean.TRUE;
+        }
+        else if(s.startsWith("false", pos))
+        {
+            pos += 5;
+            return Boolean.FALSE;
+        }
+        else if(s.startsWith("null", pos))
+        {
+            pos += 4;
+            return null;
+        }
+        return readNumber();
+    } // readValue
+
+    private Map<String, Object> readObject()
+    {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        pos++; // {
+        enter();
+        skipSpace();
+        if(peek() == '}')
+        {
+            pos++;
+            depth--;
+            return map;
+        }
+        while(true)
+        {
+            skipSpace();
+            if(peek() != '"')
+            {
+                throw error("expected a name");
+            }
+            String name = readString();
+            skipSpace();
+            expect(':');
+            map.put(name, readValue());
+            skipSpace();
+            char c = next();
+            if(c == '}')
+            {
+                depth--;
+                return map;
+            }
+            if(c != ',')
+            {
+                throw error("expected , or }");
+            }
+        }
+    } // readObject
+
+    private List<Object> readArray()
+    {
+        List<Object> list = new ArrayList<Object>();
+        pos++; // [
+        enter();
+        skipSpace();
+        if(peek() == ']')
+        {
+            pos++;
+            depth--;
+            return list;
+        }
+        while(true)
+        {
+            list.add(readValue());
+            skipSpace();
+            char c = next();
+            if(c == ']')
+            {
+                depth--;
+                return list;
+            }
+            if(c != ',')
+            {
+                throw error("expected , or ]");
+            }
+        }
+    } // readArray
+
+    // one more level of nesting
+    private void enter()
+    {
+        if(++depth > MAX_DEPTH)
+        {
+            throw error("nested more than " + MAX_DEPTH + " deep");
+        }
+    }
+
+    private String readString()
+    {
+        StringBuilder sb = new StringBuilder();
+        pos++; // "
+        while(true)
+        {
+            char c = next();
+            if(c == '"')
+            {
+                return sb.toString();
+            }
+            if(c != '\\')
+            {
+                sb.append(c);
+                continue;
+            }
+
+            c = next();
+            switch(c)
+            {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if(pos + 4 > s.length())
+                    {
+                        throw error("bad escape");
+                    }
+                    sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(c); break; // " \ /
+            }
+        }
+    } // readString
+
+    private Double readNumber()
+    {
+        int start = pos;
+        while(pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0)
+        {
+            pos++;
+        }
+        try
+        {
+            return Double.valueOf(s.substring(start, pos));
+        }
+        catch(NumberFormatException e)
+        {
+            pos = start;
+            throw error("bad value");
+        }
+    } // readNumber
+
+    private void skipSpace()
+    {
+        while(pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+        {
+            pos++;
+        }
+    }
+
+    private char peek()
+    {
+        if(pos >= s.length())
+        {
+            throw error("unexpected end");
+        }
+        return s.charAt(pos);
+    }
+
+    private char next()
+    {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c)
+    {
+        if(next() != c)
+        {
+            throw error("expected " + c);
+        }
+    }
+
+    private IllegalArgumentException error(String msg)
+    {
+        return new IllegalArgumentException(msg + " at " + pos);
+    }
+
+    /**
+     * Appends a string as a JSON string (quoted and escaped)
+     */
+    static StringBuilder quote(StringBuilder sb, String str)
+    {
+        sb.append('"');
+        for(int i = 0; i < str.length(); i++)
+        {
+            char c = str.charAt(i);
+            switch(c)
+            {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    } // quote
+
+    /**
+     * Appends a number (NaN / infinite as null, which JSON can't hold)
+     */
+    static StringBuilder number(StringBuilder sb, double d)
+    {
+        if(Double.isNaN(d) || Double.isInfinite(d))
+        {
+            return sb.append("null");
+        }
+        return sb.append(d);
+    }
+
+} // JsonLine
@@ -0,0 +1,448 @@
+/*
+ * HTTP server of 2D map tiles and images rendered without a window
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jguiserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import jsattrak.gui.J2dMapRenderer;
+
+/**
+ * Serves PNG images of the 2D map (see J2dMapRenderer) so a web page can show
+ * the live ground tracks, e.g. as a slippy map layer:
+ *
+ *   GET /tiles/{z}/{x}/{y}.png      256x256 tile (equirectangular: 2^(z+1) x 2^z tiles at zoom z)
+ *   GET /map.png?width=1024         whole world (height = width/2)
+ *   GET /status                     text: current time bucket, cache and render counts
+ *
+ * Requests are handled and rendered on a pool of threads. Rendered images are
+ * kept in an LRU cache for the time bucket they were rendered in (the
+ * simulation time divided into bucketSeconds long steps), so clients asking
+ * for the same tile during a bucket share one rendering (also if they ask at
+ * the same time); when the time moves into the next bucket the cache starts
+ * over. Responses are sent with Cache-Control max-age of the bucket length.
+ *
+ * @author Shawn E. Gano
+ */
+public class MapTileServer
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final J2dMapRenderer renderer;
+
+    private int numThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private volatile double bucketSeconds = 10.0; // simulation time an image is reused for [sec]
+    private volatile int maxCachedImages = 512;
+    private int maxMapWidth = 4096;
+
+    private HttpServer server;
+    private ExecutorService pool;
+
+    // encoded images of the current time bucket (access order, for LRU), a rendering in progress is an unfinished task
+    private final LinkedHashMap<String,FutureTask<byte[]>> cache = new LinkedHashMap<String,FutureTask<byte[]>>(64, 0.75f, true);
+    private long cacheBucket = Long.MIN_VALUE; // time bucket of the images in cache
+
+    private final AtomicLong imagesRendered = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * @param renderer renders the images
+     */
+    public MapTileServer(J2dMapRenderer renderer)
+    {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Starts listening on all the addresses of this computer
+     * @param port TCP port (0 = any free port, see getPort)
+     * @throws IOException if the port can't be opened
+     */
+    public void start(int port) throws IOException
+    {
+        start(null, port);
+    }
+
+    /**
+     * Starts listening
+     * @param bindAddress address to listen on (null = all, e.g. InetAddress.getByName("127.0.0.1") for local clients only)
+     * @param port TCP port (0 = any free port, see getPort)
+     * @throws IOException if the port can't be opened
+     */
+    public synchronized void start(InetAddress bindAddress, int port) throws IOException
+    {
+        if(server != null)
+        {
+            return;
+        }
+
+        pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+        {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "MapTileServer-" + (count++));
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1); // GUI first
+                return t;
+            }
+        });
+
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/tiles/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                handleTile(exchange);
+            }
+        });
+        server.createContext("/map.png", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                handleMap(exchange);
+            }
+        });
+        server.createContext("/status", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                sendText(exchange, 200, getStatus());
+            }
+        });
+        server.setExecutor(pool); // requests are rendered on the thread handling them
+        server.start();
+    } // start
+
+    /**
+     * Stops the server (requests being handled get up to a second to finish)
+     */
+    public synchronized void stop()
+    {
+        if(server == null)
+        {
+            return;
+        }
+        server.stop(1);
+        pool.shutdownNow();
+        server = null;
+        pool = null;
+        synchronized(cache)
+        {
+            cache.clear();
+        }
+    } // stop
+
+    // GET /tiles/{z}/{x}/{y}.png
+    private void handleTile(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.substring("/tiles/".length()).split("/");
+        final int z, x, y;
+        try
+        {
+            if(parts.length != 3 || !parts[2].endsWith(".png"))
+            {
+                throw new NumberFormatException();
+            }
+            z = Integer.parseInt(parts[0]);
+            x = Integer.parseInt(parts[1]);
+            y = Integer.parseInt(parts[2].substring(0, parts[2].length() - 4));
+        }
+        catch(NumberFormatException e)
+        {
+            sendText(exchange, 404, "Tiles are /tiles/{z}/{x}/{y}.png\n");
+            return;
+        }
+        if(!J2dMapRenderer.isValidTile(z, x, y))
+        {
+            sendText(exchange, 404, "No tile " + z + "/" + x + "/" + y + " (zoom 0-" + J2dMapRenderer.MAX_ZOOM + ", 2^(z+1) x 2^z tiles)\n");
+            return;
+        }
+
+        sendImage(exchange, "tile/" + z + "/" + x + "/" + y, new Callable<BufferedImage>()
+        {
+            public BufferedImage call()
+            {
+                return renderer.renderTile(z, x, y);
+            }
+        });
+    } // handleTile
+
+    // GET /map.png?width=...
+    private void handleMap(HttpExchange exchange) throws IOException
+    {
+        int width = 1024;
+        String query = exchange.getRequestURI().getQuery();
+        if(query != null)
+        {
+            for(String param : query.split("&"))
+            {
+                if(param.startsWith("width="))
+                {
+                    try
+                    {
+                        width = Integer.parseInt(param.substring("width=".length()));
+                    }
+                    catch(NumberFormatException e)
+                    {
+                        width = -1;
+                    }
+                }
+            }
+        }
+        if(width < 2 || width > maxMapWidth)
+        {
+            sendText(exchange, 400, "width must be 2-" + maxMapWidth + "\n");
+            return;
+        }
+
+        final int w = width;
+        sendImage(exchange, "map/" + w, new Callable<BufferedImage>()
+        {
+            public BufferedImage call()
+            {
+                return renderer.renderMap(w);
+            }
+        });
+    } // handleMap
+
+    // sends the PNG of the image from the cache, or renders it (once for all the requests for it in this time bucket)
+    private void sendImage(HttpExchange exchange, String key, final Callable<BufferedImage> render) throws IOException
+    {
+        FutureTask<byte[]> task;
+        boolean renderHere = false;
+        long bucket = (long)Math.floor(renderer.getJulianDate() * 86400.0 / bucketSeconds);
+        synchronized(cache)
+        {
+            if(bucket != cacheBucket)
+            {
+                cache.clear(); // time moved on, all the images are out of date
+                cacheBucket = bucket;
+            }
+
+            task = cache.get(key);
+            if(task == null)
+            {
+                task = new FutureTask<byte[]>(new Callable<byte[]>()
+                {
+                    public byte[] call() throws Exception
+                    {
+                        return encodePng(render.call());
+                    }
+                });
+                cache.put(key, task);
+                trimCache();
+                renderHere = true;
+            }
+        }
+
+        if(renderHere)
+        {
+            task.run();
+            imagesRendered.incrementAndGet();
+        }
+        else
+        {
+            cacheHits.incrementAndGet();
+        }
+
+        byte[] png;
+        try
+        {
+            png = task.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            sendText(exchange, 503, "Server stopping\n");
+            return;
+        }
+        catch(ExecutionException e)
+        {
+            synchronized(cache)
+            {
+                if(cache.get(key) == task)
+                {
+                    cache.remove(key); // try again next time
+                }
+            }
+            System.out.println("Error rendering map image " + key + ": " + e.getCause().toString());
+            sendText(exchange, 500, "Error rendering image: " + e.getCause().toString() + "\n");
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=" + (int)Math.ceil(bucketSeconds));
+        send(exchange, 200, png);
+    } // sendImage
+
+    // drops the least recently used images until the cache is within its size (call holding the lock)
+    private void trimCache()
+    {
+        Iterator<Map.Entry<String,FutureTask<byte[]>>> it = cache.entrySet().iterator();
+        while(cache.size() > maxCachedImages && it.hasNext())
+        {
+            it.next();
+            it.remove(); // (a rendering in progress still finishes for the requests waiting on it)
+        }
+    } // trimCache
+
+    private static byte[] encodePng(BufferedImage image) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, text.getBytes(UTF8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException
+    {
+        try
+        {
+            if("HEAD".equalsIgnoreCase(exchange.getRequestMethod()))
+            {
+                exchange.sendResponseHeaders(status, -1);
+            }
+            else
+            {
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    } // send
+
+    /**
+     * @return current time bucket, number of cached images, images rendered and cache hits (one per line)
+     */
+    public String getStatus()
+    {
+        int cached;
+        long bucket;
+        synchronized(cache)
+        {
+            cached = cache.size();
+            bucket = cacheBucket;
+        }
+        return "jd " + renderer.getJulianDate() + "\n"
+                + "bucketSeconds " + bucketSeconds + "\n"
+                + "bucket " + bucket + "\n"
+                + "cachedImages " + cached + "\n"
+                + "imagesRendered " + imagesRendered.get() + "\n"
+                + "cacheHits " + cacheHits.get() + "\n";
+    } // getStatus
+
+    /**
+     * @return TCP port listened on (-1 if not running)
+     */
+    public synchronized int getPort()
+    {
+        return (server == null) ? -1 : server.getAddress().getPort();
+    }
+
+    public synchronized boolean isRunning()
+    {
+        return server != null;
+    }
+
+    public J2dMapRenderer getRenderer()
+    {
+        return renderer;
+    }
+
+    public double getBucketSeconds()
+    {
+        return bucketSeconds;
+    }
+
+    /**
+     * @param bucketSeconds simulation time a rendered image is reused for [sec]
+     */
+    public void setBucketSeconds(double bucketSeconds)
+    {
+        this.bucketSeconds = Math.max(0.001, bucketSeconds);
+    }
+
+    public int getMaxCachedImages()
+    {
+        return maxCachedImages;
+    }
+
+    public void setMaxCachedImages(int maxCachedImages)
+    {
+        this.maxCachedImages = Math.max(1, maxCachedImages);
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * @param numThreads threads handling and rendering requests (used the next time the server is started)
+     */
+    public synchronized void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public long getImagesRendered()
+    {
+        return imagesRendered.get();
+    }
+
+    public long getCacheHits()
+    {
+        return cacheHits.get();
+    }
+
+} // MapTileServer
@@ -0,0 +1,797 @@
+/*
+ * Streams the state of the satellites every time step in a compact binary form (UDP and / or TCP)
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jguiserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import jsattrak.coverage.JSatTrakTimeDependent;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.GroundStation;
+import jsattrak.utilities.SatelliteStateSnapshot;
+import name.gano.astro.time.Time;
+
+/**
+ * Add it to the time dependent objects of the app (or call publish): the
+ * time step only copies the states (SatelliteStateSnapshot) and hands them
+ * to the publisher thread, which encodes them into a reused buffer and sends
+ * them. If the publisher falls behind, only the latest time step is sent, so
+ * the simulation is never held up by the consumers.
+ *
+ * Streams:
+ *   UDP (startUdp)  - multicast group (or unicast address), optionally only some satellites
+ *   TCP (startTcp)  - each subscriber connects and may send one line (UTF-8)
+ *                     "SUBSCRIBE name1\tname2..." to only get those satellites
+ *                     ("SUBSCRIBE" alone = all, the default). A subscriber with
+ *                     more than maxPendingBytes waiting misses time steps.
+ *
+ * Messages (big-endian; on TCP each is preceded by its int32 length; on UDP a
+ * time step is split into datagrams of at most maxPacketSize bytes):
+ *
+ *   int32 MAGIC, byte VERSION, byte type, int32 seq (time step), int32 keySeq,
+ *   int32 part, byte lastPart (1 = last), float64 julDate (UTC), int32 count,
+ *   entries:
+ *
+ *   TYPE_CATALOG   int32 id, int16 n (at most 255), n bytes UTF-8 name
+ *   TYPE_KEY       int32 id, 6 float64 J2000 x, y, z [m], dx, dy, dz [m/s]
+ *   TYPE_DELTA     int32 id, byte kind: FULL then 6 float64 as in TYPE_KEY or
+ *                  DELTA then 6 int32 = state minus its state in key frame
+ *                  keySeq, position in mm and velocity in micrometers/s
+ *
+ * Key frames are sent every keyFrameInterval time steps (and when a TCP
+ * subscriber joins or missed one); deltas are from the last key frame rather
+ * than the last step, so a lost UDP datagram of deltas only loses that step.
+ * A lost datagram of a key frame loses its satellites until the next key
+ * frame: a receiver has to discard the deltas whose keySeq isn't the key
+ * frame it has for that satellite (StateStreamDecoder does). The catalog (id
+ * to name) is sent when it changes (on UDP with every key frame).
+ *
+ * Version 1 (no VERSION byte) had int16 ids, parts and counts, which wrapped
+ * after 32767 satellites since ids are never reused.
+ *
+ * @author Shawn E. Gano
+ */
+public class StatePublisher implements JSatTrakTimeDependent
+{
+    public static final int MAGIC = 0x4A535354; // "JSST"
+    public static final byte VERSION = 2;
+    public static final byte TYPE_CATALOG = 1;
+    public static final byte TYPE_KEY = 2;
+    public static final byte TYPE_DELTA = 3;
+    public static final byte KIND_FULL = 0;
+    public static final byte KIND_DELTA = 1;
+
+    static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 4 + 4 + 1 + 8 + 4;
+    private static final int LAST_PART_OFFSET = 4 + 1 + 1 + 4 + 4 + 4;
+    private static final int MAX_STATE_ENTRY = 4 + 1 + 6 * 8;
+    private static final int MAX_NAME_BYTES = 255;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private int keyFrameInterval = 10;
+    private int maxPacketSize = 1400; // UDP datagrams
+    private int maxPendingBytes = 1 << 20; // TCP subscribers
+
+    // time step hand off (latest only)
+    private final AtomicReference<SatelliteStateSnapshot> latest = new AtomicReference<SatelliteStateSnapshot>();
+
+    // publisher thread
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running = false;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private ServerSocketChannel serverChannel;
+    private final List<Stream> streams = new ArrayList<Stream>();
+
+    // catalog of satellite ids (ids are never reused)
+    private final Map<String, Integer> catalogIds = new HashMap<String, Integer>();
+    private final List<byte[]> catalogNames = new ArrayList<byte[]>();
+    private int catalogVersion = 0;
+
+    private int seq = 0;
+    private ByteBuffer buf = ByteBuffer.allocate(1 << 16); // reused for every message
+
+    private final AtomicLong stepsPublished = new AtomicLong();
+    private final AtomicLong messagesDropped = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile int numSubscribers = 0;
+
+    public StatePublisher()
+    {
+    }
+
+    public void updateTime(final Time currentJulianDate, final Hashtable<String, AbstractSatellite> satHash, final Hashtable<String, GroundStation> gsHash)
+    {
+        publish(SatelliteStateSnapshot.create(currentJulianDate.getJulianDate(), satHash));
+    }
+
+    /**
+     * Hands the states to the publisher thread (never waits)
+     * @param snapshot states at the current time step
+     */
+    public void publish(SatelliteStateSnapshot snapshot)
+    {
+        latest.set(snapshot);
+        Selector s = selector;
+        if(s != null)
+        {
+            s.wakeup();
+        }
+    } // publish
+
+    /**
+     * Sends every time step to a UDP address
+     * @param address multicast group (e.g. 239.255.0.1) or unicast address
+     * @param port UDP port
+     * @param ttl multicast time to live (1 = local network)
+     * @param sats satellites to send (null = all)
+     * @throws IOException if the socket can't be opened
+     */
+    public void startUdp(InetAddress address, int port, int ttl, Set<String> sats) throws IOException
+    {
+        final DatagramChannel ch = DatagramChannel.open();
+        ch.configureBlocking(false);
+        if(address.isMulticastAddress())
+        {
+            ch.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl);
+        }
+
+        final Stream st = new Stream((sats == null) ? null : trimmedNames(sats));
+        st.udp = ch;
+        st.target = new InetSocketAddress(address, port);
+        startThread();
+        runOnPublisherThread(new Runnable()
+        {
+            public void run()
+            {
+                streams.add(st);
+            }
+        });
+    } // startUdp
+
+    /**
+     * Accepts TCP subscribers
+     * @param bindAddress address to listen on (null = all)
+     * @param port TCP port (0 = any free port, see getTcpPort)
+     * @throws IOException if the port can't be opened
+     */
+    public void startTcp(InetAddress bindAddress, int port) throws IOException
+    {
+        final ServerSocketChannel ch = ServerSocketChannel.open();
+        ch.configureBlocking(false);
+        ch.socket().setReuseAddress(true);
+        ch.socket().bind(new InetSocketAddress(bindAddress, port));
+        serverChannel = ch;
+
+        startThread();
+        runOnPublisherThread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    ch.register(selector, SelectionKey.OP_ACCEPT);
+                }
+                catch(IOException e)
+                {
+                    System.out.println("Error starting state publisher: " + e.toString());
+                }
+            }
+        });
+    } // startTcp
+
+    private synchronized void startThread() throws IOException
+    {
+        if(running)
+        {
+            return;
+        }
+        selector = Selector.open();
+        running = true;
+        thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                serve();
+            }
+        }, "StatePublisher");
+        thread.setDaemon(true);
+        thread.start();
+    } // startThread
+
+    private void runOnPublisherThread(Runnable r)
+    {
+        tasks.add(r);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops publishing and closes all the sockets
+     */
+    public synchronized void stop()
+    {
+        if(!running)
+        {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try
+        {
+            thread.join(2000);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    } // stop
+
+    // publisher thread
+    private void serve()
+    {
+        try
+        {
+            while(running)
+            {
+                selector.select();
+
+                Runnable r;
+                while((r = tasks.poll()) != null)
+                {
+                    r.run();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while(it.hasNext())
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if(!key.isValid())
+                    {
+                        continue;
+                    }
+                    if(key.isAcceptable())
+                    {
+                        accept((ServerSocketChannel) key.channel());
+                        continue;
+                    }
+
+                    Stream st = (Stream) key.attachment();
+                    try
+                    {
+                        if(key.isReadable())
+                        {
+                            read(st);
+                        }
+                        if(key.isValid() && key.isWritable())
+                        {
+                            flush(st);
+                        }
+                    }
+                    catch(IOException e)
+                    {
+                        close(st);
+                    }
+                }
+
+                SatelliteStateSnapshot snap = latest.getAndSet(null);
+                if(snap != null)
+                {
+                    sendStep(snap);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            System.out.println("Error in state publisher: " + e.toString());
+        }
+        finally
+        {
+            for(Stream st : new ArrayList<Stream>(streams))
+            {
+                close(st);
+            }
+            try
+            {
+                if(serverChannel != null)
+                {
+                    serverChannel.close();
+                }
+                selector.close();
+            }
+            catch(IOException e)
+            {
+            }
+            running = false;
+        }
+    } // serve
+
+    private void accept(ServerSocketChannel server) throws IOException
+    {
+        SocketChannel ch = server.accept();
+        if(ch == null)
+        {
+            return;
+        }
+        ch.configureBlocking(false);
+        ch.socket().setTcpNoDelay(true);
+
+        Stream st = new Stream(null);
+        st.tcp = ch;
+        st.key = ch.register(selector, SelectionKey.OP_READ, st);
+        streams.add(st);
+        numSubscribers++;
+    } // accept
+
+    private void close(Stream st)
+    {
+        try
+        {
+            if(st.tcp != null)
+            {
+                st.key.cancel();
+                st.tcp.close();
+                numSubscribers--;
+            }
+            else
+            {
+                st.udp.close();
+            }
+        }
+        catch(IOException e)
+        {
+        }
+        streams.remove(st);
+    } // close
+
+    // satellite filter, names trimmed as in the snapshots
+    private static Set<String> trimmedNames(Collection<String> names)
+    {
+        Set<String> set = new HashSet<String>();
+        for(String name : names)
+        {
+            set.add(name.trim());
+        }
+        return set;
+    }
+
+    // subscriber's filter line
+    private void read(Stream st) throws IOException
+    {
+        st.in.clear();
+        if(st.tcp.read(st.in) < 0)
+        {
+            close(st);
+            return;
+        }
+
+        st.in.flip();
+        while(st.in.hasRemaining())
+        {
+            byte b = st.in.get();
+            if(b != '\n')
+            {
+                st.line.write(b);
+                if(st.line.size() > 1 << 20)
+                {
+                    close(st);
+                    return;
+                }
+                continue;
+            }
+
+            String cmd = new String(st.line.toByteArray(), UTF8).replace("\r", "");
+            st.line.reset();
+            if(cmd.startsWith("SUBSCRIBE"))
+            {
+                String names = cmd.substring("SUBSCRIBE".length()).trim();
+                st.filter = (names.length() == 0) ? null : trimmedNames(Arrays.asList(names.split("\t")));
+                st.catalogVersion = -1; // catalog for the new satellites
+                st.needsKey = true;
+            }
+        }
+    } // read
+
+    // encodes and sends one time step to every stream
+    private void sendStep(SatelliteStateSnapshot snap)
+    {
+        seq++;
+        stepsPublished.incrementAndGet();
+
+        // ids of the satellites
+        int n = snap.getNumSatellites();
+        int[] ids = new int[n];
+        for(int i = 0; i < n; i++)
+        {
+            String name = snap.getName(i);
+            Integer id = catalogIds.get(name);
+            if(id == null)
+            {
+                id = catalogNames.size();
+                catalogIds.put(name, id);
+                byte[] b = name.getBytes(UTF8);
+                catalogNames.add((b.length > MAX_NAME_BYTES) ? Arrays.copyOf(b, MAX_NAME_BYTES) : b);
+                catalogVersion++;
+            }
+            ids[i] = id;
+        }
+
+        for(Stream st : new ArrayList<Stream>(streams))
+        {
+            if(st.tcp != null && st.pendingBytes > maxPendingBytes)
+            {
+                messagesDropped.incrementAndGet(); // slow subscriber, skip this time step
+                continue;
+            }
+            try
+            {
+                encodeStep(st, snap, ids);
+            }
+            catch(IOException e)
+            {
+                close(st);
+            }
+        }
+    } // sendStep
+
+    private void encodeStep(Stream st, SatelliteStateSnapshot snap, int[] ids) throws IOException
+    {
+        boolean key = st.needsKey || st.stepsSinceKey >= keyFrameInterval;
+        if(key)
+        {
+            st.keySeq = seq;
+            st.stepsSinceKey = 0;
+            st.needsKey = false;
+            if(st.ref.length < catalogNames.size())
+            {
+                st.ref = new double[catalogNames.size() + 64][];
+            }
+            else
+            {
+                Arrays.fill(st.ref, null);
+            }
+        }
+        st.stepsSinceKey++;
+
+        if(st.catalogVersion != catalogVersion || (key && st.udp != null))
+        {
+            encodeCatalog(st, snap, ids);
+            st.catalogVersion = catalogVersion;
+        }
+
+        double jd = snap.getJulianDate();
+        byte type = key ? TYPE_KEY : TYPE_DELTA;
+        int part = 0;
+        int count = 0;
+        begin(st, type, part, jd);
+        double[] s = new double[6];
+        for(int i = 0; i < snap.getNumSatellites(); i++)
+        {
+            if(!snap.hasState(i) || (st.filter != null && !st.filter.contains(snap.getName(i))))
+            {
+                continue;
+            }
+            if(!room(st, MAX_STATE_ENTRY))
+            {
+                finish(st, count, false);
+                begin(st, type, ++part, jd);
+                count = 0;
+            }
+
+            int id = ids[i];
+            for(int k = 0; k < 6; k++)
+            {
+                s[k] = snap.get(i, k);
+            }
+            buf.putInt(id);
+            if(key)
+            {
+                putState(s);
+                st.ref[id] = s.clone();
+            }
+            else
+            {
+                double[] r = (id < st.ref.length) ? st.ref[id] : null;
+                if(r == null || !putDelta(s, r))
+                {
+                    buf.put(KIND_FULL);
+                    putState(s);
+                }
+            }
+            count++;
+        }
+        finish(st, count, true);
+    } // encodeStep
+
+    private void encodeCatalog(Stream st, SatelliteStateSnapshot snap, int[] ids) throws IOException
+    {
+        int part = 0;
+        int count = 0;
+        begin(st, TYPE_CATALOG, part, snap.getJulianDate());
+        for(int i = 0; i < snap.getNumSatellites(); i++)
+        {
+            if(st.filter != null && !st.filter.contains(snap.getName(i)))
+            {
+                continue;
+            }
+            byte[] name = catalogNames.get(ids[i]);
+            if(!room(st, 6 + name.length))
+            {
+                finish(st, count, false);
+                begin(st, TYPE_CATALOG, ++part, snap.getJulianDate());
+                count = 0;
+            }
+            buf.putInt(ids[i]);
+            buf.putShort((short) name.length); // at most MAX_NAME_BYTES
+            buf.put(name);
+            count++;
+        }
+        finish(st, count, true);
+    } // encodeCatalog
+
+    private void putState(double[] s)
+    {
+        for(int k = 0; k < 6; k++)
+        {
+            buf.putDouble(s[k]);
+        }
+    }
+
+    // writes the delta entry, false (nothing written) if it doesn't fit in int32s
+    private boolean putDelta(double[] s, double[] r)
+    {
+        long[] d = new long[6];
+        for(int k = 0; k < 6; k++)
+        {
+            d[k] = Math.round((s[k] - r[k]) * ((k < 3) ? 1.0e3 : 1.0e6));
+            if(d[k] > Integer.MAX_VALUE || d[k] < Integer.MIN_VALUE)
+            {
+                return false;
+            }
+        }
+        buf.put(KIND_DELTA);
+        for(int k = 0; k < 6; k++)
+        {
+            buf.putInt((int) d[k]);
+        }
+        return true;
+    } // putDelta
+
+    private void begin(Stream st, byte type, int part, double julDate)
+    {
+        buf.clear();
+        if(st.tcp != null)
+        {
+            buf.putInt(0); // length
+        }
+        buf.putInt(MAGIC);
+        buf.put(VERSION);
+        buf.put(type);
+        buf.putInt(seq);
+        buf.putInt(st.keySeq);
+        buf.putInt(part);
+        buf.put((byte) 0); // last part
+        buf.putDouble(julDate);
+        buf.putInt(0); // count
+    } // begin
+
+    // true if n more bytes fit in the message (TCP messages grow, UDP ones have to be split)
+    private boolean room(Stream st, int n)
+    {
+        if(st.udp != null)
+        {
+            return buf.position() + n <= maxPacketSize;
+        }
+        if(buf.remaining() < n)
+        {
+            ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2 + n);
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+        return true;
+    } // room
+
+    private void finish(Stream st, int count, boolean lastPart) throws IOException
+    {
+        int start = (st.tcp != null) ? 4 : 0;
+        buf.put(start + LAST_PART_OFFSET, (byte) (lastPart ? 1 : 0));
+        buf.putInt(start + HEADER_SIZE - 4, count);
+        if(st.tcp != null)
+        {
+            buf.putInt(0, buf.position() - 4);
+        }
+        buf.flip();
+
+        int size = buf.remaining();
+        if(st.udp != null)
+        {
+            if(st.udp.send(buf, st.target) == 0)
+            {
+                messagesDropped.incrementAndGet(); // no room in the socket buffer
+                return;
+            }
+        }
+        else
+        {
+            if(st.out.isEmpty())
+            {
+                st.tcp.write(buf);
+            }
+            if(buf.hasRemaining())
+            {
+                // keep the rest for when the socket can take it
+                ByteBuffer rest = ByteBuffer.allocate(buf.remaining());
+                rest.put(buf);
+                rest.flip();
+                st.out.add(rest);
+                st.pendingBytes += rest.remaining();
+                st.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+        bytesSent.addAndGet(size);
+    } // finish
+
+    private void flush(Stream st) throws IOException
+    {
+        while(!st.out.isEmpty())
+        {
+            ByteBuffer b = st.out.peek();
+            st.pendingBytes -= st.tcp.write(b);
+            if(b.hasRemaining())
+            {
+                return;
+            }
+            st.out.poll();
+        }
+        st.key.interestOps(SelectionKey.OP_READ);
+    } // flush
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * @return TCP port subscribers connect to (-1 if not started)
+     */
+    public int getTcpPort()
+    {
+        ServerSocketChannel ch = serverChannel;
+        return (ch != null && ch.isOpen()) ? ch.socket().getLocalPort() : -1;
+    }
+
+    public int getNumSubscribers()
+    {
+        return numSubscribers;
+    }
+
+    /**
+     * @return number of time steps sent
+     */
+    public long getStepsPublished()
+    {
+        return stepsPublished.get();
+    }
+
+    /**
+     * @return number of datagrams / time steps not sent (socket full or slow subscriber)
+     */
+    public long getMessagesDropped()
+    {
+        return messagesDropped.get();
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent.get();
+    }
+
+    public int getKeyFrameInterval()
+    {
+        return keyFrameInterval;
+    }
+
+    /**
+     * @param keyFrameInterval time steps between full states (smaller recovers faster from lost datagrams)
+     */
+    public void setKeyFrameInterval(int keyFrameInterval)
+    {
+        this.keyFrameInterval = Math.max(1, keyFrameInterval);
+    }
+
+    public int getMaxPacketSize()
+    {
+        return maxPacketSize;
+    }
+
+    /**
+     * @param maxPacketSize largest UDP datagram [bytes]
+     */
+    public void setMaxPacketSize(int maxPacketSize)
+    {
+        this.maxPacketSize = Math.max(HEADER_SIZE + 6 + MAX_NAME_BYTES, maxPacketSize);
+    }
+
+    public int getMaxPendingBytes()
+    {
+        return maxPendingBytes;
+    }
+
+    /**
+     * @param maxPendingBytes a TCP subscriber with more than this waiting to be sent misses time steps
+     */
+    public void setMaxPendingBytes(int maxPendingBytes)
+    {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    // one UDP destination or TCP subscriber
+    private static class Stream
+    {
+        Set<String> filter; // null = all
+
+        DatagramChannel udp;
+        InetSocketAddress target;
+
+        SocketChannel tcp;
+        SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+        int pendingBytes = 0;
+
+        int catalogVersion = -1;
+        boolean needsKey = true;
+        int stepsSinceKey = 0;
+        int keySeq = 0;
+        double[][] ref = new double[0][]; // state of each id in the last key frame
+
+        Stream(Set<String> filter)
+        {
+            this.filter = filter;
+        }
+    } // Stream
+
+} // StatePublisher
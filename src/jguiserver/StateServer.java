@@ -0,0 +1,703 @@
+/*
+ * Non-blocking (NIO) server for satellite state queries and per time step subscriptions
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jguiserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import jsattrak.coverage.JSatTrakTimeDependent;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.GroundStation;
+import jsattrak.utilities.SatelliteStateSnapshot;
+import name.gano.astro.time.Time;
+
+/**
+ * Unlike the command server (GuiServer), which evaluates every line in the
+ * shared BeanShell interpreter, this server only answers state queries from a
+ * snapshot of the satellites taken each time step, so clients never wait on
+ * the interpreter or the GUI. All connections are handled by one selector
+ * thread.
+ *
+ * Protocol: one JSON object per line (UTF-8) each way. Requests
+ *
+ *   {"id":1, "cmd":"ping"}
+ *   {"id":2, "cmd":"time"}                          -> "jd"
+ *   {"id":3, "cmd":"list"}                          -> "sats":[names]
+ *   {"id":4, "cmd":"state", "sats":["ISS (ZARYA)"]} -> "jd", "states":[state], "missing":[names] ("sats" optional = all)
+ *   {"id":5, "cmd":"subscribe", "sats":[...]}       ("sats" optional = all)
+ *   {"id":6, "cmd":"unsubscribe"}
+ *   {"id":7, "cmd":"close"}
+ *
+ * are answered with {"id":.., "ok":true, ...} or {"id":.., "ok":false, "error":".."}.
+ * Subscribed clients get one line per time step with all their satellites:
+ *
+ *   {"type":"tick", "jd":.., "states":[state, ...]}
+ *
+ * where a state is {"name":.., "r":[x,y,z], "v":[dx,dy,dz], "lla":[lat,lon,alt]}
+ * (J2000 m and m/s, geodetic deg and m). A client that doesn't read fast
+ * enough (more than maxPendingBytes waiting to be sent) misses time steps
+ * rather than slowing down the others; a response that would go over
+ * maxPendingBytes disconnects the client.
+ *
+ * Add the server to the time dependent objects of the app (or call publish)
+ * to give it the states.
+ *
+ * @author Shawn E. Gano
+ */
+public class StateServer implements JSatTrakTimeDependent
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private int maxPendingBytes = 1 << 20;
+    private int maxLineLength = 1 << 16;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    private volatile SatelliteStateSnapshot snapshot;
+    private final AtomicBoolean tickPending = new AtomicBoolean(false);
+
+    // only used by the selector thread
+    private final List<Client> clients = new ArrayList<Client>();
+
+    private volatile int numClients = 0;
+    private final AtomicLong ticksDropped = new AtomicLong();
+
+    public StateServer()
+    {
+    }
+
+    /**
+     * Starts listening on all the addresses of this computer
+     * @param port TCP port (0 = any free port, see getPort)
+     * @throws IOException if the port can't be opened
+     */
+    public void start(int port) throws IOException
+    {
+        start(null, port);
+    }
+
+    /**
+     * Starts listening
+     * @param bindAddress address to listen on (null = all, e.g. InetAddress.getLoopbackAddress() for local clients only)
+     * @param port TCP port (0 = any free port, see getPort)
+     * @throws IOException if the port can't be opened
+     */
+    public synchronized void start(InetAddress bindAddress, int port) throws IOException
+    {
+        if(running)
+        {
+            return;
+        }
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(bindAddress, port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                serve();
+            }
+        }, "StateServer");
+        thread.setDaemon(true);
+        thread.start();
+    } // start
+
+    /**
+     * Stops the server and closes all the connections
+     */
+    public synchronized void stop()
+    {
+        if(!running)
+        {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try
+        {
+            thread.join(2000);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    } // stop
+
+    public void updateTime(final Time currentJulianDate, final Hashtable<String, AbstractSatellite> satHash, final Hashtable<String, GroundStation> gsHash)
+    {
+        publish(SatelliteStateSnapshot.create(currentJulianDate.getJulianDate(), satHash));
+    }
+
+    /**
+     * Sets the states used to answer queries and sends them to the subscribers
+     * (returns right away, the sending is done by the server thread)
+     * @param snapshot states at the current time step
+     */
+    public void publish(SatelliteStateSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+        tickPending.set(true);
+        Selector s = selector;
+        if(s != null)
+        {
+            s.wakeup();
+        }
+    } // publish
+
+    // selector thread
+    private void serve()
+    {
+        try
+        {
+            while(running)
+            {
+                selector.select();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while(it.hasNext())
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    if(!key.isValid())
+                    {
+                        continue;
+                    }
+                    if(key.isAcceptable())
+                    {
+                        accept();
+                        continue;
+                    }
+
+                    Client c = (Client) key.attachment();
+                    try
+                    {
+                        if(key.isReadable())
+                        {
+                            read(c);
+                        }
+                        if(key.isValid() && key.isWritable())
+                        {
+                            flush(c);
+                        }
+                    }
+                    catch(IOException e)
+                    {
+                        close(c);
+                    }
+                    catch(RuntimeException e)
+                    {
+                        // a bad request shouldn't stop the server, only drop its client
+                        System.out.println("Error in state server client: " + e.toString());
+                        close(c);
+                    }
+                    catch(StackOverflowError e)
+                    {
+                        System.out.println("Error in state server client: " + e.toString());
+                        close(c);
+                    }
+                }
+
+                if(tickPending.getAndSet(false))
+                {
+                    sendTick(snapshot);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            System.out.println("Error in state server: " + e.toString());
+        }
+        finally
+        {
+            for(Client c : new ArrayList<Client>(clients))
+            {
+                close(c);
+            }
+            try
+            {
+                serverChannel.close();
+                selector.close();
+            }
+            catch(IOException e)
+            {
+            }
+            running = false;
+        }
+    } // serve
+
+    private void accept() throws IOException
+    {
+        SocketChannel ch = serverChannel.accept();
+        if(ch == null)
+        {
+            return;
+        }
+        ch.configureBlocking(false);
+        ch.socket().setTcpNoDelay(true);
+
+        Client c = new Client(ch);
+        c.key = ch.register(selector, SelectionKey.OP_READ, c);
+        clients.add(c);
+        numClients = clients.size();
+    } // accept
+
+    private void close(Client c)
+    {
+        c.key.cancel();
+        try
+        {
+            c.channel.close();
+        }
+        catch(IOException e)
+        {
+        }
+        clients.remove(c);
+        numClients = clients.size();
+    } // close
+
+    // reads what is there and handles each complete line
+    private void read(Client c) throws IOException
+    {
+        int n = c.channel.read(c.in);
+        if(n < 0)
+        {
+            close(c);
+            return;
+        }
+
+        c.in.flip();
+        while(c.in.hasRemaining())
+        {
+            byte b = c.in.get();
+            if(b != '\n')
+            {
+                c.line.write(b);
+                if(c.line.size() > maxLineLength)
+                {
+                    close(c);
+                    return;
+                }
+                continue;
+            }
+
+            String line = new String(c.line.toByteArray(), UTF8).trim();
+            c.line.reset();
+            if(line.length() > 0)
+            {
+                handleRequest(c, line);
+                if(!c.channel.isOpen())
+                {
+                    return;
+                }
+            }
+        }
+        c.in.clear();
+    } // read
+
+    private void handleRequest(Client c, String line) throws IOException
+    {
+        StringBuilder sb = new StringBuilder(128);
+        Object id = null;
+        try
+        {
+            Object request = JsonLine.parse(line);
+            if(!(request instanceof Map))
+            {
+                throw new IllegalArgumentException("request must be an object");
+            }
+            Map<?, ?> req = (Map<?, ?>) request;
+            id = req.get("id");
+            Object cmd = req.get("cmd");
+            Set<String> sats = readNames(req.get("sats"));
+
+            startResponse(sb, id, true);
+            SatelliteStateSnapshot snap = snapshot;
+            if("ping".equals(cmd))
+            {
+                // nothing else
+            }
+            else if("time".equals(cmd))
+            {
+                sb.append(",\"jd\":");
+                JsonLine.number(sb, (snap == null) ? Double.NaN : snap.getJulianDate());
+            }
+            else if("list".equals(cmd))
+            {
+                sb.append(",\"sats\":[");
+                for(int i = 0; snap != null && i < snap.getNumSatellites(); i++)
+                {
+                    if(i > 0)
+                    {
+                        sb.append(',');
+                    }
+                    JsonLine.quote(sb, snap.getName(i));
+                }
+                sb.append(']');
+            }
+            else if("state".equals(cmd))
+            {
+                if(snap == null)
+                {
+                    throw new IllegalArgumentException("no states yet");
+                }
+                sb.append(",\"jd\":");
+                JsonLine.number(sb, snap.getJulianDate());
+                appendStates(sb, snap, sats);
+                if(sats != null)
+                {
+                    sb.append(",\"missing\":[");
+                    boolean first = true;
+                    for(String name : sats)
+                    {
+                        if(snap.indexOf(name) < 0)
+                        {
+                            if(!first)
+                            {
+                                sb.append(',');
+                            }
+                            JsonLine.quote(sb, name);
+                            first = false;
+                        }
+                    }
+                    sb.append(']');
+                }
+            }
+            else if("subscribe".equals(cmd))
+            {
+                c.subscribed = true;
+                c.filter = sats;
+            }
+            else if("unsubscribe".equals(cmd))
+            {
+                c.subscribed = false;
+                c.filter = null;
+            }
+            else if("close".equals(cmd))
+            {
+                sb.append("}\n");
+                sendResponse(c, sb.toString().getBytes(UTF8));
+                close(c);
+                return;
+            }
+            else
+            {
+                throw new IllegalArgumentException("unknown cmd: " + cmd);
+            }
+        }
+        catch(IllegalArgumentException e)
+        {
+            sb.setLength(0);
+            startResponse(sb, id, false);
+            sb.append(",\"error\":");
+            JsonLine.quote(sb, e.getMessage());
+        }
+
+        sb.append("}\n");
+        sendResponse(c, sb.toString().getBytes(UTF8));
+    } // handleRequest
+
+    // queues a response, a client with more than maxPendingBytes waiting (sends requests but doesn't read) is disconnected
+    private void sendResponse(Client c, byte[] data) throws IOException
+    {
+        if(c.pendingBytes + data.length > maxPendingBytes)
+        {
+            System.out.println("State server client disconnected, not reading its responses");
+            close(c);
+            return;
+        }
+        send(c, data);
+    } // sendResponse
+
+    private static void startResponse(StringBuilder sb, Object id, boolean ok)
+    {
+        sb.append("{\"id\":");
+        if(id instanceof Double && ((Double) id) == Math.rint((Double) id))
+        {
+            sb.append(((Double) id).longValue());
+        }
+        else if(id instanceof String)
+        {
+            JsonLine.quote(sb, (String) id);
+        }
+        else
+        {
+            sb.append("null");
+        }
+        sb.append(",\"ok\":").append(ok);
+    } // startResponse
+
+    // satellite names from a request (null if not given = all)
+    private static Set<String> readNames(Object sats)
+    {
+        if(sats == null)
+        {
+            return null;
+        }
+        if(!(sats instanceof List))
+        {
+            throw new IllegalArgumentException("sats must be an array of names");
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for(Object o : (List<?>) sats)
+        {
+            if(!(o instanceof String))
+            {
+                throw new IllegalArgumentException("sats must be an array of names");
+            }
+            names.add((String) o);
+        }
+        return names;
+    } // readNames
+
+    // ,"states":[...] for the satellites (null = all)
+    private static void appendStates(StringBuilder sb, SatelliteStateSnapshot snap, Set<String> sats)
+    {
+        sb.append(",\"states\":[");
+        boolean first = true;
+        if(sats == null)
+        {
+            for(int i = 0; i < snap.getNumSatellites(); i++)
+            {
+                first = appendState(sb, snap, i, first);
+            }
+        }
+        else
+        {
+            for(String name : sats)
+            {
+                int i = snap.indexOf(name);
+                if(i >= 0)
+                {
+                    first = appendState(sb, snap, i, first);
+                }
+            }
+        }
+        sb.append(']');
+    } // appendStates
+
+    private static boolean appendState(StringBuilder sb, SatelliteStateSnapshot snap, int i, boolean first)
+    {
+        if(!snap.hasState(i))
+        {
+            return first;
+        }
+        if(!first)
+        {
+            sb.append(',');
+        }
+        sb.append("{\"name\":");
+        JsonLine.quote(sb, snap.getName(i));
+        sb.append(",\"r\":[");
+        appendValues(sb, snap, i, SatelliteStateSnapshot.X, 3);
+        sb.append("],\"v\":[");
+        appendValues(sb, snap, i, SatelliteStateSnapshot.DX, 3);
+        sb.append("],\"lla\":[");
+        appendValues(sb, snap, i, SatelliteStateSnapshot.LAT, 3);
+        sb.append("]}");
+        return false;
+    } // appendState
+
+    private static void appendValues(StringBuilder sb, SatelliteStateSnapshot snap, int i, int k0, int n)
+    {
+        for(int k = 0; k < n; k++)
+        {
+            if(k > 0)
+            {
+                sb.append(',');
+            }
+            JsonLine.number(sb, snap.get(i, k0 + k));
+        }
+    }
+
+    // sends the time step to the subscribers, clients with the same satellites share the message
+    private void sendTick(SatelliteStateSnapshot snap)
+    {
+        if(snap == null)
+        {
+            return;
+        }
+
+        Map<Set<String>, byte[]> messages = new HashMap<Set<String>, byte[]>();
+        for(Client c : new ArrayList<Client>(clients))
+        {
+            if(!c.subscribed)
+            {
+                continue;
+            }
+            if(c.pendingBytes > maxPendingBytes)
+            {
+                // slow client, skip this time step
+                ticksDropped.incrementAndGet();
+                continue;
+            }
+
+            byte[] msg = messages.get(c.filter);
+            if(msg == null)
+            {
+                StringBuilder sb = new StringBuilder(256 + 200 * ((c.filter == null) ? snap.getNumSatellites() : c.filter.size()));
+                sb.append("{\"type\":\"tick\",\"jd\":");
+                JsonLine.number(sb, snap.getJulianDate());
+                appendStates(sb, snap, c.filter);
+                sb.append("}\n");
+                msg = sb.toString().getBytes(UTF8);
+                messages.put(c.filter, msg);
+            }
+
+            try
+            {
+                send(c, msg);
+            }
+            catch(IOException e)
+            {
+                close(c);
+            }
+        }
+    } // sendTick
+
+    // queues the bytes and sends as much as the socket takes now
+    private void send(Client c, byte[] data) throws IOException
+    {
+        c.out.add(ByteBuffer.wrap(data));
+        c.pendingBytes += data.length;
+        flush(c);
+    }
+
+    private void flush(Client c) throws IOException
+    {
+        while(!c.out.isEmpty())
+        {
+            ByteBuffer b = c.out.peek();
+            c.pendingBytes -= c.channel.write(b);
+            if(b.hasRemaining())
+            {
+                break; // socket full
+            }
+            c.out.poll();
+        }
+
+        if(c.key.isValid())
+        {
+            c.key.interestOps(c.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    } // flush
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * @return port the server is listening on (-1 if not running)
+     */
+    public int getPort()
+    {
+        ServerSocketChannel ch = serverChannel;
+        return (running && ch != null) ? ch.socket().getLocalPort() : -1;
+    }
+
+    public int getNumClients()
+    {
+        return numClients;
+    }
+
+    /**
+     * @return number of time steps not sent to slow clients (total over all clients)
+     */
+    public long getTicksDropped()
+    {
+        return ticksDropped.get();
+    }
+
+    public int getMaxPendingBytes()
+    {
+        return maxPendingBytes;
+    }
+
+    /**
+     * @param maxPendingBytes a subscriber with more than this waiting to be sent misses time steps
+     *        (a client whose responses would go over it is disconnected)
+     */
+    public void setMaxPendingBytes(int maxPendingBytes)
+    {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    public int getMaxLineLength()
+    {
+        return maxLineLength;
+    }
+
+    /**
+     * @param maxLineLength longer requests close the connection [bytes]
+     */
+    public void setMaxLineLength(int maxLineLength)
+    {
+        this.maxLineLength = maxLineLength;
+    }
+
+    // one connection
+    private static class Client
+    {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(8192);
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+        int pendingBytes = 0;
+        boolean subscribed = false;
+        Set<String> filter; // null = all
+
+        Client(SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+    } // Client
+
+} // StateServer
@@ -0,0 +1,196 @@
+/*
+ * Reads the binary state stream sent by StatePublisher
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jguiserver;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the latest state of each satellite from the messages of a
+ * StatePublisher stream (one UDP datagram or one TCP message at a time, see
+ * readMessage). Delta entries whose key frame was lost are ignored until the
+ * next key frame.
+ *
+ * @author Shawn E. Gano
+ */
+public class StateStreamDecoder
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<Integer, String> names = new HashMap<Integer, String>();
+    private final Map<Integer, double[]> keyStates = new HashMap<Integer, double[]>();
+    private final Map<Integer, Integer> keySeqs = new HashMap<Integer, Integer>();
+    private final Map<String, double[]> states = new HashMap<String, double[]>();
+    private final Map<String, Double> stateTimes = new HashMap<String, Double>();
+
+    private int seq = -1;
+    private double julDate = Double.NaN;
+
+    public StateStreamDecoder()
+    {
+    }
+
+    /**
+     * Reads one message from a TCP subscription (blocks until it is all there)
+     * @param in stream of the TCP connection
+     * @return the message (without its length)
+     * @throws IOException if the connection closed or failed
+     */
+    public static ByteBuffer readMessage(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return ByteBuffer.wrap(b);
+    }
+
+    /**
+     * Decodes a message
+     * @param msg one UDP datagram or TCP message (without its length)
+     * @return false if it isn't a state stream message (of this VERSION)
+     */
+    public boolean decode(ByteBuffer msg)
+    {
+        if(msg.remaining() < StatePublisher.HEADER_SIZE || msg.getInt() != StatePublisher.MAGIC
+                || msg.get() != StatePublisher.VERSION)
+        {
+            return false;
+        }
+        byte type = msg.get();
+        int msgSeq = msg.getInt();
+        int keySeq = msg.getInt();
+        msg.getInt(); // part
+        msg.get(); // last part
+        double jd = msg.getDouble();
+        int count = msg.getInt();
+
+        double[] s = new double[6];
+        for(int n = 0; n < count; n++)
+        {
+            int id = msg.getInt();
+            if(type == StatePublisher.TYPE_CATALOG)
+            {
+                byte[] name = new byte[msg.getShort() & 0xFFFF];
+                msg.get(name);
+                names.put(id, new String(name, UTF8));
+                continue;
+            }
+
+            boolean valid = true;
+            if(type == StatePublisher.TYPE_KEY)
+            {
+                readState(msg, s);
+                keyStates.put(id, s.clone());
+                keySeqs.put(id, keySeq);
+            }
+            else if(msg.get() == StatePublisher.KIND_FULL)
+            {
+                readState(msg, s);
+            }
+            else
+            {
+                double[] r = keyStates.get(id);
+                Integer rSeq = keySeqs.get(id);
+                valid = r != null && rSeq != null && rSeq == keySeq;
+                for(int k = 0; k < 6; k++)
+                {
+                    int d = msg.getInt();
+                    if(valid)
+                    {
+                        s[k] = r[k] + d / ((k < 3) ? 1.0e3 : 1.0e6);
+                    }
+                }
+            }
+
+            String name = names.get(id);
+            if(valid && name != null)
+            {
+                states.put(name, s.clone());
+                stateTimes.put(name, jd);
+            }
+        }
+
+        if(type != StatePublisher.TYPE_CATALOG && msgSeq >= seq)
+        {
+            seq = msgSeq;
+            julDate = jd;
+        }
+        return true;
+    } // decode
+
+    private static void readState(ByteBuffer msg, double[] s)
+    {
+        for(int k = 0; k < 6; k++)
+        {
+            s[k] = msg.getDouble();
+        }
+    }
+
+    /**
+     * @return latest J2000 state of the satellite (x, y, z [m], dx, dy, dz [m/s]) or null if none received
+     */
+    public double[] getState(String name)
+    {
+        double[] s = states.get(name);
+        return (s == null) ? null : s.clone();
+    }
+
+    /**
+     * @return time of the latest state of the satellite (UTC Julian Date), NaN if none received
+     */
+    public double getStateJulianDate(String name)
+    {
+        Double jd = stateTimes.get(name);
+        return (jd == null) ? Double.NaN : jd;
+    }
+
+    /**
+     * @return satellites with a state
+     */
+    public List<String> getSatelliteNames()
+    {
+        return new ArrayList<String>(states.keySet());
+    }
+
+    /**
+     * @return time of the latest time step received (UTC Julian Date)
+     */
+    public double getJulianDate()
+    {
+        return julDate;
+    }
+
+    /**
+     * @return number of the latest time step received
+     */
+    public int getSeq()
+    {
+        return seq;
+    }
+
+} // StateStreamDecoder
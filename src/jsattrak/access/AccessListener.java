@@ -0,0 +1,55 @@
+/*
+ * Notified of the rise / set of satellites at ground stations found by AccessMatrix
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.access;
+
+/**
+ * Called on the thread updating the time (the event thread in the GUI), only
+ * for the pairs that changed since the last update.
+ *
+ * @author Shawn E. Gano
+ */
+public interface AccessListener
+{
+    /**
+     * Satellite rose above the elevation constraint of the ground station
+     * @param stationName ground station
+     * @param satName satellite
+     * @param julDate estimated time of the rise (UTC Julian Date)
+     */
+    public void accessStarted(String stationName, String satName, double julDate);
+
+    /**
+     * Satellite set below the elevation constraint of the ground station
+     * @param stationName ground station
+     * @param satName satellite
+     * @param julDate estimated time of the set (UTC Julian Date)
+     */
+    public void accessEnded(String stationName, String satName, double julDate);
+
+    /**
+     * Called after each update (after the events of the update)
+     * @param matrix the updated access matrix
+     * @param julDate time of the update (UTC Julian Date)
+     */
+    public void accessUpdated(AccessMatrix matrix, double julDate);
+
+} // AccessListener
@@ -0,0 +1,548 @@
+/*
+ * Which satellites are in view of which ground stations, updated every time step
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.access;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import jsattrak.coverage.JSatTrakTimeDependent;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.GroundStation;
+import name.gano.astro.AstroConst;
+import name.gano.astro.Sidereal;
+import name.gano.astro.time.Time;
+
+/**
+ * Access (satellite above the elevation constraint of the ground station) for
+ * every ground station / satellite pair, updated each time step (add it to the
+ * time dependent objects of the app).
+ *
+ * The Earth fixed position, local up direction and elevation constraint of
+ * each station are kept (recalculated only when the station changes) and each
+ * satellite's TEME position is rotated into the Earth fixed frame once per
+ * step (mean sidereal time, the same frames as GroundStation.calculate_AER).
+ * For each pair the height of the satellite above the station's horizon plane
+ * is a single dot product and the signed margin above the elevation constraint
+ * (sine of the elevation minus sine of the constraint) needs only a square root;
+ * the arcsine for the elevation is only taken for satellites above the horizon
+ * (few of them). Large matrices are split by station over a thread pool.
+ *
+ * Only the pairs whose access changed since the last step are sent to the
+ * listeners; the rise / set time is interpolated between the two steps from
+ * the margins (kept below the horizon too, so both ends are always known).
+ * Pairs already in view at the first update (or when a station / satellite
+ * is added) are sent as started at that time; removed pairs send nothing.
+ *
+ * @author Shawn E. Gano
+ */
+public class AccessMatrix implements JSatTrakTimeDependent
+{
+    private static final int PARALLEL_MIN_PAIRS = 4096; // smaller matrices are done on the calling thread
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService pool;
+
+    // index
+    private String[] stationNames = new String[0];
+    private String[] satNames = new String[0];
+    private HashMap<String, Integer> stationIndex = new HashMap<String, Integer>();
+    private HashMap<String, Integer> satIndex = new HashMap<String, Integer>();
+
+    // station geometry (Earth fixed [m]), see updateStations
+    private double[][] stationPos = new double[0][];
+    private double[][] stationUp = new double[0][];
+    private double[] sinElevationConst = new double[0];
+    private double[][] stationKey = new double[0][]; // lat, lon, alt, elevation constraint the geometry was made from
+
+    // satellite Earth fixed positions this step (null = no position)
+    private double[][] satPos = new double[0][];
+
+    // [station][satellite]
+    private boolean[][] visible = new boolean[0][0];
+    private double[][] margin = new double[0][0]; // sin(elevation) - sin(constraint), NaN if no position
+    private double[][] elevation = new double[0][0]; // [deg], NaN if below the horizon
+
+    private double julDate = Double.NaN; // time of the last update
+
+    private final CopyOnWriteArrayList<AccessListener> listeners = new CopyOnWriteArrayList<AccessListener>();
+
+    public AccessMatrix()
+    {
+    }
+
+    public void updateTime(final Time currentJulianDate, final Hashtable<String, AbstractSatellite> satHash, final Hashtable<String, GroundStation> gsHash)
+    {
+        double prevJulDate = julDate;
+        julDate = currentJulianDate.getJulianDate();
+
+        updateIndex(satHash, gsHash);
+        updateStations(gsHash);
+
+        // satellites to Earth fixed
+        double theta = Sidereal.Greenwich_Mean_Sidereal_Deg(currentJulianDate.getMJD()) * Math.PI / 180.0;
+        double cosT = Math.cos(theta);
+        double sinT = Math.sin(theta);
+        for(int j = 0; j < satNames.length; j++)
+        {
+            AbstractSatellite sat = satHash.get(satNames[j]);
+            double[] teme = (sat == null) ? null : sat.getTEMEPos();
+            if(teme == null || Double.isNaN(teme[0]))
+            {
+                satPos[j] = null;
+                continue;
+            }
+            if(satPos[j] == null)
+            {
+                satPos[j] = new double[3];
+            }
+            satPos[j][0] = cosT * teme[0] + sinT * teme[1];
+            satPos[j][1] = -sinT * teme[0] + cosT * teme[1];
+            satPos[j][2] = teme[2];
+        }
+
+        // evaluate all the pairs
+        List<Transition> transitions = new ArrayList<Transition>();
+        int numStations = stationNames.length;
+        int threads = Math.min(numThreads, numStations);
+        if(threads <= 1 || numStations * satNames.length < PARALLEL_MIN_PAIRS)
+        {
+            updateStationRows(0, numStations, prevJulDate, transitions);
+        }
+        else
+        {
+            updateParallel(threads, prevJulDate, transitions);
+        }
+
+        // send the changes in time order
+        Collections.sort(transitions, new Comparator<Transition>()
+        {
+            public int compare(Transition t1, Transition t2)
+            {
+                return Double.compare(t1.julDate, t2.julDate);
+            }
+        });
+        for(Transition t : transitions)
+        {
+            if(t.started)
+            {
+                fireAccessStarted(stationNames[t.station], satNames[t.sat], t.julDate);
+            }
+            else
+            {
+                fireAccessEnded(stationNames[t.station], satNames[t.sat], t.julDate);
+            }
+        }
+        fireAccessUpdated();
+    } // updateTime
+
+    private void updateParallel(int threads, final double prevJulDate, List<Transition> transitions)
+    {
+        if(pool == null)
+        {
+            pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "AccessMatrix");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        // blocks of stations
+        int numStations = stationNames.length;
+        List<Callable<List<Transition>>> tasks = new ArrayList<Callable<List<Transition>>>(threads);
+        for(int b = 0; b < threads; b++)
+        {
+            final int first = b * numStations / threads;
+            final int last = (b + 1) * numStations / threads;
+            tasks.add(new Callable<List<Transition>>()
+            {
+                public List<Transition> call()
+                {
+                    List<Transition> found = new ArrayList<Transition>();
+                    updateStationRows(first, last, prevJulDate, found);
+                    return found;
+                }
+            });
+        }
+
+        try
+        {
+            for(Future<List<Transition>> f : pool.invokeAll(tasks))
+            {
+                transitions.addAll(f.get());
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e)
+        {
+            System.out.println("Error updating access matrix: " + e.getCause().toString());
+        }
+    } // updateParallel
+
+    // evaluates the pairs of the stations [first, last)
+    private void updateStationRows(int first, int last, double prevJulDate, List<Transition> transitions)
+    {
+        for(int i = first; i < last; i++)
+        {
+            double[] p = stationPos[i];
+            double[] up = stationUp[i];
+            double sinElMin = sinElevationConst[i];
+            boolean[] vis = visible[i];
+            double[] m = margin[i];
+            double[] el = elevation[i];
+
+            for(int j = 0; j < satPos.length; j++)
+            {
+                double[] s = satPos[j];
+                boolean nowVisible = false;
+                double nowMargin = Double.NaN;
+                double nowElevation = Double.NaN;
+
+                if(s != null)
+                {
+                    double dx = s[0] - p[0];
+                    double dy = s[1] - p[1];
+                    double dz = s[2] - p[2];
+                    double h = up[0] * dx + up[1] * dy + up[2] * dz; // height above the horizon plane
+                    double sinEl = h / Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    nowMargin = sinEl - sinElMin; // signed, for the rise / set time
+
+                    // elevation only above the horizon (or a constraint below it)
+                    if(h > 0.0 || sinElMin < 0.0)
+                    {
+                        nowVisible = nowMargin >= 0.0;
+                        nowElevation = Math.asin(sinEl) * 180.0 / Math.PI;
+                    }
+                }
+
+                if(nowVisible != vis[j])
+                {
+                    // interpolate the time the margin went through zero (if both are known)
+                    double t = julDate;
+                    double pm = m[j];
+                    if(!Double.isNaN(prevJulDate) && !Double.isNaN(pm) && !Double.isNaN(nowMargin) && pm != nowMargin)
+                    {
+                        t = prevJulDate + (julDate - prevJulDate) * pm / (pm - nowMargin);
+                    }
+                    transitions.add(new Transition(i, j, nowVisible, t));
+                    vis[j] = nowVisible;
+                }
+                m[j] = nowMargin;
+                el[j] = nowElevation;
+            }
+        }
+    } // updateStationRows
+
+    // rebuilds the index if the stations or satellites changed (keeps the state of the pairs that are still there)
+    private void updateIndex(Hashtable<String, AbstractSatellite> satHash, Hashtable<String, GroundStation> gsHash)
+    {
+        if(gsHash.size() == stationNames.length && satHash.size() == satNames.length
+                && gsHash.keySet().containsAll(stationIndex.keySet()) && satHash.keySet().containsAll(satIndex.keySet()))
+        {
+            return;
+        }
+
+        String[] newStations = gsHash.keySet().toArray(new String[0]);
+        String[] newSats = satHash.keySet().toArray(new String[0]);
+        Arrays.sort(newStations);
+        Arrays.sort(newSats);
+
+        boolean[][] newVisible = new boolean[newStations.length][newSats.length];
+        double[][] newMargin = new double[newStations.length][newSats.length];
+        double[][] newElevation = new double[newStations.length][newSats.length];
+        double[][] newStationPos = new double[newStations.length][];
+        double[][] newStationUp = new double[newStations.length][];
+        double[] newSinElevationConst = new double[newStations.length];
+        double[][] newStationKey = new double[newStations.length][];
+
+        for(int i = 0; i < newStations.length; i++)
+        {
+            Integer oldI = stationIndex.get(newStations[i]);
+            if(oldI != null)
+            {
+                newStationPos[i] = stationPos[oldI];
+                newStationUp[i] = stationUp[oldI];
+                newSinElevationConst[i] = sinElevationConst[oldI];
+                newStationKey[i] = stationKey[oldI];
+            }
+            for(int j = 0; j < newSats.length; j++)
+            {
+                Integer oldJ = satIndex.get(newSats[j]);
+                if(oldI != null && oldJ != null)
+                {
+                    newVisible[i][j] = visible[oldI][oldJ];
+                    newMargin[i][j] = margin[oldI][oldJ];
+                    newElevation[i][j] = elevation[oldI][oldJ];
+                }
+                else
+                {
+                    newMargin[i][j] = Double.NaN;
+                    newElevation[i][j] = Double.NaN;
+                }
+            }
+        }
+
+        stationNames = newStations;
+        satNames = newSats;
+        stationIndex = new HashMap<String, Integer>();
+        satIndex = new HashMap<String, Integer>();
+        for(int i = 0; i < newStations.length; i++)
+        {
+            stationIndex.put(newStations[i], i);
+        }
+        for(int j = 0; j < newSats.length; j++)
+        {
+            satIndex.put(newSats[j], j);
+        }
+        visible = newVisible;
+        margin = newMargin;
+        elevation = newElevation;
+        stationPos = newStationPos;
+        stationUp = newStationUp;
+        sinElevationConst = newSinElevationConst;
+        stationKey = newStationKey;
+        satPos = new double[newSats.length][];
+    } // updateIndex
+
+    // recalculates the geometry of new or changed stations
+    private void updateStations(Hashtable<String, GroundStation> gsHash)
+    {
+        for(int i = 0; i < stationNames.length; i++)
+        {
+            GroundStation gs = gsHash.get(stationNames[i]);
+            double lat = gs.getLatitude();
+            double lon = gs.getLongitude();
+            double alt = gs.getAltitude();
+            double elConst = gs.getElevationConst();
+
+            double[] key = stationKey[i];
+            if(key != null && key[0] == lat && key[1] == lon && key[2] == alt && key[3] == elConst)
+            {
+                continue;
+            }
+
+            // geodetic (WGS-84) to Earth fixed, as in GroundStation
+            double latRad = lat * Math.PI / 180.0;
+            double lonRad = lon * Math.PI / 180.0;
+            double sinLat = Math.sin(latRad);
+            double cosLat = Math.cos(latRad);
+            double C = 1.0 / Math.sqrt(1.0 + AstroConst.f_Earth * (AstroConst.f_Earth - 2.0) * sinLat * sinLat);
+            double S = (1.0 - AstroConst.f_Earth) * (1.0 - AstroConst.f_Earth) * C;
+
+            stationPos[i] = new double[] {(AstroConst.R_Earth * C + alt) * cosLat * Math.cos(lonRad),
+                                          (AstroConst.R_Earth * C + alt) * cosLat * Math.sin(lonRad),
+                                          (AstroConst.R_Earth * S + alt) * sinLat};
+            stationUp[i] = new double[] {cosLat * Math.cos(lonRad), cosLat * Math.sin(lonRad), sinLat};
+            sinElevationConst[i] = Math.sin(elConst * Math.PI / 180.0);
+            stationKey[i] = new double[] {lat, lon, alt, elConst};
+        }
+    } // updateStations
+
+    /**
+     * @return true if the satellite was in view of the ground station at the last update
+     */
+    public boolean isVisible(String stationName, String satName)
+    {
+        Integer i = stationIndex.get(stationName);
+        Integer j = satIndex.get(satName);
+        return i != null && j != null && visible[i][j];
+    }
+
+    /**
+     * @return elevation of the satellite seen from the ground station at the last update [deg] (NaN if below the horizon)
+     */
+    public double getElevation(String stationName, String satName)
+    {
+        Integer i = stationIndex.get(stationName);
+        Integer j = satIndex.get(satName);
+        return (i != null && j != null) ? elevation[i][j] : Double.NaN;
+    }
+
+    /**
+     * @return satellites in view of the ground station at the last update
+     */
+    public List<String> getVisibleSatellites(String stationName)
+    {
+        List<String> sats = new ArrayList<String>();
+        Integer i = stationIndex.get(stationName);
+        if(i != null)
+        {
+            for(int j = 0; j < satNames.length; j++)
+            {
+                if(visible[i][j])
+                {
+                    sats.add(satNames[j]);
+                }
+            }
+        }
+        return sats;
+    } // getVisibleSatellites
+
+    /**
+     * @return ground stations that can see the satellite at the last update
+     */
+    public List<String> getVisibleStations(String satName)
+    {
+        List<String> stations = new ArrayList<String>();
+        Integer j = satIndex.get(satName);
+        if(j != null)
+        {
+            for(int i = 0; i < stationNames.length; i++)
+            {
+                if(visible[i][j])
+                {
+                    stations.add(stationNames[i]);
+                }
+            }
+        }
+        return stations;
+    } // getVisibleStations
+
+    /**
+     * @return number of ground station / satellite pairs in view at the last update
+     */
+    public int getNumVisiblePairs()
+    {
+        int count = 0;
+        for(boolean[] row : visible)
+        {
+            for(boolean v : row)
+            {
+                if(v)
+                {
+                    count++;
+                }
+            }
+        }
+        return count;
+    } // getNumVisiblePairs
+
+    public String[] getStationNames()
+    {
+        return stationNames.clone();
+    }
+
+    public String[] getSatelliteNames()
+    {
+        return satNames.clone();
+    }
+
+    /**
+     * @return time of the last update (UTC Julian Date), NaN before the first update
+     */
+    public double getJulianDate()
+    {
+        return julDate;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+        dispose(); // new pool next time
+    }
+
+    /**
+     * Stops the worker threads (a new pool is made if the matrix is updated again)
+     */
+    public void dispose()
+    {
+        if(pool != null)
+        {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    public void addAccessListener(AccessListener l)
+    {
+        listeners.add(l);
+    }
+
+    public void removeAccessListener(AccessListener l)
+    {
+        listeners.remove(l);
+    }
+
+    private void fireAccessStarted(String stationName, String satName, double jd)
+    {
+        for(AccessListener l : listeners)
+        {
+            l.accessStarted(stationName, satName, jd);
+        }
+    }
+
+    private void fireAccessEnded(String stationName, String satName, double jd)
+    {
+        for(AccessListener l : listeners)
+        {
+            l.accessEnded(stationName, satName, jd);
+        }
+    }
+
+    private void fireAccessUpdated()
+    {
+        for(AccessListener l : listeners)
+        {
+            l.accessUpdated(this, julDate);
+        }
+    }
+
+    // change of access of one pair
+    private static class Transition
+    {
+        final int station;
+        final int sat;
+        final boolean started;
+        final double julDate;
+
+        Transition(int station, int sat, boolean started, double julDate)
+        {
+            this.station = station;
+            this.sat = sat;
+            this.started = started;
+            this.julDate = julDate;
+        }
+    } // Transition
+
+} // AccessMatrix
@@ -0,0 +1,210 @@
+/*
+ * AsyncTimeDependent.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Runs a SnapshotConsumer (e.g. the CoverageAnalyzer) on its own thread so a
+ * slow analysis doesn't slow down the time steps of the GUI. Each time step
+ * only copies the satellite states (SatelliteStateSnapshot) and hands them
+ * over; if the consumer is still busy with an older step the waiting snapshot
+ * is replaced by the newest one (the intermediate step is dropped), so at most
+ * one snapshot is ever waiting.
+ *
+ */
+
+package jsattrak.coverage;
+
+import java.util.Hashtable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.GroundStation;
+import jsattrak.utilities.SatelliteStateSnapshot;
+import name.gano.astro.time.Time;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class AsyncTimeDependent implements JSatTrakTimeDependent
+{
+    private final SnapshotConsumer consumer;
+    private final ExecutorService executor;
+
+    // latest snapshot not yet given to the consumer (null if none)
+    private final AtomicReference<SatelliteStateSnapshot> pending = new AtomicReference<SatelliteStateSnapshot>();
+
+    private volatile Runnable updateListener; // run on the consumer thread after each update
+
+    private final AtomicLong ticksProcessed = new AtomicLong();
+    private final AtomicLong ticksDropped = new AtomicLong();
+
+    // takes the latest snapshot and updates the consumer with it
+    private final Runnable drain = new Runnable()
+    {
+        public void run()
+        {
+            SatelliteStateSnapshot snapshot = pending.getAndSet(null);
+            if(snapshot == null)
+            {
+                return; // already done by an earlier run
+            }
+
+            try
+            {
+                consumer.updateSnapshot(snapshot);
+                ticksProcessed.incrementAndGet();
+
+                Runnable listener = updateListener;
+                if(listener != null)
+                {
+                    listener.run();
+                }
+            }
+            catch(RuntimeException e)
+            {
+                System.out.println("Error updating " + consumer.getClass().getSimpleName() + ": " + e.toString());
+            }
+        }
+    };
+
+    /**
+     * @param consumer object to update (only from the thread of this object from now on)
+     */
+    public AsyncTimeDependent(SnapshotConsumer consumer)
+    {
+        this.consumer = consumer;
+
+        final String threadName = "AsyncTimeDependent-" + consumer.getClass().getSimpleName();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1); // GUI first
+                return t;
+            }
+        });
+    } // constructor
+
+    /**
+     * Copies the satellite states and hands them over to the consumer thread (returns right away)
+     */
+    public void updateTime(final Time currentJulianDate, final Hashtable<String,AbstractSatellite> satHash, final Hashtable<String,GroundStation> gsHash)
+    {
+        offer(SatelliteStateSnapshot.create(currentJulianDate.getJulianDate(), satHash));
+    } // updateTime
+
+    /**
+     * Hands a snapshot over to the consumer thread, replacing any snapshot still waiting
+     * @param snapshot states of the satellites
+     */
+    public void offer(SatelliteStateSnapshot snapshot)
+    {
+        if(executor.isShutdown())
+        {
+            return;
+        }
+
+        if(pending.getAndSet(snapshot) != null)
+        {
+            // the consumer hasn't got to the older one yet, it will take this one instead
+            ticksDropped.incrementAndGet();
+        }
+        else
+        {
+            executor.execute(drain);
+        }
+    } // offer
+
+    /**
+     * Waits until the consumer has been updated with all the snapshots offered so far
+     * @param timeoutMs maximum time to wait [ms]
+     * @return false if it timed out (or was interrupted)
+     */
+    public boolean waitUntilIdle(long timeoutMs)
+    {
+        try
+        {
+            executor.submit(drain).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e)
+        {
+        }
+        catch(TimeoutException e)
+        {
+        }
+        catch(RuntimeException e)
+        {
+            // rejected, already disposed
+        }
+        return false;
+    } // waitUntilIdle
+
+    /**
+     * Stops the consumer thread (any waiting snapshot is dropped)
+     */
+    public void dispose()
+    {
+        executor.shutdownNow();
+        pending.set(null);
+    }
+
+    public SnapshotConsumer getConsumer()
+    {
+        return consumer;
+    }
+
+    /**
+     * @param updateListener run on the consumer thread after each update (e.g. to request a repaint), can be null
+     */
+    public void setUpdateListener(Runnable updateListener)
+    {
+        this.updateListener = updateListener;
+    }
+
+    /**
+     * @return number of snapshots the consumer was updated with
+     */
+    public long getTicksProcessed()
+    {
+        return ticksProcessed.get();
+    }
+
+    /**
+     * @return number of snapshots replaced by a newer one before the consumer got to them
+     */
+    public long getTicksDropped()
+    {
+        return ticksDropped.get();
+    }
+
+} // AsyncTimeDependent
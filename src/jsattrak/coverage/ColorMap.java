@@ -89,6 +89,23 @@ public class ColorMap
         
     } // getColor (with alpha)
     
+    /**
+     * Colors of the whole map as packed ARGB values (for writing straight into an image raster
+     * without creating a Color each time), entry k is the color of k in [0,size-1]
+     * @param size number of entries
+     * @param alpha transparency 0-255
+     * @return lookup table
+     */
+    public int[] createLookupTable(int size, int alpha)
+    {
+        int[] lut = new int[size];
+        for(int k = 0; k < size; k++)
+        {
+            lut[k] = getColor(k, 0, size-1, alpha).getRGB();
+        }
+        return lut;
+    } // createLookupTable
+    
     protected void setColorMap(int[][] newColorMap)
     {
         colormap = newColorMap;
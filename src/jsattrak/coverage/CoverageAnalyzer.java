@@ -30,10 +30,15 @@ import java.awt.Graphics2D;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
 import jsattrak.gui.J2dEarthLabel2;
 import jsattrak.objects.AbstractSatellite;
 import jsattrak.objects.GroundStation;
+import jsattrak.utilities.SatelliteStateSnapshot;
+import jsattrak.utilities.TickMetrics;
+import name.gano.astro.AstroConst;
 import name.gano.astro.GeoFunctions;
 import name.gano.astro.time.Time;
 
@@ -41,7 +46,7 @@ import name.gano.astro.time.Time;
  *
  * @author Shawn
  */
-public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependent
+public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependent,SnapshotConsumer
 {
     // data arrays
     private  double[][] coverageCumTime;  // cumulative coverage time array [latPanels x longPanels] in days
@@ -51,8 +56,8 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
     private double[] latGridPoints; // grid end points for latitude
     private double[] lonGridPoints; // grid end points for longitude
    
-    private double minNotZeroVal = 1;  // current maximum and minimum (NOT ZERO) values 
-    private double maxVal = 100;
+    private volatile double minNotZeroVal = 1;  // current maximum and minimum (NOT ZERO) values 
+    private volatile double maxVal = 100;
     
     private Time startTime = new Time(); // keep track of start time
     
@@ -61,6 +66,15 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
     
     private double lastMJD = -1; // last MJD update time
     
+    private transient volatile int dataVersion = 0; // incremented whenever the grid or coverage data changes (used to cache 3D geometry)
+    
+    // for the cached 2D images (see CoverageRaster)
+    private transient volatile int gridVersion = 0; // incremented whenever the grid is (re)created
+    private transient volatile int stepCount = 0; // coverage steps done
+    private transient int[] cellVersions; // stepCount when each panel's value last changed [i*longPanels+j]
+    private transient Map<J2dEarthLabel2,CoverageRaster> rasters; // image of each 2D window (or off screen label)
+    private static final Object RASTER_LOCK = new Object(); // for rasters (not this, which is held during an analysis step)
+    
     Vector<String> satsUsedInCoverage = new Vector<String>(); // vector of satellites used in Coverage anaylsis
     
     // settings ===========
@@ -124,7 +138,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
      * Clear coverage data and initalizie update time for next simulation step
      * @param currentJulianDate
      */
-    public void clearCoverageData(final Time currentJulianDate)
+    public synchronized void clearCoverageData(final Time currentJulianDate)
     {
         iniParamters();
         lastMJD = currentJulianDate.getMJD();
@@ -134,7 +148,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
     /**
      * Clears the coverage data and resets last update date
      */
-    public void clearCoverageData()
+    public synchronized void clearCoverageData()
     {
         iniParamters();
     }
@@ -172,6 +186,10 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         // clear last mjd update
         lastMJD = -1;
         
+        cellVersions = new int[latPanels*longPanels];
+        gridVersion++;
+        dataVersion++;
+        
     }// iniParamters
     
     // test main function
@@ -205,52 +223,134 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
      * @param currentJulianDate
      * @param satHash
      */
-    public void performCoverageAnalysis(final Time currentJulianDate, final Hashtable<String,AbstractSatellite> satHash)
+    public synchronized void performCoverageAnalysis(final Time currentJulianDate, final Hashtable<String,AbstractSatellite> satHash)
+    {
+        long t0 = TickMetrics.start();
+        try
+        {
+            // sub points and positions of the satellites used
+            int n = satsUsedInCoverage.size();
+            double[] satLats = new double[n];
+            double[] satLons = new double[n];
+            double[][] satPos = new double[n][];
+            for(int s = 0; s < n; s++)
+            {
+                AbstractSatellite currentSat = satHash.get(satsUsedInCoverage.get(s));
+                if(currentSat != null)
+                {
+                    satLats[s] = currentSat.getLatitude();
+                    satLons[s] = currentSat.getLongitude();
+                    satPos[s] = currentSat.getTEMEPos();
+                }
+            }
+            
+            performCoverageAnalysisStep(currentJulianDate.getJulianDate(), satLats, satLons, satPos);
+        }
+        finally
+        {
+            TickMetrics.stop(TickMetrics.COVERAGE, t0);
+        }
+    } // performCoverageAnalysis
+    
+    /**
+     * Performs the coverage anaylsis step of a snapshot of the satellites (can be called from any thread, see AsyncTimeDependent)
+     * @param snapshot states of the satellites at the current time
+     */
+    public void updateSnapshot(SatelliteStateSnapshot snapshot)
+    {
+        if(!dynamicUpdating)
+        {
+            return; // don't update converage anlysis from JSatTrack GUI
+        }
+        
+        performCoverageAnalysis(snapshot);
+    } // updateSnapshot
+    
+    /**
+     * Performs coverage anaylsis with a snapshot of the satellites
+     * @param snapshot states of the satellites at the current time
+     */
+    public synchronized void performCoverageAnalysis(SatelliteStateSnapshot snapshot)
+    {
+        long t0 = TickMetrics.start();
+        try
+        {
+            int n = satsUsedInCoverage.size();
+            double[] satLats = new double[n];
+            double[] satLons = new double[n];
+            double[][] satPos = new double[n][];
+            for(int s = 0; s < n; s++)
+            {
+                int i = snapshot.indexOf(satsUsedInCoverage.get(s));
+                if(i >= 0 && snapshot.hasState(i))
+                {
+                    satLats[s] = snapshot.get(i, SatelliteStateSnapshot.LAT)*Math.PI/180.0;
+                    satLons[s] = snapshot.get(i, SatelliteStateSnapshot.LON)*Math.PI/180.0;
+                    satPos[s] = snapshot.getTEMEPosition(i);
+                }
+            }
+            
+            performCoverageAnalysisStep(snapshot.getJulianDate(), satLats, satLons, satPos);
+        }
+        finally
+        {
+            TickMetrics.stop(TickMetrics.COVERAGE, t0);
+        }
+    } // performCoverageAnalysis
+    
+    // satLats, satLons [rad] and satPos (TEME [m], null if the satellite isn't available) of each satellite used
+    private void performCoverageAnalysisStep(final double julDate, final double[] satLats, final double[] satLons, final double[][] satPos)
     {
+        double mjd = julDate - AstroConst.JDminusMJD;
+        
         // if first time update, save time and quit (only start calc after first time step)
         if(lastMJD == -1)
         {
-            lastMJD = currentJulianDate.getMJD();
-            startTime.set(currentJulianDate.getCurrentGregorianCalendar().getTimeInMillis());
+            lastMJD = mjd;
+            startTime.set(Time.convertJD2Calendar(julDate).getTimeInMillis());
             return;
         }
         
         // check time make sure this time is past when the last time update was 
-        if(currentJulianDate.getMJD() <= lastMJD)
+        if(mjd <= lastMJD)
         {
             return; // do nothing as this time is later
         }
         // calc time diff, and save time
-        double timeDiffDays = currentJulianDate.getMJD() - lastMJD;
-        lastMJD = currentJulianDate.getMJD();
+        double timeDiffDays = mjd - lastMJD;
+        lastMJD = mjd;
         
         // create temp array for time cumlation (so we don't double count sat coverage)
         // each panel either has access or it doesn't for the current time step -- boolean 
         boolean[][] tempAcessArray = new boolean[latPanels][longPanels];
         
         // === do coverage anaylsis, for each satellite ===
-        for(String satName : satsUsedInCoverage)
+        for(int s = 0; s < satPos.length; s++)
         {
-            // get sat Object
-            AbstractSatellite currentSat = satHash.get(satName);
+            if(satPos[s] == null)
+            {
+                continue; // satellite not available
+            }
+            double satLat = satLats[s]*180/Math.PI;
+            double satLon = satLons[s]*180/Math.PI;
             
             // check to see if satellite is in lat/long AOI coverage box
-            if(currentSat.getLatitude()*180/Math.PI  >= latBounds[0]  && 
-               currentSat.getLatitude()*180/Math.PI  <= latBounds[1]  &&
-               currentSat.getLongitude()*180/Math.PI >= longBounds[0] &&
-               currentSat.getLongitude()*180/Math.PI <= longBounds[1]    )
+            if(satLat  >= latBounds[0]  && 
+               satLat  <= latBounds[1]  &&
+               satLon >= longBounds[0] &&
+               satLon <= longBounds[1]    )
             {
                 
                 // find closest panel under satellite and the index of that panel
-                double latPercentile = (currentSat.getLatitude()*180/Math.PI-latBounds[0]) / (latBounds[1]-latBounds[0]);
+                double latPercentile = (satLat-latBounds[0]) / (latBounds[1]-latBounds[0]);
                 int latIndex = (int)Math.floor(latPercentile*latPanels);
-                double longPercentile = (currentSat.getLongitude()*180/Math.PI-longBounds[0]) / (longBounds[1]-longBounds[0]);
+                double longPercentile = (satLon-longBounds[0]) / (longBounds[1]-longBounds[0]);
                 int longIndex = (int)Math.floor(longPercentile*longPanels);
                 
                 // Coverage assumes sat doesn't have a shaped sensor and it can look straight down (nadir)
                 // debug for now mark point as access added
                 double[] aer = new double[3];
-//                aer = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(), 
+//                aer = GeoFunctions.calculate_AER(julDate, 
 //                        new double[]{latPanelMidPoints[latIndex],lonPanelMidPoints[longIndex],0},  // sea level
 //                        currentSat.getPosMOD());
 //                
@@ -268,9 +368,9 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                 {
                     // take care of when i >= latPanels (reflection for longitude index and make lat go down instead of up (and stay at top one iter)
                     
-                    aer = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(), 
+                    aer = GeoFunctions.calculate_AER(julDate, 
                         new double[]{getLatPanelMidPoints()[i],getLonPanelMidPoints()[longIndex],0},  // sea level
-                        currentSat.getTEMEPos());
+                        satPos[s]);
                     
                     if(aer[1] >= elevationLimit)
                     {
@@ -295,9 +395,9 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                                 jWrappedIndex = j;
                             }
                             
-                            tempElevation2 = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(), 
+                            tempElevation2 = GeoFunctions.calculate_AER(julDate, 
                                 new double[]{getLatPanelMidPoints()[i],getLonPanelMidPoints()[jWrappedIndex],0},  // sea level
-                                currentSat.getTEMEPos())[1];
+                                satPos[s])[1];
                             if(tempElevation2 >= elevationLimit)
                             {
                                 tempAcessArray[i][jWrappedIndex] = true;
@@ -327,9 +427,9 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                                 jWrappedIndex = j;
                             }
                             
-                            tempElevation2 = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(), 
+                            tempElevation2 = GeoFunctions.calculate_AER(julDate, 
                                 new double[]{getLatPanelMidPoints()[i],getLonPanelMidPoints()[jWrappedIndex],0},  // sea level
-                                currentSat.getTEMEPos())[1];
+                                satPos[s])[1];
                             if(tempElevation2 >= elevationLimit)
                             {
                                 tempAcessArray[i][jWrappedIndex] = true;
@@ -354,13 +454,13 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                     do
                     {
                         // take care of when i >= latPanels (reflection for longitude index and make lat go down instead of up (and stay at top one iter)
-                        aer = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(),
+                        aer = GeoFunctions.calculate_AER(julDate,
                                 new double[]
                                 {
                                     getLatPanelMidPoints()[i], getLonPanelMidPoints()[longIndex], 0
                                 
                                 }, // sea level
-                                currentSat.getTEMEPos());
+                                satPos[s]);
 
                         if (aer[1] >= elevationLimit)
                         {
@@ -386,9 +486,9 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                                     jWrappedIndex = j;
                                 }
 
-                                tempElevation2 = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(),
+                                tempElevation2 = GeoFunctions.calculate_AER(julDate,
                                         new double[] {getLatPanelMidPoints()[i], getLonPanelMidPoints()[jWrappedIndex], 0}, // sea level
-                                        currentSat.getTEMEPos())[1];
+                                        satPos[s])[1];
                                 if (tempElevation2 >= elevationLimit)
                                 {
                                     tempAcessArray[i][jWrappedIndex] = true;
@@ -418,9 +518,9 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                                     jWrappedIndex = j;
                                 }
                                 
-                                tempElevation2 = GeoFunctions.calculate_AER(currentJulianDate.getJulianDate(),
+                                tempElevation2 = GeoFunctions.calculate_AER(julDate,
                                         new double[]{getLatPanelMidPoints()[i], getLonPanelMidPoints()[jWrappedIndex], 0}, // sea level
-                                        currentSat.getTEMEPos())[1];
+                                        satPos[s])[1];
                                 if (tempElevation2 >= elevationLimit)
                                 {
                                     tempAcessArray[i][jWrappedIndex] = true;
@@ -444,8 +544,11 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         } // for each satellite - Coverage anaylsis
         
         // merge temp and timecumarray // and update max and min values
-        minNotZeroVal = Double.MAX_VALUE; // really high to start
-        maxVal = -1; // really low to start
+        // (new max and min are set at the end so they are always consistent while drawing)
+        double newMinNotZeroVal = Double.MAX_VALUE; // really high to start
+        double newMaxVal = -1; // really low to start
+        int step = ++stepCount;
+        int[] versions = getCellVersions();
         for(int i=0;i<latPanels;i++) 
         {
             for(int j=0;j<longPanels;j++)
@@ -456,27 +559,45 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
                 if(tempAcessArray[i][j])
                 {
                     coverageCumTime[i][j] += timeDiffDays;
+                    versions[i*longPanels+j] = step;
                 } // if access at this point
                 
                 // update max and min
-                if(getCoverageCumTime()[i][j] > maxVal)
+                if(coverageCumTime[i][j] > newMaxVal)
                 {
-                    maxVal = getCoverageCumTime()[i][j];
+                    newMaxVal = coverageCumTime[i][j];
                 }
-                if(getCoverageCumTime()[i][j] < minNotZeroVal && getCoverageCumTime()[i][j] > 0)
+                if(coverageCumTime[i][j] < newMinNotZeroVal && coverageCumTime[i][j] > 0)
                 {
-                   minNotZeroVal =  getCoverageCumTime()[i][j];
+                   newMinNotZeroVal =  coverageCumTime[i][j];
                 }
                 
             } // long panels (j)
         } // lat panels (i) (merge data)
+        minNotZeroVal = newMinNotZeroVal;
+        maxVal = newMaxVal;
         
+        dataVersion++;
 
         
-    } // performCoverageAnalysis
+    } // performCoverageAnalysisStep
     
     // draw 2d
     public void draw2d(Graphics2D g2, J2dEarthLabel2 earthLabel, int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+    {
+        draw2dCoverage(g2, earthLabel, totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong);
+        
+        // Draw color bar if wanted!!
+        if(showColorBar)
+        {
+            drawColorBar(g2, totHeight);
+        }
+    } // draw 2d
+    
+    /**
+     * Draws the coverage grid and panels without the color bar (e.g. for map tiles, which each would get one)
+     */
+    public void draw2dCoverage(Graphics2D g2, J2dEarthLabel2 earthLabel, int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
     {
         int[] xy = new int[2];
         int[] xy_old = new int[2];
@@ -516,64 +637,52 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
             }
         } // graw grid and center points
         // fill in color scaled panels based on cumulative Coverage time
-        // should combine with above... just use alpha =0.0 when panel is blank
-        int xmax, xmin, ymax, ymin;
-        for(int i=0;i<getLatPanelMidPoints().length;i++)
+        // (drawn from a cached image of this window, only the panels that changed are redrawn into it)
+        // (labels can be drawn on other threads than the GUI, e.g. by the map tile server, each label only by one at a time)
+        CoverageRaster raster;
+        synchronized(RASTER_LOCK)
         {
-            for(int j=0;j<getLonPanelMidPoints().length;j++)
+            if(rasters == null)
             {
-                xy = earthLabel.findXYfromLL(getLatGridPoints()[i], getLonGridPoints()[j],totWidth,totHeight,imgWidth,imgHeight,zoomFac,cLat,cLong);
-                xy_old = earthLabel.findXYfromLL(getLatGridPoints()[i+1], getLonGridPoints()[j+1],totWidth,totHeight,imgWidth,imgHeight,zoomFac,cLat,cLong);
-                
-                xmax = Math.max(xy[0], xy_old[0]);
-                xmin = Math.min(xy[0], xy_old[0]);
-                ymax = Math.max(xy[1], xy_old[1]);
-                ymin = Math.min(xy[1], xy_old[1]);
-                
-                // color based on: coverageCumTime[i][j]
-                // dummy way for now black or white
-                if(getCoverageCumTime()[i][j]>0)
-                {
-                    g2.setColor( colorMap.getColor(getCoverageCumTime()[i][j], minNotZeroVal, maxVal, alpha)  );
-                    g2.fillRect(xmin, ymin, xmax-xmin,ymax-ymin);//xy_old[0]-xy[0], xy_old[1]-xy[1]);
-                }
-                else
-                {
-                    // don't draw anything
-                }
-                
-            } // for lon panels
-        } // for lat panels
-        
-        // Draw color bar if wanted!!
-        if(showColorBar)
-        {
-            // colorbar background
-            g2.setColor( colorbarBGcolor );
-            g2.fillRect(pixelsFromLeft-5, totHeight-pixelsFromBottom-colorBarHeight-3, colorBarLen+12+30, colorBarHeight+colorBarTextSpacing+15);
-            
-            // color bar specturm
-            for(int i=0;i<colorBarLen;i++)
+                rasters = new WeakHashMap<J2dEarthLabel2,CoverageRaster>();
+            }
+            raster = rasters.get(earthLabel);
+            if(raster == null)
             {
-                g2.setColor( colorMap.getColor(i, 0, colorBarLen, 255) );
-                g2.drawLine(pixelsFromLeft+i, totHeight-pixelsFromBottom, pixelsFromLeft+i, totHeight-pixelsFromBottom-colorBarHeight);
+                raster = new CoverageRaster();
+                rasters.put(earthLabel, raster);
             }
-            
-            // color bar labeling
-            // 0 %
-            int textHeight = 10;
-            g2.setColor( colorBarTextcolor );
-            g2.drawLine(pixelsFromLeft-1, totHeight-pixelsFromBottom+colorBarTextSpacing, pixelsFromLeft-1,totHeight-pixelsFromBottom-colorBarHeight);
-            g2.drawString(colorBarNumberFormat.format(minNotZeroVal*24*60*60) + " sec", pixelsFromLeft-1, totHeight-pixelsFromBottom+colorBarTextSpacing+textHeight);
-            
-            // at 100%
-            g2.setColor( Color.BLACK );
-            g2.drawLine(pixelsFromLeft+colorBarLen, totHeight-pixelsFromBottom+colorBarTextSpacing, pixelsFromLeft+colorBarLen,totHeight-pixelsFromBottom-colorBarHeight);
-            g2.drawString(colorBarNumberFormat.format(maxVal*24*60*60), pixelsFromLeft+colorBarLen, totHeight-pixelsFromBottom+colorBarTextSpacing+textHeight);
-            
-        } // showColorBar
+        }
+        raster.draw(g2, this, earthLabel, totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong);
         
-    } // draw 2d
+    } // draw2dCoverage
+    
+    private void drawColorBar(Graphics2D g2, int totHeight)
+    {
+        // colorbar background
+        g2.setColor( colorbarBGcolor );
+        g2.fillRect(pixelsFromLeft-5, totHeight-pixelsFromBottom-colorBarHeight-3, colorBarLen+12+30, colorBarHeight+colorBarTextSpacing+15);
+        
+        // color bar specturm
+        for(int i=0;i<colorBarLen;i++)
+        {
+            g2.setColor( colorMap.getColor(i, 0, colorBarLen, 255) );
+            g2.drawLine(pixelsFromLeft+i, totHeight-pixelsFromBottom, pixelsFromLeft+i, totHeight-pixelsFromBottom-colorBarHeight);
+        }
+        
+        // color bar labeling
+        // 0 %
+        int textHeight = 10;
+        g2.setColor( colorBarTextcolor );
+        g2.drawLine(pixelsFromLeft-1, totHeight-pixelsFromBottom+colorBarTextSpacing, pixelsFromLeft-1,totHeight-pixelsFromBottom-colorBarHeight);
+        g2.drawString(colorBarNumberFormat.format(minNotZeroVal*24*60*60) + " sec", pixelsFromLeft-1, totHeight-pixelsFromBottom+colorBarTextSpacing+textHeight);
+        
+        // at 100%
+        g2.setColor( Color.BLACK );
+        g2.drawLine(pixelsFromLeft+colorBarLen, totHeight-pixelsFromBottom+colorBarTextSpacing, pixelsFromLeft+colorBarLen,totHeight-pixelsFromBottom-colorBarHeight);
+        g2.drawString(colorBarNumberFormat.format(maxVal*24*60*60), pixelsFromLeft+colorBarLen, totHeight-pixelsFromBottom+colorBarTextSpacing+textHeight);
+        
+    } // drawColorBar
     
     // draw 3d
     public void draw3d()
@@ -583,7 +692,53 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
     
     // Settings ==================================
     
-    public void addSatToCoverageAnaylsis(String satName)
+    /**
+     * Changes the grid, elevation limit and satellites used all at once (so an
+     * analysis step never sees half of the new settings), clearing the coverage
+     * data if the grid or elevation limit changed
+     * @param latBounds latitude bounds [deg]
+     * @param longBounds longitude bounds [deg]
+     * @param latPanels number of latitude panels
+     * @param longPanels number of longitude panels
+     * @param elevationLimit minimum elevation [deg]
+     * @param satNames satellites used in the coverage
+     * @param currentJulianDate time to restart the coverage from (null to wait for the next update)
+     * @return true if the coverage data was cleared
+     */
+    public synchronized boolean applySettings(double[] latBounds, double[] longBounds, int latPanels, int longPanels, double elevationLimit, Vector<String> satNames, Time currentJulianDate)
+    {
+        boolean requiresGridRegen = latBounds[0] != this.latBounds[0] || latBounds[1] != this.latBounds[1]
+                || longBounds[0] != this.longBounds[0] || longBounds[1] != this.longBounds[1]
+                || latPanels != this.latPanels || longPanels != this.longPanels
+                || elevationLimit != this.elevationLimit;
+
+        this.latBounds = latBounds;
+        this.longBounds = longBounds;
+        this.latPanels = latPanels;
+        this.longPanels = longPanels;
+        this.elevationLimit = elevationLimit;
+
+        satsUsedInCoverage.clear();
+        for(String satName : satNames)
+        {
+            addSatToCoverageAnaylsis(satName);
+        }
+
+        if(requiresGridRegen)
+        {
+            if(currentJulianDate != null)
+            {
+                clearCoverageData(currentJulianDate);
+            }
+            else
+            {
+                clearCoverageData();
+            }
+        }
+        return requiresGridRegen;
+    } // applySettings
+    
+    public synchronized void addSatToCoverageAnaylsis(String satName)
     {
         // first check to make sure sat isn't already in list
         for(String name : satsUsedInCoverage)
@@ -597,12 +752,12 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         satsUsedInCoverage.add(satName);
     } // addSatToCoverageAnaylsis
     
-    public void clearSatCoverageVector()
+    public synchronized void clearSatCoverageVector()
     {
         satsUsedInCoverage.clear();
     }
     
-    public void removeSatFromCoverageAnaylsis(String satName)
+    public synchronized void removeSatFromCoverageAnaylsis(String satName)
     {
         // make sure name is in the Vector
         int i=0; // counter
@@ -639,7 +794,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         return latPanels;
     }
 
-    public void setLatPanels(int latPanels)
+    public synchronized void setLatPanels(int latPanels)
     {
         this.latPanels = latPanels;
     }
@@ -649,7 +804,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         return longPanels;
     }
 
-    public void setLongPanels(int longPanels)
+    public synchronized void setLongPanels(int longPanels)
     {
         this.longPanels = longPanels;
     }
@@ -659,7 +814,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         return latBounds;
     }
 
-    public void setLatBounds(double[] latBounds)
+    public synchronized void setLatBounds(double[] latBounds)
     {
         this.latBounds = latBounds;
     }
@@ -669,7 +824,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         return longBounds;
     }
 
-    public void setLongBounds(double[] longBounds)
+    public synchronized void setLongBounds(double[] longBounds)
     {
         this.longBounds = longBounds;
     }
@@ -709,7 +864,7 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         return elevationLimit;
     }
 
-    public void setElevationLimit(double elevationLimit)
+    public synchronized void setElevationLimit(double elevationLimit)
     {
         this.elevationLimit = elevationLimit;
     }
@@ -804,6 +959,27 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
         this.colorBarTextcolor = colorBarTextcolor;
     }
 
+    int getGridVersion()
+    {
+        return gridVersion;
+    }
+    
+    int getStepCount()
+    {
+        return stepCount;
+    }
+    
+    // (not saved with the analyzer, so created again after it is opened)
+    synchronized int[] getCellVersions()
+    {
+        if(cellVersions == null || cellVersions.length != latPanels*longPanels)
+        {
+            cellVersions = new int[latPanels*longPanels];
+            gridVersion++;
+        }
+        return cellVersions;
+    }
+    
     public double[][] getCoverageCumTime()
     {
         return coverageCumTime;
@@ -861,5 +1037,13 @@ public class CoverageAnalyzer implements JSatTrakRenderable,JSatTrakTimeDependen
     public double getLastMJD() {
         return lastMJD;
     }
+
+    /**
+     * @return counter that changes every time the grid or the coverage data changes
+     */
+    public int getDataVersion()
+    {
+        return dataVersion;
+    }
     
 } // CoverageAnalyzer
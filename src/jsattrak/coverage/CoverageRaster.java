@@ -0,0 +1,228 @@
+/*
+ * CoverageRaster.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Coverage panels of one 2D window drawn into a cached ARGB image (the size of
+ * the part of the window the coverage grid covers), so painting the coverage
+ * is a single drawImage. The pixels of a panel are only rewritten when its
+ * color changes (its value changed since the last paint, or the color scale
+ * changed); the whole image is only redrawn when the view is zoomed, panned or
+ * resized or the grid or colors are changed. Colors come from an int[] lookup
+ * table of the color map instead of creating a Color for each panel.
+ *
+ */
+
+package jsattrak.coverage;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import jsattrak.gui.J2dEarthLabel2;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+class CoverageRaster
+{
+    static final int LUT_SIZE = 4096; // entries in the color lookup table
+
+    private BufferedImage image; // null if the grid isn't in view
+    private int[] pixels; // of image
+    private int imageX, imageY, imageW, imageH; // position and size of image in the window
+
+    private int[] xEdges; // window x of each longitude grid point
+    private int[] yEdges; // window y of each latitude grid point
+    private int[] cellColors; // ARGB drawn for each panel [i*longPanels+j] (0 = not drawn)
+
+    // what the image was drawn for
+    private int totWidth = -1, totHeight, imgWidth, imgHeight;
+    private double zoomFac, cLat, cLong;
+    private int gridVersion = -1;
+    private int lastStep = -1;
+    private double min = Double.NaN, max = Double.NaN;
+    private int alpha = -1;
+    private ColorMap colorMap;
+    private int[] lut;
+
+    CoverageRaster()
+    {
+    }
+
+    /**
+     * Brings the image up to date and draws it
+     */
+    void draw(Graphics2D g2, CoverageAnalyzer ca, J2dEarthLabel2 earthLabel, int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+    {
+        update(ca, earthLabel, totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong);
+        if(image != null)
+        {
+            g2.drawImage(image, imageX, imageY, null);
+        }
+    } // draw
+
+    private void update(CoverageAnalyzer ca, J2dEarthLabel2 earthLabel, int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+    {
+        // the analysis may be running on another thread: take the arrays once and check they belong together
+        // (if the grid is being changed right now, keep the old image until the next paint)
+        int step = ca.getStepCount();
+        int version = ca.getGridVersion();
+        double[][] cumTime = ca.getCoverageCumTime();
+        double[] latGrid = ca.getLatGridPoints();
+        double[] lonGrid = ca.getLonGridPoints();
+        int[] cellVersions = ca.getCellVersions();
+        int rows = cumTime.length;
+        int cols = (rows > 0) ? cumTime[0].length : 0;
+        if(rows == 0 || cols == 0 || latGrid.length != rows + 1 || lonGrid.length != cols + 1 || cellVersions.length != rows * cols)
+        {
+            return;
+        }
+
+        boolean full = false; // redraw everything
+        if(totWidth != this.totWidth || totHeight != this.totHeight || imgWidth != this.imgWidth || imgHeight != this.imgHeight
+                || zoomFac != this.zoomFac || cLat != this.cLat || cLong != this.cLong || version != gridVersion)
+        {
+            layout(earthLabel, latGrid, lonGrid, totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong);
+            this.totWidth = totWidth;
+            this.totHeight = totHeight;
+            this.imgWidth = imgWidth;
+            this.imgHeight = imgHeight;
+            this.zoomFac = zoomFac;
+            this.cLat = cLat;
+            this.cLong = cLong;
+            gridVersion = version;
+            full = true;
+        }
+        if(ca.getAlpha() != alpha || ca.getColorMap() != colorMap || lut == null)
+        {
+            alpha = ca.getAlpha();
+            colorMap = ca.getColorMap();
+            lut = colorMap.createLookupTable(LUT_SIZE, alpha);
+            full = true;
+        }
+        if(image == null)
+        {
+            return; // not in view
+        }
+        if(cellColors == null || cellColors.length != rows * cols)
+        {
+            cellColors = new int[rows * cols];
+            full = true;
+        }
+        if(full)
+        {
+            Arrays.fill(pixels, 0);
+            Arrays.fill(cellColors, 0);
+        }
+
+        // a new color scale changes the color of every panel, otherwise only panels with new coverage changed
+        double newMin = ca.getMinNotZeroVal();
+        double newMax = ca.getMaxVal();
+        boolean recolor = full || newMin != min || newMax != max;
+        min = newMin;
+        max = newMax;
+        double scale = (max > min) ? (LUT_SIZE - 1) / (max - min) : 0.0;
+
+        for(int i = 0; i < rows; i++)
+        {
+            double[] row = cumTime[i];
+            for(int j = 0; j < cols; j++)
+            {
+                int c = i * cols + j;
+                if(!recolor && cellVersions[c] <= lastStep)
+                {
+                    continue; // unchanged
+                }
+
+                int color = 0; // no coverage, not drawn
+                double val = row[j];
+                if(val > 0)
+                {
+                    int index = (int)((val - min) * scale + 0.5);
+                    color = lut[Math.max(0, Math.min(LUT_SIZE - 1, index))];
+                }
+                if(color != cellColors[c])
+                {
+                    cellColors[c] = color;
+                    fillCell(i, j, color);
+                }
+            }
+        }
+        // panels of the step running now may not all be done yet, look at them again next time
+        lastStep = step - 1;
+    } // update
+
+    // window coordinates of the grid and the image covering the part of it in the window
+    private void layout(J2dEarthLabel2 earthLabel, double[] latGrid, double[] lonGrid, int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+    {
+        // (the projection is linear in latitude and longitude separately, so the panel edges are the grid lines)
+        xEdges = new int[lonGrid.length];
+        yEdges = new int[latGrid.length];
+        for(int j = 0; j < lonGrid.length; j++)
+        {
+            xEdges[j] = earthLabel.findXYfromLL(latGrid[0], lonGrid[j], totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong)[0];
+        }
+        for(int i = 0; i < latGrid.length; i++)
+        {
+            yEdges[i] = earthLabel.findXYfromLL(latGrid[i], lonGrid[0], totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong)[1];
+        }
+
+        int x0 = Math.max(0, Math.min(xEdges[0], xEdges[xEdges.length - 1]));
+        int x1 = Math.min(totWidth, Math.max(xEdges[0], xEdges[xEdges.length - 1]));
+        int y0 = Math.max(0, Math.min(yEdges[0], yEdges[yEdges.length - 1]));
+        int y1 = Math.min(totHeight, Math.max(yEdges[0], yEdges[yEdges.length - 1]));
+        if(x1 <= x0 || y1 <= y0)
+        {
+            image = null;
+            pixels = null;
+            return;
+        }
+
+        if(image == null || imageW != x1 - x0 || imageH != y1 - y0)
+        {
+            image = new BufferedImage(x1 - x0, y1 - y0, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        }
+        imageX = x0;
+        imageY = y0;
+        imageW = x1 - x0;
+        imageH = y1 - y0;
+    } // layout
+
+    // sets the pixels of a panel (same area as fillRect of its corners)
+    private void fillCell(int i, int j, int color)
+    {
+        int xa = Math.max(Math.min(xEdges[j], xEdges[j + 1]) - imageX, 0);
+        int xb = Math.min(Math.max(xEdges[j], xEdges[j + 1]) - imageX, imageW);
+        int ya = Math.max(Math.min(yEdges[i], yEdges[i + 1]) - imageY, 0);
+        int yb = Math.min(Math.max(yEdges[i], yEdges[i + 1]) - imageY, imageH);
+        if(xa >= xb)
+        {
+            return; // out of view (or less than a pixel)
+        }
+        for(int y = ya; y < yb; y++)
+        {
+            int offset = y * imageW;
+            Arrays.fill(pixels, offset + xa, offset + xb, color);
+        }
+    } // fillCell
+
+} // CoverageRaster
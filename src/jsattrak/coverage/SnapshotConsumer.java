@@ -0,0 +1,41 @@
+/*
+ * SnapshotConsumer.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * interface for objects that are updated from a copy of the satellite states
+ * (instead of the satellites), so they can be run off the GUI thread by an
+ * AsyncTimeDependent
+ *
+ */
+
+package jsattrak.coverage;
+
+import jsattrak.utilities.SatelliteStateSnapshot;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public interface SnapshotConsumer
+{
+
+    public void updateSnapshot(SatelliteStateSnapshot snapshot);
+
+}
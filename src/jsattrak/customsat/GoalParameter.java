@@ -23,14 +23,17 @@
 
 package jsattrak.customsat;
 
+import java.io.Serializable;
 import name.gano.swingx.treetable.CustomTreeTableNode;
 
 /**
  *
  * @author sgano
  */
-public class GoalParameter 
+public class GoalParameter implements Serializable
 {
+    private static final long serialVersionUID = 1L; // (copied with the mission tree, see TradeStudy)
+
     private CustomTreeTableNode parentNode; // parent Node that the variable belongs to
     int goalInt; // variable number of the parent Node - used for getting and setting value in node
     private String nameDescription; // name and short discription of the parameter
@@ -109,6 +112,14 @@ public class GoalParameter
         return parentNode;
     }
 
+    /**
+     * @return goal number in the parent node (used with the node's getGoal)
+     */
+    public int getGoalInt()
+    {
+        return goalInt;
+    }
+
     public String getNameDescription()
     {
         return nameDescription;
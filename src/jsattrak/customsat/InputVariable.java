@@ -22,14 +22,17 @@
 
 package jsattrak.customsat;
 
+import java.io.Serializable;
 import name.gano.swingx.treetable.CustomTreeTableNode;
 
 /**
  *
  * @author sgano
  */
-public class InputVariable 
+public class InputVariable implements Serializable
 {
+    private static final long serialVersionUID = 1L; // (copied with the mission tree, see TradeStudy)
+
     // variable info
     private CustomTreeTableNode parentNode; // parent Node that the variable belongs to
     int varInt; // variable number of the parent Node - used for getting and setting value in node
@@ -130,6 +133,14 @@ public class InputVariable
         return parentNode;
     }
 
+    /**
+     * @return variable number in the parent node (used with the node's getVar / setVar)
+     */
+    public int getVarInt()
+    {
+        return varInt;
+    }
+
     /**
      * Internally saves current value
      */
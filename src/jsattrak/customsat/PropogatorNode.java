@@ -38,11 +38,11 @@ import name.gano.astro.MathUtils;
 import name.gano.astro.bodies.Moon;
 import name.gano.astro.bodies.Sun;
 import name.gano.astro.coordinates.CoordinateConversion;
-import name.gano.astro.propogators.solvers.ApsisStopCond;
+import name.gano.astro.propogators.solvers.AnalyticJ2Propagator;
+import name.gano.astro.propogators.solvers.ApsisDetector;
 import name.gano.astro.propogators.solvers.OrbitProblem;
 import name.gano.astro.propogators.solvers.RungeKutta4;
 import name.gano.astro.propogators.solvers.RungeKutta78;
-import name.gano.astro.propogators.solvers.StoppingCondition;
 import name.gano.astro.time.Time;
 import name.gano.swingx.treetable.CustomTreeTableNode;
 
@@ -56,6 +56,8 @@ public class PropogatorNode extends CustomTreeTableNode implements OrbitProblem
     public static final int HPROP4 = 0;
     public static final int HPROP8 = 1;
     public static final int HPROP78 = 2;
+    public static final int ANALYTIC_J2 = 3; // analytic two-body + J2 secular (fast what-if studies)
+    public static final int ANALYTIC_J2J4 = 4; // analytic J2, J2^2, J4 secular + J2 short-period
     
     // which prop to use 
     private int propogator = PropogatorNode.HPROP4;
@@ -168,13 +170,11 @@ public class PropogatorNode extends CustomTreeTableNode implements OrbitProblem
             // Add stopping conditions
             if(stopOnApogee)
             {
-                StoppingCondition sc = new ApsisStopCond(ApsisStopCond.APOAPSIS,ephemeris);
-                integrator.addStoppingCondition(sc);
+                integrator.addEventDetector(new ApsisDetector(ApsisDetector.APOAPSIS, true));
             }
             if(stopOnPerigee)
             {
-                StoppingCondition sc = new ApsisStopCond(ApsisStopCond.PERIAPSIS,ephemeris);
-                integrator.addStoppingCondition(sc);
+                integrator.addEventDetector(new ApsisDetector(ApsisDetector.PERIAPSIS, true));
             }
             
             long ms = integrator.solve();
@@ -199,13 +199,11 @@ public class PropogatorNode extends CustomTreeTableNode implements OrbitProblem
             // Add stopping conditions
             if(stopOnApogee)
             {
-                StoppingCondition sc = new ApsisStopCond(ApsisStopCond.APOAPSIS,ephemeris);
-                text.addStoppingCondition(sc);
+                text.addEventDetector(new ApsisDetector(ApsisDetector.APOAPSIS, true));
             }
             if(stopOnPerigee)
             {
-                StoppingCondition sc = new ApsisStopCond(ApsisStopCond.PERIAPSIS,ephemeris);
-                text.addStoppingCondition(sc);
+                text.addEventDetector(new ApsisDetector(ApsisDetector.PERIAPSIS, true));
             }
             
             long simt = text.solve();
@@ -232,13 +230,11 @@ public class PropogatorNode extends CustomTreeTableNode implements OrbitProblem
              // Add stopping conditions
             if(stopOnApogee)
             {
-                StoppingCondition sc = new ApsisStopCond(ApsisStopCond.APOAPSIS,ephemeris);
-                text.addStoppingCondition(sc);
+                text.addEventDetector(new ApsisDetector(ApsisDetector.APOAPSIS, true));
             }
             if(stopOnPerigee)
             {
-                StoppingCondition sc = new ApsisStopCond(ApsisStopCond.PERIAPSIS,ephemeris);
-                text.addStoppingCondition(sc);
+                text.addEventDetector(new ApsisDetector(ApsisDetector.PERIAPSIS, true));
             }
             
             long simt = text.solve();
@@ -252,6 +248,25 @@ public class PropogatorNode extends CustomTreeTableNode implements OrbitProblem
             propSuccess = true;
             
         } // RK78
+        else if(propogator == PropogatorNode.ANALYTIC_J2 || propogator == PropogatorNode.ANALYTIC_J2J4)
+        {
+            // closed form, force model settings are not used
+            AnalyticJ2Propagator analytic = new AnalyticJ2Propagator(0.0, dt, pos, vel, nSteps, this, propogator == PropogatorNode.ANALYTIC_J2J4);
+
+            // Add stopping conditions (same detectors as the integrators)
+            if(stopOnApogee)
+            {
+                analytic.addEventDetector(new ApsisDetector(ApsisDetector.APOAPSIS, true));
+            }
+            if(stopOnPerigee)
+            {
+                analytic.addEventDetector(new ApsisDetector(ApsisDetector.PERIAPSIS, true));
+            }
+
+            long ms = analytic.solve();
+
+            propSuccess = true;
+        } // analytic
         
         
         // copy final ephemeris state:
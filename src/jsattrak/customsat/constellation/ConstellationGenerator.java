@@ -0,0 +1,383 @@
+/*
+ * Creates a whole constellation of custom satellites (Walker T/P/F or a plane /
+ * phasing table) in one batch
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.constellation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import jsattrak.customsat.InitialConditionsNode;
+import jsattrak.customsat.PropogatorNode;
+import jsattrak.objects.CustomSatellite;
+import jsattrak.utilities.StateVector;
+import name.gano.astro.AstroConst;
+import name.gano.astro.propogators.solvers.AnalyticJ2Propagator;
+import name.gano.astro.time.Time;
+import name.gano.swingx.treetable.CustomTreeTableNode;
+
+/**
+ * The elements given are mean elements. All the satellites in a plane share
+ * one analytic propogator (AnalyticJ2Propagator, same mean elements and rates,
+ * only the phase differs) so no mission has to be run numerically. The
+ * satellites and their ephemerides are created in parallel; each satellite
+ * still gets a mission (initial conditions + analytic propogator) that can be
+ * edited and run again later (running it unchanged gives the same orbit to
+ * about 0.1 km, the mission starts from the osculating state).
+ *
+ * Usage:
+ *
+ *   ConstellationGenerator gen = new ConstellationGenerator("Walker");
+ *   gen.setOrbit(AstroConst.R_Earth + 1200e3, 0.0, 53.0, 0.0);
+ *   gen.setWalkerDelta(1200, 30, 1);
+ *   List&lt;CustomSatellite&gt; sats = gen.createSatellites(scenarioEpoch, julDate);
+ *
+ * (or JSatTrak.addConstellation(gen) to add them to the satellite list in one update)
+ *
+ * @author Shawn E. Gano
+ */
+public class ConstellationGenerator
+{
+    private String namePrefix;
+
+    // orbit shared by all the planes (mean elements)
+    private double semimajorAxis = AstroConst.R_Earth + 1000.0e3; // [m]
+    private double eccentricity = 0.0;
+    private double inclination = 55.0; // [deg]
+    private double argPerigee = 0.0; // [deg]
+
+    // plane table
+    private double[] planeRaans = new double[0]; // [deg]
+    private double[][] planeMeanAnomalies = new double[0][]; // [deg] for each satellite in each plane
+
+    // ephemeris
+    private double propogateTimeLen = 86400; // [sec]
+    private double stepSize = 60; // [sec]
+    private boolean higherOrder = true; // J2-J4 analytic propogator (false = J2 only)
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param namePrefix satellites are named "prefix P1 S1", "prefix P1 S2" ... (plane, satellite in the plane)
+     */
+    public ConstellationGenerator(String namePrefix)
+    {
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * Sets the orbit (mean elements) used by all the planes
+     * @param semimajorAxis semimajor axis [m]
+     * @param eccentricity eccentricity
+     * @param inclination inclination [deg]
+     * @param argPerigee argument of perigee [deg]
+     */
+    public void setOrbit(double semimajorAxis, double eccentricity, double inclination, double argPerigee)
+    {
+        this.semimajorAxis = semimajorAxis;
+        this.eccentricity = eccentricity;
+        this.inclination = inclination;
+        this.argPerigee = argPerigee;
+    }
+
+    /**
+     * Walker delta pattern (planes spread over 360 deg of RAAN)
+     * @param t total number of satellites
+     * @param p number of equally spaced planes (t must be a multiple of p)
+     * @param f relative phasing (0 to p-1), phase difference between adjacent planes is f*360/t deg
+     */
+    public void setWalkerDelta(int t, int p, int f)
+    {
+        setWalker(t, p, f, 0.0, 360.0);
+    }
+
+    /**
+     * Walker star pattern (planes spread over 180 deg of RAAN, e.g. polar streets of coverage)
+     * @param t total number of satellites
+     * @param p number of equally spaced planes (t must be a multiple of p)
+     * @param f relative phasing (0 to p-1), phase difference between adjacent planes is f*360/t deg
+     */
+    public void setWalkerStar(int t, int p, int f)
+    {
+        setWalker(t, p, f, 0.0, 180.0);
+    }
+
+    /**
+     * Walker T/P/F pattern
+     * @param t total number of satellites
+     * @param p number of equally spaced planes (t must be a multiple of p)
+     * @param f relative phasing (0 to p-1)
+     * @param raan0 RAAN of the first plane [deg]
+     * @param raanSpread RAAN spread of the planes [deg] (360 delta, 180 star)
+     */
+    public void setWalker(int t, int p, int f, double raan0, double raanSpread)
+    {
+        if(t < 1 || p < 1 || t % p != 0)
+        {
+            throw new IllegalArgumentException("Walker pattern: the number of satellites (" + t + ") must be a multiple of the number of planes (" + p + ")");
+        }
+        if(f < 0 || f >= p)
+        {
+            throw new IllegalArgumentException("Walker pattern: the phasing (" + f + ") must be between 0 and " + (p - 1));
+        }
+
+        int s = t / p; // satellites per plane
+        double[] raans = new double[p];
+        double[][] meanAnomalies = new double[p][s];
+        for(int i = 0; i < p; i++)
+        {
+            raans[i] = raan0 + i * raanSpread / p;
+            for(int j = 0; j < s; j++)
+            {
+                meanAnomalies[i][j] = j * 360.0 / s + i * f * 360.0 / t;
+            }
+        }
+
+        setPlanes(raans, meanAnomalies);
+    } // setWalker
+
+    /**
+     * Sets the planes from a plane / phasing table
+     * @param raans RAAN of each plane [deg]
+     * @param meanAnomalies mean anomalies at the epoch of the satellites in each plane [deg] (planes can have different numbers of satellites)
+     */
+    public void setPlanes(double[] raans, double[][] meanAnomalies)
+    {
+        if(raans.length != meanAnomalies.length)
+        {
+            throw new IllegalArgumentException("Plane table: " + raans.length + " RAANs but " + meanAnomalies.length + " planes of mean anomalies");
+        }
+
+        planeRaans = raans.clone();
+        planeMeanAnomalies = new double[meanAnomalies.length][];
+        for(int i = 0; i < meanAnomalies.length; i++)
+        {
+            planeMeanAnomalies[i] = meanAnomalies[i].clone();
+        }
+    } // setPlanes
+
+    /**
+     * @return total number of satellites in the constellation
+     */
+    public int getNumSatellites()
+    {
+        int count = 0;
+        for(double[] m : planeMeanAnomalies)
+        {
+            count += m.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return name of a satellite
+     */
+    public String getSatelliteName(int plane, int sat)
+    {
+        return namePrefix + " P" + (plane + 1) + " S" + (sat + 1);
+    }
+
+    /**
+     * Creates all the satellites and their ephemerides (using all the threads set),
+     * the ephemerides start at the scenario epoch
+     * @param scenarioEpoch epoch of the scenario (start of the missions)
+     * @param julDate date to propagate each satellite to (ground track is initialized too)
+     * @return satellites, plane by plane
+     */
+    public List<CustomSatellite> createSatellites(final Time scenarioEpoch, final double julDate)
+    {
+        int count = getNumSatellites();
+        List<CustomSatellite> sats = new ArrayList<CustomSatellite>(count);
+        if(count == 0)
+        {
+            return sats;
+        }
+
+        // one analytic propogator per plane
+        final AnalyticJ2Propagator[] planeProps = new AnalyticJ2Propagator[planeRaans.length];
+        for(int i = 0; i < planeRaans.length; i++)
+        {
+            planeProps[i] = new AnalyticJ2Propagator(new double[] {semimajorAxis, eccentricity,
+                        inclination * Math.PI / 180.0, planeRaans[i] * Math.PI / 180.0, argPerigee * Math.PI / 180.0, 0.0}, higherOrder);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, count)), new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "ConstellationGenerator");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try
+        {
+            List<Future<CustomSatellite>> futures = new ArrayList<Future<CustomSatellite>>(count);
+            for(int i = 0; i < planeRaans.length; i++)
+            {
+                for(int j = 0; j < planeMeanAnomalies[i].length; j++)
+                {
+                    final String name = getSatelliteName(i, j);
+                    final AnalyticJ2Propagator prop = planeProps[i];
+                    final double meanAnomaly = planeMeanAnomalies[i][j] * Math.PI / 180.0;
+                    futures.add(pool.submit(new Callable<CustomSatellite>()
+                    {
+                        public CustomSatellite call() throws Exception
+                        {
+                            CustomSatellite sat = createSatellite(name, prop, meanAnomaly, scenarioEpoch);
+                            sat.propogate2JulDate(julDate);
+                            return sat;
+                        }
+                    }));
+                }
+            }
+
+            for(Future<CustomSatellite> f : futures)
+            {
+                try
+                {
+                    sats.add(f.get());
+                }
+                catch(ExecutionException e)
+                {
+                    System.out.println("Error creating constellation satellite: " + e.getCause().toString());
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return sats;
+    } // createSatellites
+
+    // creates one satellite with its mission and ephemeris
+    private CustomSatellite createSatellite(String name, AnalyticJ2Propagator prop, double meanAnomaly, Time scenarioEpoch)
+    {
+        CustomSatellite sat = new CustomSatellite(name, scenarioEpoch);
+
+        // mission (initial conditions, propogator, stop) that reproduces the ephemeris
+        CustomTreeTableNode rootNode = (CustomTreeTableNode) sat.getMissionTableModel().getRoot();
+        InitialConditionsNode iniNode = (InitialConditionsNode) rootNode.getChildAt(0);
+        PropogatorNode propNode = (PropogatorNode) rootNode.getChildAt(1);
+
+        iniNode.setJ2kIniState(prop.state(0.0, meanAnomaly));
+        propNode.setPropogator(higherOrder ? PropogatorNode.ANALYTIC_J2J4 : PropogatorNode.ANALYTIC_J2);
+        propNode.setPopogateTimeLen(propogateTimeLen);
+        propNode.setStepSize(stepSize);
+
+        // ephemeris (in TT), same time steps as the mission
+        double jdUTC = iniNode.getIniJulDate();
+        double jdTT0 = jdUTC + Time.deltaT(jdUTC - AstroConst.JDminusMJD);
+        int nSteps = (int) Math.ceil(propogateTimeLen / stepSize);
+
+        Vector<StateVector> ephemeris = new Vector<StateVector>(nSteps + 1);
+        for(int k = 0; k <= nSteps; k++)
+        {
+            double t = k * stepSize;
+            double[] x = prop.state(t, meanAnomaly);
+            ephemeris.add(new StateVector(jdTT0 + t / 86400.0, x[0], x[1], x[2], x[3], x[4], x[5]));
+        }
+        sat.setEphemeris(ephemeris);
+
+        return sat;
+    } // createSatellite
+
+    // ---- settings -------------------------------------------------
+
+    public String getNamePrefix()
+    {
+        return namePrefix;
+    }
+
+    public void setNamePrefix(String namePrefix)
+    {
+        this.namePrefix = namePrefix;
+    }
+
+    public double[] getPlaneRaans()
+    {
+        return planeRaans.clone();
+    }
+
+    public double getPropogateTimeLen()
+    {
+        return propogateTimeLen;
+    }
+
+    /**
+     * @param propogateTimeLen length of the ephemerides [sec]
+     */
+    public void setPropogateTimeLen(double propogateTimeLen)
+    {
+        this.propogateTimeLen = propogateTimeLen;
+    }
+
+    public double getStepSize()
+    {
+        return stepSize;
+    }
+
+    /**
+     * @param stepSize step size of the ephemerides [sec]
+     */
+    public void setStepSize(double stepSize)
+    {
+        this.stepSize = stepSize;
+    }
+
+    public boolean isHigherOrder()
+    {
+        return higherOrder;
+    }
+
+    /**
+     * @param higherOrder true: J2-J4 analytic propogator, false: J2 only
+     */
+    public void setHigherOrder(boolean higherOrder)
+    {
+        this.higherOrder = higherOrder;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+} // ConstellationGenerator
@@ -131,7 +131,7 @@ public class PropogatorPanel extends javax.swing.JPanel
 
         jLabel1.setText("Propogator:");
 
-        inputComboBox.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Hprop RK4", "Hprop RK8", "Hprop RK7-8" }));
+        inputComboBox.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Hprop RK4", "Hprop RK8", "Hprop RK7-8", "Analytic J2", "Analytic J2-J4" }));
         inputComboBox.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
                 inputComboBoxActionPerformed(evt);
@@ -478,7 +478,7 @@ public class PropogatorPanel extends javax.swing.JPanel
 
     private void inputComboBoxActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_inputComboBoxActionPerformed
     {//GEN-HEADEREND:event_inputComboBoxActionPerformed
-        if(inputComboBox.getSelectedIndex() <= 1) // 0 or 1, Hprop 4 or 8
+        if(inputComboBox.getSelectedIndex() != 2) // Hprop 4 or 8, or analytic (only step size used)
         {
             propTabbedPane.setEnabledAt(0, true); // kep
             propTabbedPane.setEnabledAt(1, false); // j2k
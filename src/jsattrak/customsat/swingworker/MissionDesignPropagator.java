@@ -25,9 +25,6 @@ package jsattrak.customsat.swingworker;
 import java.util.List;
 import java.util.Vector;
 import javax.swing.SwingWorker;
-import jsattrak.customsat.InputVariable;
-import jsattrak.customsat.SolverNode;
-import jsattrak.customsat.StopNode;
 import jsattrak.gui.JSatTrak;
 import jsattrak.objects.CustomSatellite;
 import jsattrak.utilities.StateVector;
@@ -43,8 +40,6 @@ import org.jdesktop.swingx.treetable.DefaultTreeTableModel;
 public class MissionDesignPropagator extends SwingWorker<Object, Integer> 
 {
     
-    private boolean propMissionTreeStop = false; 
-    
     CustomTreeTableNode rootNode;
     DefaultTreeTableModel  treeTableModel; 
     private Vector<StateVector> ephemeris;
@@ -80,25 +75,34 @@ public class MissionDesignPropagator extends SwingWorker<Object, Integer>
         System.out.println("-----------------------------");
         System.out.println("Mission propogation initiated.\n");
         
-        propMissionTreeStop = false; // first change state so function dosen't stop imediatly
-        countMissionTreeNodes(rootNode);
-        
-        // save all variable values
-        propMissionTreeStop = false; // first change state so function dosen't stop imediatly
-        saveAllVariables(rootNode);
-        
-        propMissionTreeStop = false; // first change state so function dosen't stop imediatly
-        ephemeris.clear(); // clears ephemeris before propogating
+        // mission is propagated into a new ephemeris, given to the satellite when finished
+        MissionRun run = new MissionRun(rootNode, treeTableModel, sat);
+        childCount = run.getNumNodes();
         
-        long startTime = System.currentTimeMillis(); // start timer
-        
-        propMissionTree(rootNode);
+        Vector<StateVector> newEphemeris = run.propagate(new MissionRun.ProgressListener()
+        {
+            public void nodeStarted(int nodeNumber, int numNodes, String nodeName)
+            {
+                // set message to name
+                currentMessage = nodeName;
+                currentChild = nodeNumber;
+                // publish progress
+                publish(currentChild);
+            }
+        });
         
-        totalExeTime = System.currentTimeMillis() - startTime;
+        totalExeTime = run.getExecutionTime();
         
         // prop done, now save results
+        ephemeris = newEphemeris;
         sat.setEphemeris(ephemeris);
         
+        // temp print out ephemeris
+        if(debug)
+        {
+            printEphemeris();  // DEBUG print out ephemeris
+        }
+        
         System.out.println("\nMission propogation finished. (" +  totalExeTime/1000.0 + " s)");
         System.out.println("-----------------------------\n");
         
@@ -141,188 +145,6 @@ public class MissionDesignPropagator extends SwingWorker<Object, Integer>
     }
     
     
-    protected void propMissionTree(Object o)
-    {
-        // now just exe children only if a child has children it is responsible for running them
-        if(!propMissionTreeStop)
-        {
-            for (int i = 0; i < treeTableModel.getChildCount(o); i++)
-            {
-                // get child
-                CustomTreeTableNode child = (CustomTreeTableNode) treeTableModel.getChild(o, i);
-                
-                // set message to name
-                currentMessage = child.getValueAt(0).toString();
-                
-                currentChild++; // increment where we are
-                // publish progress
-                publish(currentChild);
-                
-                // see if this is a stop node - if so end propogation
-                if (child instanceof StopNode)
-                {
-                    // hmm how to break the recursive call
-                    propMissionTreeStop = true;
-                    child.execute(ephemeris); // execute stop (if some clean up needed)
-                    
-                    // temp print out ephemeris
-                    if(debug)
-                    {
-                        printEphemeris();  // DEBUG print out ephemeris
-                    }
-                    
-                    return;
-                } // if stop
-                
-                child.execute(ephemeris); // run the child
-                   
-            } // for each child
-        } // no stop hit
-        
-        
-        
-        // removing recursive tree calling 
-//        if(!propMissionTreeStop)
-//        {
-//            int cc;
-//            cc = treeTableModel.getChildCount(o);
-//            for (int i = 0; i < cc; i++)
-//            {
-//                CustomTreeTableNode child = (CustomTreeTableNode) treeTableModel.getChild(o, i);
-//                
-//                // set message to name
-//                currentMessage = child.getValueAt(0).toString();
-//                
-//                currentChild++;
-//                
-//                publish(currentChild);
-//                
-//                // see if this is a stop node - if so end propogation
-//                if (child instanceof StopNode)
-//                {
-//                    // hmm how to break the recursive call
-//                    propMissionTreeStop = true;
-//                    child.execute(ephemeris); // execute stop (if some clean up needed)
-//                    
-//                    // temp print out ephemeris
-//                    if(debug)
-//                    {
-//                        printEphemeris();  // DEBUG print out ephemeris
-//                    }
-//                    
-//                    return;
-//                }
-//
-//                if (treeTableModel.isLeaf(child))
-//                {
-//                    //System.out.println(child.getValueAt(0).toString());
-//                    child.execute(ephemeris);
-//
-//                }
-//                else
-//                {
-//                    //System.out.println(child.getValueAt(0).toString());
-//                    child.execute(ephemeris);
-//
-//                    // now travese its children
-//                    propMissionTree(child);
-//                }
-//            } // for each child
-//        } // mission stop?
-        
-        
-    } // propMissionTree
-    
-    private void countMissionTreeNodes(Object o)
-    {
-       
-        childCount = rootNode.getChildCount();
-        
-        // not useing recursive execution here anymore (solvers will run their own children)
-        
-//        if(!propMissionTreeStop)
-//        {
-//            int cc;
-//            cc = treeTableModel.getChildCount(o);
-//            for (int i = 0; i < cc; i++)
-//            {
-//                CustomTreeTableNode child = (CustomTreeTableNode) treeTableModel.getChild(o, i);
-//                
-//                childCount++;
-//                
-//                // see if this is a stop node - if so end propogation
-//                if (child instanceof StopNode)
-//                {
-//                    // hmm how to break the recursive call
-//                    propMissionTreeStop = true;
-//                                       
-//                    return;
-//                }
-//
-//                if (treeTableModel.isLeaf(child))
-//                {
-//
-//                }
-//                else
-//                {
-//                   
-//                    // now travese its children
-//                    propMissionTree(child);
-//                }
-//            } // for each child
-//        } // mission stop?
-        
-        
-    } // countMissionTreeNodes
-    
-    
-    // goes throug tree recursively and looks for solver nodes and saves all thier variables
-    private void saveAllVariables(Object o)
-    {
-       
-        
-        if(!propMissionTreeStop)
-        {
-            int cc;
-            cc = treeTableModel.getChildCount(o);
-            for (int i = 0; i < cc; i++)
-            {
-                CustomTreeTableNode child = (CustomTreeTableNode) treeTableModel.getChild(o, i);
-                
-                
-                // see if this is a stop node - if so end propogation
-                if (child instanceof StopNode)
-                {
-                    // hmm how to break the recursive call
-                    propMissionTreeStop = true;   
-                    
-                    return;
-                }
-
-                if (treeTableModel.isLeaf(child))
-                {
-
-                }
-                else
-                {
-                   if( child instanceof SolverNode)
-                   {
-                       for(InputVariable iv :((SolverNode)child).getInputVarVec())
-                       {
-                           iv.saveCurrentToPreviousValue(); // save value
-                       }
-                   }
-                       
-                    // now travese its children
-                    saveAllVariables(child);
-                }
-            } // for each child
-        } // mission stop?
-        
-        
-    } // save all vars
-    
-    
     // debug function to print epeheris
     private void printEphemeris()
     {
@@ -0,0 +1,214 @@
+/*
+ * Runs the mission design tree of one custom satellite (no GUI), used by
+ * MissionDesignPropagator and MissionScheduler
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.swingworker;
+
+import java.util.Vector;
+import jsattrak.customsat.InputVariable;
+import jsattrak.customsat.SolverNode;
+import jsattrak.customsat.StopNode;
+import jsattrak.objects.CustomSatellite;
+import jsattrak.utilities.StateVector;
+import name.gano.swingx.treetable.CustomTreeTableNode;
+import org.jdesktop.swingx.treetable.DefaultTreeTableModel;
+
+/**
+ * The mission is propagated into a new ephemeris which is only given to the
+ * satellite (in one step) once the whole mission has run, so the satellite
+ * keeps its old ephemeris while the mission runs or if it is canceled.
+ *
+ * @author Shawn E. Gano
+ */
+public class MissionRun
+{
+    /**
+     * Called (on the thread running the mission) as each top level mission node starts
+     */
+    public interface ProgressListener
+    {
+        public void nodeStarted(int nodeNumber, int numNodes, String nodeName);
+    }
+
+    private final CustomTreeTableNode rootNode;
+    private final DefaultTreeTableModel treeTableModel;
+    private final CustomSatellite sat;
+
+    private volatile boolean canceled = false;
+    private boolean propMissionTreeStop = false;
+
+    private int childCount = 0; // count for number of children
+    private int currentChild = 0;
+    private long totalExeTime = 0;
+
+    /**
+     * Mission of the satellite
+     */
+    public MissionRun(CustomSatellite sat)
+    {
+        this((CustomTreeTableNode) sat.getMissionTableModel().getRoot(), sat.getMissionTableModel(), sat);
+    }
+
+    public MissionRun(CustomTreeTableNode rootNode, DefaultTreeTableModel treeTableModel, CustomSatellite sat)
+    {
+        this.rootNode = rootNode;
+        this.treeTableModel = treeTableModel;
+        this.sat = sat;
+    }
+
+    /**
+     * Runs the mission and gives the new ephemeris to the satellite
+     * @param listener progress listener (can be null)
+     * @return true if the mission finished, false if it was canceled (the satellite's ephemeris is unchanged)
+     */
+    public boolean run(ProgressListener listener)
+    {
+        Vector<StateVector> ephemeris = propagate(listener);
+        if(ephemeris == null)
+        {
+            return false;
+        }
+
+        // prop done, now save results
+        sat.setEphemeris(ephemeris);
+        return true;
+    } // run
+
+    /**
+     * Runs the mission without changing the satellite's ephemeris
+     * @param listener progress listener (can be null)
+     * @return new ephemeris, null if canceled
+     */
+    public Vector<StateVector> propagate(ProgressListener listener)
+    {
+        childCount = rootNode.getChildCount();
+        currentChild = 0;
+
+        // save all variable values
+        propMissionTreeStop = false; // first change state so function dosen't stop imediatly
+        saveAllVariables(rootNode);
+
+        propMissionTreeStop = false;
+        Vector<StateVector> ephemeris = new Vector<StateVector>(30, 30);
+
+        long startTime = System.currentTimeMillis(); // start timer
+
+        // now just exe children only if a child has children it is responsible for running them (solvers)
+        for(int i = 0; i < treeTableModel.getChildCount(rootNode) && !propMissionTreeStop; i++)
+        {
+            if(canceled)
+            {
+                return null;
+            }
+
+            // get child
+            CustomTreeTableNode child = (CustomTreeTableNode) treeTableModel.getChild(rootNode, i);
+
+            currentChild++; // increment where we are
+            if(listener != null)
+            {
+                listener.nodeStarted(currentChild, childCount, child.getValueAt(0).toString());
+            }
+
+            // see if this is a stop node - if so end propogation
+            if(child instanceof StopNode)
+            {
+                propMissionTreeStop = true;
+            }
+
+            child.execute(ephemeris); // run the child (stop node: if some clean up needed)
+        } // for each child
+
+        totalExeTime = System.currentTimeMillis() - startTime;
+
+        return canceled ? null : ephemeris;
+    } // propagate
+
+    // goes throug tree recursively and looks for solver nodes and saves all thier variables
+    private void saveAllVariables(Object o)
+    {
+        if(!propMissionTreeStop)
+        {
+            int cc = treeTableModel.getChildCount(o);
+            for(int i = 0; i < cc; i++)
+            {
+                CustomTreeTableNode child = (CustomTreeTableNode) treeTableModel.getChild(o, i);
+
+                // see if this is a stop node - if so end
+                if(child instanceof StopNode)
+                {
+                    propMissionTreeStop = true;
+                    return;
+                }
+
+                if(!treeTableModel.isLeaf(child))
+                {
+                    if(child instanceof SolverNode)
+                    {
+                        for(InputVariable iv : ((SolverNode) child).getInputVarVec())
+                        {
+                            iv.saveCurrentToPreviousValue(); // save value
+                        }
+                    }
+
+                    // now travese its children
+                    saveAllVariables(child);
+                }
+            } // for each child
+        } // mission stop?
+    } // saveAllVariables
+
+    /**
+     * Stops the mission before the next top level node (a running node finishes first), can be called from any thread
+     */
+    public void cancel()
+    {
+        canceled = true;
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    public CustomSatellite getSatellite()
+    {
+        return sat;
+    }
+
+    /**
+     * @return number of top level mission nodes
+     */
+    public int getNumNodes()
+    {
+        return rootNode.getChildCount();
+    }
+
+    /**
+     * @return time the last run took [ms]
+     */
+    public long getExecutionTime()
+    {
+        return totalExeTime;
+    }
+
+} // MissionRun
@@ -0,0 +1,268 @@
+/*
+ * Runs the mission design trees of several custom satellites at the same time
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.swingworker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import jsattrak.objects.CustomSatellite;
+
+/**
+ * Each satellite's mission is independent (the nodes only use their own data
+ * and the astro routines have no shared state), so the missions are run on a
+ * bounded pool of threads. Each satellite gets its new ephemeris in one step
+ * when its mission finishes (see MissionRun); satellites whose missions are
+ * canceled or fail keep their old ephemeris.
+ *
+ * Usage:
+ *
+ *   MissionScheduler ms = new MissionScheduler();
+ *   ms.addMissionListener(listener); // optional
+ *   ms.runAll(customSats); // blocks until done or canceled
+ *
+ * @author Shawn E. Gano
+ */
+public class MissionScheduler
+{
+    /**
+     * Called on the threads running the missions
+     */
+    public interface MissionListener
+    {
+        public void missionProgress(CustomSatellite sat, int nodeNumber, int numNodes, String nodeName);
+
+        public void missionFinished(CustomSatellite sat, long executionTime);
+
+        public void missionFailed(CustomSatellite sat, Exception e);
+    }
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private volatile boolean canceled = false;
+    private final CopyOnWriteArrayList<MissionRun> runningMissions = new CopyOnWriteArrayList<MissionRun>();
+    private final AtomicInteger missionsFinished = new AtomicInteger(0);
+
+    private final CopyOnWriteArrayList<MissionListener> listeners = new CopyOnWriteArrayList<MissionListener>();
+
+    public MissionScheduler()
+    {
+    }
+
+    /**
+     * Runs the missions of all the satellites, blocking until they are done or canceled
+     * @param sats satellites to propagate
+     * @return number of missions that finished (satellites with a new ephemeris)
+     */
+    public int runAll(Collection<CustomSatellite> sats)
+    {
+        canceled = false;
+        missionsFinished.set(0);
+        if(sats.isEmpty())
+        {
+            return 0;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, sats.size())), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "MissionScheduler-" + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1); // keep the GUI responsive
+                return t;
+            }
+        });
+
+        try
+        {
+            CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(pool);
+            List<MissionJob> jobs = new ArrayList<MissionJob>(sats.size());
+            for(CustomSatellite sat : sats)
+            {
+                MissionJob job = new MissionJob(sat);
+                jobs.add(job);
+                completion.submit(job);
+            }
+
+            for(int i = 0; i < jobs.size(); i++)
+            {
+                try
+                {
+                    completion.take().get();
+                }
+                catch(ExecutionException e)
+                {
+                    // already reported to the listeners by the job
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            cancel();
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return missionsFinished.get();
+    } // runAll
+
+    /**
+     * Stops all the missions (running nodes finish first), can be called from any thread
+     */
+    public void cancel()
+    {
+        canceled = true;
+        for(MissionRun run : runningMissions)
+        {
+            run.cancel();
+        }
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    /**
+     * @return number of missions finished so far in the current / last run
+     */
+    public int getMissionsFinished()
+    {
+        return missionsFinished.get();
+    }
+
+    private class MissionJob implements java.util.concurrent.Callable<Boolean>
+    {
+        private final CustomSatellite sat;
+
+        public MissionJob(CustomSatellite sat)
+        {
+            this.sat = sat;
+        }
+
+        public Boolean call() throws Exception
+        {
+            if(canceled)
+            {
+                return false;
+            }
+
+            MissionRun run = new MissionRun(sat);
+            runningMissions.add(run);
+            try
+            {
+                if(canceled)
+                {
+                    return false; // canceled just before the run was added
+                }
+
+                boolean finished = run.run(new MissionRun.ProgressListener()
+                {
+                    public void nodeStarted(int nodeNumber, int numNodes, String nodeName)
+                    {
+                        fireProgress(sat, nodeNumber, numNodes, nodeName);
+                    }
+                });
+
+                if(finished)
+                {
+                    missionsFinished.incrementAndGet();
+                    fireFinished(sat, run.getExecutionTime());
+                }
+                return finished;
+            }
+            catch(Exception e)
+            {
+                fireFailed(sat, e);
+                throw e;
+            }
+            finally
+            {
+                runningMissions.remove(run);
+            }
+        } // call
+    } // MissionJob
+
+    // ---- listeners ------------------------------------------------
+
+    public void addMissionListener(MissionListener l)
+    {
+        listeners.add(l);
+    }
+
+    public void removeMissionListener(MissionListener l)
+    {
+        listeners.remove(l);
+    }
+
+    private void fireProgress(CustomSatellite sat, int nodeNumber, int numNodes, String nodeName)
+    {
+        for(MissionListener l : listeners)
+        {
+            l.missionProgress(sat, nodeNumber, numNodes, nodeName);
+        }
+    }
+
+    private void fireFinished(CustomSatellite sat, long executionTime)
+    {
+        for(MissionListener l : listeners)
+        {
+            l.missionFinished(sat, executionTime);
+        }
+    }
+
+    private void fireFailed(CustomSatellite sat, Exception e)
+    {
+        System.out.println("Error propagating mission of " + sat.getName() + ": " + e.toString());
+        for(MissionListener l : listeners)
+        {
+            l.missionFailed(sat, e);
+        }
+    }
+
+    // ---- settings -------------------------------------------------
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+} // MissionScheduler
@@ -0,0 +1,175 @@
+/*
+ * Runs the missions of all the custom satellites in the background (MissionScheduler)
+ * showing the progress in the status bar
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.swingworker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.SwingWorker;
+import jsattrak.gui.JSatTrak;
+import jsattrak.objects.CustomSatellite;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class MissionSchedulerWorker extends SwingWorker<Integer, CustomSatellite>
+{
+    private final MissionScheduler scheduler = new MissionScheduler();
+    private final List<CustomSatellite> sats;
+    private final JSatTrak app;
+
+    // fraction of each mission done (top level nodes)
+    private final ConcurrentHashMap<CustomSatellite, Double> satProgress = new ConcurrentHashMap<CustomSatellite, Double>();
+    private volatile String currentMessage = "";
+
+    private long totalExeTime = 0;
+
+    public MissionSchedulerWorker(List<CustomSatellite> sats, JSatTrak app)
+    {
+        this.sats = new ArrayList<CustomSatellite>(sats);
+        this.app = app;
+
+        scheduler.addMissionListener(new MissionScheduler.MissionListener()
+        {
+            public void missionProgress(CustomSatellite sat, int nodeNumber, int numNodes, String nodeName)
+            {
+                satProgress.put(sat, (nodeNumber - 1.0) / Math.max(1, numNodes));
+                currentMessage = sat.getName() + ": " + nodeName;
+                updateProgress();
+            }
+
+            public void missionFinished(CustomSatellite sat, long executionTime)
+            {
+                satProgress.put(sat, 1.0);
+                updateProgress();
+                publish(sat); // ground track needs to be redone (on the event thread)
+            }
+
+            public void missionFailed(CustomSatellite sat, Exception e)
+            {
+                satProgress.put(sat, 1.0);
+                updateProgress();
+            }
+        });
+    }
+
+    private void updateProgress()
+    {
+        double sum = 0;
+        for(Double d : satProgress.values())
+        {
+            sum += d;
+        }
+        setProgress((int) Math.min(100, Math.round(sum * 100.0 / Math.max(1, sats.size()))));
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception
+    {
+        System.out.println("-----------------------------");
+        System.out.println("Mission propogation initiated for " + sats.size() + " satellites.\n");
+
+        long startTime = System.currentTimeMillis(); // start timer
+
+        int finished = scheduler.runAll(sats);
+
+        totalExeTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("\nMission propogation finished. (" + totalExeTime / 1000.0 + " s)");
+        System.out.println("-----------------------------\n");
+
+        return finished;
+    }
+
+    // satellites with a new ephemeris
+    @Override
+    protected void process(List<CustomSatellite> chunks)
+    {
+        for(CustomSatellite sat : chunks)
+        {
+            sat.setGroundTrackIni2False(); // force recalculation of ground tracks
+        }
+
+        app.setStatusProgressBarValue(getProgress());
+        app.setStatusProgressBarText(currentMessage);
+        app.forceRepainting();
+    }
+
+    @Override
+    protected void done()
+    {
+        // stop animation etc
+        app.stopStatusAnimation();
+        app.setStatusProgressBarVisible(false);
+
+        String message = scheduler.getMissionsFinished() + " of " + sats.size() + " Custom Satellites Propogated; time [s]: " + (totalExeTime / 1000.0);
+        if(scheduler.isCanceled())
+        {
+            message += " (canceled)";
+        }
+        app.setStatusMessage(message);
+
+        app.updateTime(); // update time of everything and repaint
+    }
+
+    /**
+     * Starts the missions with the status bar showing the progress (call on the event thread)
+     */
+    public void start()
+    {
+        app.startStatusAnimation();
+        app.setStatusProgressBarValue(0);
+        app.setStatusProgressBarText("");
+        app.setStatusProgressBarVisible(true);
+
+        addPropertyChangeListener(new java.beans.PropertyChangeListener()
+        {
+            public void propertyChange(java.beans.PropertyChangeEvent evt)
+            {
+                if("progress".equals(evt.getPropertyName()))
+                {
+                    app.setStatusProgressBarValue((Integer) evt.getNewValue());
+                    app.setStatusProgressBarText(currentMessage);
+                }
+            }
+        });
+
+        execute();
+    }
+
+    /**
+     * Stops the missions, satellites not finished keep their old ephemeris
+     */
+    public void cancelMissions()
+    {
+        scheduler.cancel();
+    }
+
+    public MissionScheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+} // MissionSchedulerWorker
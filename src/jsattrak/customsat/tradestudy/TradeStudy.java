@@ -0,0 +1,618 @@
+/*
+ * Parameter sweep / Monte Carlo trade study of a custom satellite's mission
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.tradestudy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import jsattrak.customsat.GoalParameter;
+import jsattrak.customsat.InputVariable;
+import jsattrak.customsat.swingworker.MissionRun;
+import jsattrak.objects.CustomSatellite;
+import name.gano.swingx.treetable.CustomTreeTableNode;
+import org.jdesktop.swingx.treetable.DefaultTreeTableModel;
+import org.jdesktop.swingx.treetable.TreeTableNode;
+
+/**
+ * Runs a custom satellite's mission many times with different values of some of
+ * its input variables (InputVariable - e.g. maneuver delta V, propagation time)
+ * and records the goal parameters (GoalParameter - e.g. final semimajor axis,
+ * altitude) of each run.
+ *
+ * Each variable is either swept over a range (all combinations of the swept
+ * variables are run) or drawn from a uniform / normal distribution (each
+ * combination is run getNumRandomSamples() times). Every sample runs on its
+ * own copy of the mission tree, so the samples are run in parallel and the
+ * satellite's own mission and ephemeris are not changed. Results are given to
+ * the listeners (e.g. TradeStudyCsvWriter, TradeStudyTableModel) as each sample
+ * finishes and aren't kept by the study (only the sample inputs are made up
+ * front, see getSampleInputs()).
+ *
+ * Usage:
+ *
+ *   TradeStudy ts = new TradeStudy(sat);
+ *   ts.addUniformVariable(maneuverVar, -5.0, 5.0);  // InputVariable from a node's getInputVarVector()
+ *   ts.addGoal(smaGoal);                            // GoalParameter from a node's getGoalParamVector()
+ *   ts.setNumRandomSamples(10000);
+ *   ts.addTradeStudyListener(new TradeStudyCsvWriter(new File("trade.csv")));
+ *   ts.run(); // blocks until done or canceled
+ *
+ * @author Shawn E. Gano
+ */
+public class TradeStudy
+{
+    public enum Distribution
+    {
+        RANGE, UNIFORM, NORMAL
+    }
+
+    /**
+     * An input variable of one of the mission nodes and how it is varied
+     */
+    public static class Variable
+    {
+        private final int[] nodePath; // child indices from the mission root to the node
+        private final int varInt;
+        private final String name;
+        private final Distribution distribution;
+        private final double a; // range start, uniform min or normal mean
+        private final double b; // range stop, uniform max or normal standard deviation
+        private final int numPoints; // range only
+
+        Variable(int[] nodePath, int varInt, String name, Distribution distribution, double a, double b, int numPoints)
+        {
+            this.nodePath = nodePath;
+            this.varInt = varInt;
+            this.name = name;
+            this.distribution = distribution;
+            this.a = a;
+            this.b = b;
+            this.numPoints = numPoints;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Distribution getDistribution()
+        {
+            return distribution;
+        }
+
+        /**
+         * @return value of a range variable at point i
+         */
+        double getRangeValue(int i)
+        {
+            return (numPoints == 1) ? a : a + i * (b - a) / (numPoints - 1);
+        }
+
+        double getRandomValue(Random random)
+        {
+            if(distribution == Distribution.NORMAL)
+            {
+                return a + b * random.nextGaussian();
+            }
+            return a + (b - a) * random.nextDouble();
+        }
+    } // Variable
+
+    /**
+     * A goal parameter of one of the mission nodes
+     */
+    public static class Goal
+    {
+        private final int[] nodePath;
+        private final int goalInt;
+        private final String name;
+
+        Goal(int[] nodePath, int goalInt, String name)
+        {
+            this.nodePath = nodePath;
+            this.goalInt = goalInt;
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+    } // Goal
+
+    private final CustomSatellite sat;
+    private final ArrayList<Variable> variables = new ArrayList<Variable>();
+    private final ArrayList<Goal> goals = new ArrayList<Goal>();
+
+    private int numRandomSamples = 100;
+    private long randomSeed = 0;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private volatile boolean canceled = false;
+    private final AtomicInteger samplesFinished = new AtomicInteger(0);
+    private final CopyOnWriteArrayList<MissionRun> runningMissions = new CopyOnWriteArrayList<MissionRun>();
+
+    private final CopyOnWriteArrayList<TradeStudyListener> listeners = new CopyOnWriteArrayList<TradeStudyListener>();
+
+    /**
+     * @param sat satellite whose mission is studied (its mission is copied when run() is called)
+     */
+    public TradeStudy(CustomSatellite sat)
+    {
+        this.sat = sat;
+    }
+
+    // ---- set up -------------------------------------------------
+
+    /**
+     * Sweeps the variable over numPoints equally spaced values from start to stop
+     */
+    public void addRangeVariable(InputVariable var, double start, double stop, int numPoints)
+    {
+        if(numPoints < 1)
+        {
+            throw new IllegalArgumentException("Number of points must be at least 1");
+        }
+        variables.add(new Variable(getNodePath(var.getParentNode()), var.getVarInt(), getName(var.getParentNode(), var.getNameDescription()), Distribution.RANGE, start, stop, numPoints));
+    }
+
+    public void addUniformVariable(InputVariable var, double min, double max)
+    {
+        variables.add(new Variable(getNodePath(var.getParentNode()), var.getVarInt(), getName(var.getParentNode(), var.getNameDescription()), Distribution.UNIFORM, min, max, 0));
+    }
+
+    public void addNormalVariable(InputVariable var, double mean, double standardDeviation)
+    {
+        variables.add(new Variable(getNodePath(var.getParentNode()), var.getVarInt(), getName(var.getParentNode(), var.getNameDescription()), Distribution.NORMAL, mean, standardDeviation, 0));
+    }
+
+    public void addGoal(GoalParameter goal)
+    {
+        goals.add(new Goal(getNodePath(goal.getParentNode()), goal.getGoalInt(), getName(goal.getParentNode(), goal.getNameDescription())));
+    }
+
+    private static String getName(CustomTreeTableNode node, String varName)
+    {
+        return node.getValueAt(0) + ": " + varName;
+    }
+
+    // child indices from the root of the mission to the node
+    private int[] getNodePath(CustomTreeTableNode node)
+    {
+        Object root = sat.getMissionTableModel().getRoot();
+        ArrayList<Integer> path = new ArrayList<Integer>();
+        TreeTableNode n = node;
+        while(n != root)
+        {
+            TreeTableNode parent = n.getParent();
+            if(parent == null)
+            {
+                throw new IllegalArgumentException("Node is not in the mission of " + sat.getName() + ": " + node.getValueAt(0));
+            }
+            path.add(0, parent.getIndex(n));
+            n = parent;
+        }
+        int[] p = new int[path.size()];
+        for(int i = 0; i < p.length; i++)
+        {
+            p[i] = path.get(i);
+        }
+        return p;
+    }
+
+    private static CustomTreeTableNode getNode(CustomTreeTableNode root, int[] path)
+    {
+        TreeTableNode n = root;
+        for(int index : path)
+        {
+            n = n.getChildAt(index);
+        }
+        return (CustomTreeTableNode) n;
+    }
+
+    // ---- running --------------------------------------------------
+
+    /**
+     * @return total number of samples with the current variables
+     */
+    public int getNumSamples()
+    {
+        int n = 1;
+        boolean random = false;
+        for(Variable v : variables)
+        {
+            if(v.distribution == Distribution.RANGE)
+            {
+                n *= v.numPoints;
+            }
+            else
+            {
+                random = true;
+            }
+        }
+        return random ? n * numRandomSamples : n;
+    }
+
+    /**
+     * Input values of all the samples, [sample][variable]; random values come from one
+     * generator (setRandomSeed) so a study can be repeated exactly
+     */
+    public double[][] getSampleInputs()
+    {
+        int numSamples = getNumSamples();
+        double[][] inputs = new double[numSamples][variables.size()];
+        Random random = new Random(randomSeed);
+        for(int s = 0; s < numSamples; s++)
+        {
+            // range variables: first one changes slowest, random repeats are innermost
+            int rangeIndex = hasRandomVariables() ? s / numRandomSamples : s;
+            for(int j = variables.size() - 1; j >= 0; j--)
+            {
+                Variable v = variables.get(j);
+                if(v.distribution == Distribution.RANGE)
+                {
+                    inputs[s][j] = v.getRangeValue(rangeIndex % v.numPoints);
+                    rangeIndex /= v.numPoints;
+                }
+            }
+            for(int j = 0; j < variables.size(); j++)
+            {
+                Variable v = variables.get(j);
+                if(v.distribution != Distribution.RANGE)
+                {
+                    inputs[s][j] = v.getRandomValue(random);
+                }
+            }
+        }
+        return inputs;
+    } // getSampleInputs
+
+    private boolean hasRandomVariables()
+    {
+        for(Variable v : variables)
+        {
+            if(v.distribution != Distribution.RANGE)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs all the samples, blocking until done or canceled. The listeners are
+     * called on this thread as the samples finish (not in sample order).
+     * @return number of samples that finished
+     * @throws IOException if the mission can't be copied
+     */
+    public int run() throws IOException
+    {
+        canceled = false;
+        samplesFinished.set(0);
+
+        final byte[] mission = serializeMission((CustomTreeTableNode) sat.getMissionTableModel().getRoot());
+        final double[][] inputs = getSampleInputs();
+        int numSamples = inputs.length;
+
+        fireStarted();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, numSamples)), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "TradeStudy-" + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1); // keep the GUI responsive
+                return t;
+            }
+        });
+
+        try
+        {
+            CompletionService<SampleResult> completion = new ExecutorCompletionService<SampleResult>(pool);
+            for(int s = 0; s < numSamples; s++)
+            {
+                completion.submit(new SampleJob(s, mission, inputs[s]));
+            }
+
+            for(int i = 0; i < numSamples; i++)
+            {
+                SampleResult result;
+                try
+                {
+                    result = completion.take().get();
+                }
+                catch(ExecutionException e)
+                {
+                    // (SampleJob catches the errors of its mission, this shouldn't happen)
+                    System.out.println("Error running trade study sample: " + e.toString());
+                    continue;
+                }
+
+                if(result.error != null)
+                {
+                    fireSampleFailed(result.sample, inputs[result.sample], result.error);
+                }
+                else if(result.goalValues != null)
+                {
+                    samplesFinished.incrementAndGet();
+                    fireSampleFinished(result.sample, inputs[result.sample], result.goalValues);
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            cancel();
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            pool.shutdownNow();
+            fireFinished();
+        }
+
+        return samplesFinished.get();
+    } // run
+
+    /**
+     * Goal values (null if canceled) or error of one sample
+     */
+    private static class SampleResult
+    {
+        final int sample;
+        final Double[] goalValues;
+        final Exception error;
+
+        SampleResult(int sample, Double[] goalValues, Exception error)
+        {
+            this.sample = sample;
+            this.goalValues = goalValues;
+            this.error = error;
+        }
+    } // SampleResult
+
+    /**
+     * Runs one sample on its own copy of the mission
+     */
+    private class SampleJob implements Callable<SampleResult>
+    {
+        private final int sample;
+        private final byte[] mission;
+        private final double[] values;
+
+        public SampleJob(int sample, byte[] mission, double[] values)
+        {
+            this.sample = sample;
+            this.mission = mission;
+            this.values = values;
+        }
+
+        public SampleResult call()
+        {
+            try
+            {
+                return new SampleResult(sample, runSample(), null);
+            }
+            catch(Exception e)
+            {
+                return new SampleResult(sample, null, e);
+            }
+        }
+
+        private Double[] runSample() throws Exception
+        {
+            if(canceled)
+            {
+                return null;
+            }
+
+            CustomTreeTableNode root = deserializeMission(mission);
+            for(int j = 0; j < variables.size(); j++)
+            {
+                Variable v = variables.get(j);
+                getNode(root, v.nodePath).setVar(v.varInt, values[j]);
+            }
+
+            MissionRun run = new MissionRun(root, new DefaultTreeTableModel(root), null);
+            runningMissions.add(run);
+            try
+            {
+                if(run.propagate(null) == null)
+                {
+                    return null; // canceled
+                }
+            }
+            finally
+            {
+                runningMissions.remove(run);
+            }
+
+            Double[] goalValues = new Double[goals.size()];
+            for(int j = 0; j < goals.size(); j++)
+            {
+                Goal g = goals.get(j);
+                goalValues[j] = getNode(root, g.nodePath).getGoal(g.goalInt);
+            }
+            return goalValues;
+        } // runSample
+    } // SampleJob
+
+    private static byte[] serializeMission(CustomTreeTableNode root) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(root);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static CustomTreeTableNode deserializeMission(byte[] mission) throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(mission));
+        try
+        {
+            return (CustomTreeTableNode) in.readObject();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Stops the study, samples that are running finish their current mission node first; can be called from any thread
+     */
+    public void cancel()
+    {
+        canceled = true;
+        for(MissionRun run : runningMissions)
+        {
+            run.cancel();
+        }
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    /**
+     * @return number of samples finished so far in the current / last run
+     */
+    public int getSamplesFinished()
+    {
+        return samplesFinished.get();
+    }
+
+    // ---- listeners ------------------------------------------------
+
+    public void addTradeStudyListener(TradeStudyListener l)
+    {
+        listeners.add(l);
+    }
+
+    public void removeTradeStudyListener(TradeStudyListener l)
+    {
+        listeners.remove(l);
+    }
+
+    private void fireStarted()
+    {
+        for(TradeStudyListener l : listeners)
+        {
+            l.studyStarted(this);
+        }
+    }
+
+    private void fireSampleFinished(int sample, double[] inputs, Double[] goalValues)
+    {
+        for(TradeStudyListener l : listeners)
+        {
+            l.sampleFinished(sample, inputs, goalValues);
+        }
+    }
+
+    private void fireSampleFailed(int sample, double[] inputs, Exception e)
+    {
+        System.out.println("Error running trade study sample " + sample + ": " + e.toString());
+        for(TradeStudyListener l : listeners)
+        {
+            l.sampleFailed(sample, inputs, e);
+        }
+    }
+
+    private void fireFinished()
+    {
+        for(TradeStudyListener l : listeners)
+        {
+            l.studyFinished(this);
+        }
+    }
+
+    // ---- settings -------------------------------------------------
+
+    public CustomSatellite getSatellite()
+    {
+        return sat;
+    }
+
+    public List<Variable> getVariables()
+    {
+        return new ArrayList<Variable>(variables);
+    }
+
+    public List<Goal> getGoals()
+    {
+        return new ArrayList<Goal>(goals);
+    }
+
+    public int getNumRandomSamples()
+    {
+        return numRandomSamples;
+    }
+
+    /**
+     * @param numRandomSamples samples run for each combination of the range variables when there are random variables
+     */
+    public void setNumRandomSamples(int numRandomSamples)
+    {
+        this.numRandomSamples = Math.max(1, numRandomSamples);
+    }
+
+    public long getRandomSeed()
+    {
+        return randomSeed;
+    }
+
+    public void setRandomSeed(long randomSeed)
+    {
+        this.randomSeed = randomSeed;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+} // TradeStudy
@@ -0,0 +1,136 @@
+/*
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.tradestudy;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes each trade study sample to a comma separated file as it finishes:
+ * sample number, the variable values then the goal values (empty if the goal
+ * wasn't calculated). Failed samples are written with empty goals.
+ *
+ * @author Shawn E. Gano
+ */
+public class TradeStudyCsvWriter implements TradeStudyListener
+{
+    private final Writer out;
+    private boolean error = false;
+
+    public TradeStudyCsvWriter(File file) throws IOException
+    {
+        this(new BufferedWriter(new FileWriter(file)));
+    }
+
+    /**
+     * @param out closed when the study finishes
+     */
+    public TradeStudyCsvWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    public void studyStarted(TradeStudy study)
+    {
+        StringBuilder sb = new StringBuilder("Sample");
+        for(TradeStudy.Variable v : study.getVariables())
+        {
+            sb.append(',').append(quote(v.getName()));
+        }
+        for(TradeStudy.Goal g : study.getGoals())
+        {
+            sb.append(',').append(quote(g.getName()));
+        }
+        writeLine(sb);
+    }
+
+    public void sampleFinished(int sampleIndex, double[] inputs, Double[] goals)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(sampleIndex);
+        for(double d : inputs)
+        {
+            sb.append(',').append(d);
+        }
+        for(Double d : goals)
+        {
+            sb.append(',');
+            if(d != null)
+            {
+                sb.append(d.doubleValue());
+            }
+        }
+        writeLine(sb);
+    }
+
+    public void sampleFailed(int sampleIndex, double[] inputs, Exception e)
+    {
+        sampleFinished(sampleIndex, inputs, new Double[0]);
+    }
+
+    public void studyFinished(TradeStudy study)
+    {
+        try
+        {
+            out.close();
+        }
+        catch(IOException e)
+        {
+            System.out.println("Error closing trade study file: " + e.toString());
+        }
+    }
+
+    private void writeLine(CharSequence line)
+    {
+        if(error)
+        {
+            return; // already reported
+        }
+        try
+        {
+            out.write(line.toString());
+            out.write('\n');
+        }
+        catch(IOException e)
+        {
+            error = true;
+            System.out.println("Error writing trade study file: " + e.toString());
+        }
+    }
+
+    private static String quote(String s)
+    {
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * @return true if writing the file failed
+     */
+    public boolean isError()
+    {
+        return error;
+    }
+
+} // TradeStudyCsvWriter
@@ -0,0 +1,47 @@
+/*
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.tradestudy;
+
+/**
+ * Results of a TradeStudy, called on the thread that called TradeStudy.run()
+ *
+ * @author Shawn E. Gano
+ */
+public interface TradeStudyListener
+{
+    public void studyStarted(TradeStudy study);
+
+    /**
+     * @param sampleIndex sample number (samples finish in any order)
+     * @param inputs value of each variable (same order as TradeStudy.getVariables())
+     * @param goals value of each goal (same order as TradeStudy.getGoals()), null if the node didn't calculate it
+     */
+    public void sampleFinished(int sampleIndex, double[] inputs, Double[] goals);
+
+    public void sampleFailed(int sampleIndex, double[] inputs, Exception e);
+
+    /**
+     * Called when all samples are done or the study was canceled
+     */
+    public void studyFinished(TradeStudy study);
+
+} // TradeStudyListener
@@ -0,0 +1,126 @@
+/*
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ */
+
+package jsattrak.customsat.tradestudy;
+
+import java.util.ArrayList;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table of trade study results (for a JTable), rows are added on the event
+ * thread as the samples finish. Columns: sample, variables, goals.
+ *
+ * @author Shawn E. Gano
+ */
+public class TradeStudyTableModel extends AbstractTableModel implements TradeStudyListener
+{
+    private static final long serialVersionUID = 1L;
+
+    private String[] columnNames = new String[] {"Sample"};
+    private final ArrayList<Object[]> rows = new ArrayList<Object[]>();
+
+    public TradeStudyTableModel()
+    {
+    }
+
+    public void studyStarted(TradeStudy study)
+    {
+        final ArrayList<String> names = new ArrayList<String>();
+        names.add("Sample");
+        for(TradeStudy.Variable v : study.getVariables())
+        {
+            names.add(v.getName());
+        }
+        for(TradeStudy.Goal g : study.getGoals())
+        {
+            names.add(g.getName());
+        }
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                columnNames = names.toArray(new String[names.size()]);
+                rows.clear();
+                fireTableStructureChanged();
+            }
+        });
+    }
+
+    public void sampleFinished(int sampleIndex, double[] inputs, Double[] goals)
+    {
+        final Object[] row = new Object[1 + inputs.length + goals.length];
+        row[0] = sampleIndex;
+        for(int i = 0; i < inputs.length; i++)
+        {
+            row[1 + i] = inputs[i];
+        }
+        System.arraycopy(goals, 0, row, 1 + inputs.length, goals.length);
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                rows.add(row);
+                fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+            }
+        });
+    }
+
+    public void sampleFailed(int sampleIndex, double[] inputs, Exception e)
+    {
+        sampleFinished(sampleIndex, inputs, new Double[0]);
+    }
+
+    public void studyFinished(TradeStudy study)
+    {
+    }
+
+    public int getRowCount()
+    {
+        return rows.size();
+    }
+
+    public int getColumnCount()
+    {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column)
+    {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column)
+    {
+        return (column == 0) ? Integer.class : Double.class;
+    }
+
+    public Object getValueAt(int row, int column)
+    {
+        Object[] r = rows.get(row);
+        return (column < r.length) ? r[column] : null; // failed samples have no goals
+    }
+
+} // TradeStudyTableModel
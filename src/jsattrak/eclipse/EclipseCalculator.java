@@ -0,0 +1,451 @@
+/*
+ * Finds the eclipse (penumbra / umbra) intervals of many satellites over a time span
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.eclipse;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import jsattrak.ephemeris.EphemerisExporter;
+import jsattrak.ephemeris.EphemerisSource;
+import jsattrak.objects.AbstractSatellite;
+import name.gano.astro.AstroConst;
+import name.gano.astro.bodies.SunEphemerisCache;
+import name.gano.astro.propogators.solvers.EclipseDetector;
+import name.gano.astro.time.Time;
+
+/**
+ * Uses the conical shadow model of EclipseDetector (penumbra and umbra) with
+ * the Sun positions from one SunEphemerisCache shared by all the satellites.
+ *
+ * Instead of sampling at a fixed step, the step is bounded by how fast the
+ * shadow functions can change: the angle between the Sun and the Earth's
+ * center seen from the satellite can't change faster than |v|/r and the
+ * apparent Earth radius faster than R|dr/dt|/(r sqrt(r^2-R^2)), so far from a
+ * shadow boundary (most of the orbit) steps are long (up to maxStepSec) and
+ * they only shrink (down to minStepSec) close to an entry or exit. Each
+ * crossing is then refined (Illinois method) to toleranceSec.
+ *
+ * Each satellite only uses its own copy of its ephemeris (see EphemerisSource)
+ * so the satellites are done in parallel.
+ *
+ * @author Shawn E. Gano
+ */
+public class EclipseCalculator
+{
+    private static final double SAFETY = 0.5; // fraction of the bounded step taken
+
+    private double minStepSec = 1.0; // shadow dips shorter than about this can be missed
+    private double maxStepSec = 600.0;
+    private double toleranceSec = 0.01; // accuracy of the entry / exit times
+    private double rotationNodeSpacingSec = 600.0; // TEME->J2000 interpolation for SGP4 satellites
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private volatile boolean canceled = false;
+
+    public EclipseCalculator()
+    {
+    }
+
+    /**
+     * Eclipse intervals of all the satellites (in parallel)
+     * @param sats SGP4 and / or custom satellites
+     * @param startJulDate start of the span (UTC Julian Date)
+     * @param endJulDate end of the span (UTC Julian Date)
+     * @param errors if not null, a message is added for each satellite that could not be done
+     * @return intervals for each satellite (by name, in the same order as sats), bad satellites are left out
+     */
+    public Map<String, List<EclipseInterval>> computeAll(Collection<? extends AbstractSatellite> sats, final double startJulDate, final double endJulDate, List<String> errors)
+    {
+        canceled = false;
+
+        Map<String, List<EclipseInterval>> results = new LinkedHashMap<String, List<EclipseInterval>>();
+        if(sats.isEmpty())
+        {
+            return results;
+        }
+
+        // one Sun ephemeris for everyone
+        final SunEphemerisCache sun = new SunEphemerisCache(startJulDate, endJulDate);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, sats.size())), new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "EclipseCalculator");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try
+        {
+            List<String> names = new ArrayList<String>(sats.size());
+            List<Future<List<EclipseInterval>>> futures = new ArrayList<Future<List<EclipseInterval>>>(sats.size());
+            for(AbstractSatellite sat : sats)
+            {
+                final EphemerisSource source;
+                try
+                {
+                    source = EphemerisExporter.createSource(sat, rotationNodeSpacingSec);
+                }
+                catch(Exception e)
+                {
+                    if(errors != null)
+                    {
+                        errors.add(sat.getName().trim() + ": " + e.toString());
+                    }
+                    continue;
+                }
+
+                names.add(sat.getName());
+                futures.add(pool.submit(new Callable<List<EclipseInterval>>()
+                {
+                    public List<EclipseInterval> call() throws Exception
+                    {
+                        return compute(source, sun, startJulDate, endJulDate);
+                    }
+                }));
+            }
+
+            for(int i = 0; i < futures.size(); i++)
+            {
+                try
+                {
+                    results.put(names.get(i), futures.get(i).get());
+                }
+                catch(ExecutionException e)
+                {
+                    if(errors != null)
+                    {
+                        errors.add(names.get(i).trim() + ": " + e.getCause().toString());
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return results;
+    } // computeAll
+
+    /**
+     * Eclipse intervals of one satellite. If the ephemeris has no state at the start
+     * of the span nothing is found; if it ends early, open intervals end there (clipped).
+     * @param source ephemeris of the satellite (only used by this thread)
+     * @param sun Sun positions covering the span
+     * @param startJulDate start of the span (UTC Julian Date)
+     * @param endJulDate end of the span (UTC Julian Date)
+     * @return penumbra and umbra intervals sorted by start time
+     */
+    public List<EclipseInterval> compute(EphemerisSource source, SunEphemerisCache sun, double startJulDate, double endJulDate)
+    {
+        List<EclipseInterval> intervals = new ArrayList<EclipseInterval>();
+
+        double[] state = new double[6];
+        double[] rSun = new double[3];
+        double[] g = new double[2]; // penumbra, umbra
+
+        if(!evaluate(source, sun, startJulDate, state, rSun, g))
+        {
+            return intervals;
+        }
+
+        // open intervals (NaN = not in the shadow)
+        double[] entry = new double[2];
+        boolean[] entryClipped = new boolean[2];
+        for(int k = 0; k < 2; k++)
+        {
+            entry[k] = (g[k] < 0.0) ? startJulDate : Double.NaN;
+            entryClipped[k] = g[k] < 0.0;
+        }
+
+        double[] gNext = new double[2];
+        double jd = startJulDate;
+        while(jd < endJulDate && !canceled)
+        {
+            double jdNext = Math.min(jd + nextStep(state, g) / 86400.0, endJulDate);
+
+            if(!evaluate(source, sun, jdNext, state, rSun, gNext))
+            {
+                break; // ephemeris ended, the open intervals end here
+            }
+
+            for(int k = 0; k < 2; k++)
+            {
+                if((g[k] < 0.0) != (gNext[k] < 0.0))
+                {
+                    double jdCross = findCrossing(source, sun, k == 1, jd, g[k], jdNext, gNext[k]);
+                    if(gNext[k] < 0.0)
+                    {
+                        entry[k] = jdCross;
+                        entryClipped[k] = false;
+                    }
+                    else
+                    {
+                        intervals.add(new EclipseInterval(type(k), entry[k], jdCross, entryClipped[k], false));
+                        entry[k] = Double.NaN;
+                    }
+                }
+                g[k] = gNext[k];
+            }
+            jd = jdNext;
+        } // step through the span
+
+        for(int k = 0; k < 2; k++)
+        {
+            if(!Double.isNaN(entry[k]))
+            {
+                intervals.add(new EclipseInterval(type(k), entry[k], Math.max(entry[k], jd), entryClipped[k], true));
+            }
+        }
+
+        Collections.sort(intervals, new Comparator<EclipseInterval>()
+        {
+            public int compare(EclipseInterval i1, EclipseInterval i2)
+            {
+                int c = Double.compare(i1.getStartJulDate(), i2.getStartJulDate());
+                return (c != 0) ? c : i1.getType().compareTo(i2.getType());
+            }
+        });
+
+        return intervals;
+    } // compute
+
+    private static EclipseInterval.Type type(int k)
+    {
+        return (k == 0) ? EclipseInterval.Type.PENUMBRA : EclipseInterval.Type.UMBRA;
+    }
+
+    // state, Sun position and the shadow functions (penumbra, umbra) at a time, false if the ephemeris has no state
+    private static boolean evaluate(EphemerisSource source, SunEphemerisCache sun, double julDate, double[] state, double[] rSun, double[] g)
+    {
+        if(!source.getJ2000State(julDate, state))
+        {
+            return false;
+        }
+        sun.getPosition(julDate, rSun);
+        g[0] = EclipseDetector.shadowFunction(state, rSun, false);
+        g[1] = EclipseDetector.shadowFunction(state, rSun, true);
+        return true;
+    } // evaluate
+
+    // step [sec] that can't (to first order) take either shadow function through zero
+    private double nextStep(double[] state, double[] g)
+    {
+        double r2 = state[0] * state[0] + state[1] * state[1] + state[2] * state[2];
+        double r = Math.sqrt(r2);
+        double v = Math.sqrt(state[3] * state[3] + state[4] * state[4] + state[5] * state[5]);
+        double rDot = (state[0] * state[3] + state[1] * state[4] + state[2] * state[5]) / r;
+        double h2 = Math.max(r2 - AstroConst.R_Earth * AstroConst.R_Earth, 1.0);
+
+        // max rate of change of the shadow functions [rad/s] (1e-6 covers the Sun's apparent motion)
+        double rate = v / r + AstroConst.R_Earth * Math.abs(rDot) / (r * Math.sqrt(h2)) + 1.0e-6;
+
+        double step = SAFETY * Math.min(Math.abs(g[0]), Math.abs(g[1])) / rate;
+        return Math.max(minStepSec, Math.min(maxStepSec, step));
+    } // nextStep
+
+    // Illinois (modified regula falsi) for the zero of a shadow function between a and b
+    private double findCrossing(EphemerisSource source, SunEphemerisCache sun, boolean umbra, double jdA, double ga, double jdB, double gb)
+    {
+        double[] state = new double[6];
+        double[] rSun = new double[3];
+        double[] g = new double[2];
+        int k = umbra ? 1 : 0;
+
+        // seconds from jdA (for precision)
+        double a = 0.0;
+        double b = (jdB - jdA) * 86400.0;
+        double c = b;
+        int side = 0;
+        for(int iter = 0; iter < 60 && Math.abs(b - a) > toleranceSec; iter++)
+        {
+            c = (a * gb - b * ga) / (gb - ga);
+            if(!evaluate(source, sun, jdA + c / 86400.0, state, rSun, g))
+            {
+                break;
+            }
+            double gc = g[k];
+
+            if((gc < 0.0) == (gb < 0.0))
+            {
+                b = c;
+                gb = gc;
+                if(side == -1)
+                {
+                    ga *= 0.5;
+                }
+                side = -1;
+            }
+            else if((gc < 0.0) == (ga < 0.0))
+            {
+                a = c;
+                ga = gc;
+                if(side == 1)
+                {
+                    gb *= 0.5;
+                }
+                side = 1;
+            }
+            else
+            {
+                break; // gc == 0
+            }
+        }
+
+        return jdA + c / 86400.0;
+    } // findCrossing
+
+    /**
+     * Writes the intervals to a comma separated file: satellite, type, start and end
+     * (UTC Julian Date and date), duration [sec], start clipped, end clipped
+     * @param results from computeAll
+     * @param file file to write
+     * @throws IOException
+     */
+    public static void writeCsv(Map<String, List<EclipseInterval>> results, File file) throws IOException
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try
+        {
+            out.write("Satellite,Type,Start [UTC JD],End [UTC JD],Start [UTC],End [UTC],Duration [s],Start Clipped,End Clipped\n");
+            for(Map.Entry<String, List<EclipseInterval>> e : results.entrySet())
+            {
+                String name = "\"" + e.getKey().trim().replace("\"", "\"\"") + "\"";
+                for(EclipseInterval in : e.getValue())
+                {
+                    out.write(name + "," + in.getType() + ","
+                            + in.getStartJulDate() + "," + in.getEndJulDate() + ","
+                            + dateFormat.format(Time.convertJD2Calendar(in.getStartJulDate()).getTime()) + ","
+                            + dateFormat.format(Time.convertJD2Calendar(in.getEndJulDate()).getTime()) + ","
+                            + in.getDurationSec() + "," + in.isStartClipped() + "," + in.isEndClipped() + "\n");
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    } // writeCsv
+
+    /**
+     * Stops computeAll / compute as soon as possible (intervals found so far are kept)
+     */
+    public void cancel()
+    {
+        canceled = true;
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    public double getMinStepSec()
+    {
+        return minStepSec;
+    }
+
+    /**
+     * @param minStepSec smallest step [sec], shadow dips (grazing eclipses) shorter than about this can be missed
+     */
+    public void setMinStepSec(double minStepSec)
+    {
+        this.minStepSec = minStepSec;
+    }
+
+    public double getMaxStepSec()
+    {
+        return maxStepSec;
+    }
+
+    /**
+     * @param maxStepSec largest step [sec], should be well under the shortest orbit period
+     */
+    public void setMaxStepSec(double maxStepSec)
+    {
+        this.maxStepSec = maxStepSec;
+    }
+
+    public double getToleranceSec()
+    {
+        return toleranceSec;
+    }
+
+    /**
+     * @param toleranceSec accuracy of the entry and exit times [sec]
+     */
+    public void setToleranceSec(double toleranceSec)
+    {
+        this.toleranceSec = toleranceSec;
+    }
+
+    public double getRotationNodeSpacingSec()
+    {
+        return rotationNodeSpacingSec;
+    }
+
+    /**
+     * @param rotationNodeSpacingSec TEME->J2000 matrix interpolation for SGP4 satellites [sec] (0 = exact)
+     */
+    public void setRotationNodeSpacingSec(double rotationNodeSpacingSec)
+    {
+        this.rotationNodeSpacingSec = rotationNodeSpacingSec;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+} // EclipseCalculator
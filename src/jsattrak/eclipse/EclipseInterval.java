@@ -0,0 +1,103 @@
+/*
+ * Time interval a satellite spends in the Earth's shadow
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.eclipse;
+
+/**
+ * Penumbra intervals cover any shadow (they contain the umbra intervals).
+ * Intervals are clipped to the span computed, see isStartClipped / isEndClipped.
+ *
+ * @author Shawn E. Gano
+ */
+public class EclipseInterval
+{
+    public enum Type
+    {
+        PENUMBRA, UMBRA
+    }
+
+    private final Type type;
+    private final double startJulDate; // UTC
+    private final double endJulDate; // UTC
+    private final boolean startClipped;
+    private final boolean endClipped;
+
+    public EclipseInterval(Type type, double startJulDate, double endJulDate, boolean startClipped, boolean endClipped)
+    {
+        this.type = type;
+        this.startJulDate = startJulDate;
+        this.endJulDate = endJulDate;
+        this.startClipped = startClipped;
+        this.endClipped = endClipped;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return shadow entry (UTC Julian Date)
+     */
+    public double getStartJulDate()
+    {
+        return startJulDate;
+    }
+
+    /**
+     * @return shadow exit (UTC Julian Date)
+     */
+    public double getEndJulDate()
+    {
+        return endJulDate;
+    }
+
+    /**
+     * @return duration [sec]
+     */
+    public double getDurationSec()
+    {
+        return (endJulDate - startJulDate) * 86400.0;
+    }
+
+    /**
+     * @return true if the satellite was already in the shadow at the start of the span
+     */
+    public boolean isStartClipped()
+    {
+        return startClipped;
+    }
+
+    /**
+     * @return true if the satellite was still in the shadow at the end of the span (or its ephemeris ended)
+     */
+    public boolean isEndClipped()
+    {
+        return endClipped;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + " " + startJulDate + " - " + endJulDate + " (" + getDurationSec() + " s)";
+    }
+
+} // EclipseInterval
@@ -0,0 +1,132 @@
+/*
+ * BinaryEphemerisWriter.java
+ *
+ * Compact binary columnar ephemeris (.jse), big endian:
+ *
+ *   "JSTEPH" (6 bytes), short version (1)
+ *   short name length, name (ASCII)
+ *   double start Julian Date (UTC), double step size (sec)
+ *   int number of points, int block size
+ *   blocks: int n (0 = end of file), then 7 columns of n doubles each:
+ *           seconds from start, x, y, z, dx, dy, dz  (J2000 m, m/s)
+ *
+ * Storing columns (instead of rows) in blocks keeps memory bounded and makes
+ * the file compress well and load quickly into arrays.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class BinaryEphemerisWriter extends EphemerisWriter
+{
+    public static final String MAGIC = "JSTEPH";
+    public static final short VERSION = 1;
+    public static final int BLOCK_SIZE = 1024; // points per block
+
+    private final double[][] columns = new double[7][BLOCK_SIZE];
+    private int blockCount = 0;
+    private long numPointsPosition;
+
+    public String getFileExtension()
+    {
+        return ".jse";
+    }
+
+    protected void writeHeader(String satName, double startJulDate, double stepSec) throws IOException
+    {
+        String name = satName.trim();
+        ensureRoom(MAGIC.length() + 2 + 2 + name.length() + 8 + 8 + 4 + 4);
+
+        for(int i = 0; i < MAGIC.length(); i++)
+        {
+            buffer.put((byte) MAGIC.charAt(i));
+        }
+        buffer.putShort(VERSION);
+        buffer.putShort((short) name.length());
+        for(int i = 0; i < name.length(); i++)
+        {
+            buffer.put((byte) name.charAt(i));
+        }
+        buffer.putDouble(startJulDate);
+        buffer.putDouble(stepSec);
+        numPointsPosition = position();
+        buffer.putInt(0); // patched in writeFooter
+        buffer.putInt(BLOCK_SIZE);
+
+        blockCount = 0;
+    } // writeHeader
+
+    protected void writePoint(double julDate, double secondsFromStart, double[] state) throws IOException
+    {
+        columns[0][blockCount] = secondsFromStart;
+        for(int i = 0; i < 6; i++)
+        {
+            columns[i + 1][blockCount] = state[i];
+        }
+        blockCount++;
+
+        if(blockCount == BLOCK_SIZE)
+        {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException
+    {
+        ensureRoom(4);
+        buffer.putInt(blockCount);
+        for(int c = 0; c < 7; c++)
+        {
+            for(int i = 0; i < blockCount; i++)
+            {
+                ensureRoom(8);
+                buffer.putDouble(columns[c][i]);
+            }
+        }
+        blockCount = 0;
+    }
+
+    protected void writeFooter(int numPoints) throws IOException
+    {
+        if(blockCount > 0)
+        {
+            writeBlock();
+        }
+        ensureRoom(4);
+        buffer.putInt(0); // end marker
+        flush();
+
+        ByteBuffer count = ByteBuffer.allocate(4);
+        count.putInt(numPoints);
+        count.flip();
+        long pos = numPointsPosition;
+        while(count.hasRemaining())
+        {
+            pos += channel.write(count, pos);
+        }
+    } // writeFooter
+
+} // BinaryEphemerisWriter
@@ -0,0 +1,653 @@
+/*
+ * ChebyshevEphemeris.java
+ *
+ * Compact ephemeris made of Chebyshev polynomial segments fitted to the
+ * points of a numerically propagated ephemeris (CustomSatellite missions).
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import Jama.Matrix;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import jsattrak.utilities.StateVector;
+import name.gano.astro.AstroConst;
+import name.gano.astro.Kepler;
+
+/**
+ * Each segment is a least squares Chebyshev fit (x,y,z) to the positions and
+ * velocities of the ephemeris points in it (the velocity is the derivative of
+ * the fit), checked at every point: the position error and the velocity error
+ * times the point spacing (the position error it makes over one step) are both
+ * within the tolerance, and every fit has more equations than coefficients so
+ * the check means something. A segment that doesn't meet it is shortened; a
+ * short leftover at the end of a run is merged into the segment before it.
+ * High order coefficients that aren't needed for the tolerance are dropped.
+ *
+ * Impulsive maneuvers change the velocity of an ephemeris point in place, so
+ * their times have to be given (breakTimes): the ephemeris is split there, the
+ * segment before a maneuver doesn't use the velocity of its last point, and a
+ * time on a segment boundary uses the later segment (the state after the
+ * maneuver, the same as the ephemeris). Repeated times also split it.
+ *
+ * Only the ephemeris points are checked; between them the error depends on how
+ * densely the orbit was sampled (for a low earth orbit with 60 s steps it stays
+ * within a few times the tolerance). If a part of the ephemeris can't be fitted
+ * within the tolerance at all (e.g. a jump in the position, an unknown
+ * maneuver) it is fitted as well as possible and getMaxError() is larger than
+ * the tolerance.
+ *
+ * A one orbit segment of a low earth orbit typically needs 12-19 coefficients
+ * per axis, against one 7 value state per integrator step for the ephemeris.
+ * The times of the points (for toStateVectors) are kept as the first and last
+ * point of each segment: points evenly spaced in a segment (fixed step
+ * propagators) are at the same times to within a couple of units in the last
+ * place of the Julian Date (about 0.1 ms); only the segments with uneven steps
+ * (variable step propagators) keep their times.
+ *
+ * The object is immutable (safe to use from any thread) and only holds arrays,
+ * so it is small when saved with the scenario.
+ *
+ * @author Shawn E. Gano
+ */
+public class ChebyshevEphemeris implements Serializable
+{
+    private static final long serialVersionUID = 1L; // (saved with the scenario)
+
+    public static final double DEFAULT_TOLERANCE = 1.0; // [m]
+    public static final int DEFAULT_MAX_DEGREE = 18;
+
+    private static final int MIN_SEGMENT_STEPS = 4; // shortest segment made by splitting (shorter only between maneuvers)
+
+    // segment k: times (TT Julian Date) startTimes[k] to endTimes[k], coefficients
+    // coeffs[coeffStart[k] .. coeffStart[k+1]-1] = x coeffs, y coeffs, z coeffs
+    private final double[] startTimes;
+    private final double[] endTimes;
+    private final int[] coeffStart;
+    private final double[] coeffs;
+    // ephemeris points firstPoint[k] .. lastPoint[k] are in segment k, evenly spaced unless
+    // timesStart[k] >= 0: times of the points between the first and last at pointTimes[timesStart[k] ..]
+    private final int[] firstPoint;
+    private final int[] lastPoint;
+    private final int[] timesStart;
+    private final double[] pointTimes;
+    private final int numPoints;
+    private final double maxError; // largest error at the points [m]
+    private final double tolerance; // tolerance used for the fit [m]
+
+    private ChebyshevEphemeris(double[] startTimes, double[] endTimes, int[] coeffStart, double[] coeffs,
+            int[] firstPoint, int[] lastPoint, int[] timesStart, double[] pointTimes, int numPoints, double maxError, double tolerance)
+    {
+        this.startTimes = startTimes;
+        this.endTimes = endTimes;
+        this.coeffStart = coeffStart;
+        this.coeffs = coeffs;
+        this.firstPoint = firstPoint;
+        this.lastPoint = lastPoint;
+        this.timesStart = timesStart;
+        this.pointTimes = pointTimes;
+        this.numPoints = numPoints;
+        this.maxError = maxError;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Fits an ephemeris with no maneuvers with the default maximum degree, one orbit segments
+     * @param ephemeris states (TT Julian Date, J2000 position and velocity)
+     * @param tolerance maximum position error at the ephemeris points [m]
+     * @return compressed ephemeris, null if the ephemeris has less than 2 points
+     */
+    public static ChebyshevEphemeris fit(List<StateVector> ephemeris, double tolerance)
+    {
+        return fit(ephemeris, tolerance, 0, DEFAULT_MAX_DEGREE, null);
+    }
+
+    /**
+     * @param ephemeris states (TT Julian Date, J2000 position and velocity)
+     * @param tolerance maximum position error at the ephemeris points [m] (at least the
+     *        resolution of the Julian Date times, a few tenths of a meter for low orbits)
+     * @param segmentLength maximum segment length [sec], 0 = one orbital period (from the first state)
+     * @param maxDegree maximum degree of the polynomials
+     * @param breakTimes times of the impulsive maneuvers (TT Julian Date, the time of the
+     *        ephemeris point whose velocity was changed), null if none
+     * @return compressed ephemeris, null if the ephemeris has less than 2 points
+     */
+    public static ChebyshevEphemeris fit(List<StateVector> ephemeris, double tolerance, double segmentLength, int maxDegree, double[] breakTimes)
+    {
+        int n = ephemeris.size();
+        if(n < 2)
+        {
+            return null;
+        }
+
+        double[] t = new double[n];
+        double[][] pos = new double[n][3];
+        double[][] vel = new double[n][3];
+        double maxSpeed = 0;
+        for(int i = 0; i < n; i++)
+        {
+            double[] s = ephemeris.get(i).state;
+            t[i] = s[0];
+            for(int j = 0; j < 3; j++)
+            {
+                pos[i][j] = s[1 + j];
+                vel[i][j] = s[4 + j];
+            }
+            maxSpeed = Math.max(maxSpeed, Math.sqrt(s[4] * s[4] + s[5] * s[5] + s[6] * s[6]));
+        }
+
+        // the times are Julian Dates (about 40 microsecond resolution) so the points are
+        // only good to a few tenths of a meter in low orbits, don't try to fit better
+        double noise = 3.0 * maxSpeed * 0.5 * Math.ulp(t[n - 1]) * 86400.0;
+        double tol = Math.max(tolerance, noise);
+
+        if(segmentLength <= 0)
+        {
+            double[] s = ephemeris.get(0).state;
+            segmentLength = Kepler.CalculatePeriod(AstroConst.GM_Earth, new double[] {s[1], s[2], s[3]}, new double[] {s[4], s[5], s[6]});
+            if(Double.isNaN(segmentLength) || segmentLength <= 0)
+            {
+                segmentLength = 3600.0; // not a closed orbit
+            }
+        }
+        double maxSegmentDays = segmentLength / 86400.0;
+
+        // points where the velocity was changed in place (maneuvers)
+        boolean[] isBreak = new boolean[n];
+        if(breakTimes != null)
+        {
+            for(double bt : breakTimes)
+            {
+                for(int i = 0; i < n; i++)
+                {
+                    if(Math.abs(t[i] - bt) <= Math.ulp(bt)) // (same double as the ephemeris point normally)
+                    {
+                        isBreak[i] = true;
+                    }
+                }
+            }
+        }
+
+        ArrayList<Segment> segments = new ArrayList<Segment>();
+
+        // runs of increasing times between maneuvers, fitted separately
+        int p0 = 0;
+        while(p0 < n - 1)
+        {
+            if(t[p0 + 1] <= t[p0])
+            {
+                p0++; // repeated time - run starts from the later point
+                continue;
+            }
+            int p1 = p0 + 1;
+            while(p1 + 1 < n && t[p1 + 1] > t[p1] && !isBreak[p1])
+            {
+                p1++;
+            }
+
+            fitRun(t, pos, vel, p0, p1, isBreak[p1], tol, maxSegmentDays, maxDegree, segments);
+            p0 = p1;
+        } // for each run
+
+        int numSegs = segments.size();
+        if(numSegs == 0)
+        {
+            return null;
+        }
+
+        double[] starts = new double[numSegs];
+        double[] ends = new double[numSegs];
+        int[] offsets = new int[numSegs + 1];
+        int[] first = new int[numSegs];
+        int[] last = new int[numSegs];
+        int[] timesStart = new int[numSegs];
+        ArrayList<Double> times = new ArrayList<Double>();
+        double error = 0;
+        for(int k = 0; k < numSegs; k++)
+        {
+            Segment seg = segments.get(k);
+            starts[k] = t[seg.i0];
+            ends[k] = t[seg.i1];
+            offsets[k + 1] = offsets[k] + seg.coeffs.length;
+            error = Math.max(error, seg.error);
+            first[k] = seg.i0;
+            last[k] = seg.i1;
+
+            // times only kept if the points aren't evenly spaced
+            timesStart[k] = -1;
+            for(int i = seg.i0 + 1; i < seg.i1; i++)
+            {
+                double even = starts[k] + (i - seg.i0) * (ends[k] - starts[k]) / (seg.i1 - seg.i0);
+                if(Math.abs(even - t[i]) > 2.0 * Math.ulp(t[i]))
+                {
+                    timesStart[k] = times.size();
+                    for(int j = seg.i0 + 1; j < seg.i1; j++)
+                    {
+                        times.add(t[j]);
+                    }
+                    break;
+                }
+            }
+        }
+        double[] pointTimes = new double[times.size()];
+        for(int i = 0; i < pointTimes.length; i++)
+        {
+            pointTimes[i] = times.get(i);
+        }
+        double[] all = new double[offsets[numSegs]];
+        for(int k = 0; k < numSegs; k++)
+        {
+            System.arraycopy(segments.get(k).coeffs, 0, all, offsets[k], segments.get(k).coeffs.length);
+        }
+
+        return new ChebyshevEphemeris(starts, ends, offsets, all, first, last, timesStart, pointTimes, n, error, tol);
+    } // fit
+
+    // fits points p0..p1 (increasing times) with segments of at most maxSegmentDays
+    private static void fitRun(double[] t, double[][] pos, double[][] vel, int p0, int p1, boolean endVelocityChanged,
+            double tol, double maxSegmentDays, int maxDegree, ArrayList<Segment> segments)
+    {
+        int first = segments.size(); // first segment of this run
+
+        int i0 = p0;
+        while(i0 < p1)
+        {
+            // a short leftover goes into the segment before it, refitted (or split evenly in two)
+            if(p1 - i0 < MIN_SEGMENT_STEPS && segments.size() > first)
+            {
+                Segment prev = segments.remove(segments.size() - 1);
+                Segment merged = fitSegment(t, pos, vel, prev.i0, p1, endVelocityChanged, tol, maxDegree);
+                if(merged != null && merged.error <= tol)
+                {
+                    segments.add(merged);
+                }
+                else
+                {
+                    int mid = (prev.i0 + p1) / 2;
+                    segments.add(fitBest(t, pos, vel, prev.i0, mid, false, tol, maxDegree));
+                    segments.add(fitBest(t, pos, vel, mid, p1, endVelocityChanged, tol, maxDegree));
+                }
+                return;
+            }
+
+            // longest segment within the segment length, shortened until it fits
+            int i1 = i0 + 1;
+            while(i1 < p1 && t[i1 + 1] - t[i0] <= maxSegmentDays)
+            {
+                i1++;
+            }
+
+            Segment seg = fitSegment(t, pos, vel, i0, i1, endVelocityChanged && i1 == p1, tol, maxDegree);
+            while((seg == null || seg.error > tol) && i1 - i0 > MIN_SEGMENT_STEPS)
+            {
+                i1 = Math.max(i0 + MIN_SEGMENT_STEPS, i0 + 3 * (i1 - i0) / 4);
+                seg = fitSegment(t, pos, vel, i0, i1, endVelocityChanged && i1 == p1, tol, maxDegree);
+            }
+            if(seg == null)
+            {
+                seg = fitBest(t, pos, vel, i0, i1, endVelocityChanged && i1 == p1, tol, maxDegree);
+            }
+
+            segments.add(seg); // (error larger than tol if even the shortest segment doesn't fit)
+            i0 = i1;
+        } // for each segment
+    } // fitRun
+
+    // fit of i0..i1 even if it isn't within the tolerance (lower degrees if the fit is rank deficient)
+    private static Segment fitBest(double[] t, double[][] pos, double[][] vel, int i0, int i1, boolean endVelocityChanged, double tol, int maxDegree)
+    {
+        Segment seg = null;
+        for(int degree = maxDegree; seg == null && degree >= 0; degree--)
+        {
+            seg = fitSegment(t, pos, vel, i0, i1, endVelocityChanged, tol, degree);
+        }
+        return seg;
+    } // fitBest
+
+    // coefficients of a segment fitted to points i0..i1 and its error
+    private static class Segment
+    {
+        final int i0, i1;
+        final double[] coeffs; // x, y and z coefficients (same number each)
+        final double error; // largest position error (or velocity error times the point spacing) at the points [m]
+
+        Segment(int i0, int i1, double[] coeffs, double error)
+        {
+            this.i0 = i0;
+            this.i1 = i1;
+            this.coeffs = coeffs;
+            this.error = error;
+        }
+    } // Segment
+
+    /**
+     * Least squares fit of the positions and velocities of points i0..i1
+     * @param endVelocityChanged true if the velocity of the last point is after a maneuver (not used)
+     * @return the fit (its error can be larger than the tolerance), null if rank deficient
+     */
+    private static Segment fitSegment(double[] t, double[][] pos, double[][] vel, int i0, int i1, boolean endVelocityChanged, double tolerance, int maxDegree)
+    {
+        int m = i1 - i0 + 1;
+        int numVel = endVelocityChanged ? m - 1 : m;
+        int rows = m + numVel;
+
+        // about 2 equations per coefficient so the fit can't oscillate between the
+        // points, and always more equations than coefficients (so the error is checked)
+        int degree = Math.max(0, Math.min(maxDegree, Math.min(m, rows - 2)));
+
+        double a = t[i0];
+        double b = t[i1];
+        double dxdt = 2.0 / ((b - a) * 86400.0); // d(x)/d(sec)
+        double spacing = (b - a) * 86400.0 / (m - 1); // mean point spacing [sec], velocity equations are scaled by it
+
+        Matrix A = new Matrix(rows, degree + 1);
+        Matrix B = new Matrix(rows, 3);
+        double[] T = new double[degree + 1];
+        double[] dT = new double[degree + 1];
+        for(int i = 0; i < m; i++)
+        {
+            chebyshevT((2.0 * t[i0 + i] - a - b) / (b - a), T, dT);
+            for(int k = 0; k <= degree; k++)
+            {
+                A.set(i, k, T[k]);
+            }
+            for(int j = 0; j < 3; j++)
+            {
+                B.set(i, j, pos[i0 + i][j]);
+            }
+
+            if(i < numVel)
+            {
+                for(int k = 0; k <= degree; k++)
+                {
+                    A.set(m + i, k, dT[k] * dxdt * spacing);
+                }
+                for(int j = 0; j < 3; j++)
+                {
+                    B.set(m + i, j, vel[i0 + i][j] * spacing);
+                }
+            }
+        }
+
+        Matrix C;
+        try
+        {
+            C = A.solve(B); // QR least squares
+        }
+        catch(RuntimeException e)
+        {
+            return null; // rank deficient
+        }
+
+        // largest errors at the points (position, velocity times the spacing)
+        Matrix R = A.times(C).minus(B);
+        double posError = 0;
+        double velError = 0;
+        for(int i = 0; i < rows; i++)
+        {
+            double err = Math.sqrt(R.get(i, 0) * R.get(i, 0) + R.get(i, 1) * R.get(i, 1) + R.get(i, 2) * R.get(i, 2));
+            if(i < m)
+            {
+                posError = Math.max(posError, err);
+            }
+            else
+            {
+                velError = Math.max(velError, err);
+            }
+        }
+
+        // drop high order terms while the error bounds (|T_k| <= 1, |T_k'| <= k^2) stay within the tolerance
+        int numCoeffs = degree + 1;
+        double droppedPos = 0;
+        double droppedVel = 0;
+        while(numCoeffs > 2)
+        {
+            int k = numCoeffs - 1;
+            double ck = Math.sqrt(C.get(k, 0) * C.get(k, 0) + C.get(k, 1) * C.get(k, 1) + C.get(k, 2) * C.get(k, 2));
+            double ckVel = ck * k * k * dxdt * spacing;
+            if(posError + droppedPos + ck > tolerance || velError + droppedVel + ckVel > tolerance)
+            {
+                break;
+            }
+            droppedPos += ck;
+            droppedVel += ckVel;
+            numCoeffs--;
+        }
+
+        double[] c = new double[3 * numCoeffs];
+        for(int j = 0; j < 3; j++)
+        {
+            for(int k = 0; k < numCoeffs; k++)
+            {
+                c[j * numCoeffs + k] = C.get(k, j);
+            }
+        }
+        return new Segment(i0, i1, c, Math.max(posError + droppedPos, velError + droppedVel));
+    } // fitSegment
+
+    // Chebyshev polynomials T_0..T_n at x and their derivatives
+    private static void chebyshevT(double x, double[] T, double[] dT)
+    {
+        T[0] = 1.0;
+        dT[0] = 0.0;
+        if(T.length > 1)
+        {
+            T[1] = x;
+            dT[1] = 1.0;
+        }
+        for(int k = 2; k < T.length; k++)
+        {
+            T[k] = 2.0 * x * T[k - 1] - T[k - 2];
+            dT[k] = 2.0 * T[k - 1] + 2.0 * x * dT[k - 1] - dT[k - 2];
+        }
+    }
+
+    /**
+     * @param timeTT TT Julian Date
+     * @return index of the segment containing the time, -1 if outside the ephemeris
+     */
+    public int findSegment(double timeTT)
+    {
+        if(timeTT < startTimes[0] || timeTT > endTimes[endTimes.length - 1])
+        {
+            return -1;
+        }
+
+        // last segment starting at or before the time (later segment on boundaries)
+        int k = Arrays.binarySearch(startTimes, timeTT);
+        if(k < 0)
+        {
+            k = -k - 2;
+        }
+        while(k > 0 && timeTT > endTimes[k])
+        {
+            k--; // gap after a repeated time
+        }
+        return Math.max(0, k);
+    } // findSegment
+
+    /**
+     * Calculates the J2000 state at the given time
+     * @param timeTT TT Julian Date
+     * @param state output array (x,y,z,dx,dy,dz) meters and m/s (velocity only if length >= 6)
+     * @return false if the time is outside the ephemeris
+     */
+    public boolean getState(double timeTT, double[] state)
+    {
+        int k = findSegment(timeTT);
+        if(k < 0)
+        {
+            return false;
+        }
+
+        evaluate(k, timeTT, state);
+        return true;
+    } // getState
+
+    // state from segment k
+    private void evaluate(int k, double timeTT, double[] state)
+    {
+        double a = startTimes[k];
+        double b = endTimes[k];
+        double x = (2.0 * timeTT - a - b) / (b - a);
+        if(x > 1.0)
+        {
+            x = 1.0; // in a gap, use the end of the segment
+        }
+        int numCoeffs = (coeffStart[k + 1] - coeffStart[k]) / 3;
+        boolean velocity = state.length >= 6;
+        double dxdt = 2.0 / ((b - a) * 86400.0); // d(x)/d(sec)
+
+        for(int j = 0; j < 3; j++)
+        {
+            int off = coeffStart[k] + j * numCoeffs;
+
+            // T_k and its derivative by recurrence
+            double t0 = 1.0, t1 = x;
+            double d0 = 0.0, d1 = 1.0;
+            double p = coeffs[off];
+            double dp = 0.0;
+            if(numCoeffs > 1)
+            {
+                p += coeffs[off + 1] * t1;
+                dp += coeffs[off + 1] * d1;
+            }
+            for(int i = 2; i < numCoeffs; i++)
+            {
+                double t2 = 2.0 * x * t1 - t0;
+                double d2 = 2.0 * t1 + 2.0 * x * d1 - d0;
+                p += coeffs[off + i] * t2;
+                dp += coeffs[off + i] * d2;
+                t0 = t1;
+                t1 = t2;
+                d0 = d1;
+                d1 = d2;
+            }
+
+            state[j] = p;
+            if(velocity)
+            {
+                state[3 + j] = dp * dxdt;
+            }
+        }
+    } // evaluate
+
+    /**
+     * Evaluates the ephemeris at the times of the points it was fitted to (the
+     * state after the maneuver at a maneuver time) - for code that needs the
+     * ephemeris points (exports etc)
+     */
+    public Vector<StateVector> toStateVectors()
+    {
+        Vector<StateVector> v = new Vector<StateVector>(numPoints);
+        double[] s = new double[6];
+        int k = 0;
+        for(int i = 0; i < numPoints; i++)
+        {
+            // later segment on a maneuver point (shared by the two segments)
+            while(k + 1 < firstPoint.length && firstPoint[k + 1] <= i)
+            {
+                k++;
+            }
+            double t = pointTime(k, Math.max(firstPoint[k], Math.min(lastPoint[k], i))); // (points skipped at repeated times: nearest end)
+            evaluate(k, t, s);
+            v.add(new StateVector(s, t));
+        }
+        return v;
+    } // toStateVectors
+
+    // time of ephemeris point i of segment k
+    private double pointTime(int k, int i)
+    {
+        if(i == firstPoint[k])
+        {
+            return startTimes[k];
+        }
+        if(i == lastPoint[k])
+        {
+            return endTimes[k];
+        }
+        if(timesStart[k] >= 0)
+        {
+            return pointTimes[timesStart[k] + i - firstPoint[k] - 1];
+        }
+        return startTimes[k] + (i - firstPoint[k]) * (endTimes[k] - startTimes[k]) / (lastPoint[k] - firstPoint[k]);
+    } // pointTime
+
+    /**
+     * @return start time of the ephemeris (TT Julian Date)
+     */
+    public double getStartTime()
+    {
+        return startTimes[0];
+    }
+
+    /**
+     * @return end time of the ephemeris (TT Julian Date)
+     */
+    public double getEndTime()
+    {
+        return endTimes[endTimes.length - 1];
+    }
+
+    public int getNumSegments()
+    {
+        return startTimes.length;
+    }
+
+    /**
+     * @return number of ephemeris points the segments were fitted to
+     */
+    public int getNumFittedPoints()
+    {
+        return numPoints;
+    }
+
+    /**
+     * @return largest error at the ephemeris points [m], position or velocity times the
+     *         point spacing (more than the tolerance if some points couldn't be fitted)
+     */
+    public double getMaxError()
+    {
+        return maxError;
+    }
+
+    /**
+     * @return tolerance the segments were fitted to [m] (the one given to fit, or the
+     *         resolution of the times if that is larger)
+     */
+    public double getTolerance()
+    {
+        return tolerance;
+    }
+
+    /**
+     * @return number of values stored (coefficients, segment times, first and last points,
+     *         and the point times of segments with uneven steps)
+     */
+    public int getSize()
+    {
+        return coeffs.length + 4 * startTimes.length + pointTimes.length;
+    }
+
+} // ChebyshevEphemeris
@@ -0,0 +1,93 @@
+/*
+ * CsvEphemerisWriter.java
+ *
+ * Comma separated output, same layout as the Export_Ephemeris plugins:
+ * UTC (Julian Date),x,y,z,dx,dy,dz  (J2000 meters and m/s)
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.io.IOException;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class CsvEphemerisWriter extends EphemerisWriter
+{
+    private final double totalPropagationSec;
+
+    /**
+     * @param totalPropagationSec "Total Propagation Time" of the header, number
+     *        of points times the step size (as the plugins wrote it)
+     */
+    public CsvEphemerisWriter(double totalPropagationSec)
+    {
+        this.totalPropagationSec = totalPropagationSec;
+    }
+
+    public String getFileExtension()
+    {
+        return ".txt";
+    }
+
+    protected void writeHeader(String satName, double startJulDate, double stepSec) throws IOException
+    {
+        line.append("# Satellite: ").append(satName.trim());
+        writeLine();
+        line.append("# UTC,x,y,z,dx,dy,dz  Notes: (1) state is in J2000.0 [meters and m/s] (2) UTC is Coordinated Universal Time [Julian Date]");
+        writeLine();
+        line.append("# step size = ");
+        appendSeconds(stepSec);
+        line.append(" seconds,  Total Propagation Time = ");
+        appendSeconds(totalPropagationSec);
+        line.append(" seconds");
+        writeLine();
+    }
+
+    // whole seconds without the ".0" (as the plugins wrote them)
+    private void appendSeconds(double sec)
+    {
+        if(sec == Math.rint(sec) && Math.abs(sec) < Long.MAX_VALUE)
+        {
+            line.append((long) sec);
+        }
+        else
+        {
+            line.append(sec);
+        }
+    }
+
+    protected void writePoint(double julDate, double secondsFromStart, double[] state) throws IOException
+    {
+        line.append(julDate);
+        for(int i = 0; i < 6; i++)
+        {
+            line.append(',').append(state[i]);
+        }
+        writeLine();
+    }
+
+    protected void writeFooter(int numPoints) throws IOException
+    {
+        // nothing to add
+    }
+
+} // CsvEphemerisWriter
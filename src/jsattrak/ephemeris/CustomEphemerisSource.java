@@ -0,0 +1,155 @@
+/*
+ * CustomEphemerisSource.java
+ *
+ * Ephemeris source for a CustomSatellite - uses the satellite's compressed
+ * (Chebyshev) ephemeris, or takes a snapshot of its ephemeris points (TT time)
+ * and interpolates them the same way CustomSatellite does (3 point Lagrange),
+ * but finds the bracketing points with a binary search.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.util.Arrays;
+import java.util.Vector;
+import jsattrak.objects.CustomSatellite;
+import jsattrak.utilities.StateVector;
+import name.gano.astro.AstroConst;
+import name.gano.astro.time.Time;
+import name.gano.math.interpolation.LagrangeInterp;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class CustomEphemerisSource implements EphemerisSource
+{
+    private final String name;
+    private final double[] timeTT; // Julian Date (TT)
+    private final double[][] states; // [point][x,y,z,dx,dy,dz]
+    private final ChebyshevEphemeris chebEphemeris; // used instead of the points if not null
+
+    public CustomEphemerisSource(CustomSatellite sat)
+    {
+        this(sat.getName(), sat.getChebyshevEphemeris(), sat.isStoreFullEphemeris() ? sat.getEphemeris() : new Vector<StateVector>());
+    }
+
+    /**
+     * @param name satellite name
+     * @param chebEphemeris compressed ephemeris (can be null - no ephemeris)
+     */
+    public CustomEphemerisSource(String name, ChebyshevEphemeris chebEphemeris)
+    {
+        this(name, chebEphemeris, new Vector<StateVector>());
+    }
+
+    /**
+     * @param name satellite name
+     * @param ephemeris ephemeris (time in TT Julian Date) - copied, so it can keep changing
+     */
+    public CustomEphemerisSource(String name, Vector<StateVector> ephemeris)
+    {
+        this(name, null, ephemeris);
+    }
+
+    private CustomEphemerisSource(String name, ChebyshevEphemeris chebEphemeris, Vector<StateVector> ephemeris)
+    {
+        this.name = name;
+        this.chebEphemeris = chebEphemeris;
+
+        synchronized(ephemeris)
+        {
+            int n = ephemeris.size();
+            timeTT = new double[n];
+            states = new double[n][6];
+            for(int i = 0; i < n; i++)
+            {
+                double[] s = ephemeris.get(i).state;
+                timeTT[i] = s[0];
+                System.arraycopy(s, 1, states[i], 0, 6);
+            }
+        }
+    } // constructor
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getNumberOfPoints()
+    {
+        if(chebEphemeris != null)
+        {
+            return chebEphemeris.getNumFittedPoints();
+        }
+        return timeTT.length;
+    }
+
+    public boolean getJ2000State(double julDate, double[] state)
+    {
+        if(chebEphemeris != null)
+        {
+            return chebEphemeris.getState(julDate + Time.deltaT(julDate - AstroConst.JDminusMJD), state); // stored in TT
+        }
+
+        if(timeTT.length < 3)
+        {
+            return false;
+        }
+
+        // ephemeris is stored in TT
+        double tt = julDate + Time.deltaT(julDate - AstroConst.JDminusMJD);
+        if(tt < timeTT[0] || tt > timeTT[timeTT.length - 1])
+        {
+            return false;
+        }
+
+        // first index with time >= tt
+        int i = Arrays.binarySearch(timeTT, tt);
+        if(i < 0)
+        {
+            i = -i - 1;
+        }
+
+        // center the 3 points on i (same choice as CustomSatellite)
+        int i1;
+        if(i <= 1)
+        {
+            i1 = 0;
+        }
+        else if(i >= timeTT.length - 1)
+        {
+            i1 = timeTT.length - 3;
+        }
+        else
+        {
+            i1 = i - 1;
+        }
+        int i2 = i1 + 1;
+        int i3 = i1 + 2;
+
+        for(int k = 0; k < 6; k++)
+        {
+            state[k] = LagrangeInterp.Lagrange3pt(tt, timeTT[i1], states[i1][k], timeTT[i2], states[i2][k], timeTT[i3], states[i3][k]);
+        }
+
+        return true;
+    } // getJ2000State
+
+} // CustomEphemerisSource
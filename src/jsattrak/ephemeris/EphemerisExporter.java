@@ -0,0 +1,459 @@
+/*
+ * EphemerisExporter.java
+ *
+ * Bulk ephemeris export of many satellites at once. Each satellite is
+ * exported by a worker thread using its own propagator copy and its own
+ * streaming writer (one file per satellite), so the satellites shown in the
+ * GUI are never propagated and memory use does not grow with the number of
+ * points or satellites.
+ *
+ * Usage (e.g. from a plugin script):
+ *
+ *   EphemerisExporter ex = new EphemerisExporter(EphemerisExporter.Format.STK, new File("eph"));
+ *   ex.setStartJulianDate(jd);
+ *   ex.setStepSizeSec(60.0);
+ *   ex.setDurationSec(86400.0);
+ *   ex.export(jsattrak.getSatHash().values()); // blocks until done or canceled
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.CustomSatellite;
+import jsattrak.objects.SatelliteTleSGP4;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class EphemerisExporter
+{
+    public enum Format
+    {
+        CSV, STK, BINARY
+    }
+
+    private final Format format;
+    private final File outputDirectory;
+
+    private double startJulDate = 2454292.0; // UTC
+    private double stepSizeSec = 60.0;
+    private double durationSec = 86400.0;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private double rotationNodeSpacingSec = 600.0; // TEME->J2000 matrix interpolation (0 = exact)
+
+    private volatile boolean canceled = false;
+    private final AtomicInteger pointsExported = new AtomicInteger(0);
+
+    private final CopyOnWriteArrayList<ExportListener> listeners = new CopyOnWriteArrayList<ExportListener>();
+
+    /**
+     * @param format output file format
+     * @param outputDirectory directory for the files (created if needed), one file per satellite
+     */
+    public EphemerisExporter(Format format, File outputDirectory)
+    {
+        this.format = format;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Exports all the satellites, blocking until done or canceled. Satellites
+     * that can't be exported (unknown type, bad TLE, no ephemeris) are reported
+     * to the listeners and skipped.
+     *
+     * @param satellites satellites to export
+     * @return number of files written
+     */
+    public int export(Collection<AbstractSatellite> satellites)
+    {
+        canceled = false;
+        pointsExported.set(0);
+
+        if(!outputDirectory.exists())
+        {
+            outputDirectory.mkdirs();
+        }
+
+        ArrayList<ExportJob> jobs = new ArrayList<ExportJob>(satellites.size());
+        for(AbstractSatellite sat : satellites)
+        {
+            jobs.add(new ExportJob(sat));
+        }
+
+        int total = jobs.size();
+        int done = 0;
+        int filesWritten = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, total)), new ExportThreadFactory());
+        try
+        {
+            CompletionService<File> completion = new ExecutorCompletionService<File>(pool);
+            for(ExportJob job : jobs)
+            {
+                completion.submit(job);
+            }
+
+            fireProgress(0, total);
+            for(int i = 0; i < total; i++)
+            {
+                try
+                {
+                    File f = completion.take().get();
+                    if(f != null)
+                    {
+                        filesWritten++;
+                    }
+                }
+                catch(ExecutionException e)
+                {
+                    // already reported to the listeners by the job
+                }
+                catch(InterruptedException e)
+                {
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                done++;
+                fireProgress(done, total);
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return filesWritten;
+    } // export
+
+    /**
+     * Stops the export, can be called from any thread; partially written files are deleted
+     */
+    public void cancel()
+    {
+        canceled = true;
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    /**
+     * @return number of points per satellite for the current settings
+     */
+    public int getNumberOfPoints()
+    {
+        return (int) Math.floor(durationSec / stepSizeSec + 1.0e-9) + 1;
+    }
+
+    /**
+     * @return total points written so far (all satellites)
+     */
+    public int getPointsExported()
+    {
+        return pointsExported.get();
+    }
+
+    /**
+     * @return file the given satellite is exported to
+     */
+    public File getOutputFile(String satName)
+    {
+        return new File(outputDirectory, sanitizeFileName(satName) + getFileExtension());
+    }
+
+    /**
+     * @return file extension of the export format (including the dot)
+     */
+    public String getFileExtension()
+    {
+        switch(format)
+        {
+            case STK:
+                return ".e";
+            case BINARY:
+                return ".jse";
+            default:
+                return ".txt";
+        }
+    }
+
+    public static String sanitizeFileName(String satName)
+    {
+        StringBuilder sb = new StringBuilder(satName.trim());
+        for(int i = 0; i < sb.length(); i++)
+        {
+            char c = sb.charAt(i);
+            if(!(Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ' ' || c == '(' || c == ')'))
+            {
+                sb.setCharAt(i, '_');
+            }
+        }
+        return sb.toString();
+    }
+
+    private EphemerisWriter createWriter()
+    {
+        switch(format)
+        {
+            case STK:
+                return new StkEphemerisWriter();
+            case BINARY:
+                return new BinaryEphemerisWriter();
+            default:
+                return new CsvEphemerisWriter(getNumberOfPoints() * stepSizeSec);
+        }
+    }
+
+    private EphemerisSource createSource(AbstractSatellite sat) throws Exception
+    {
+        return createSource(sat, rotationNodeSpacingSec);
+    }
+
+    /**
+     * Creates an ephemeris source for a satellite (copies its TLE / ephemeris, so it can be used on any thread)
+     * @param sat SGP4 or custom satellite
+     * @param rotationNodeSpacingSec TEME->J2000 matrix interpolation for SGP4 satellites (0 = exact)
+     * @throws Exception if the satellite type is not supported or the TLE can't be loaded
+     */
+    public static EphemerisSource createSource(AbstractSatellite sat, double rotationNodeSpacingSec) throws Exception
+    {
+        if(sat instanceof SatelliteTleSGP4)
+        {
+            return new Sgp4EphemerisSource((SatelliteTleSGP4) sat, rotationNodeSpacingSec);
+        }
+        else if(sat instanceof CustomSatellite)
+        {
+            return new CustomEphemerisSource((CustomSatellite) sat);
+        }
+        throw new Exception("Unsupported satellite type: " + sat.getClass().getSimpleName());
+    }
+
+    /**
+     * Exports one satellite; returns the file written or null if canceled
+     */
+    private class ExportJob implements java.util.concurrent.Callable<File>
+    {
+        private final AbstractSatellite sat;
+        private final String satName;
+
+        public ExportJob(AbstractSatellite sat)
+        {
+            this.sat = sat;
+            this.satName = sat.getName();
+        }
+
+        public File call() throws Exception
+        {
+            if(canceled)
+            {
+                return null;
+            }
+
+            // the source copies the TLE / ephemeris, the live satellite is not propagated
+            EphemerisSource source;
+            try
+            {
+                source = createSource(sat);
+            }
+            catch(Exception e)
+            {
+                fireFailed(satName, e);
+                throw e;
+            }
+
+            EphemerisWriter writer = createWriter();
+            File file = new File(outputDirectory, sanitizeFileName(satName) + writer.getFileExtension());
+            double[] state = new double[6];
+            int numPoints = getNumberOfPoints();
+
+            try
+            {
+                writer.open(file, satName, startJulDate, stepSizeSec);
+                for(int i = 0; i < numPoints; i++)
+                {
+                    if(canceled)
+                    {
+                        writer.abort();
+                        file.delete();
+                        return null;
+                    }
+
+                    double secondsFromStart = i * stepSizeSec;
+                    double jd = startJulDate + secondsFromStart / 86400.0;
+                    if(source.getJ2000State(jd, state))
+                    {
+                        writer.write(jd, secondsFromStart, state);
+                    }
+                }
+                writer.close();
+            }
+            catch(Exception e)
+            {
+                writer.abort();
+                file.delete();
+                fireFailed(satName, e);
+                throw e;
+            }
+
+            pointsExported.addAndGet(writer.getPointsWritten());
+            fireExported(satName, file, writer.getPointsWritten());
+            return file;
+        } // call
+    } // ExportJob
+
+    private static class ExportThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "EphemerisExport-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1); // keep the GUI responsive
+            return t;
+        }
+    }
+
+    // ---- listeners ------------------------------------------------
+
+    public void addExportListener(ExportListener l)
+    {
+        listeners.add(l);
+    }
+
+    public void removeExportListener(ExportListener l)
+    {
+        listeners.remove(l);
+    }
+
+    private void fireProgress(int done, int total)
+    {
+        for(ExportListener l : listeners)
+        {
+            l.exportProgress(done, total);
+        }
+    }
+
+    private void fireExported(String satName, File file, int numPoints)
+    {
+        for(ExportListener l : listeners)
+        {
+            l.satelliteExported(satName, file, numPoints);
+        }
+    }
+
+    private void fireFailed(String satName, Exception e)
+    {
+        System.out.println("Error exporting ephemeris for " + satName + ": " + e.toString());
+        for(ExportListener l : listeners)
+        {
+            l.satelliteFailed(satName, e);
+        }
+    }
+
+    // ---- settings -------------------------------------------------
+
+    public Format getFormat()
+    {
+        return format;
+    }
+
+    public File getOutputDirectory()
+    {
+        return outputDirectory;
+    }
+
+    public double getStartJulianDate()
+    {
+        return startJulDate;
+    }
+
+    /**
+     * @param startJulDate UTC Julian Date of the first point
+     */
+    public void setStartJulianDate(double startJulDate)
+    {
+        this.startJulDate = startJulDate;
+    }
+
+    public double getStepSizeSec()
+    {
+        return stepSizeSec;
+    }
+
+    public void setStepSizeSec(double stepSizeSec)
+    {
+        if(stepSizeSec <= 0)
+        {
+            throw new IllegalArgumentException("Step size must be positive");
+        }
+        this.stepSizeSec = stepSizeSec;
+    }
+
+    public double getDurationSec()
+    {
+        return durationSec;
+    }
+
+    public void setDurationSec(double durationSec)
+    {
+        this.durationSec = durationSec;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public double getRotationNodeSpacingSec()
+    {
+        return rotationNodeSpacingSec;
+    }
+
+    /**
+     * @param rotationNodeSpacingSec spacing of exactly computed TEME to J2000 matrices for SGP4
+     *        satellites, matrices in between are interpolated (0 = compute exactly at every point)
+     */
+    public void setRotationNodeSpacingSec(double rotationNodeSpacingSec)
+    {
+        this.rotationNodeSpacingSec = rotationNodeSpacingSec;
+    }
+
+} // EphemerisExporter
@@ -0,0 +1,46 @@
+/*
+ * EphemerisSource.java
+ *
+ * Thread confined source of J2000 states for a single satellite. Sources do
+ * not change the state of the satellite they were created from, so they can be
+ * used from worker threads while the GUI keeps animating.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public interface EphemerisSource
+{
+    /**
+     * @return name of the satellite
+     */
+    public String getName();
+
+    /**
+     * Calculates the J2000 state at the given time
+     * @param julDate UTC Julian Date
+     * @param state output array (x,y,z,dx,dy,dz) meters and m/s
+     * @return false if there is no valid state at the given time
+     */
+    public boolean getJ2000State(double julDate, double[] state);
+}
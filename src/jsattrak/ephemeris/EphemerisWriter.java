@@ -0,0 +1,202 @@
+/*
+ * EphemerisWriter.java
+ *
+ * Base class for streaming ephemeris writers. Output goes through a reusable
+ * direct ByteBuffer into a FileChannel, so memory use is fixed no matter how
+ * many points are written. Subclasses write the format specific parts.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Not thread safe - each export worker uses its own writer.
+ *
+ * @author Shawn E. Gano
+ */
+public abstract class EphemerisWriter
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private RandomAccessFile raf;
+    protected FileChannel channel;
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+
+    // reusable text line
+    protected final StringBuilder line = new StringBuilder(256);
+
+    private int pointsWritten = 0;
+
+    /**
+     * @return file extension for this format (including the dot)
+     */
+    public abstract String getFileExtension();
+
+    /**
+     * Write the file header
+     * @param satName satellite name
+     * @param startJulDate UTC Julian Date of the first point
+     * @param stepSec step size in seconds
+     */
+    protected abstract void writeHeader(String satName, double startJulDate, double stepSec) throws IOException;
+
+    /**
+     * Write one point
+     * @param julDate UTC Julian Date
+     * @param secondsFromStart seconds since startJulDate (exact, to avoid JD round off)
+     * @param state J2000 x,y,z,dx,dy,dz (m, m/s)
+     */
+    protected abstract void writePoint(double julDate, double secondsFromStart, double[] state) throws IOException;
+
+    /**
+     * Write anything needed at the end of the file (points written is known here)
+     */
+    protected abstract void writeFooter(int numPoints) throws IOException;
+
+    public void open(File file, String satName, double startJulDate, double stepSec) throws IOException
+    {
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+        buffer.clear();
+        pointsWritten = 0;
+
+        writeHeader(satName, startJulDate, stepSec);
+    }
+
+    public void write(double julDate, double secondsFromStart, double[] state) throws IOException
+    {
+        writePoint(julDate, secondsFromStart, state);
+        pointsWritten++;
+    }
+
+    public int getPointsWritten()
+    {
+        return pointsWritten;
+    }
+
+    /**
+     * Finish the file and close it
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            writeFooter(pointsWritten);
+            flush();
+        }
+        finally
+        {
+            abort();
+        }
+    }
+
+    /**
+     * Close without finishing the file (e.g. export canceled)
+     */
+    public void abort()
+    {
+        try
+        {
+            if(raf != null)
+            {
+                raf.close();
+            }
+        }
+        catch(IOException e)
+        {
+            // nothing more to do
+        }
+        raf = null;
+        channel = null;
+    }
+
+    // ---- buffer helpers -------------------------------------------
+
+    protected void flush() throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    protected void ensureRoom(int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the StringBuilder line as ASCII and clears it
+     */
+    protected void writeLine() throws IOException
+    {
+        line.append('\n');
+        int n = line.length();
+        if(n > buffer.capacity())
+        {
+            throw new IOException("Line too long for output buffer");
+        }
+        ensureRoom(n);
+        for(int i = 0; i < n; i++)
+        {
+            buffer.put((byte) line.charAt(i));
+        }
+        line.setLength(0);
+    }
+
+    /**
+     * Overwrite ASCII text at an absolute file position (used to patch headers)
+     */
+    protected void writeAt(long position, String text) throws IOException
+    {
+        flush();
+        byte[] b = new byte[text.length()];
+        for(int i = 0; i < b.length; i++)
+        {
+            b[i] = (byte) text.charAt(i);
+        }
+        ByteBuffer bb = ByteBuffer.wrap(b);
+        while(bb.hasRemaining())
+        {
+            position += channel.write(bb, position);
+        }
+    }
+
+    /**
+     * @return current logical file position (including buffered bytes)
+     */
+    protected long position() throws IOException
+    {
+        return channel.position() + buffer.position();
+    }
+
+} // EphemerisWriter
@@ -0,0 +1,45 @@
+/*
+ * ExportListener.java
+ *
+ * Progress callbacks from EphemerisExporter. Called from the export worker
+ * threads, so GUI listeners should use SwingUtilities.invokeLater.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.io.File;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public interface ExportListener
+{
+    /**
+     * @param satellitesDone number of satellites finished (exported or failed)
+     * @param satellitesTotal number of satellites in the export
+     */
+    public void exportProgress(int satellitesDone, int satellitesTotal);
+
+    public void satelliteExported(String satName, File file, int numPoints);
+
+    public void satelliteFailed(String satName, Exception e);
+
+} // ExportListener
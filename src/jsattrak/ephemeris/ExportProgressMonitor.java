@@ -0,0 +1,157 @@
+/*
+ * ExportProgressMonitor.java
+ *
+ * Runs an EphemerisExporter in a background thread and shows its progress
+ * in a ProgressMonitor (the Cancel button cancels the export), so the GUI
+ * stays responsive during large exports.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import jsattrak.objects.AbstractSatellite;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class ExportProgressMonitor implements ExportListener
+{
+    private final Component parent;
+    private final EphemerisExporter exporter;
+    private final ProgressMonitor monitor;
+    private final Timer cancelTimer; // the cancel button, also while a satellite is exported
+
+    private final AtomicInteger numFailed = new AtomicInteger(0);
+
+    /**
+     * Starts the export and returns right away (call from the event dispatch thread)
+     * @param parent parent component for the progress and completion dialogs
+     * @param exporter configured exporter
+     * @param satellites satellites to export (copied)
+     */
+    public static void startExport(Component parent, EphemerisExporter exporter, Collection<AbstractSatellite> satellites)
+    {
+        final ExportProgressMonitor pm = new ExportProgressMonitor(parent, exporter, satellites.size());
+        final ArrayList<AbstractSatellite> sats = new ArrayList<AbstractSatellite>(satellites);
+
+        Thread t = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                pm.run(sats);
+            }
+        }, "EphemerisExport");
+        t.setDaemon(true);
+        t.start();
+    } // startExport
+
+    private ExportProgressMonitor(Component parent, EphemerisExporter exporter, int numSats)
+    {
+        this.parent = parent;
+        this.exporter = exporter;
+
+        monitor = new ProgressMonitor(parent, "Exporting ephemeris to " + exporter.getOutputDirectory().getAbsolutePath(), "", 0, Math.max(1, numSats));
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(200);
+
+        exporter.addExportListener(this);
+
+        cancelTimer = new Timer(200, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                if(monitor.isCanceled())
+                {
+                    ExportProgressMonitor.this.exporter.cancel();
+                }
+            }
+        });
+        cancelTimer.start();
+    }
+
+    private void run(Collection<AbstractSatellite> sats)
+    {
+        final int filesWritten = exporter.export(sats);
+        exporter.removeExportListener(this);
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                cancelTimer.stop();
+                monitor.close();
+
+                String msg;
+                if(exporter.isCanceled())
+                {
+                    msg = "Ephemeris export canceled.";
+                }
+                else
+                {
+                    msg = "Ephemeris export completed: " + filesWritten + " file(s), " + exporter.getPointsExported() + " points written to:\n" + exporter.getOutputDirectory().getAbsolutePath();
+                }
+                if(numFailed.get() > 0)
+                {
+                    msg += "\n\n" + numFailed.get() + " satellite(s) could not be exported, details are displayed in the Log Console.";
+                }
+                JOptionPane.showMessageDialog(parent, msg);
+            }
+        });
+    } // run
+
+    public void exportProgress(final int satellitesDone, final int satellitesTotal)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                if(monitor.isCanceled())
+                {
+                    exporter.cancel();
+                    return;
+                }
+                monitor.setProgress(satellitesDone);
+                monitor.setNote(satellitesDone + " of " + satellitesTotal + " satellites");
+            }
+        });
+    }
+
+    public void satelliteExported(String satName, File file, int numPoints)
+    {
+        // progress is shown per satellite count
+    }
+
+    public void satelliteFailed(String satName, Exception e)
+    {
+        numFailed.incrementAndGet();
+    }
+
+} // ExportProgressMonitor
@@ -0,0 +1,93 @@
+/*
+ * Sgp4EphemerisSource.java
+ *
+ * Ephemeris source using a private copy of the SGP4 propagator, initialized
+ * from the satellite's TLE, so the satellite itself is never propagated.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import jsattrak.objects.SatelliteTleSGP4;
+import jsattrak.utilities.TLE;
+import name.gano.astro.propogators.sgp4_cssi.SGP4SatData;
+import name.gano.astro.propogators.sgp4_cssi.SGP4unit;
+import name.gano.astro.propogators.sgp4_cssi.SGP4utils;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class Sgp4EphemerisSource implements EphemerisSource
+{
+    private final String name;
+    private final SGP4SatData sgp4SatData = new SGP4SatData();
+    private final TemeJ2kRotation rotation;
+
+    // work arrays (km, km/s)
+    private final double[] posTEME = new double[3];
+    private final double[] velTEME = new double[3];
+
+    /**
+     * @param sat satellite to copy the TLE from
+     * @param rotationNodeSpacingSec see TemeJ2kRotation (0 = exact rotation every step)
+     * @throws Exception if the TLE can't be loaded
+     */
+    public Sgp4EphemerisSource(SatelliteTleSGP4 sat, double rotationNodeSpacingSec) throws Exception
+    {
+        this(sat.getTLE(), rotationNodeSpacingSec);
+    }
+
+    public Sgp4EphemerisSource(TLE tle, double rotationNodeSpacingSec) throws Exception
+    {
+        this.name = tle.getSatName();
+        this.rotation = new TemeJ2kRotation(rotationNodeSpacingSec);
+
+        // same options as SatelliteTleSGP4
+        char opsmode = SGP4utils.OPSMODE_IMPROVED;
+        SGP4unit.Gravconsttype gravconsttype = SGP4unit.Gravconsttype.wgs72;
+
+        boolean loadSuccess = SGP4utils.readTLEandIniSGP4(tle.getSatName(), tle.getLine1(), tle.getLine2(), opsmode, gravconsttype, sgp4SatData);
+        if(!loadSuccess)
+        {
+            throw new Exception("Error loading TLE error code:" + sgp4SatData.error);
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean getJ2000State(double julDate, double[] state)
+    {
+        boolean propSuccess = SGP4unit.sgp4Prop2JD(sgp4SatData, julDate, posTEME, velTEME);
+        if(!propSuccess)
+        {
+            return false;
+        }
+
+        double[][] A = rotation.getMatrix(julDate);
+        TemeJ2kRotation.rotate(A, posTEME[0] * 1000.0, posTEME[1] * 1000.0, posTEME[2] * 1000.0, state, 0);
+        TemeJ2kRotation.rotate(A, velTEME[0] * 1000.0, velTEME[1] * 1000.0, velTEME[2] * 1000.0, state, 3);
+
+        return true;
+    } // getJ2000State
+
+} // Sgp4EphemerisSource
@@ -0,0 +1,114 @@
+/*
+ * StkEphemerisWriter.java
+ *
+ * STK .e ephemeris (EphemerisTimePosVel, J2000) - readable by StkEphemerisReader
+ * and by STK itself. Times are seconds from the ScenarioEpoch (UTC).
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class StkEphemerisWriter extends EphemerisWriter
+{
+    private static final String NUM_POINTS_KEY = "NumberOfEphemerisPoints ";
+    private static final int NUM_POINTS_WIDTH = 12; // room to patch in the count when done
+
+    private long numPointsPosition; // file position of the count
+
+    public String getFileExtension()
+    {
+        return ".e";
+    }
+
+    /**
+     * @param julDate UTC Julian Date
+     * @return STK formatted date, e.g. "1 Jul 2007 12:00:00.000"
+     */
+    public static String formatScenarioEpoch(double julDate)
+    {
+        SimpleDateFormat df = new SimpleDateFormat("d MMM yyyy HH:mm:ss.SSS", Locale.US);
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long ms = Math.round((julDate - 2440587.5) * 86400000.0); // JD of 1 Jan 1970
+        return df.format(new Date(ms));
+    }
+
+    protected void writeHeader(String satName, double startJulDate, double stepSec) throws IOException
+    {
+        line.append("stk.v.4.3");
+        writeLine();
+        line.append("# Satellite: ").append(satName.trim()).append(" - exported by JSatTrak");
+        writeLine();
+        line.append("BEGIN Ephemeris");
+        writeLine();
+
+        numPointsPosition = position() + NUM_POINTS_KEY.length();
+        line.append(NUM_POINTS_KEY);
+        for(int i = 0; i < NUM_POINTS_WIDTH; i++)
+        {
+            line.append(' ');
+        }
+        writeLine();
+
+        line.append("ScenarioEpoch ").append(formatScenarioEpoch(startJulDate));
+        writeLine();
+        line.append("InterpolationMethod Lagrange");
+        writeLine();
+        line.append("InterpolationOrder 5");
+        writeLine();
+        line.append("CentralBody Earth");
+        writeLine();
+        line.append("CoordinateSystem J2000");
+        writeLine();
+        line.append("EphemerisTimePosVel");
+        writeLine();
+        writeLine(); // blank line
+    } // writeHeader
+
+    protected void writePoint(double julDate, double secondsFromStart, double[] state) throws IOException
+    {
+        // single spaces - StkEphemerisReader splits on " "
+        line.append(secondsFromStart);
+        for(int i = 0; i < 6; i++)
+        {
+            line.append(' ').append(state[i]);
+        }
+        writeLine();
+    }
+
+    protected void writeFooter(int numPoints) throws IOException
+    {
+        writeLine(); // blank line
+        line.append("END Ephemeris");
+        writeLine();
+
+        String count = Integer.toString(numPoints);
+        writeAt(numPointsPosition, count);
+    }
+
+} // StkEphemerisWriter
@@ -0,0 +1,127 @@
+/*
+ * TemeJ2kRotation.java
+ *
+ * TEME of date -> J2000 rotation matrix with optional linear interpolation
+ * between nodes. The full precession/nutation evaluation (teme_j2k) costs about
+ * as much as an SGP4 propagation, but the matrix changes by less than 1e-7 rad
+ * per hour, so evaluating it every few minutes and interpolating the elements
+ * in between is accurate to well under a millimeter for Earth orbits.
+ *
+ * Not thread safe - one instance per worker.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.ephemeris;
+
+import name.gano.astro.AstroConst;
+import name.gano.astro.coordinates.J2kCoordinateConversion;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class TemeJ2kRotation
+{
+    private final double nodeSpacingDays; // <= 0 means evaluate exactly every time
+
+    // bracketing nodes
+    private double jd0 = Double.NaN;
+    private double jd1 = Double.NaN;
+    private double[][] m0;
+    private double[][] m1;
+
+    // output (reused)
+    private final double[][] m = new double[3][3];
+
+    /**
+     * @param nodeSpacingSec spacing between exact evaluations in seconds (0 = exact at every call)
+     */
+    public TemeJ2kRotation(double nodeSpacingSec)
+    {
+        this.nodeSpacingDays = nodeSpacingSec / 86400.0;
+    }
+
+    /**
+     * Exact TEME to J2000 matrix (same call used by SatelliteTleSGP4)
+     * @param julDate UTC Julian date
+     * @return rotation matrix
+     */
+    public static double[][] exactMatrix(double julDate)
+    {
+        double mjd = julDate - AstroConst.JDminusMJD;
+        double ttt = (mjd - AstroConst.MJD_J2000) / 36525.0;
+        return J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.to, ttt, 24, 2, 'a');
+    }
+
+    /**
+     * @param julDate UTC Julian date
+     * @return rotation matrix TEME to J2000 (the returned array is reused by the next call)
+     */
+    public double[][] getMatrix(double julDate)
+    {
+        if(nodeSpacingDays <= 0)
+        {
+            double[][] a = exactMatrix(julDate);
+            for(int i = 0; i < 3; i++)
+            {
+                System.arraycopy(a[i], 0, m[i], 0, 3);
+            }
+            return m;
+        }
+
+        if(!(julDate >= jd0 && julDate <= jd1)) // also true for NaN (first call)
+        {
+            double node = Math.floor(julDate / nodeSpacingDays) * nodeSpacingDays;
+            if(node == jd1)
+            {
+                // walking forward, reuse last node
+                jd0 = jd1;
+                m0 = m1;
+            }
+            else
+            {
+                jd0 = node;
+                m0 = exactMatrix(jd0);
+            }
+            jd1 = jd0 + nodeSpacingDays;
+            m1 = exactMatrix(jd1);
+        }
+
+        double f = (julDate - jd0) / (jd1 - jd0);
+        for(int i = 0; i < 3; i++)
+        {
+            for(int j = 0; j < 3; j++)
+            {
+                m[i][j] = m0[i][j] + f * (m1[i][j] - m0[i][j]);
+            }
+        }
+        return m;
+    } // getMatrix
+
+    /**
+     * out = mat * in (in and out may not be the same array)
+     */
+    public static void rotate(double[][] mat, double x, double y, double z, double[] out, int offset)
+    {
+        out[offset]     = mat[0][0] * x + mat[0][1] * y + mat[0][2] * z;
+        out[offset + 1] = mat[1][0] * x + mat[1][1] * y + mat[1][2] * z;
+        out[offset + 2] = mat[2][0] * x + mat[2][1] * y + mat[2][2] * z;
+    }
+
+} // TemeJ2kRotation
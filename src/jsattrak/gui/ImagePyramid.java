@@ -0,0 +1,395 @@
+/*
+ * ImagePyramid.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Mip map pyramid of a (large) map image used to scale the 2D background and
+ * Earth lights images: level 0 is the full resolution image, each level above
+ * is half the size of the one below. Levels above 0 are made of square tiles
+ * (box filtered down from the full resolution image when first needed) kept
+ * in an LRU cache shared by all pyramids and limited to a number of pixels.
+ * A view of part of the image is composed from only the tiles in view at the
+ * nearest level with at least the resolution needed, instead of scaling down
+ * the whole full resolution image each time.
+ *
+ */
+
+package jsattrak.gui;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class ImagePyramid
+{
+    public static final int TILE_SIZE = 256; // pixels on a side of a tile
+
+    // --- tile cache shared by all the pyramids ---
+    private static long maxCachedPixels = 16L * 1024 * 1024; // 64 MB of int pixels
+    private static long cachedPixels = 0;
+    private static int nextPyramidId = 0;
+    private static final LinkedHashMap<TileKey,BufferedImage> tileCache = new LinkedHashMap<TileKey,BufferedImage>(64, 0.75f, true); // access order
+    private static long tileHits = 0, tileMisses = 0;
+
+    // key of a tile in the cache (the pyramid id instead of the pyramid so the cache doesn't keep old images)
+    private static class TileKey
+    {
+        final int pyramid, level, tx, ty;
+
+        TileKey(int pyramid, int level, int tx, int ty)
+        {
+            this.pyramid = pyramid;
+            this.level = level;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof TileKey))
+            {
+                return false;
+            }
+            TileKey k = (TileKey)o;
+            return pyramid == k.pyramid && level == k.level && tx == k.tx && ty == k.ty;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ((pyramid * 31 + level) * 8191 + tx) * 8191 + ty;
+        }
+    } // TileKey
+
+    private final int id;
+    private final BufferedImage source; // level 0
+    private final int numLevels;
+    private final int tileType; // image type of the tiles
+
+    /**
+     * @param source full resolution image (not to be changed afterwards)
+     */
+    public ImagePyramid(BufferedImage source)
+    {
+        this.source = source;
+        synchronized(tileCache)
+        {
+            id = nextPyramidId++;
+        }
+
+        // levels until the whole image fits in a tile
+        int levels = 1;
+        int w = source.getWidth(), h = source.getHeight();
+        while(w > TILE_SIZE || h > TILE_SIZE)
+        {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+            levels++;
+        }
+        numLevels = levels;
+
+        tileType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    } // constructor
+
+    /**
+     * Scales part of the full resolution image to a new image
+     * @param srcX upper left corner of the part of the full resolution image (pixels, can be fractional)
+     * @param srcY upper left corner of the part of the full resolution image (pixels, can be fractional)
+     * @param srcW width of the part of the full resolution image
+     * @param srcH height of the part of the full resolution image
+     * @param dstW width of the image to create
+     * @param dstH height of the image to create
+     * @param imageType type of the image to create (BufferedImage.TYPE_INT_RGB etc.)
+     * @param scalingOption Image.SCALE_FAST etc. (fast or replicate = nearest neighbor, otherwise bilinear)
+     * @return new image of the part of the image
+     */
+    public BufferedImage compose(double srcX, double srcY, double srcW, double srcH, int dstW, int dstH, int imageType, int scalingOption)
+    {
+        BufferedImage dst = new BufferedImage(dstW, dstH, imageType);
+        Graphics2D g2 = dst.createGraphics();
+        if(scalingOption == java.awt.Image.SCALE_FAST || scalingOption == java.awt.Image.SCALE_REPLICATE)
+        {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        }
+        else
+        {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+
+        int level = getLevel(srcW / dstW, srcH / dstH);
+        if(level == 0)
+        {
+            // scaling up or only a little down, straight from the full resolution image
+            double scaleX = dstW / srcW, scaleY = dstH / srcH;
+            g2.drawImage(source, new AffineTransform(scaleX, 0, 0, scaleY, -srcX * scaleX, -srcY * scaleY), null);
+        }
+        else
+        {
+            // part of the image at this level
+            double s = 1 << level;
+            double lx = srcX / s, ly = srcY / s;
+            double scaleX = dstW * s / srcW, scaleY = dstH * s / srcH;
+
+            int[] size = getLevelSize(level);
+            int tx0 = Math.max(0, (int)Math.floor(lx / TILE_SIZE));
+            int ty0 = Math.max(0, (int)Math.floor(ly / TILE_SIZE));
+            int tx1 = Math.min((size[0] - 1) / TILE_SIZE, (int)Math.floor((srcX + srcW) / s / TILE_SIZE));
+            int ty1 = Math.min((size[1] - 1) / TILE_SIZE, (int)Math.floor((srcY + srcH) / s / TILE_SIZE));
+            for(int ty = ty0; ty <= ty1; ty++)
+            {
+                for(int tx = tx0; tx <= tx1; tx++)
+                {
+                    AffineTransform at = new AffineTransform(scaleX, 0, 0, scaleY, (tx * TILE_SIZE - lx) * scaleX, (ty * TILE_SIZE - ly) * scaleY);
+                    g2.drawImage(getTile(level, tx, ty), at, null);
+                }
+            }
+        }
+        g2.dispose();
+
+        return dst;
+    } // compose
+
+    /**
+     * Level to scale down from: the smallest image still at least as detailed as needed
+     * @param scaleX full resolution pixels per pixel of the scaled image in x
+     * @param scaleY full resolution pixels per pixel of the scaled image in y
+     * @return level (0 = full resolution)
+     */
+    public int getLevel(double scaleX, double scaleY)
+    {
+        double scale = Math.min(scaleX, scaleY);
+        int level = 0;
+        while(level + 1 < numLevels && (1 << (level + 1)) <= scale)
+        {
+            level++;
+        }
+        return level;
+    } // getLevel
+
+    /**
+     * @param level pyramid level
+     * @return {width, height} of the image at that level
+     */
+    public int[] getLevelSize(int level)
+    {
+        int w = source.getWidth(), h = source.getHeight();
+        for(int k = 0; k < level; k++)
+        {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+        }
+        return new int[] {w, h};
+    }
+
+    /**
+     * Tile of a level above 0 (from the cache, or made and added to the cache)
+     * @param level pyramid level (1 or more)
+     * @param tx tile column
+     * @param ty tile row
+     * @return tile image (last row/column of tiles can be smaller than TILE_SIZE)
+     */
+    public BufferedImage getTile(int level, int tx, int ty)
+    {
+        TileKey key = new TileKey(id, level, tx, ty);
+        synchronized(tileCache)
+        {
+            BufferedImage tile = tileCache.get(key);
+            if(tile != null)
+            {
+                tileHits++;
+                return tile;
+            }
+            tileMisses++;
+        }
+
+        // made outside the lock (two threads may both make the same tile, the result is the same)
+        BufferedImage tile = createTile(level, tx, ty);
+        synchronized(tileCache)
+        {
+            if(tileCache.put(key, tile) == null)
+            {
+                cachedPixels += (long)tile.getWidth() * tile.getHeight();
+            }
+            trimCache();
+        }
+        return tile;
+    } // getTile
+
+    // box filters the full resolution pixels of a tile down to the level (a band of rows at a time)
+    private BufferedImage createTile(int level, int tx, int ty)
+    {
+        int[] size = getLevelSize(level);
+        int x0 = tx * TILE_SIZE, y0 = ty * TILE_SIZE;
+        int w = Math.min(TILE_SIZE, size[0] - x0);
+        int h = Math.min(TILE_SIZE, size[1] - y0);
+
+        int f = 1 << level; // full resolution pixels on a side of a tile pixel
+        int srcX = x0 * f;
+        int srcW = Math.min(w * f, source.getWidth() - srcX);
+        boolean alpha = (tileType == BufferedImage.TYPE_INT_ARGB);
+
+        int[] band = new int[srcW * f];
+        int[] sumA = new int[w], sumR = new int[w], sumG = new int[w], sumB = new int[w], count = new int[w];
+        int[] out = new int[w * h];
+        for(int y = 0; y < h; y++)
+        {
+            int srcY = (y0 + y) * f;
+            int rows = Math.min(f, source.getHeight() - srcY);
+            source.getRGB(srcX, srcY, srcW, rows, band, 0, srcW);
+
+            Arrays.fill(sumA, 0);
+            Arrays.fill(sumR, 0);
+            Arrays.fill(sumG, 0);
+            Arrays.fill(sumB, 0);
+            Arrays.fill(count, 0);
+            for(int r = 0; r < rows; r++)
+            {
+                int i = r * srcW;
+                int end = i + srcW;
+                for(int x = 0; x < w; x++)
+                {
+                    int a = 0, red = 0, green = 0, blue = 0;
+                    int n = Math.min(f, end - i);
+                    for(int k = 0; k < n; k++, i++)
+                    {
+                        int argb = band[i];
+                        a += argb >>> 24;
+                        red += (argb >> 16) & 0xff;
+                        green += (argb >> 8) & 0xff;
+                        blue += argb & 0xff;
+                    }
+                    sumA[x] += a;
+                    sumR[x] += red;
+                    sumG[x] += green;
+                    sumB[x] += blue;
+                    count[x] += n;
+                }
+            }
+
+            for(int x = 0; x < w; x++)
+            {
+                int n = count[x];
+                int a = alpha ? (sumA[x] + n / 2) / n : 0xff;
+                out[y * w + x] = (a << 24) | (((sumR[x] + n / 2) / n) << 16) | (((sumG[x] + n / 2) / n) << 8) | ((sumB[x] + n / 2) / n);
+            }
+        } // for each row of the tile
+
+        BufferedImage tile = new BufferedImage(w, h, tileType);
+        tile.setRGB(0, 0, w, h, out, 0, w);
+        return tile;
+    } // createTile
+
+    // drops the least recently used tiles until the cache is within its size (call holding the lock)
+    private static void trimCache()
+    {
+        Iterator<Map.Entry<TileKey,BufferedImage>> it = tileCache.entrySet().iterator();
+        while(cachedPixels > maxCachedPixels && it.hasNext())
+        {
+            BufferedImage tile = it.next().getValue();
+            cachedPixels -= (long)tile.getWidth() * tile.getHeight();
+            it.remove();
+        }
+    } // trimCache
+
+    /**
+     * Removes the tiles of this pyramid from the cache (e.g. when the image is replaced)
+     */
+    public void dispose()
+    {
+        synchronized(tileCache)
+        {
+            Iterator<Map.Entry<TileKey,BufferedImage>> it = tileCache.entrySet().iterator();
+            while(it.hasNext())
+            {
+                Map.Entry<TileKey,BufferedImage> e = it.next();
+                if(e.getKey().pyramid == id)
+                {
+                    cachedPixels -= (long)e.getValue().getWidth() * e.getValue().getHeight();
+                    it.remove();
+                }
+            }
+        }
+    } // dispose
+
+    public BufferedImage getSource()
+    {
+        return source;
+    }
+
+    public int getNumLevels()
+    {
+        return numLevels;
+    }
+
+    /**
+     * @return maximum number of pixels of all the tiles kept in the cache
+     */
+    public static long getMaxCachedPixels()
+    {
+        synchronized(tileCache)
+        {
+            return maxCachedPixels;
+        }
+    }
+
+    /**
+     * @param pixels maximum number of pixels of all the tiles kept in the cache (4 bytes each)
+     */
+    public static void setMaxCachedPixels(long pixels)
+    {
+        synchronized(tileCache)
+        {
+            maxCachedPixels = Math.max(0, pixels);
+            trimCache();
+        }
+    }
+
+    /**
+     * @return number of pixels of all the tiles in the cache now
+     */
+    public static long getCachedPixels()
+    {
+        synchronized(tileCache)
+        {
+            return cachedPixels;
+        }
+    }
+
+    /**
+     * @return {tiles found in the cache, tiles that had to be made}
+     */
+    public static long[] getCacheStatistics()
+    {
+        synchronized(tileCache)
+        {
+            return new long[] {tileHits, tileMisses};
+        }
+    }
+
+} // ImagePyramid
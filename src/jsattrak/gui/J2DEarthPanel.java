@@ -36,6 +36,7 @@ import java.util.Hashtable;
 import java.util.Vector;
 import jsattrak.coverage.JSatTrakRenderable;
 import jsattrak.objects.AbstractSatellite;
+import jsattrak.utilities.LandMassRegion;
 import jsattrak.utilities.LandMassRegions;
 import name.gano.astro.bodies.Sun;
 import name.gano.astro.time.Time;
@@ -93,6 +94,8 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
     // Earth Lights Mask data
     private transient BufferedImage earthLightsFullRes; // full res image stored
     private transient BufferedImage earthLightsCurrentMask; // current mask of earth lights
+    private transient ImagePyramid backgroundPyramid; // scales bimage (tiles cached)
+    private transient ImagePyramid earthLightsPyramid; // scales earthLightsFullRes (tiles cached)
     private String earthLightsMaskImagePath = "/images/earth_lights_lrg.jpg"; //saves path to earth lights image in JAR
     
     // bean -- no inputs
@@ -319,7 +322,7 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         
     }
     
-    public void drawFuzzyLine(Graphics2D g2, Shape path, int thickness)
+    public static void drawFuzzyLine(Graphics2D g2, Shape path, int thickness)
     {
         //float minThreshehold = 0.05f; // smallest color value visible
         
@@ -355,22 +358,18 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
 //        //g.setComposite(AlphaComposite.Src);
 //        g.drawImage(image, null, 0, 0);
 //        g.dispose();
+        // a row at a time (getRGB/setRGB and a new Color for each pixel was very slow)
+        int width = dimg.getWidth();
+        int[] row = new int[width];
         for(int i = 0; i < dimg.getHeight(); i++)
         {
-            for(int j = 0; j < dimg.getWidth(); j++)
+            dimg.getRGB(0, i, width, 1, row, 0, width);
+            for(int j = 0; j < width; j++)
             {
-                
-                int blue = dimg.getRGB(j, i) & 0x000000FF; // current blue value (should be same as other channels)
-               
-                    Color c = new Color(blue,blue,blue,blue); // 255-blue
-                    dimg.setRGB(j, i, c.getRGB());    
-
-//              int a2 = (dimg.getRGB(j, i) >> 24) & 0xff;
-//		int r2 = (dimg.getRGB(j, i) >> 16) & 0xff;
-//		int gr2 = (dimg.getRGB(j, i) >> 8) & 0xff;
-//		int b2 = (dimg.getRGB(j, i) ) & 0xff;
-                
+                int blue = row[j] & 0x000000FF; // current blue value (should be same as other channels)
+                row[j] = (blue << 24) | (blue << 16) | (blue << 8) | blue; // Color(blue,blue,blue,blue)
             }
+            dimg.setRGB(0, i, width, 1, row, 0, width);
         }
         //return dimg;
     } // makeBlueChannelAlphaValue
@@ -384,72 +383,88 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
        // this better be true if called
        if(this.isShowEarthLightsMask()) // need to scale Earth Lights mask 
        {
-           // copy earthLightsCurrentMask so mask isn't applied over and over
-           BufferedImage earthLightsCurrentMaskTemp  = new BufferedImage(earthLightsCurrentMask.getWidth(), 
-                                                   earthLightsCurrentMask.getHeight(),
-                                                   BufferedImage.TYPE_INT_ARGB);
-           Graphics2D gg = earthLightsCurrentMaskTemp.createGraphics();
-           gg.drawImage(earthLightsCurrentMask, 0, 0, null);
-           gg.dispose();
-           
-            // --- create day/night mask ---
-            BufferedImage dayNightMask = new BufferedImage(earthLightsCurrentMask.getWidth(), 
-                                                   earthLightsCurrentMask.getHeight(),
-                                                   BufferedImage.TYPE_INT_ARGB);
-            Graphics2D maskG2D = dayNightMask.createGraphics();
-            maskG2D.setColor(new Color(255, 255, 255)); // white
-            // fill background with white
-            maskG2D.fillRect(0, 0, earthLightsCurrentMask.getWidth(), earthLightsCurrentMask.getHeight());
-            
-            // get the shape of the dark region
-            double[] lla = sun.getCurrentDarkLLA();
-            Polygon[] pgons = imageMap.getFootPrintPolygons(lla[0], lla[1], lla[2], imageMap.getNumPtsSunFootPrint());
-            
-            // draw lines around edges
-            int shadowThickness = (int)(imageMap.getZoomFactor()*earthLightsCurrentMask.getWidth()/20.0);// MAKE THIS SETABLE
-            for(Polygon p : pgons)
-            {
-                drawFuzzyLine(maskG2D, p, shadowThickness);
-            }
-            // fill in polygons with black
-            maskG2D.setColor(Color.BLACK);
-            for(Polygon p : pgons)
-            {
-                maskG2D.fill(p);
-            }
-            
-            // done with the 2d graphics object - clean it
-            maskG2D.dispose();
-            
-            // last step, now take black and white image and make alpha channel that matches black intensity
-            // had to do this because otherwise when drawing fuzzy line (over and over) tansparency adds up
-            makeBlueChannelAlphaValue(dayNightMask);
-            
-            // --- apply mask to night image ---  
-            Graphics2D topG2D = earthLightsCurrentMaskTemp.createGraphics();
-            AlphaComposite ac =
-                    AlphaComposite.getInstance(AlphaComposite.DST_OUT);
-            topG2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
-            topG2D.setComposite(ac);
-            topG2D.drawImage(dayNightMask, 0, 0, earthLightsCurrentMask.getWidth(), earthLightsCurrentMask.getHeight(), null);
-            topG2D.dispose();      
-            
-            // --- combine day/night images --- 
-            BufferedImage combinedImage = new BufferedImage(earthLightsCurrentMask.getWidth(), 
-                                                   earthLightsCurrentMask.getHeight(),
-                                                   BufferedImage.TYPE_INT_RGB);
-            Graphics2D g =  combinedImage.createGraphics();
-            g.drawImage(bimageScaled, 0, 0, null);
-            g.drawImage(earthLightsCurrentMaskTemp, 0, 0, null);
-            //g.drawImage(dayNightMask,0,0,null);
-            //g.drawImage(earthLightsCurrentMask,0,0,null); //earthLightsCurrentMask ,earthLightsFullRes
-            g.dispose();
+            BufferedImage combinedImage = combineEarthLights(bimageScaled, earthLightsCurrentMask, imageMap, sun.getCurrentDarkLLA());
             
             // --- set image icon --- 
             imageMap.setIcon(new ImageIcon(combinedImage));
        } // if show earth light mask
    } // updateEarthLightMaskAndRecombineImage
+   
+   /**
+    * Combines the scaled background image with the earth lights on the dark side of the Earth
+    * (doesn't change the images, so it can also be used off screen, e.g. for movie frames)
+    * @param dayImage scaled background image
+    * @param earthLightsMask earth lights image scaled the same way (with an alpha channel)
+    * @param earthLabel label the images are scaled for (zoom, center and image size)
+    * @param darkLLA center of the dark side of the Earth (Sun.getCurrentDarkLLA())
+    * @return combined image
+    */
+   public static BufferedImage combineEarthLights(BufferedImage dayImage, BufferedImage earthLightsMask, J2dEarthLabel2 earthLabel, double[] darkLLA)
+   {
+        // copy earthLightsMask so mask isn't applied over and over
+        BufferedImage earthLightsMaskTemp  = new BufferedImage(earthLightsMask.getWidth(), 
+                                                earthLightsMask.getHeight(),
+                                                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D gg = earthLightsMaskTemp.createGraphics();
+        gg.drawImage(earthLightsMask, 0, 0, null);
+        gg.dispose();
+        
+        // --- create day/night mask ---
+        BufferedImage dayNightMask = new BufferedImage(earthLightsMask.getWidth(), 
+                                                earthLightsMask.getHeight(),
+                                                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D maskG2D = dayNightMask.createGraphics();
+        maskG2D.setColor(new Color(255, 255, 255)); // white
+        // fill background with white
+        maskG2D.fillRect(0, 0, earthLightsMask.getWidth(), earthLightsMask.getHeight());
+         
+        // get the shape of the dark region
+        double[] lla = darkLLA;
+        Polygon[] pgons = earthLabel.getFootPrintPolygons(lla[0], lla[1], lla[2], earthLabel.getNumPtsSunFootPrint());
+         
+        // draw lines around edges
+        int shadowThickness = (int)(earthLabel.getZoomFactor()*earthLightsMask.getWidth()/20.0);// MAKE THIS SETABLE
+        for(Polygon p : pgons)
+        {
+             drawFuzzyLine(maskG2D, p, shadowThickness);
+        }
+        // fill in polygons with black
+        maskG2D.setColor(Color.BLACK);
+        for(Polygon p : pgons)
+        {
+             maskG2D.fill(p);
+        }
+         
+        // done with the 2d graphics object - clean it
+        maskG2D.dispose();
+         
+        // last step, now take black and white image and make alpha channel that matches black intensity
+        // had to do this because otherwise when drawing fuzzy line (over and over) tansparency adds up
+        makeBlueChannelAlphaValue(dayNightMask);
+         
+        // --- apply mask to night image ---  
+        Graphics2D topG2D = earthLightsMaskTemp.createGraphics();
+        AlphaComposite ac =
+                AlphaComposite.getInstance(AlphaComposite.DST_OUT);
+        topG2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        topG2D.setComposite(ac);
+        topG2D.drawImage(dayNightMask, 0, 0, earthLightsMask.getWidth(), earthLightsMask.getHeight(), null);
+        topG2D.dispose();      
+         
+        // --- combine day/night images --- 
+        BufferedImage combinedImage = new BufferedImage(earthLightsMask.getWidth(), 
+                                                earthLightsMask.getHeight(),
+                                                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g =  combinedImage.createGraphics();
+        g.drawImage(dayImage, 0, 0, null);
+        g.drawImage(earthLightsMaskTemp, 0, 0, null);
+        //g.drawImage(dayNightMask,0,0,null);
+        //g.drawImage(earthLightsMask,0,0,null); //earthLightsMask ,earthLightsFullRes
+        g.dispose();
+        
+        return combinedImage;
+   } // combineEarthLights
     
     public void rescaleAndSetBackgroundImage()
     {
@@ -476,6 +491,33 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         
     }
     
+    // mip map pyramid (with cached tiles) used to scale a full res image, made when first needed
+    private ImagePyramid getImagePyramid(BufferedImage fullResImage)
+    {
+        if(fullResImage == earthLightsFullRes)
+        {
+            if(earthLightsPyramid == null || earthLightsPyramid.getSource() != fullResImage)
+            {
+                if(earthLightsPyramid != null)
+                {
+                    earthLightsPyramid.dispose();
+                }
+                earthLightsPyramid = new ImagePyramid(fullResImage);
+            }
+            return earthLightsPyramid;
+        }
+        
+        if(backgroundPyramid == null || backgroundPyramid.getSource() != fullResImage)
+        {
+            if(backgroundPyramid != null)
+            {
+                backgroundPyramid.dispose(); // new map image
+            }
+            backgroundPyramid = new ImagePyramid(fullResImage);
+        }
+        return backgroundPyramid;
+    } // getImagePyramid
+    
     // overloaded - default to RGB image
     public BufferedImage scaleImageMap(BufferedImage fullResImage)
     {
@@ -584,8 +626,7 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
                 midYupLeft = (int)Math.round( (fullResImage.getHeight()-midHeight)/2.0 - fullResImage.getHeight()*imageMap.getCenterLat()/180.0);
             }
             
-            // get sub image that will be scaled to fit window
-            BufferedImage midImage = fullResImage.getSubimage(midXupLeft, midYupLeft, midWidth, midHeight);
+            // (sub image midXupLeft, midYupLeft, midWidth, midHeight of the full res image is scaled to fit window)
             
             
 //            // draw region outlines if required:
@@ -604,9 +645,7 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
             if(landMass.isShowLandMassOutlines())
             {
                 // get a scaled version of them image to workwith
-                Image scaledImage = midImage.getScaledInstance(newWidth,newHeight,imageScalingOption);
-                bim = new BufferedImage(newWidth, newHeight, imageType);
-                bim.createGraphics().drawImage(scaledImage, 0, 0, null);
+                bim = getImagePyramid(fullResImage).compose(midXupLeft, midYupLeft, midWidth, midHeight, newWidth, newHeight, imageType, imageScalingOption);
                 
                 Graphics2D g2 = (Graphics2D)bim.getGraphics();
                 drawLandMasses(g2, newWidth, newHeight);
@@ -616,10 +655,8 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
             }
             else // no land mass drawing
             {
-                // is this slow?
-                Image scaledImage = midImage.getScaledInstance(newWidth,newHeight,imageScalingOption);
-                bim = new BufferedImage(newWidth, newHeight, imageType);
-                bim.createGraphics().drawImage(scaledImage, 0, 0, null);
+                // scaled from the tiles in view of the nearest pyramid level (not the whole full res image)
+                bim = getImagePyramid(fullResImage).compose(midXupLeft, midYupLeft, midWidth, midHeight, newWidth, newHeight, imageType, imageScalingOption);
                 
                 // just resize buffered image and get going
                 //im = new ImageIcon(bim);
@@ -1066,30 +1103,42 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         //System.out.println("drawing land masses");
         
         // --- land mass -------------------
-        if(landMass.isShowLandMassOutlines())
+        if(landMass.isShowLandMassOutlines() && landMass.getRegions() != null)
         {
             g2.setPaint(landMass.getLandOutlineColor());
             
+            // part of the world in view (regions outside it are skipped)
+            double[] upperLeftLL = imageMap.findLLfromXY(0, 0, width, height, width, height);
+            double[] lowerRightLL = imageMap.findLLfromXY(width, height, width, height, width, height);
+            double minLat = Math.min(upperLeftLL[0], lowerRightLL[0]);
+            double maxLat = Math.max(upperLeftLL[0], lowerRightLL[0]);
+            double minLon = Math.min(upperLeftLL[1], lowerRightLL[1]);
+            double maxLon = Math.max(upperLeftLL[1], lowerRightLL[1]);
+            
+            // fewer points when zoomed out (simplified by less than a pixel)
+            int level = landMass.getLevelOfDetail(360.0/imageMap.getZoomFactor()/width);
+            
             // drawing disconnects across international date line not accounted for
-            for(String key : landMass.getLandMassHash().keySet())
+            for(LandMassRegion region : landMass.getRegions())
             {
-                Vector<float[]> vec = landMass.getLandMassVector(key);
+                if(!region.intersects(minLat, maxLat, minLon, maxLon))
+                {
+                    continue; // out of view
+                }
+                
+                float[] ll = region.getPoints(level); // lat,lon,lat,lon,...
+                int numPts = ll.length/2;
                 
-                if( vec.size() > 0 )
+                if( numPts > 0 )
                 {
                     
-                    //System.out.println("here");
+                    int[] lastXY = imageMap.findXYfromLL(ll[0], ll[1], width, height, width, height);
                     
-                    float[] lastLL = vec.elementAt(0);
-                    //int[] lastXY = imageMap.findXYfromLL(lastLL[0], lastLL[1], w, h, imageWidth, imageHeight);
-                    int[] lastXY = imageMap.findXYfromLL(lastLL[0], lastLL[1], width, height, width, height);
-                    
-                    float[] currLL;
                     int[] currXY;
                     
                     // speed increase
-                    int[] xPts = new int[vec.size() + 1];
-                    int[] yPts = new int[vec.size() + 1];
+                    int[] xPts = new int[numPts + 1];
+                    int[] yPts = new int[numPts + 1];
                     int ptsCount = 0; // points to draw stored up (reset when discontinutiy is hit)
                     // first point
                     xPts[ptsCount] = lastXY[0];
@@ -1097,15 +1146,10 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
                     ptsCount++;
                     
                     
-                    for(int i=1;i<vec.size();i+=indexSpacing)
+                    for(int i=1;i<numPts;i+=indexSpacing)
                     {
-                        currLL = vec.elementAt(i);
-                        //currXY = imageMap.findXYfromLL(currLL[0], currLL[1], w, h, imageWidth, imageHeight);
-                        currXY = imageMap.findXYfromLL(currLL[0], currLL[1], width, height, width, height);
+                        currXY = imageMap.findXYfromLL(ll[2*i], ll[2*i+1], width, height, width, height);
                         
-                        // slow drawing
-                        //g2.drawLine(lastXY[0],lastXY[1],currXY[0],currXY[1]);
-                        // new way
                         xPts[ptsCount] = currXY[0];
                         yPts[ptsCount] = currXY[1];
                         ptsCount++;
@@ -1116,8 +1160,7 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
                     }
                     
                     // first position
-                    currLL = vec.elementAt(0);
-                    currXY = imageMap.findXYfromLL(currLL[0], currLL[1], width, height, width, height);
+                    currXY = new int[] {xPts[0], yPts[0]};
                     
                     // only draw end point connection if not too far away
                     if(Math.sqrt( Math.pow(currXY[0] - lastXY[0],2)+Math.pow(currXY[1] - lastXY[1],2)) > 15)
@@ -1127,9 +1170,6 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
                     else
                     {
                         // connect back to first
-                        // old way
-                        //g2.drawLine(lastXY[0],lastXY[1],currXY[0],currXY[1]);
-                        // new way
                         xPts[ptsCount] = currXY[0];
                         yPts[ptsCount] = currXY[1];
                         ptsCount++;
@@ -1407,6 +1447,22 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         return imageMap;
     }
     
+    /**
+     * @return background image scaled to the current view (with land mass outlines, without earth lights)
+     */
+    public BufferedImage getScaledBackgroundImage()
+    {
+        return bimageScaled;
+    }
+    
+    /**
+     * @return earth lights image scaled to the current view, null if the earth lights aren't shown
+     */
+    public BufferedImage getScaledEarthLightsMask()
+    {
+        return isShowEarthLightsMask() ? earthLightsCurrentMask : null;
+    }
+    
     
     /**
      * Performs an offscreen rendering of panel, works best when used with "getNonDisplayed2DEarthPanel()" function in JSatTrak class
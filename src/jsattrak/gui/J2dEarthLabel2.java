@@ -31,6 +31,8 @@ import java.util.Vector;
 import javax.swing.*;
 import jsattrak.coverage.JSatTrakRenderable;
 import jsattrak.objects.AbstractSatellite;
+import jsattrak.utilities.SnapshotInterpolator;
+import jsattrak.utilities.TickMetrics;
 import name.gano.astro.AstroConst;
 import name.gano.astro.GeoFunctions;
 import name.gano.astro.bodies.Sun;
@@ -141,9 +143,26 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
     {
          this.satHash = satHash;
     }
+
+    public void setGsHashTable(Hashtable<String,GroundStation> gsHash)
+    {
+         this.gsHash = gsHash;
+    }
+
+    public void setCurrentTime(Time currentTime)
+    {
+         this.currentTime = currentTime;
+    }
+
+    public void setSun(Sun sun)
+    {
+         this.sun = sun;
+    }
     
     public void paintComponent(Graphics g)
     {
+        long t0 = TickMetrics.start();
+        
         // paint the "Earth Lights" where the earth is in shadow - if effect is choosen
         // use Scaling Options from J2DEarthPath
         if(showEarthLightsMask)
@@ -162,6 +181,7 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         
         finishPainting(g); // for profiling (otherwise move method back to this point
         
+        TickMetrics.stop(TickMetrics.PAINT_2D, t0);
     } //paintComponent
     
     // method to do all the painting so profiler accounts for it correctly
@@ -170,10 +190,21 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
     // also replace use of polygon... to drawPolygon(int[] xPoints, int[] yPoints, int nPoints) and fillpolygon(int[]...) ... so they share the same data
     private void finishPainting(Graphics g)
     {
-        Graphics2D g2 = (Graphics2D)g; // cast to a @D graphics object
         Dimension dim = getSize();
-        int w = dim.width;
-        int h = dim.height;
+        paintMap(g, dim.width, dim.height);
+    } // finish painting
+    
+    /**
+     * Draws everything on top of the background image (renderables, sun, lat/long lines, ground stations,
+     * ground tracks, satellites, footprints, date) for a label of the given size, e.g. into an off screen image
+     * (uses the zoom, center and image size of this label)
+     * @param g graphics to draw on
+     * @param w total width of the label
+     * @param h total height of the label
+     */
+    public void paintMap(Graphics g, int w, int h)
+    {
+        Graphics2D g2 = (Graphics2D)g; // cast to a @D graphics object
         
         // save last width/height
         lastTotalWidth = w;
@@ -523,6 +554,10 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
             }
         } // ground tracks
         
+        // positions between time steps in real time interpolation mode (null otherwise)
+        SnapshotInterpolator interpolator = getActiveInterpolator();
+        double[] interpLla = new double[3];
+        
         // draw current positions
         for(AbstractSatellite sat : satHash.values() ) // search through all sat nodes
         {
@@ -534,6 +569,11 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
                 
                 double lat = sat.getLatitude();
                 double lon = sat.getLongitude();
+                if(interpolator != null && interpolator.getLLA(sat.getName(), interpLla))
+                {
+                    lat = interpLla[0];
+                    lon = interpLla[1];
+                }
                 
                 //System.out.println("Lat/Lon =" + lat*180.0/Math.PI + "/" + lon*180.0/Math.PI);
                 
@@ -564,6 +604,12 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
                 double lat =  sat.getLatitude();
                 double lon = sat.getLongitude();
                 double alt =  sat.getAltitude();
+                if(interpolator != null && interpolator.getLLA(sat.getName(), interpLla))
+                {
+                    lat = interpLla[0];
+                    lon = interpLla[1];
+                    alt = interpLla[2];
+                }
                 
                 // draw the foot print
                 drawFootPrint(g2, lat, lon, alt, sat.isFillFootPrint(), sat.getSatColor(), sat.getSatColor(), 0.2f, sat.getNumPtsFootPrint() ); // draw footprint
@@ -578,17 +624,17 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
             g2.setPaint( backgroundColor ); // set paint color like background
             
             // we need to overpaint excess lines drawn outside map area
-            if(getWidth() / getHeight() > aspectRatio)
+            if(w / h > aspectRatio)
             {                
                 // draw in ends
-                g2.fillRect(0,0,(int)((getWidth()-imageWidth)/2.0),getHeight());
-                g2.fillRect((int)((getWidth()-imageWidth)/2.0 + imageWidth),0,(int)((getWidth()-imageWidth)/2.0),getHeight());
+                g2.fillRect(0,0,(int)((w-imageWidth)/2.0),h);
+                g2.fillRect((int)((w-imageWidth)/2.0 + imageWidth),0,(int)((w-imageWidth)/2.0),h);
             }
             else
             {
                 // draw on top/bottom
-                g2.fillRect(0,0,getWidth(),(int)((getHeight()-imageHeight)/2.0));
-                g2.fillRect(0,(int)((getHeight()-imageHeight)/2.0+imageHeight),getWidth(),(int)((getHeight()-imageHeight)/2.0));
+                g2.fillRect(0,0,w,(int)((h-imageHeight)/2.0));
+                g2.fillRect(0,(int)((h-imageHeight)/2.0+imageHeight),w,(int)((h-imageHeight)/2.0));
             }
             
         } // zoom factor>1
@@ -599,7 +645,8 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         {
             //xDateTimeOffset;
             g2.setPaint( dateTimeColor );
-            g2.drawString( currentTime.getDateTimeStr() ,(int)((getWidth()-imageWidth)/2.0)+xDateTimeOffset,(int)((getHeight()-imageHeight)/2.0+imageHeight-yDateTimeOffset));
+            String dateTimeStr = (interpolator != null) ? currentTime.convertJD2String(interpolator.getRenderJulianDate()) : currentTime.getDateTimeStr();
+            g2.drawString( dateTimeStr ,(int)((w-imageWidth)/2.0)+xDateTimeOffset,(int)((h-imageHeight)/2.0+imageHeight-yDateTimeOffset));
             
         } // show time and date
         
@@ -607,9 +654,20 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         if(showFPS)
         {
             g2.setPaint( dateTimeColor );
-            g2.drawString( "FPS: " +  df.format(earthPanel.getApp().getFpsAnimation()),(int)(getWidth()-75),(int)((getHeight()-imageHeight)/2.0+imageHeight-yDateTimeOffset));
+            g2.drawString( "FPS: " +  df.format(earthPanel.getApp().getFpsAnimation()),(int)(w-75),(int)((h-imageHeight)/2.0+imageHeight-yDateTimeOffset));
         }
-    } // finish painting
+    } // paintMap
+    
+    // interpolator of the app if real time interpolation mode is running, otherwise null
+    private SnapshotInterpolator getActiveInterpolator()
+    {
+        if(earthPanel == null || earthPanel.getApp() == null)
+        {
+            return null;
+        }
+        SnapshotInterpolator interpolator = earthPanel.getApp().getStateInterpolator();
+        return interpolator.isActive() ? interpolator : null;
+    }
     
     // function to find the Linearly interpolated latitude at long = +/- 180
     // this is used to correct discontinutities in the plots
@@ -1781,6 +1839,34 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         this.sunAlpha = sunAlpha;
     }
     
+    /**
+     * Copies the view (zoom, center, image size) and the drawing options (date/time, lat/long lines, sun)
+     * of another label, e.g. to draw the same map off screen (not the renderable objects)
+     * @param label label to copy from
+     */
+    public void copySettings(J2dEarthLabel2 label)
+    {
+        aspectRatio = label.aspectRatio;
+        imageWidth = label.imageWidth;
+        imageHeight = label.imageHeight;
+        centerLat = label.centerLat;
+        centerLong = label.centerLong;
+        zoomFactor = label.zoomFactor;
+        zoomIncrementMultiplier = label.zoomIncrementMultiplier;
+
+        showDateTime = label.showDateTime;
+        xDateTimeOffset = label.xDateTimeOffset;
+        yDateTimeOffset = label.yDateTimeOffset;
+        dateTimeColor = label.dateTimeColor;
+        showLatLong = label.showLatLong;
+        backgroundColor = label.backgroundColor;
+
+        drawSun = label.drawSun;
+        sunColor = label.sunColor;
+        numPtsSunFootPrint = label.numPtsSunFootPrint;
+        sunAlpha = label.sunAlpha;
+    } // copySettings
+
     public void addRenderableObject(JSatTrakRenderable renderable)
     {
         renderableObjects.add(renderable);
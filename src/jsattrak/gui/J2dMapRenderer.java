@@ -0,0 +1,522 @@
+/*
+ * J2dMapRenderer.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Renders the 2D map (background, ground tracks, footprints, ground stations,
+ * sun and coverage) of the current time into images without a window, using
+ * the drawing of J2dEarthLabel2 (an off screen label for each thread, so
+ * several images can be rendered at once on different threads). What is drawn
+ * of the satellites (J2dSatelliteCopy), ground stations and time is copied
+ * holding the app's state lock (once per time step, shared by the threads) and
+ * the images are drawn from the copy without the lock, so drawing doesn't hold
+ * up the app's time steps. The
+ * renderer can also be given the satellites, ground stations and time directly
+ * instead of the app (e.g. in a script without the GUI).
+ *
+ * Map tiles use the equirectangular (plate carree) tiling: at zoom level z the
+ * world is 2^(z+1) tiles wide and 2^z tiles high, tile (0,0) is at the upper
+ * left (longitude -180, latitude 90) and each tile is TILE_SIZE pixels square.
+ *
+ */
+
+package jsattrak.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import javax.imageio.ImageIO;
+import jsattrak.coverage.CoverageAnalyzer;
+import jsattrak.coverage.JSatTrakRenderable;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.GroundStation;
+import name.gano.astro.bodies.Sun;
+import name.gano.astro.time.Time;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class J2dMapRenderer
+{
+    public static final int TILE_SIZE = 256; // pixels on a side of a map tile
+    public static final int MAX_ZOOM = 12; // highest tile zoom level
+    private static final long MAX_STATE_AGE_NANOS = 1000000000L; // copy at least once a second (options may change without a time step)
+
+    private final JSatTrak app; // null if the objects below are used
+    private final Hashtable<String,AbstractSatellite> satHash;
+    private final Hashtable<String,GroundStation> gsHash;
+    private final Time currentTime;
+    private final Sun sun;
+    private final ReadWriteLock stateLock;
+    private volatile CoverageAnalyzer coverageAnalyzer; // without an app, can be null
+    
+    private final ImagePyramid background; // background map image (tiles cached)
+
+    // copy of the state being drawn (made under copyLock, then not changed)
+    private final Object copyLock = new Object();
+    private volatile MapState state;
+
+    // off screen label, time and sun of each drawing thread
+    private final ThreadLocal<Painter> painters = new ThreadLocal<Painter>();
+
+    // drawing options
+    private volatile Color backgroundColor = new Color(236,233,216); // same default as J2DEarthPanel
+    private volatile boolean showLatLong = true;
+    private volatile boolean drawSun = true;
+    private volatile boolean showCoverage = true; // if the coverage tool has been set up
+    private volatile int imageScalingOption = BufferedImage.SCALE_SMOOTH;
+
+    /**
+     * Renderer using the default background map image
+     * @param app app with the satellites, ground stations and time
+     */
+    public J2dMapRenderer(JSatTrak app) throws IOException
+    {
+        this(app, "/images/Earth_PE_small.jpg");
+    }
+
+    /**
+     * @param app app with the satellites, ground stations and time
+     * @param backgroundImagePath background map image (in the JAR or a file, same as J2DEarthPanel.setTwoDMap)
+     * @throws IOException if the image can't be read
+     */
+    public J2dMapRenderer(JSatTrak app, String backgroundImagePath) throws IOException
+    {
+        this(app, null, null, null, null, null, backgroundImagePath);
+    }
+
+    /**
+     * Renderer of the given objects (instead of an app)
+     * @param satHash satellites
+     * @param gsHash ground stations
+     * @param currentTime time the satellites are at
+     * @param sun sun (at the current time)
+     * @param stateLock held (read) while drawing, whoever changes the time or propagates the satellites should hold it (write)
+     * @param backgroundImagePath background map image (in the JAR or a file)
+     * @throws IOException if the image can't be read
+     */
+    public J2dMapRenderer(Hashtable<String,AbstractSatellite> satHash, Hashtable<String,GroundStation> gsHash, Time currentTime, Sun sun, ReadWriteLock stateLock, String backgroundImagePath) throws IOException
+    {
+        this(null, satHash, gsHash, currentTime, sun, stateLock, backgroundImagePath);
+    }
+
+    private J2dMapRenderer(JSatTrak app, Hashtable<String,AbstractSatellite> satHash, Hashtable<String,GroundStation> gsHash, Time currentTime, Sun sun, ReadWriteLock stateLock, String backgroundImagePath) throws IOException
+    {
+        this.app = app;
+        this.satHash = satHash;
+        this.gsHash = gsHash;
+        this.currentTime = currentTime;
+        this.sun = sun;
+        this.stateLock = stateLock;
+
+        BufferedImage image;
+        URL imgURL = J2dMapRenderer.class.getResource(backgroundImagePath);
+        if(imgURL != null)
+        {
+            image = ImageIO.read(imgURL); // first check in the JAR
+        }
+        else
+        {
+            image = ImageIO.read(new File(backgroundImagePath)); // file system
+        }
+        if(image == null)
+        {
+            throw new IOException("Couldn't read 2d pixmap file: " + backgroundImagePath);
+        }
+        background = new ImagePyramid(image);
+    } // constructor
+
+    /**
+     * Renders a map tile at the current time
+     * @param z zoom level (0 - MAX_ZOOM)
+     * @param x tile column (0 - 2^(z+1)-1, from longitude -180)
+     * @param y tile row (0 - 2^z-1, from latitude 90)
+     * @return TILE_SIZE square image
+     */
+    public BufferedImage renderTile(int z, int x, int y)
+    {
+        if(!isValidTile(z, x, y))
+        {
+            throw new IllegalArgumentException("No map tile " + z + "/" + x + "/" + y);
+        }
+
+        // the label draws an image twice as wide as high, the tile is the middle half of it
+        double tileSpan = 180.0 / (1 << z); // degrees on a side of the tile
+        double centerLong = -180.0 + (x + 0.5) * tileSpan;
+        double centerLat = 90.0 - (y + 0.5) * tileSpan;
+        return render(TILE_SIZE, TILE_SIZE, 2 * TILE_SIZE, TILE_SIZE, 1 << z, centerLat, centerLong, true);
+    } // renderTile
+
+    /**
+     * Renders the whole world at the current time (like a 2D window zoomed out)
+     * @param width image width (the height is half of it)
+     * @return image
+     */
+    public BufferedImage renderMap(int width)
+    {
+        int height = Math.max(1, width / 2);
+        return render(width, height, width, height, 1.0, 0.0, 0.0, false);
+    }
+
+    /**
+     * @return true if the tile is in the world and zoom levels
+     */
+    public static boolean isValidTile(int z, int x, int y)
+    {
+        return z >= 0 && z <= MAX_ZOOM && x >= 0 && x < (2 << z) && y >= 0 && y < (1 << z);
+    }
+
+    // background part in view plus everything the label draws over it
+    private BufferedImage render(int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFactor, double centerLat, double centerLong, boolean tile)
+    {
+        // part of the background image in view (label x,y are linear in lon,lat, see J2dEarthLabel2.findXYfromLL)
+        double lonSpan = 360.0 / zoomFactor * totWidth / imgWidth;
+        double latSpan = 180.0 / zoomFactor * totHeight / imgHeight;
+        int fullWidth = background.getSource().getWidth();
+        int fullHeight = background.getSource().getHeight();
+        double srcX = (centerLong - lonSpan / 2.0 + 180.0) / 360.0 * fullWidth;
+        double srcY = (90.0 - centerLat - latSpan / 2.0) / 180.0 * fullHeight;
+        BufferedImage image = background.compose(srcX, srcY, lonSpan / 360.0 * fullWidth, latSpan / 180.0 * fullHeight,
+                totWidth, totHeight, BufferedImage.TYPE_INT_RGB, imageScalingOption);
+
+        Graphics2D g2 = image.createGraphics();
+        try
+        {
+            MapState st = getState();
+            if(st != null)
+            {
+                paint(g2, st.satHash, st.gsHash, st.julDate, st.dateFormat, totWidth, totHeight, imgWidth, imgHeight, zoomFactor, centerLat, centerLong, tile);
+            }
+            else
+            {
+                Lock lock = getStateLock().readLock();
+                lock.lock();
+                try
+                {
+                    Time time = getCurrentTime();
+                    paint(g2, getSatHash(), getGsHash(), time.getJulianDate(), (SimpleDateFormat)time.getDateFormat(), totWidth, totHeight, imgWidth, imgHeight, zoomFactor, centerLat, centerLong, tile);
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+        finally
+        {
+            g2.dispose();
+        }
+
+        return image;
+    } // render
+
+    // draws the objects with this thread's label
+    private void paint(Graphics2D g2, Hashtable<String,AbstractSatellite> sats, Hashtable<String,GroundStation> stations, double julDate, SimpleDateFormat dateFormat,
+            int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFactor, double centerLat, double centerLong, boolean tile)
+    {
+        Painter p = painters.get();
+        if(p == null)
+        {
+            p = new Painter();
+            painters.set(p);
+        }
+        if(p.dateFormat != dateFormat)
+        {
+            p.dateFormat = dateFormat;
+            p.time.setDateFormat((dateFormat == null) ? null : (SimpleDateFormat)dateFormat.clone()); // (formats aren't thread safe)
+        }
+        if(p.julDate != julDate)
+        {
+            p.julDate = julDate;
+            p.time.set(Time.convertJD2Calendar(julDate).getTimeInMillis());
+            p.sun.setCurrentMJD(p.time.getMJD());
+        }
+
+        J2dEarthLabel2 label = p.label;
+        label.setSatHashTable(sats);
+        label.setGsHashTable(stations);
+        label.setBackgroundColor(backgroundColor);
+        label.setImageWidth(imgWidth);
+        label.setImageHeight(imgHeight);
+        label.setZoomFactor(zoomFactor);
+        label.setCenterLat(centerLat);
+        label.setCenterLong(centerLong);
+        label.showLatLong = showLatLong;
+        label.setDrawSun(drawSun);
+        label.setShowDateTime(!tile); // not on every tile
+
+        label.clearRenderableObjects();
+        final CoverageAnalyzer ca = getCoverageAnalyzer();
+        if(showCoverage && ca != null)
+        {
+            if(tile)
+            {
+                // without the color bar
+                label.addRenderableObject(new JSatTrakRenderable()
+                {
+                    public void draw2d(Graphics2D g2, J2dEarthLabel2 earthLabel, int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+                    {
+                        ca.draw2dCoverage(g2, earthLabel, totWidth, totHeight, imgWidth, imgHeight, zoomFac, cLat, cLong);
+                    }
+
+                    public void draw3d()
+                    {
+                    }
+                });
+            }
+            else
+            {
+                label.addRenderableObject(ca);
+            }
+        }
+
+        try
+        {
+            label.paintMap(g2, totWidth, totHeight);
+        }
+        finally
+        {
+            // don't keep the satellites (or coverage) alive through the label
+            label.setSatHashTable(null);
+            label.setGsHashTable(null);
+            label.clearRenderableObjects();
+        }
+    } // paint
+
+    // copy of the current state, made again when the time (or scenario) changes; null if it can't be copied this time
+    private MapState getState()
+    {
+        synchronized(copyLock)
+        {
+            Lock lock = getStateLock().readLock();
+            lock.lock();
+            try
+            {
+                Hashtable<String,AbstractSatellite> sats = getSatHash();
+                Hashtable<String,GroundStation> stations = getGsHash();
+                Time time = getCurrentTime();
+                MapState st = state;
+                if(st != null && st.julDate == time.getJulianDate() && st.satSource == sats && st.gsSource == stations
+                        && System.nanoTime() - st.copyNanos < MAX_STATE_AGE_NANOS)
+                {
+                    return st;
+                }
+
+                // what is drawn of each satellite and station (the tables may be added to on the event thread)
+                st = new MapState();
+                st.satSource = sats;
+                st.gsSource = stations;
+                st.satHash = new Hashtable<String,AbstractSatellite>();
+                synchronized(sats)
+                {
+                    for(Map.Entry<String,AbstractSatellite> e : sats.entrySet())
+                    {
+                        st.satHash.put(e.getKey(), new J2dSatelliteCopy(e.getValue()));
+                    }
+                }
+                st.gsHash = new Hashtable<String,GroundStation>();
+                synchronized(stations)
+                {
+                    for(Map.Entry<String,GroundStation> e : stations.entrySet())
+                    {
+                        st.gsHash.put(e.getKey(), copyStation(e.getValue()));
+                    }
+                }
+                st.julDate = time.getJulianDate();
+                st.dateFormat = (time.getDateFormat() instanceof SimpleDateFormat) ? (SimpleDateFormat)time.getDateFormat().clone() : null;
+                st.copyNanos = System.nanoTime();
+                state = st;
+                return st;
+            }
+            catch(RuntimeException e)
+            {
+                // draw this image holding the lock, try again next time
+                System.out.println("Map image drawn holding the state lock, satellites couldn't be copied: " + e.toString());
+                state = null;
+                return null;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    } // getState
+
+    // what the map draws of a ground station
+    private static GroundStation copyStation(GroundStation gs)
+    {
+        GroundStation copy = new GroundStation(gs.getStationName(), gs.getLla_deg_m().clone(), gs.getCurrentJulianDate());
+        copy.setElevationConst(gs.getElevationConst());
+        copy.setStationColor(gs.getStationColor());
+        copy.setShow2D(gs.isShow2D());
+        copy.setShow2DName(gs.isShow2DName());
+        copy.setGroundStation2DPixelSize(gs.getGroundStation2DPixelSize());
+        copy.setShow3D(gs.isShow3D());
+        copy.setShow3DName(gs.isShow3DName());
+        return copy;
+    } // copyStation
+
+    // satellites, ground stations and time being drawn
+    private static class MapState
+    {
+        Object satSource, gsSource; // tables copied
+        Hashtable<String,AbstractSatellite> satHash;
+        Hashtable<String,GroundStation> gsHash;
+        double julDate;
+        SimpleDateFormat dateFormat;
+        long copyNanos;
+    }
+
+    // one thread's off screen label (reused, so the coverage keeps its image of the label)
+    private static class Painter
+    {
+        final Time time = new Time();
+        final Sun sun = new Sun(time.getMJD());
+        final J2dEarthLabel2 label = new J2dEarthLabel2(null, 2.0, null, null, null, time, sun, null);
+        SimpleDateFormat dateFormat;
+        double julDate = Double.NaN;
+    }
+
+    /**
+     * @return current time (UTC Julian Date)
+     */
+    public double getJulianDate()
+    {
+        Lock lock = getStateLock().readLock();
+        lock.lock();
+        try
+        {
+            return getCurrentTime().getJulianDate();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    } // getJulianDate
+
+    // objects of the app (they change when a scenario is opened) or the ones given
+    private Hashtable<String,AbstractSatellite> getSatHash()
+    {
+        return (app != null) ? app.getSatHash() : satHash;
+    }
+
+    private Hashtable<String,GroundStation> getGsHash()
+    {
+        return (app != null) ? app.getGsHash() : gsHash;
+    }
+
+    private Time getCurrentTime()
+    {
+        return (app != null) ? app.getCurrentJulianDate() : currentTime;
+    }
+
+    private Sun getSun()
+    {
+        return (app != null) ? app.getSun() : sun;
+    }
+
+    private ReadWriteLock getStateLock()
+    {
+        return (app != null) ? app.getSatStateLock() : stateLock;
+    }
+
+    /**
+     * @return coverage drawn on the map (the app's if there is an app), null if none
+     */
+    public CoverageAnalyzer getCoverageAnalyzer()
+    {
+        return (app != null) ? app.getCoverageAnalyzer() : coverageAnalyzer;
+    }
+
+    /**
+     * @param coverageAnalyzer coverage to draw on the map (only used without an app)
+     */
+    public void setCoverageAnalyzer(CoverageAnalyzer coverageAnalyzer)
+    {
+        this.coverageAnalyzer = coverageAnalyzer;
+    }
+
+    public ImagePyramid getBackground()
+    {
+        return background;
+    }
+
+    public Color getBackgroundColor()
+    {
+        return backgroundColor;
+    }
+
+    public void setBackgroundColor(Color backgroundColor)
+    {
+        this.backgroundColor = backgroundColor;
+    }
+
+    public boolean isShowLatLong()
+    {
+        return showLatLong;
+    }
+
+    public void setShowLatLong(boolean showLatLong)
+    {
+        this.showLatLong = showLatLong;
+    }
+
+    public boolean isDrawSun()
+    {
+        return drawSun;
+    }
+
+    public void setDrawSun(boolean drawSun)
+    {
+        this.drawSun = drawSun;
+    }
+
+    public boolean isShowCoverage()
+    {
+        return showCoverage;
+    }
+
+    public void setShowCoverage(boolean showCoverage)
+    {
+        this.showCoverage = showCoverage;
+    }
+
+    public int getImageScalingOption()
+    {
+        return imageScalingOption;
+    }
+
+    /**
+     * @param imageScalingOption background scaling, BufferedImage.SCALE_FAST or SCALE_SMOOTH
+     */
+    public void setImageScalingOption(int imageScalingOption)
+    {
+        this.imageScalingOption = imageScalingOption;
+    }
+
+} // J2dMapRenderer
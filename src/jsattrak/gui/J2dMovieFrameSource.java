@@ -0,0 +1,275 @@
+/*
+ * J2dMovieFrameSource.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Movie frames of a 2D window rendered off screen (the same view and drawing
+ * options as the window when the movie is started), without capturing the
+ * screen or moving the app's time.
+ *
+ * The satellites and ground stations are copied (serialized once, then each
+ * thread making frames reads its own copy and propagates it to the time of its
+ * frames), so frames of different times are made in parallel while the app
+ * keeps running. If the scenario can't be copied (e.g. custom satellites, their
+ * mission tree isn't serializable) or the window shows coverage or other
+ * renderable objects (they need every time step in order), the frames are made
+ * one at a time by setting the app's time instead, still off screen.
+ *
+ */
+
+package jsattrak.gui;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.locks.Lock;
+import jsattrak.coverage.JSatTrakRenderable;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.objects.GroundStation;
+import jsattrak.utilities.MovieFrameSource;
+import name.gano.astro.bodies.Sun;
+import name.gano.astro.time.Time;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class J2dMovieFrameSource implements MovieFrameSource
+{
+    private final JSatTrak app;
+    private final int width, height;
+    private final BufferedImage background; // scaled map of the view (with land mass outlines)
+    private final BufferedImage earthLightsMask; // scaled earth lights, null if not shown
+    private final J2dEarthLabel2 settings; // view and drawing options of the window (not changed after construction)
+    private final Vector<JSatTrakRenderable> renderables; // of the window (only drawn when using the app)
+    private final SimpleDateFormat dateFormat;
+    private final byte[] scenario; // serialized satellites and ground stations, null if using the app
+
+    // copy of the scenario for each thread making frames
+    private final ThreadLocal<Scene> scenes = new ThreadLocal<Scene>();
+
+    /**
+     * Takes the view, options and a copy of the scenario (call on the event dispatch thread)
+     * @param twoDpanel 2D window to make the movie of
+     * @param app app with the satellites and ground stations
+     */
+    public J2dMovieFrameSource(J2DEarthPanel twoDpanel, JSatTrak app)
+    {
+        this.app = app;
+
+        J2dEarthLabel2 label = twoDpanel.getImageMap();
+        background = twoDpanel.getScaledBackgroundImage();
+        earthLightsMask = twoDpanel.getScaledEarthLightsMask();
+        width = background.getWidth();
+        height = background.getHeight();
+
+        settings = new J2dEarthLabel2(null, 2.0, new Hashtable<String,AbstractSatellite>(), new Hashtable<String,GroundStation>(), twoDpanel.getBackgroundColor(), null, null, null);
+        settings.copySettings(label);
+        settings.setImageWidth(width);
+        settings.setImageHeight(height);
+        renderables = new Vector<JSatTrakRenderable>(label.getRenderableObjects());
+
+        dateFormat = (SimpleDateFormat)((SimpleDateFormat)app.getCurrentJulianDate().getDateFormat()).clone();
+
+        byte[] copy = null;
+        if(renderables.isEmpty())
+        {
+            Lock lock = app.getSatStateLock().readLock();
+            lock.lock();
+            try
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(app.getSatHash());
+                out.writeObject(app.getGsHash());
+                out.close();
+                copy = bytes.toByteArray();
+            }
+            catch(IOException e)
+            {
+                System.out.println("Movie frames made one at a time, scenario can't be copied: " + e.toString());
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+        scenario = copy;
+    } // constructor
+
+    /**
+     * Renders the frame of the given time (on any thread if isParallel())
+     */
+    public BufferedImage getFrame(double julDate) throws Exception
+    {
+        if(scenario == null)
+        {
+            return getFrameFromApp(julDate);
+        }
+
+        Scene scene = scenes.get();
+        if(scene == null)
+        {
+            scene = new Scene(scenario, julDate, dateFormat);
+            scenes.set(scene);
+        }
+        scene.update(julDate);
+        return render(scene.satHash, scene.gsHash, scene.time, scene.sun, false);
+    } // getFrame
+
+    // sets the app's time (frames in time order, one at a time) and draws its satellites
+    private BufferedImage getFrameFromApp(double julDate)
+    {
+        app.setTime(julDate);
+        app.waitForAnalytics(10000); // coverage of this frame
+
+        Lock lock = app.getSatStateLock().readLock();
+        lock.lock();
+        try
+        {
+            return render(app.getSatHash(), app.getGsHash(), app.getCurrentJulianDate(), app.getSun(), true);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    } // getFrameFromApp
+
+    private BufferedImage render(Hashtable<String,AbstractSatellite> satHash, Hashtable<String,GroundStation> gsHash, Time time, Sun sun, boolean drawRenderables)
+    {
+        J2dEarthLabel2 label = new J2dEarthLabel2(null, 2.0, satHash, gsHash, null, time, sun, null);
+        label.copySettings(settings);
+        if(drawRenderables)
+        {
+            for(JSatTrakRenderable r : renderables)
+            {
+                label.addRenderableObject(r);
+            }
+        }
+
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = frame.createGraphics();
+        try
+        {
+            if(earthLightsMask != null)
+            {
+                g2.drawImage(J2DEarthPanel.combineEarthLights(background, earthLightsMask, label, sun.getCurrentDarkLLA()), 0, 0, null);
+            }
+            else
+            {
+                g2.drawImage(background, 0, 0, null);
+            }
+            label.paintMap(g2, width, height);
+        }
+        finally
+        {
+            g2.dispose();
+        }
+        return frame;
+    } // render
+
+    /**
+     * @return true if the frames are made from copies of the scenario (in parallel), false if from the app
+     */
+    public boolean isParallel()
+    {
+        return scenario != null;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    // satellites, ground stations, time and sun of one thread
+    private static class Scene
+    {
+        final Hashtable<String,AbstractSatellite> satHash;
+        final Hashtable<String,GroundStation> gsHash;
+        final Time time = new Time();
+        final Sun sun;
+
+        @SuppressWarnings("unchecked")
+        Scene(byte[] scenario, double julDate, SimpleDateFormat dateFormat) throws IOException, ClassNotFoundException
+        {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(scenario));
+            try
+            {
+                satHash = (Hashtable<String,AbstractSatellite>)in.readObject();
+                gsHash = (Hashtable<String,GroundStation>)in.readObject();
+            }
+            finally
+            {
+                in.close();
+            }
+
+            // the copies have the ground tracks of the app's time, redo them for this thread's frames
+            for(AbstractSatellite sat : satHash.values())
+            {
+                sat.setGroundTrackIni2False();
+            }
+
+            time.setDateFormat((SimpleDateFormat)dateFormat.clone()); // (formats aren't thread safe)
+            time.set(Time.convertJD2Calendar(julDate).getTimeInMillis());
+            sun = new Sun(time.getMJD());
+        } // Scene
+
+        // moves everything to the time (same as the app's time step)
+        void update(double julDate)
+        {
+            double timeDiffDays = Math.abs(julDate - time.getJulianDate());
+            time.set(Time.convertJD2Calendar(julDate).getTimeInMillis());
+            sun.setCurrentMJD(time.getMJD());
+
+            // this thread's frames are far apart, ground tracks are redone as in JSatTrak.checkTimeDiffResetGroundTracks
+            if(timeDiffDays > 91.0 / 1440.0)
+            {
+                for(AbstractSatellite sat : satHash.values())
+                {
+                    if(sat.getShowGroundTrack() && (sat.getPeriod() <= (timeDiffDays * 24.0 * 60.0)))
+                    {
+                        sat.setGroundTrackIni2False();
+                    }
+                }
+            }
+
+            for(AbstractSatellite sat : satHash.values())
+            {
+                sat.propogate2JulDate(time.getJulianDate());
+            }
+            for(GroundStation gs : gsHash.values())
+            {
+                gs.setCurrentJulianDate(time.getJulianDate());
+            }
+        } // update
+    } // Scene
+
+} // J2dMovieFrameSource
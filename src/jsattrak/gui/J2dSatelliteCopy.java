@@ -0,0 +1,474 @@
+/*
+ * J2dSatelliteCopy.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Copy of what the 2D map draws of a satellite at one time (name, options,
+ * position and ground track), made holding the app's state lock so the map
+ * can be drawn from it without the lock (see J2dMapRenderer). Works for any
+ * kind of satellite, only its getters are used.
+ *
+ * The copy can't be propagated and has no TLE or 3D model; the other values
+ * are the satellite's at the time of the copy (the calculate.. methods give
+ * null).
+ *
+ */
+
+package jsattrak.gui;
+
+import java.awt.Color;
+import jsattrak.objects.AbstractSatellite;
+import jsattrak.utilities.TLE;
+import name.gano.worldwind.modelloader.WWModel3D_new;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+class J2dSatelliteCopy extends AbstractSatellite
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final double currentJulDate;
+    private final double[] lla; // radians, radians, meters
+    private final double[] j2kPos, j2kVel, temePos, temeVel;
+    private final double period;
+
+    // ground track (only if drawn)
+    private final boolean groundTrackIni;
+    private final double[][] llaLead, llaLag;
+
+    // options
+    private Color satColor;
+    private boolean plot2D, plot2DFootPrint, fillFootPrint, showName2D, showGroundTrack;
+    private int numPtsFootPrint, grnTrkPointsPerPeriod;
+    private double groundTrackLeadPeriodMultiplier, groundTrackLagPeriodMultiplier;
+    private boolean show3D, show3DFootprint, show3DName, show3DOrbitTrace, show3DOrbitTraceECI, showGroundTrack3d;
+
+    /**
+     * @param sat satellite to copy (hold the state lock)
+     */
+    J2dSatelliteCopy(AbstractSatellite sat)
+    {
+        name = sat.getName();
+        currentJulDate = sat.getCurrentJulDate();
+        lla = new double[] {sat.getLatitude(), sat.getLongitude(), sat.getAltitude()};
+        j2kPos = copy(sat.getJ2000Position());
+        j2kVel = copy(sat.getJ2000Velocity());
+        temePos = copy(sat.getTEMEPos());
+        temeVel = copy(sat.getTEMEVelocity());
+        period = sat.getPeriod();
+
+        satColor = sat.getSatColor();
+        plot2D = sat.getPlot2D();
+        plot2DFootPrint = sat.getPlot2DFootPrint();
+        fillFootPrint = sat.isFillFootPrint();
+        showName2D = sat.isShowName2D();
+        showGroundTrack = sat.getShowGroundTrack();
+        numPtsFootPrint = sat.getNumPtsFootPrint();
+        grnTrkPointsPerPeriod = sat.getGrnTrkPointsPerPeriod();
+        groundTrackLeadPeriodMultiplier = sat.getGroundTrackLeadPeriodMultiplier();
+        groundTrackLagPeriodMultiplier = sat.getGroundTrackLagPeriodMultiplier();
+        show3D = sat.isShow3D();
+        show3DFootprint = sat.isShow3DFootprint();
+        show3DName = sat.isShow3DName();
+        show3DOrbitTrace = sat.isShow3DOrbitTrace();
+        show3DOrbitTraceECI = sat.isShow3DOrbitTraceECI();
+        showGroundTrack3d = sat.isShowGroundTrack3d();
+
+        // the ground track points are only there when it is shown
+        groundTrackIni = showGroundTrack && plot2D && sat.getGroundTrackIni();
+        if(groundTrackIni)
+        {
+            llaLead = new double[sat.getNumGroundTrackLeadPts()][];
+            for(int i = 0; i < llaLead.length; i++)
+            {
+                llaLead[i] = copy(sat.getGroundTrackLlaLeadPt(i));
+            }
+            llaLag = new double[sat.getNumGroundTrackLagPts()][];
+            for(int i = 0; i < llaLag.length; i++)
+            {
+                llaLag[i] = copy(sat.getGroundTrackLlaLagPt(i));
+            }
+        }
+        else
+        {
+            llaLead = new double[0][];
+            llaLag = new double[0][];
+        }
+    } // constructor
+
+    private static double[] copy(double[] a)
+    {
+        return (a == null) ? null : a.clone();
+    }
+
+    public double[] calculateJ2KPositionFromUT(double julDate)
+    {
+        return null; // not a propagator
+    }
+
+    public double[] calculateTemePositionFromUT(double julDate)
+    {
+        return null;
+    }
+
+    public double getAltitude()
+    {
+        return lla[2];
+    }
+
+    public double getCurrentJulDate()
+    {
+        return currentJulDate;
+    }
+
+    public int getGrnTrkPointsPerPeriod()
+    {
+        return grnTrkPointsPerPeriod;
+    }
+
+    public boolean getGroundTrackIni()
+    {
+        return groundTrackIni;
+    }
+
+    public double getGroundTrackLagPeriodMultiplier()
+    {
+        return groundTrackLagPeriodMultiplier;
+    }
+
+    public double getGroundTrackLeadPeriodMultiplier()
+    {
+        return groundTrackLeadPeriodMultiplier;
+    }
+
+    public double[] getGroundTrackLlaLagPt(int index)
+    {
+        return llaLag[index].clone();
+    }
+
+    public double[] getGroundTrackLlaLeadPt(int index)
+    {
+        return llaLead[index].clone();
+    }
+
+    public double[] getGroundTrackXyzLagPt(int index)
+    {
+        return null; // not copied
+    }
+
+    public double[] getGroundTrackXyzLeadPt(int index)
+    {
+        return null;
+    }
+
+    public double[] getJ2000Position()
+    {
+        return copy(j2kPos);
+    }
+
+    public double[] getJ2000Velocity()
+    {
+        return copy(j2kVel);
+    }
+
+    public double[] getKeplarianElements()
+    {
+        return null; // not copied
+    }
+
+    public double[] getLLA()
+    {
+        return lla.clone();
+    }
+
+    public double getLatitude()
+    {
+        return lla[0];
+    }
+
+    public double getLongitude()
+    {
+        return lla[1];
+    }
+
+    public double[][] getTemePosLag()
+    {
+        return null; // not copied
+    }
+
+    public double[][] getTemePosLead()
+    {
+        return null;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getNumGroundTrackLagPts()
+    {
+        return llaLag.length;
+    }
+
+    public int getNumGroundTrackLeadPts()
+    {
+        return llaLead.length;
+    }
+
+    public int getNumPtsFootPrint()
+    {
+        return numPtsFootPrint;
+    }
+
+    public double getPeriod()
+    {
+        return period;
+    }
+
+    public boolean getPlot2D()
+    {
+        return plot2D;
+    }
+
+    public boolean getPlot2DFootPrint()
+    {
+        return plot2DFootPrint;
+    }
+
+    public double[] getTEMEPos()
+    {
+        return copy(temePos);
+    }
+
+    public double[] getTEMEVelocity()
+    {
+        return copy(temeVel);
+    }
+
+    public Color getSatColor()
+    {
+        return satColor;
+    }
+
+    public double getSatTleEpochJulDate()
+    {
+        return Double.NaN; // no TLE
+    }
+
+    public boolean getShowGroundTrack()
+    {
+        return showGroundTrack;
+    }
+
+    public double[] getTimeLag()
+    {
+        return null; // not copied
+    }
+
+    public double[] getTimeLead()
+    {
+        return null;
+    }
+
+    public double getTleAgeDays()
+    {
+        return Double.NaN;
+    }
+
+    public double getTleEpochJD()
+    {
+        return Double.NaN;
+    }
+
+    public boolean isFillFootPrint()
+    {
+        return fillFootPrint;
+    }
+
+    public boolean isShow3D()
+    {
+        return show3D;
+    }
+
+    public boolean isShow3DFootprint()
+    {
+        return show3DFootprint;
+    }
+
+    public boolean isShow3DName()
+    {
+        return show3DName;
+    }
+
+    public boolean isShow3DOrbitTrace()
+    {
+        return show3DOrbitTrace;
+    }
+
+    public boolean isShow3DOrbitTraceECI()
+    {
+        return show3DOrbitTraceECI;
+    }
+
+    public boolean isShowGroundTrack3d()
+    {
+        return showGroundTrack3d;
+    }
+
+    public boolean isShowName2D()
+    {
+        return showName2D;
+    }
+
+    public void propogate2JulDate(double julDate)
+    {
+        throw new UnsupportedOperationException("Copy of " + name + " for drawing, can't be propagated");
+    }
+
+    public void setFillFootPrint(boolean fillFootPrint)
+    {
+        this.fillFootPrint = fillFootPrint;
+    }
+
+    public void setGrnTrkPointsPerPeriod(int grnTrkPointsPerPeriod)
+    {
+        this.grnTrkPointsPerPeriod = grnTrkPointsPerPeriod;
+    }
+
+    public void setGroundTrackIni2False()
+    {
+        // ground track of the copy's time only
+    }
+
+    public void setGroundTrackLagPeriodMultiplier(double groundTrackLagPeriodMultiplier)
+    {
+        this.groundTrackLagPeriodMultiplier = groundTrackLagPeriodMultiplier;
+    }
+
+    public void setGroundTrackLeadPeriodMultiplier(double groundTrackLeadPeriodMultiplier)
+    {
+        this.groundTrackLeadPeriodMultiplier = groundTrackLeadPeriodMultiplier;
+    }
+
+    public void setNumPtsFootPrint(int numPtsFootPrint)
+    {
+        this.numPtsFootPrint = numPtsFootPrint;
+    }
+
+    public void setPlot2DFootPrint(boolean plot2DFootPrint)
+    {
+        this.plot2DFootPrint = plot2DFootPrint;
+    }
+
+    public void setPlot2d(boolean plot2d)
+    {
+        this.plot2D = plot2d;
+    }
+
+    public void setSatColor(Color satColor)
+    {
+        this.satColor = satColor;
+    }
+
+    public void setShow3D(boolean show3D)
+    {
+        this.show3D = show3D;
+    }
+
+    public void setShow3DFootprint(boolean show3DFootprint)
+    {
+        this.show3DFootprint = show3DFootprint;
+    }
+
+    public void setShow3DName(boolean show3DName)
+    {
+        this.show3DName = show3DName;
+    }
+
+    public void setShow3DOrbitTrace(boolean show3DOrbitTrace)
+    {
+        this.show3DOrbitTrace = show3DOrbitTrace;
+    }
+
+    public void setShow3DOrbitTraceECI(boolean show3DOrbitTraceECI)
+    {
+        this.show3DOrbitTraceECI = show3DOrbitTraceECI;
+    }
+
+    public void setShowGroundTrack(boolean showGrndTrk)
+    {
+        this.showGroundTrack = showGrndTrk;
+    }
+
+    public void setShowGroundTrack3d(boolean showGroundTrack3d)
+    {
+        this.showGroundTrack3d = showGroundTrack3d;
+    }
+
+    public void setShowName2D(boolean showName2D)
+    {
+        this.showName2D = showName2D;
+    }
+
+    public void updateTleData(TLE newTLE)
+    {
+        throw new UnsupportedOperationException("Copy of " + name + " for drawing, has no TLE");
+    }
+
+    public boolean isUse3dModel()
+    {
+        return false;
+    }
+
+    public void setUse3dModel(boolean use3dModel)
+    {
+    }
+
+    public String getThreeDModelPath()
+    {
+        return null;
+    }
+
+    public void setThreeDModelPath(String path)
+    {
+    }
+
+    public WWModel3D_new getThreeDModel()
+    {
+        return null;
+    }
+
+    public void releaseThreeDModel()
+    {
+    }
+
+    public double getThreeDModelSizeFactor()
+    {
+        return 1.0;
+    }
+
+    public void setThreeDModelSizeFactor(double modelSizeFactor)
+    {
+    }
+
+} // J2dSatelliteCopy
@@ -322,6 +322,7 @@ public class J3DEarthInternalPanel extends javax.swing.JPanel implements J3DEart
         // add ECI Layer
         eciLayer = new ECIRenderableLayer(currentMJD); // create ECI layer
         orbitModel = new OrbitModelRenderable(satHash, wwd.getModel().getGlobe());
+        orbitModel.setStateInterpolator(app.getStateInterpolator()); // real time interpolation mode
         eciLayer.addRenderable(orbitModel); // add renderable object
         eciLayer.setCurrentMJD(currentMJD); // update time again after adding renderable
         m.getLayers().add(eciLayer); // add ECI Layer
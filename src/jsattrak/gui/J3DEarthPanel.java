@@ -328,6 +328,7 @@ public class J3DEarthPanel extends javax.swing.JPanel implements J3DEarthCompone
         // add ECI Layer -- FOR SOME REASON IF BEFORE EFEF and turned off ECEF Orbits don't show up!! Coverage effecting this too, strange
         eciLayer = new ECIRenderableLayer(currentMJD); // create ECI layer
         orbitModel = new OrbitModelRenderable(satHash, wwd.getModel().getGlobe());
+        orbitModel.setStateInterpolator(app.getStateInterpolator()); // real time interpolation mode
         eciLayer.addRenderable(orbitModel); // add renderable object
         eciLayer.setCurrentMJD(currentMJD); // update time again after adding renderable
         m.getLayers().add(eciLayer); // add ECI Layer
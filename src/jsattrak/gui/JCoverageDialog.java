@@ -1205,12 +1205,8 @@ private void exportDataButtonActionPerformed(java.awt.event.ActionEvent evt) {//
 
     private void saveSettings()
     {
-        boolean requiresGridRegen = false; // if a a grid regen is needed
-        // save first tab
-
         try
         {
-            // display current settings in the dialog
             double[] latBounds = new double[]
             {
                 Double.parseDouble(latLowerField.getText()), Double.parseDouble(latUpperField.getText())
@@ -1220,53 +1216,25 @@ private void exportDataButtonActionPerformed(java.awt.event.ActionEvent evt) {//
                 Double.parseDouble(lonLowerField.getText()), Double.parseDouble(lonUpperField.getText())
             };
 
-            // check if regen needed
-            if(latBounds[0] != ca.getLatBounds()[0] || latBounds[1] != ca.getLatBounds()[1])
-            {
-                requiresGridRegen = true;
-            }
-            if(lonBounds[0] != ca.getLongBounds()[0] || lonBounds[1] != ca.getLongBounds()[1])
-            {
-                requiresGridRegen = true;
-            }
-
-            ca.setLatBounds(latBounds);
-            ca.setLongBounds(lonBounds);
-
             int latSeg = Integer.parseInt(latSegTextField.getText());
             int lonSeg = Integer.parseInt(lonSegTextField.getText());
 
-            if(latSeg != ca.getLatPanels() || lonSeg != ca.getLongPanels())
-            {
-                requiresGridRegen = true;
-            }
-
-            ca.setLatPanels(latSeg);
-            ca.setLongPanels(lonSeg);
-
             double ele = Double.parseDouble(minElevTextField.getText());
-            if(ele != ca.getElevationLimit())
-            {
-                requiresGridRegen = true;
-            }
-            ca.setElevationLimit(ele);
-
-            //-------------------------------------
-
-            // for each element in satIncludedList
-            ca.clearSatCoverageVector(); // clear it first
 
+            // each element in satIncludedList
+            Vector<String> satNames = new Vector<String>();
             for(Object i : ((DefaultListModel)satIncludedList.getModel()).toArray())
             {
-                // only adds if isn't already in list
-                String satName = i.toString();//((DefaultListModel)satIncludedList.getModel()).get(i).toString();
-
-                ca.addSatToCoverageAnaylsis(satName);
+                satNames.add(i.toString());
             }
 
             // dynamic updating
             ca.setDynamicUpdating(dyanmicUpdateCheckBox.isSelected());
 
+            // set all at once, the grid is cleared and redone if it changed
+            ca.applySettings(latBounds, lonBounds, latSeg, lonSeg, ele, satNames, ca.isDynamicUpdating() ? currentJulianDate : null);
+
+            //-------------------------------------
 
             // viz options ------------
             ca.setAlpha((int)Math.round(Integer.parseInt(alphaLabel.getText()) / 100.0 * 255));
@@ -1334,14 +1302,6 @@ private void exportDataButtonActionPerformed(java.awt.event.ActionEvent evt) {//
             e.printStackTrace();
         }
 
-        // clear and redo grid?
-        if(requiresGridRegen)
-        {
-            this.clearCoverageData();
-        }
-
-
-
     } // saveSettings
 
 
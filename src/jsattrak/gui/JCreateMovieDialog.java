@@ -23,6 +23,9 @@
  * update 29 April 2008: Shawn Gano
  * - fixed to allow other types of windows besides just 3d WWJ, using a "mode" variable to allow 3dWWJ, 2D, or other
  * 
+ * - frames are streamed to the movie file (Motion JPEG AVI or PNG images) through MovieFramePipeline
+ *   instead of temporary JPEG files and JMF, 2D windows are rendered off screen (J2dMovieFrameSource)
+ * 
  */
 
 package jsattrak.gui;
@@ -37,14 +40,16 @@ import java.text.SimpleDateFormat;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.TimeZone;
-import java.util.Vector;
-import javax.media.MediaLocator;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JTextField;
 import javax.swing.SwingWorker;
 import jsattrak.utilities.J3DEarthComponent;
-import jsattrak.utilities.JpegImagesToMovie;
+import jsattrak.utilities.MjpegAviWriter;
+import jsattrak.utilities.MovieFramePipeline;
+import jsattrak.utilities.MovieFrameSource;
+import jsattrak.utilities.MovieWriter;
+import jsattrak.utilities.PngSequenceWriter;
 import name.gano.astro.time.Time;
 import name.gano.file.SaveImageFile;
 
@@ -64,10 +69,6 @@ public class JCreateMovieDialog extends javax.swing.JDialog
     private SimpleDateFormat dateformatShort1 = new SimpleDateFormat("dd MMM y H:m:s.S z");
     private SimpleDateFormat dateformatShort2 = new SimpleDateFormat("dd MMM y H:m:s z"); // no Milliseconds
      
-    // reltive name of temporary dir to store files
-    String tempDirStr = "temp_images";
-    String rootNameTempImages = "screen_";
-    
     JSatTrak app;
     
     // mode for type of window being used to make a movie from
@@ -415,22 +416,24 @@ public class JCreateMovieDialog extends javax.swing.JDialog
         
         // ASK WHERE TO SAVE MOVIE!!!!!!
         //    	Create a file chooser
-        String outputMoviePath = "test.mov"; // default output
-        
         final JFileChooser fc = new JFileChooser();
-        jsattrak.utilities.CustomFileFilter movFilter = new jsattrak.utilities.CustomFileFilter("mov", "*.mov");
-        fc.addChoosableFileFilter(movFilter);
+        jsattrak.utilities.CustomFileFilter pngFilter = new jsattrak.utilities.CustomFileFilter("png", "*.png (image sequence)");
+        jsattrak.utilities.CustomFileFilter aviFilter = new jsattrak.utilities.CustomFileFilter("avi", "*.avi (Motion JPEG)");
+        fc.addChoosableFileFilter(pngFilter);
+        fc.addChoosableFileFilter(aviFilter);
+        fc.setFileFilter(aviFilter);
 
+        File file;
         int returnVal = fc.showSaveDialog(this);
 
         if (returnVal == JFileChooser.APPROVE_OPTION)
         {
-            File file = fc.getSelectedFile();
+            file = fc.getSelectedFile();
 
-            String fileExtension = "mov"; // default
-            if (fc.getFileFilter() == movFilter)
+            String fileExtension = "avi"; // default
+            if (fc.getFileFilter() == pngFilter)
             {
-                fileExtension = "mov";
+                fileExtension = "png";
             }
 
             String extension = getExtension(file);
@@ -444,121 +447,99 @@ public class JCreateMovieDialog extends javax.swing.JDialog
                 file = new File(file.getAbsolutePath() + "." + fileExtension);
             //System.out.println("path="+file.getAbsolutePath());
             }
-            
-            outputMoviePath = "file:" + file.getAbsolutePath();
-
         }
         else
         {
             return; // don't do anything more - user canceled
         }
-            
         
+        // === frames ========================
+        // 2D windows are rendered off screen (in parallel if possible), others are captured from the screen
+        final MovieFrameSource frameSource;
+        if(movieMode == 1)
+        {
+            frameSource = new J2dMovieFrameSource(twoDpanel, app);
+        }
+        else
+        {
+            frameSource = new ScreenCaptureFrameSource();
+        }
         
-        // === CREATE temporary files ========================
+        if (frameSource.getHeight() <= 0 || frameSource.getWidth() <= 0)
+        {
+            JOptionPane.showMessageDialog(this, "A Movie was not possible - too small of size", "ERROR", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         
-        // create temp directory
-        boolean success = (new File(tempDirStr)).mkdir();
+        // movie file (frames are written as they are made, no temporary files)
+        final MovieWriter movieWriter;
+        try
+        {
+            if("png".equals(getExtension(file)))
+            {
+                movieWriter = new PngSequenceWriter(file);
+            }
+            else
+            {
+                movieWriter = new MjpegAviWriter(file, frameSource.getWidth(), frameSource.getHeight(), playbackFPS);
+            }
+        }
+        catch(Exception e)
+        {
+            JOptionPane.showMessageDialog(this, "ERROR Creating Output File (check permissions): " + e.toString(), "ERROR", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         
         double deltaTsec = (endTime.getMJD() - startTime.getMJD())*24*60*60.0;
         final int numFrames = (int)Math.ceil( deltaTsec/timeStep );
+        final double startJulDate = startTime.getJulianDate();
+        final double frameTimeStep = timeStep;
+        
+        genMovieButton.setEnabled(false);
+        movieStatusBar.setString(null);
         
         // do the long work in a thread so progress bar can be updated
-        final String outputMoviePathFinal = outputMoviePath;
         SwingWorker<Object, Integer> worker = new SwingWorker<Object, Integer>()
                 {
                     
-                    public Vector<String> doInBackground()
+                    public Object doInBackground()
                     {
-                        Vector<String> inputFiles = new Vector<String>(); // array of files
-                                                
-                        for (int i = 0; i < numFrames; i++)
+                        MovieFramePipeline pipeline = new MovieFramePipeline()
                         {
-                            app.setTime(startTime.getCurrentGregorianCalendar().getTimeInMillis());
-
-                            // force component to update
-                            if(movieMode == 0)
-                            {
-                                threeDpanel.getWwd().redrawNow(); // // force wwd to update
-                            }
-                            else if(movieMode == 1)
-                            {
-                                // is this needed, seems no; well seems to help remove some black flickering artifacts
-                                //twoDpanel.repaint();
-                            }
-                            else
+                            @Override
+                            protected void frameWritten(int framesWritten, int numFrames)
                             {
-                                // might not be needed either
-                                //otherPanel.repaint(); // does this work?
+                                publish((int) (100.0 * framesWritten / numFrames));
                             }
-
-
-                            // take screen shot
-                            createScreenCapture(tempDirStr + "/" + rootNameTempImages + i + ".jpg");
-                            // save file name
-                            inputFiles.addElement(tempDirStr + "/" + rootNameTempImages + i + ".jpg");
-
-                             publish((int) (100.0 * (i + 1.0) / numFrames));
-                            //movieStatusBar.setValue((int) (100.0 * (i + 1.0) / numFrames));
-
-                            // update time
-                            startTime.addSeconds(timeStep);
-                            
-                            
-                        } // create movie freames
-                        
+                        };
                         
-                        movieStatusBar.setString("Building Movie File.....");
-                        movieStatusBar.setIndeterminate(true);
-                        
-                        // stuff to do afterwards
-                        
-                         // create movie =========
-                        // get size
-                        int width;
-                        int height;
-                        if(movieMode == 0)
-                        {
-                            width = threeDpanel.getWwdWidth();
-                            height = threeDpanel.getWwdHeight();
-                        }
-                        else if(movieMode == 1)
+                        String status = "Finished!";
+                        try
                         {
-                            int[] twoDinfo = calculate2DMapSizeAndScreenLoc(twoDpanel);
-                            width = twoDinfo[0];
-                            height = twoDinfo[1];
+                            pipeline.run(frameSource, movieWriter, startJulDate, frameTimeStep, numFrames);
                         }
-                        else
+                        catch(Exception e)
                         {
-                            width = otherPanel.getWidth();
-                            height = otherPanel.getHeight();
+                            System.out.println("ERROR CREATING MOVIE:" + e.toString());
+                            status = "ERROR! " + e.toString();
                         }
-
-                        // Generate the output media locators.
-                        MediaLocator oml;
-
-                        if ((oml = createMediaLocator(outputMoviePathFinal)) == null)
+                        finally
                         {
-                            JOptionPane.showMessageDialog(null, "ERROR Creating Output File (check permissions)", "ERROR", JOptionPane.ERROR_MESSAGE);
-                            System.err.println("Cannot build media locator from: " + outputMoviePathFinal);
-                            
-                            //movieStatusBar.setIndeterminate(false);
-                            publish(0);
-                            movieStatusBar.setString("ERROR!");
-                            return inputFiles;
+                            try
+                            {
+                                movieWriter.close();
+                            }
+                            catch(Exception e)
+                            {
+                                System.out.println("ERROR CREATING MOVIE:" + e.toString());
+                                status = "ERROR! " + e.toString();
+                            }
                         }
-
-                        JpegImagesToMovie imageToMovie = new JpegImagesToMovie();
-                        imageToMovie.doIt(width, height, playbackFPS, inputFiles, oml);
-
-                        // clean up ============
-                        boolean cleanSuccess = deleteDirectory(tempDirStr);
                         
-                        //movieStatusBar.setIndeterminate(false);
                         publish(0);
-                        movieStatusBar.setString("Finished!");
+                        movieStatusBar.setString(status);
                         
-                        return inputFiles;
+                        return null;
                     } // doInBackground
 
                     // runs every once in a while to update GUI, use publish( int ) and the int will be added to the List
@@ -578,6 +559,8 @@ public class JCreateMovieDialog extends javax.swing.JDialog
                         movieStatusBar.setIndeterminate(false);
 
                         movieStatusBar.setValue(0); // update progress bar
+                        
+                        genMovieButton.setEnabled(true);
 
                         app.forceRepainting();
                     } // done -- update GUI at the finish of process
@@ -603,28 +586,6 @@ public class JCreateMovieDialog extends javax.swing.JDialog
         return ext;
     } // getExtension
     
-    // recursivley deletes a non-empty directory
-    static public boolean deleteDirectory(String path2Dir)
-    {
-        File path = new File(path2Dir);
-        
-        if (path.exists())
-        {
-            File[] files = path.listFiles();
-            for (int i = 0; i < files.length; i++)
-            {
-                if (files[i].isDirectory())
-                {
-                    deleteDirectory(files[i].toString()); // recursive delete
-                }
-                else
-                {
-                    files[i].delete();
-                }
-            }
-        }
-        return (path.delete());
-    } // deleteDirectory
     
     private void playBackRateSpinnerStateChanged(javax.swing.event.ChangeEvent evt)//GEN-FIRST:event_playBackRateSpinnerStateChanged
     {//GEN-HEADEREND:event_playBackRateSpinnerStateChanged
@@ -777,35 +738,10 @@ public class JCreateMovieDialog extends javax.swing.JDialog
             //BufferedImage screencapture = new Robot().createScreenCapture(
             //      new Rectangle(Toolkit.getDefaultToolkit().getScreenSize()) );
 
-            // just the framePanel	 // viewsTabbedPane frame3d
-            Point pt = new Point();
-            int width = 0;
-            int height = 0;
-
-            // get location on screen / width / height
-            if(movieMode == 0)
-            {
-                pt = threeDpanel.getWwdLocationOnScreen();
-                width = threeDpanel.getWwdWidth();
-                height = threeDpanel.getWwdHeight();
-            }
-            else if(movieMode == 1)
-            {
-                int[] twoDinfo = calculate2DMapSizeAndScreenLoc(twoDpanel);
-                pt.setLocation(twoDinfo[2], twoDinfo[3]);
-                width = twoDinfo[0];
-                height = twoDinfo[1];
-            }
-            else
-            {
-                pt = otherPanel.getLocationOnScreen();
-                width = otherPanel.getWidth();
-                height = otherPanel.getHeight();
-            }
-
+            Rectangle rect = getCaptureRectangle();
 
             // not a possible size
-            if (height <= 0 || width <= 0)
+            if (rect.height <= 0 || rect.width <= 0)
             {
                 // no screen shot
                 JOptionPane.showInternalMessageDialog(this, "A Screenshot was not possible - too small of size", "ERROR", JOptionPane.ERROR_MESSAGE);
@@ -817,8 +753,7 @@ public class JCreateMovieDialog extends javax.swing.JDialog
             //			   new Rectangle( mainFrame.getX()+viewsTabbedPane.getX(), mainFrame.getY(),
             //					   viewsTabbedPane.getWidth(), mainFrame.getHeight() ) );
             // scree shot of just window
-            BufferedImage screencapture = new Robot().createScreenCapture(
-                    new Rectangle(pt.x, pt.y, width, height));
+            BufferedImage screencapture = new Robot().createScreenCapture(rect);
 
 
 
@@ -845,28 +780,79 @@ public class JCreateMovieDialog extends javax.swing.JDialog
             System.out.println("ERROR SCREEN CAPTURE:" + e4.toString());
         }
     } // createScreenCapture
+    
+    // part of the screen with the window
+    private Rectangle getCaptureRectangle()
+    {
+        // just the framePanel	 // viewsTabbedPane frame3d
+        Point pt = new Point();
+        int width = 0;
+        int height = 0;
+
+        // get location on screen / width / height
+        if(movieMode == 0)
+        {
+            pt = threeDpanel.getWwdLocationOnScreen();
+            width = threeDpanel.getWwdWidth();
+            height = threeDpanel.getWwdHeight();
+        }
+        else if(movieMode == 1)
+        {
+            int[] twoDinfo = calculate2DMapSizeAndScreenLoc(twoDpanel);
+            pt.setLocation(twoDinfo[2], twoDinfo[3]);
+            width = twoDinfo[0];
+            height = twoDinfo[1];
+        }
+        else
+        {
+            pt = otherPanel.getLocationOnScreen();
+            width = otherPanel.getWidth();
+            height = otherPanel.getHeight();
+        }
         
-    /**
-     * Create a media locator from the given string.
-     */
-    static MediaLocator createMediaLocator(String url) {
+        return new Rectangle(pt.x, pt.y, width, height);
+    } // getCaptureRectangle
+    
+    // frames captured from the screen (3D and other windows): sets the app's time for each frame
+    private class ScreenCaptureFrameSource implements MovieFrameSource
+    {
+        private final Rectangle rect = getCaptureRectangle(); // (window isn't moved while the movie is made)
+        private Robot robot;
+        
+        public BufferedImage getFrame(double julDate) throws Exception
+        {
+            app.setTime(julDate);
+            app.waitForAnalytics(10000); // coverage of this frame
 
-	MediaLocator ml;
+            // force component to update
+            if(movieMode == 0)
+            {
+                threeDpanel.getWwd().redrawNow(); // // force wwd to update
+            }
+            
+            if(robot == null)
+            {
+                robot = new Robot();
+            }
+            return robot.createScreenCapture(rect);
+        } // getFrame
 
-	if (url.indexOf(":") > 0 && (ml = new MediaLocator(url)) != null)
-	    return ml;
+        public boolean isParallel()
+        {
+            return false; // one screen
+        }
 
-	if (url.startsWith(File.separator)) {
-	    if ((ml = new MediaLocator("file:" + url)) != null)
-		return ml;
-	} else {
-	    String file = "file:" + System.getProperty("user.dir") + File.separator + url;
-	    if ((ml = new MediaLocator(file)) != null)
-		return ml;
-	}
+        public int getWidth()
+        {
+            return rect.width;
+        }
 
-	return null;
-    } // createMediaLocator
+        public int getHeight()
+        {
+            return rect.height;
+        }
+    } // ScreenCaptureFrameSource
+        
     
     
     // calculate actualy 2D map size and location on screen
@@ -724,6 +724,9 @@ public class JCustomSatConfigPanel extends javax.swing.JPanel
         String stkCentralBody = "Earth";
         String stkCoordSys = "J2000";
 
+        // current ephemeris of the satellite (a new one is set each time the mission is propagated)
+        Vector<StateVector> ephemeris = sat.getEphemeris();
+
         DecimalFormat d12 = new DecimalFormat("0.00000000000E0"); // display format
 
         // create scenario epoch time in STK format
@@ -227,7 +227,7 @@ public class JObjectListInternalFrame extends javax.swing.JInternalFrame
                 // remove from satHash if it is in sat hash
                 if(satHash.containsKey(nameSelected))
                 {
-                    satHash.remove(nameSelected); // remove it from hashTable
+                    satHash.remove(nameSelected).releaseThreeDModel(); // remove it from hashTable (and free its 3D model)
                     objectTree.removeSelectionPath(tp); //remove item from list
                     ((DefaultTreeModel)objectTree.getModel()).removeNodeFromParent( node );
 
@@ -27,7 +27,9 @@ import jsattrak.objects.SatelliteTleSGP4;
 import jsattrak.objects.GroundStation;
 import java.awt.Toolkit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import javax.swing.ImageIcon;
@@ -61,6 +63,9 @@ public class JObjectListPanel extends javax.swing.JPanel
     // calling JSatTrak program (used to send actions back)
     JSatTrak parentApp;
     
+    // tree node icons, shared by all nodes
+    private static final HashMap<String,ImageIcon> sharedIcons = new HashMap<String,ImageIcon>();
+    
     /** Creates new form JSatListPanel */
     public JObjectListPanel( Hashtable<String,AbstractSatellite> satHashIn, Hashtable<String,GroundStation> gsHash, JSatTrak app )
     {
@@ -351,7 +356,7 @@ public class JObjectListPanel extends javax.swing.JPanel
                 // remove from satHash if it is in sat hash
                 if(satHash.containsKey(nameSelected))
                 {
-                    satHash.remove(nameSelected); // remove it from hashTable
+                    satHash.remove(nameSelected).releaseThreeDModel(); // remove it from hashTable (and free its 3D model)
                     objectTree.removeSelectionPath(tp); //remove item from list
                     ((DefaultTreeModel)objectTree.getModel()).removeNodeFromParent( node );
                     
@@ -417,15 +422,7 @@ private void objectTreeMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:
         IconTreeNode newNode = new IconTreeNode(prop.getName());
         treeModel.insertNodeInto(newNode, topSatTreeNode, topSatTreeNode.getChildCount());
         
-        // if SGP4 sat
-        if(prop instanceof SatelliteTleSGP4)
-        {
-            newNode.setIcon(new ImageIcon(Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/custom/sat_icon_tle.png"))));
-        }
-        else if(prop instanceof CustomSatellite)
-        {
-            newNode.setIcon(new ImageIcon(Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/custom/sat_icon_cst.png"))));
-        }
+        setSatIcon(newNode, prop);
 
 
         //System.out.println("node added: " + name);
@@ -434,6 +431,77 @@ private void objectTreeMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:
         
     } // addSat2List
     
+    /**
+     * Adds many satellites at once (one tree model update instead of one per satellite).
+     * The satellites should already be propagated to the current time (e.g. created
+     * with SatelliteBulkLoader); satellites with names already in the list are skipped.
+     * @param sats satellites to add
+     * @return number of satellites added
+     */
+    public int addSats2List(Collection<? extends AbstractSatellite> sats)
+    {
+        int firstIndex = topSatTreeNode.getChildCount();
+        IconTreeNode lastNode = null;
+        
+        for(AbstractSatellite prop : sats)
+        {
+            if(satHash.containsKey(prop.getName()))
+            {
+                continue; // already in the list
+            }
+            satHash.put(prop.getName(), prop);
+            
+            IconTreeNode newNode = new IconTreeNode(prop.getName());
+            setSatIcon(newNode, prop);
+            topSatTreeNode.add(newNode);
+            lastNode = newNode;
+        }
+        
+        int numAdded = topSatTreeNode.getChildCount() - firstIndex;
+        if(numAdded == 0)
+        {
+            return 0;
+        }
+        
+        int[] childIndices = new int[numAdded];
+        for(int i = 0; i < numAdded; i++)
+        {
+            childIndices[i] = firstIndex + i;
+        }
+        treeModel.nodesWereInserted(topSatTreeNode, childIndices);
+        
+        objectTree.scrollPathToVisible(getPath(lastNode));
+        
+        return numAdded;
+    } // addSats2List
+    
+    private static void setSatIcon(IconTreeNode node, AbstractSatellite prop)
+    {
+        // if SGP4 sat
+        if(prop instanceof SatelliteTleSGP4)
+        {
+            node.setIcon(getSharedIcon("/icons/custom/sat_icon_tle.png"));
+        }
+        else if(prop instanceof CustomSatellite)
+        {
+            node.setIcon(getSharedIcon("/icons/custom/sat_icon_cst.png"));
+        }
+    }
+    
+    /**
+     * Icons used for the tree nodes, loaded once and shared by all the nodes
+     */
+    private static synchronized ImageIcon getSharedIcon(String resource)
+    {
+        ImageIcon icon = sharedIcons.get(resource);
+        if(icon == null)
+        {
+            icon = new ImageIcon(Toolkit.getDefaultToolkit().getImage(JObjectListPanel.class.getResource(resource)));
+            sharedIcons.put(resource, icon);
+        }
+        return icon;
+    }
+    
     // requires sat Prop
     public void addGS2List(GroundStation prop )
     {
@@ -445,7 +513,7 @@ private void objectTreeMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:
         IconTreeNode newNode = new IconTreeNode(prop.getStationName());
         treeModel.insertNodeInto(newNode, topGSTreeNode, topGSTreeNode.getChildCount());
 
-        newNode.setIcon(new ImageIcon(Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/custom/groundStation_obj.png"))));
+        newNode.setIcon(getSharedIcon("/icons/custom/groundStation_obj.png"));
 
         //System.out.println("node added: " + name);
         objectTree.scrollPathToVisible(getPath(newNode));
@@ -25,6 +25,7 @@
 
 package jsattrak.gui;
 
+import jsattrak.objects.AbstractSatellite;
 import jsattrak.objects.SatelliteTleSGP4;
 import java.util.Hashtable;
 import javax.swing.DefaultListModel;
@@ -248,7 +249,11 @@ public class JSatListPanel extends javax.swing.JPanel
         if(satList.getSelectedValue() != null)
         {
             String nameSelected = satList.getSelectedValue().toString();
-            satHash.remove( nameSelected ); // remove it from hashTable
+            AbstractSatellite sat = satHash.remove( nameSelected ); // remove it from hashTable
+            if(sat != null)
+            {
+                sat.releaseThreeDModel(); // free its 3D model
+            }
             int removeIndex = satList.getSelectedIndex();
             satListModel.remove(removeIndex); // remove sat from list
             
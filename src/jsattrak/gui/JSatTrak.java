@@ -47,12 +47,24 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.GregorianCalendar;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -72,8 +84,13 @@ import javax.swing.UIManager;
 import javax.swing.event.InternalFrameEvent;
 import javax.swing.event.InternalFrameListener;
 import jguiserver.GuiServer;
+import jguiserver.MapTileServer;
+import jguiserver.StateServer;
+import jsattrak.coverage.AsyncTimeDependent;
 import jsattrak.coverage.CoverageAnalyzer;
 import jsattrak.coverage.JSatTrakTimeDependent;
+import jsattrak.customsat.constellation.ConstellationGenerator;
+import jsattrak.customsat.swingworker.MissionSchedulerWorker;
 import jsattrak.objects.AbstractSatellite;
 import jsattrak.objects.CustomSatellite;
 import jsattrak.objects.SatelliteTleSGP4;
@@ -84,8 +101,14 @@ import jsattrak.utilities.J3DEarthComponent;
 import jsattrak.utilities.J3DEarthlPanelSave;
 import jsattrak.utilities.JstSaveClass;
 import jsattrak.utilities.LafChanger;
+import jsattrak.utilities.ParallelPropagator;
 import jsattrak.utilities.SatPropertyPanelSave;
+import jsattrak.utilities.SatelliteBulkLoader;
+import jsattrak.utilities.SatelliteStateSnapshot;
+import jsattrak.utilities.SnapshotInterpolator;
 import jsattrak.utilities.TLE;
+import jsattrak.utilities.TleCatalog;
+import jsattrak.utilities.TickMetrics;
 import name.gano.astro.bodies.Sun;
 import name.gano.astro.time.Time;
 import jsattrak.utilities.TLEDownloader;
@@ -136,6 +159,18 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
     private Timer playTimer;
     private boolean stopHit = false;
     private int realTimeAnimationRefreshRateMs = 1000; // refresh rate for real time animation
+    
+    // real time interpolation mode: the satellites are propagated on a fixed step (realTimePropagationRateHz,
+    // started by a background scheduler) and the 2D/3D views interpolate between the last snapshots every realTimeRenderRateMs
+    private boolean realTimeInterpolation = false;
+    private double realTimePropagationRateHz = 2.0;
+    private int realTimeRenderRateMs = 40;
+    private final SnapshotInterpolator stateInterpolator = new SnapshotInterpolator();
+    private boolean interpolationRunning = false; // (GUI thread only)
+    private long realTimeTargetMs; // time of the latest propagation step, ahead of the real time
+    private ScheduledExecutorService propagationScheduler;
+    private final AtomicBoolean propagationStepQueued = new AtomicBoolean(false);
+    private final Time renderTime = new Time();
     private int nonRealTimeAnimationRefreshRateMs = 50; // refresh rate for non-real time animation
     private int animationRefreshRateMs = nonRealTimeAnimationRefreshRateMs; // (current)Milliseconds ** this should be an option somewhere!! - determines CPU used in animation
     private double animationSimStepSeconds = 1.0; // dt in Days per animation step/time update
@@ -187,6 +222,15 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
      // coverage anaylzer tool (default null, until tool opened)
      private CoverageAnalyzer coverageAnalyzer;
      
+     // state query / subscription server (default null, until started)
+     private StateServer stateServer;
+     private final ParallelPropagator propagator = new ParallelPropagator(); // propagation stage of updateTime
+     private AsyncTimeDependent coverageStage; // coverage analysis stage (own thread)
+     // held (write) while updateTime changes the time and satellite states, held (read) by threads drawing them off the GUI thread
+     private final ReentrantReadWriteLock satStateLock = new ReentrantReadWriteLock();
+     // 2D map tile HTTP server (default null, until started)
+     private MapTileServer mapTileServer;
+     
      // WorldWindGLCanvas so all 3D windows can share resources like 3D models
      private WorldWindowGLCanvas wwd; // intially null - only created when needed
      
@@ -274,7 +318,10 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
         
         // create Sun object
         sun = new Sun(currentJulianDate.getMJD());
-        
+
+        // expose hot path timing metrics over JMX
+        TickMetrics.registerMBean();
+
         
         // create Satelite List Internal Frame (that can never be closed)
         objListPanel = new JObjectListPanel(satHash, gsHash, this);   
@@ -1618,6 +1665,13 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
         stopHit = false;
         //Create a timer.
         lastFPSms = System.currentTimeMillis();
+        
+        if(realTimeModeCheckBox.isSelected() && realTimeInterpolation)
+        {
+            runInterpolatedRealTime();
+            return;
+        }
+        
         playTimer = new Timer(animationRefreshRateMs, new ActionListener()
         {
             public void actionPerformed(ActionEvent evt)
@@ -1645,6 +1699,118 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
         playTimer.start();
     } // runAnimation
     
+    // real time animation where the satellites are only propagated every 1/realTimePropagationRateHz seconds
+    // (always a step or two ahead of the real time) and the views interpolate between the steps
+    private void runInterpolatedRealTime()
+    {
+        final long stepMs = Math.max(1, Math.round(1000.0 / realTimePropagationRateHz));
+        
+        // first steps: now and one step ahead
+        stateInterpolator.clear();
+        interpolationRunning = true;
+        realTimeTargetMs = System.currentTimeMillis();
+        updateTime();
+        realTimeTargetMs += stepMs;
+        updateTime();
+        stateInterpolator.setActive(true);
+        
+        // background scheduler for the propagation steps (each is run on the GUI thread, using the propagation
+        // worker threads, a step isn't queued again while the last one is still waiting)
+        final Runnable propagationStep = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    if(interpolationRunning)
+                    {
+                        // next fixed step, or one step from now if it fell behind
+                        realTimeTargetMs = Math.max(realTimeTargetMs + stepMs, System.currentTimeMillis() + stepMs);
+                        updateTime();
+                    }
+                }
+                finally
+                {
+                    propagationStepQueued.set(false);
+                }
+            }
+        };
+        propagationScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "RealTimePropagationScheduler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        propagationScheduler.scheduleAtFixedRate(new Runnable()
+        {
+            public void run()
+            {
+                if(propagationStepQueued.compareAndSet(false, true))
+                {
+                    SwingUtilities.invokeLater(propagationStep);
+                }
+            }
+        }, stepMs / 2, stepMs, TimeUnit.MILLISECONDS); // half a step early so the next step is there in time
+        
+        // render timer
+        playTimer = new Timer(realTimeRenderRateMs, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt)
+            {
+                if(stopHit)
+                {
+                    stopInterpolatedRealTime();
+                    return;
+                }
+                
+                renderInterpolatedTime();
+                
+                long stopTime = System.currentTimeMillis();
+                fpsAnimation = 1.0 / ((stopTime-lastFPSms)/1000.0); // fps calculation
+                lastFPSms = stopTime;
+            }
+        });
+        playTimer.setRepeats(true);
+        playTimer.start();
+    } // runInterpolatedRealTime
+    
+    // shows the current real time in all the views (satellites from the interpolator)
+    private void renderInterpolatedTime()
+    {
+        renderTime.update2CurrentTime();
+        stateInterpolator.setRenderJulianDate(renderTime.getJulianDate());
+        
+        dateTextField.setText( currentJulianDate.convertJD2String(renderTime.getJulianDate()) );
+        
+        // rotation of the earth in 3D windows (and the position of 3D models)
+        for(J3DEarthPanel threeDPanel : threeDWindowVec )
+        {
+            threeDPanel.setMJD(renderTime.getMJD());
+        }
+        for(J3DEarthInternalPanel threeDPanel : threeDInternalWindowVec )
+        {
+            threeDPanel.setMJD(renderTime.getMJD());
+        }
+        
+        forceRepainting();
+    } // renderInterpolatedTime
+    
+    private void stopInterpolatedRealTime()
+    {
+        playTimer.stop();
+        propagationScheduler.shutdownNow();
+        propagationScheduler = null;
+        interpolationRunning = false;
+        stateInterpolator.setActive(false);
+        stateInterpolator.clear();
+        
+        updateTime(); // back to the real time from the step ahead
+        resetAnimationIcons();
+    } // stopInterpolatedRealTime
+    
     public void resetAnimationIcons()
     {
         if( realTimeModeCheckBox.isSelected() )
@@ -1892,68 +2058,95 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
     // update time and take an anmiation step   
     public void updateTime()
     {
-        // save old time
-        double prevJulDate = currentJulianDate.getJulianDate();
+        // hot path instrumentation (see TickMetrics / jsattrak:type=TickMetrics in jconsole)
+        long tickStart = TickMetrics.start();
+        long tickStartBytes = TickMetrics.currentThreadAllocatedBytes();
+        long t0;
         
-        // Get current simulation time!             
-        if(realTimeModeCheckBox.isSelected())
+        // other threads drawing the satellites (e.g. the map tile server) wait until the states are all updated
+        satStateLock.writeLock().lock();
+        try
         {
-            // real time mode -- just use real time
+            // save old time
+            double prevJulDate = currentJulianDate.getJulianDate();
+        
+            // Get current simulation time!             
+            if(realTimeModeCheckBox.isSelected())
+            {
+                // real time mode -- just use real time
             
-            // Get current time in GMT
-            // calculate current Juilian Date, update to current time
-            currentJulianDate.update2CurrentTime(); //update();// = getCurrentJulianDate();
+                // Get current time in GMT
+                // calculate current Juilian Date, update to current time
+                if(interpolationRunning)
+                {
+                    // fixed step of the real time interpolation mode
+                    currentJulianDate.set(realTimeTargetMs);
+                }
+                else
+                {
+                    currentJulianDate.update2CurrentTime(); //update();// = getCurrentJulianDate();
+                }
 
-        }
-        else
-        {
-            // non-real time mode add fraction of time to current jul date
-            //currentJulianDate += currentPlayDirection*animationSimStepDays;
-            currentJulianDate.addSeconds( currentPlayDirection*animationSimStepSeconds );
-        }
-        
-        // update sun position
-        sun.setCurrentMJD(currentJulianDate.getMJD());
-        // DEBUG:
-//        double [] sunPos = sun.getCurrentPositionJ2K();
-//        System.out.println("Sun Pos(J2K) - Date (MJD): " + currentJulianDate.getMJD() + ", <x,y,z> < " +sunPos[0] +", " +sunPos[1] +", "+sunPos[2] +" >");
-//        sunPos = sun.getCurrentPositionMOD();
-//        System.out.println("Sun Pos(MOD) - Date (MJD): " + currentJulianDate.getMJD() + ", <x,y,z> < " +sunPos[0] +", " +sunPos[1] +", "+sunPos[2] +" >");
-//        double[] llaTemp = GeoFunctions.GeodeticJulDate( sun.getCurrentPositionMOD() ,currentJulianDate.getJulianDate());
-//        // sun.getCurrentPositionMOD()
-//        //double[] llaTemp = GeoFunctions.GeodeticJulDate( new double[] {-1.400954880970050E+08,  5.168955443226393E+07 , 2.240975286312218E+07} ,currentJulianDate.getJDN());
-//        // 01 Sep 2007 00:00:00.000 UTC
-//        System.out.println("Sun lat/long :  " + llaTemp[0]*180.0/Math.PI + " , " + llaTemp[1]*180.0/Math.PI);
+            }
+            else
+            {
+                // non-real time mode add fraction of time to current jul date
+                //currentJulianDate += currentPlayDirection*animationSimStepDays;
+                currentJulianDate.addSeconds( currentPlayDirection*animationSimStepSeconds );
+            }
+        
+            // update sun position
+            sun.setCurrentMJD(currentJulianDate.getMJD());
+            // DEBUG:
+    //        double [] sunPos = sun.getCurrentPositionJ2K();
+    //        System.out.println("Sun Pos(J2K) - Date (MJD): " + currentJulianDate.getMJD() + ", <x,y,z> < " +sunPos[0] +", " +sunPos[1] +", "+sunPos[2] +" >");
+    //        sunPos = sun.getCurrentPositionMOD();
+    //        System.out.println("Sun Pos(MOD) - Date (MJD): " + currentJulianDate.getMJD() + ", <x,y,z> < " +sunPos[0] +", " +sunPos[1] +", "+sunPos[2] +" >");
+    //        double[] llaTemp = GeoFunctions.GeodeticJulDate( sun.getCurrentPositionMOD() ,currentJulianDate.getJulianDate());
+    //        // sun.getCurrentPositionMOD()
+    //        //double[] llaTemp = GeoFunctions.GeodeticJulDate( new double[] {-1.400954880970050E+08,  5.168955443226393E+07 , 2.240975286312218E+07} ,currentJulianDate.getJDN());
+    //        // 01 Sep 2007 00:00:00.000 UTC
+    //        System.out.println("Sun lat/long :  " + llaTemp[0]*180.0/Math.PI + " , " + llaTemp[1]*180.0/Math.PI);
                 
-        // if time jumps by more than 91 minutes check period of sat to see if
-        // ground tracks need to be updated
-        double timeDiffDays = Math.abs(currentJulianDate.getJulianDate()-prevJulDate); // in days
-        checkTimeDiffResetGroundTracks(timeDiffDays);        
+            // if time jumps by more than 91 minutes check period of sat to see if
+            // ground tracks need to be updated
+            double timeDiffDays = Math.abs(currentJulianDate.getJulianDate()-prevJulDate); // in days
+            t0 = TickMetrics.start();
+            checkTimeDiffResetGroundTracks(timeDiffDays);        
+            TickMetrics.stop(TickMetrics.GROUND_TRACK, t0);
                 
-        // update date box:
-        dateTextField.setText( currentJulianDate.getDateTimeStr() );//String.format("%tc",cal) );
-        
-        // now propogate all satellites to the current time  
-        for (AbstractSatellite sat : satHash.values() )
-        {
-            sat.propogate2JulDate( currentJulianDate.getJulianDate() );
-        } // propgate each sat
-        
-        // update ground stations to the current time  
-        for (GroundStation gs : gsHash.values() )
-        {
-            gs.setCurrentJulianDate( currentJulianDate.getJulianDate() );
+            // update date box:
+            dateTextField.setText( currentJulianDate.getDateTimeStr() );//String.format("%tc",cal) );
+        
+            // now propogate all satellites to the current time  
+            // (on the worker threads of the propagator, returns when all are done)
+            t0 = TickMetrics.start();
+            int satsPropagated = propagator.propagate(satHash.values(), currentJulianDate.getJulianDate());
+            TickMetrics.stopPropagation(t0, satsPropagated);
+        
+            // update ground stations to the current time  
+            t0 = TickMetrics.start();
+            for (GroundStation gs : gsHash.values() )
+            {
+                gs.setCurrentJulianDate( currentJulianDate.getJulianDate() );
             
-            // test look angles
-//            SatelliteProps sp= satHash.get("ISS (ZARYA)             ");
-//            double[] aer = gs.calculate_AER(sp.getJ2000Position());
-//            
-//            System.out.println("AER: " + aer[0] + ", " + aer[1] + ", " + aer[2]);
+                // test look angles
+    //            SatelliteProps sp= satHash.get("ISS (ZARYA)             ");
+    //            double[] aer = gs.calculate_AER(sp.getJ2000Position());
+    //            
+    //            System.out.println("AER: " + aer[0] + ", " + aer[1] + ", " + aer[2]);
             
-        } // propgate each sat
+            } // propgate each sat
+            TickMetrics.stop(TickMetrics.GROUND_STATIONS, t0);
+        }
+        finally
+        {
+            satStateLock.writeLock().unlock();
+        }
         
         
         // update times in 3D windows
+        t0 = TickMetrics.start();
         for(J3DEarthPanel threeDPanel : threeDWindowVec )
         {
             threeDPanel.setMJD(currentJulianDate.getMJD());
@@ -1962,8 +2155,11 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
         {
             threeDPanel.setMJD(currentJulianDate.getMJD());
         }
+        TickMetrics.stop(TickMetrics.THREE_D_UPDATE, t0);
         
         // update any other time dependant objects
+        // (coverage only gets a copy of the states here and runs on its own thread, see AsyncTimeDependent)
+        t0 = TickMetrics.start();
         for(JSatTrakTimeDependent tdo : timeDependentObjects)
         {
             if(tdo != null)
@@ -1971,10 +2167,18 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
                 tdo.updateTime(currentJulianDate, satHash, gsHash);
             }
         }
+        TickMetrics.stop(TickMetrics.TIME_DEPENDENT, t0);
+        
+        // views interpolate between the steps (real time interpolation mode)
+        if(interpolationRunning)
+        {
+            stateInterpolator.push(SatelliteStateSnapshot.create(currentJulianDate.getJulianDate(), satHash));
+        }
                 
         forceRepainting(); // repaint 2d/3d earth
         
         // update any satellite property window that is open
+        t0 = TickMetrics.start();
         for(SatPropertyPanel satP : satPropWindowVec)
         {
             satP.updateProperties(); 
@@ -1985,7 +2189,9 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
         {
             tp.updateTime( currentJulianDate.getDateTimeStr() );
         }
+        TickMetrics.stop(TickMetrics.UI_UPDATE, t0);
         
+        TickMetrics.endTick(tickStart, tickStartBytes);
         
     } // update time
         
@@ -1996,6 +2202,8 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
     
     public void forceRepainting()
     {
+        long t0 = TickMetrics.start();
+        
         // force repainting of all 2D windows
         for(J2DEarthPanel twoDPanel : twoDWindowVec )
         {
@@ -2012,6 +2220,7 @@ public class JSatTrak extends javax.swing.JFrame implements InternalFrameListene
             threeDPanel.repaintWWJ();         
         }
         
+        TickMetrics.stop(TickMetrics.REPAINT, t0);
     }// forceRepainting
     
     public void forceRepainting(boolean updateMapsData)
@@ -2237,7 +2446,7 @@ private void coverageMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
         {
             coverageAnalyzer = new CoverageAnalyzer(currentJulianDate); // setup new analyzer
             // add coverage analyzer to time update objects
-            timeDependentObjects.add(coverageAnalyzer); // add object to time updates
+            addCoverageTimeUpdates();
             
             // update the CA object in any 3D window currently opened
             for(J3DEarthInternalPanel panel: threeDInternalWindowVec)
@@ -2573,16 +2782,31 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
     
     public void updateTleDataInCurrentList()
     {
+        updateTleDataInCurrentList(null);
+    } //updateTleDataInCurrentList
+    
+    /**
+     * Updates the TLE data of the satellites in the current list
+     * @param changedSatNames names of the satellites with new TLEs (e.g. from TleDownloadManager), null = update all
+     */
+    public void updateTleDataInCurrentList(Set<String> changedSatNames)
+    {
+        // nothing changed, no need to reload the TLE data
+        if(changedSatNames != null && changedSatNames.isEmpty())
+        {
+            return;
+        }
+        
         // update TLE data in current list  - used mostly after updating TLEs
-        JSatBrowser newBrowswer = new JSatBrowser(this, false, this);
-        Hashtable<String,TLE> tleHash = newBrowswer.getTleHash();
+        TleCatalog.invalidateSharedCatalog(); // TLE files have changed
+        TleCatalog catalog = TleCatalog.getSharedCatalog();
         
         for (AbstractSatellite sat : satHash.values() )
         {
-            if (sat instanceof SatelliteTleSGP4) // if sat is a TLE/SGP4 sat
+            if (sat instanceof SatelliteTleSGP4 && (changedSatNames == null || changedSatNames.contains(sat.getName()))) // if sat is a TLE/SGP4 sat (with new data)
             {
                 String name = sat.getName();
-                TLE newTLE = tleHash.get(name);
+                TLE newTLE = catalog.getByName(name);
 
                 if (newTLE != null)
                 {
@@ -2599,11 +2823,7 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
     public void addSat2ListByName(String satName)
     {
         // add sat to list if TLE exsits by name
-        JSatBrowser newBrowswer = new JSatBrowser(this, false, this);
-        
-        Hashtable<String,TLE> tleHash = newBrowswer.getTleHash();
-        
-         TLE newTLE = tleHash.get(satName); 
+         TLE newTLE = TleCatalog.getSharedCatalog().getByName(satName); 
          
          if(newTLE != null)
          {
@@ -2623,6 +2843,120 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
          
     } // addSat2ListByName
     
+    /**
+     * Adds many satellites at once, e.g. addSatellites("GPS Operational", "25544", "ISS (ZARYA)").
+     * Each query is a satellite name, a NORAD catalog number or a whole category
+     * (primary, secondary or TLE file name) looked up in the shared TLE catalog.
+     * The satellites are initialized in parallel and added to the list in one update.
+     * Can be called from any thread.
+     * @param queries names, catalog numbers or categories
+     * @return number of satellites added (satellites already in the list are skipped)
+     */
+    public int addSatellites(String... queries)
+    {
+        TleCatalog catalog = TleCatalog.getSharedCatalog();
+        
+        // resolve all the queries, keeping the order and dropping duplicates
+        LinkedHashMap<String,TLE> tles = new LinkedHashMap<String,TLE>();
+        for(String query : queries)
+        {
+            List<TLE> found = catalog.resolve(query);
+            if(found.isEmpty())
+            {
+                System.out.println("No TLE found for: " + query);
+            }
+            for(TLE tle : found)
+            {
+                if(!satHash.containsKey(tle.getSatName()) && !tles.containsKey(tle.getSatName()))
+                {
+                    tles.put(tle.getSatName(), tle);
+                }
+            }
+        }
+        if(tles.isEmpty())
+        {
+            return 0;
+        }
+        
+        List<String> errors = new ArrayList<String>();
+        List<SatelliteTleSGP4> sats = SatelliteBulkLoader.createSatellites(new ArrayList<TLE>(tles.values()), getCurrentJulTime(), errors);
+        for(String err : errors)
+        {
+            System.out.println("Error adding satellite " + err);
+        }
+        
+        return addSats2ListAndWait(sats);
+    } // addSatellites
+    
+    /**
+     * Creates a whole constellation of custom satellites (e.g. a Walker pattern) starting
+     * at the scenario epoch and adds it to the list in one update. Can be called from any thread.
+     * @param generator constellation settings
+     * @return number of satellites added (satellites with names already in the list are skipped)
+     */
+    public int addConstellation(ConstellationGenerator generator)
+    {
+        List<CustomSatellite> sats = generator.createSatellites(getScenarioEpochDate(), getCurrentJulTime());
+        
+        return addSats2ListAndWait(sats);
+    } // addConstellation
+    
+    // adds the satellites to the list (and hash) on the event thread
+    private int addSats2ListAndWait(final List<? extends AbstractSatellite> sats)
+    {
+        final int[] numAdded = new int[1];
+        Runnable addSats = new Runnable()
+        {
+            public void run()
+            {
+                numAdded[0] = objListPanel.addSats2List(sats);
+                forceRepainting();
+            }
+        };
+        if(SwingUtilities.isEventDispatchThread())
+        {
+            addSats.run();
+        }
+        else
+        {
+            try
+            {
+                SwingUtilities.invokeAndWait(addSats);
+            }
+            catch(Exception e)
+            {
+                System.out.println("Error adding satellites: " + e.toString());
+            }
+        }
+        
+        return numAdded[0];
+    } // addSats2ListAndWait
+    
+    /**
+     * Propagates the missions of all the custom satellites at the same time (in the background),
+     * each satellite gets its new ephemeris when its mission finishes. Call on the event thread.
+     * @return the running worker (can be used to cancel the missions), null if there are no custom satellites
+     */
+    public MissionSchedulerWorker propagateCustomSatellites()
+    {
+        List<CustomSatellite> customSats = new ArrayList<CustomSatellite>();
+        for(AbstractSatellite sat : satHash.values())
+        {
+            if(sat instanceof CustomSatellite)
+            {
+                customSats.add((CustomSatellite) sat);
+            }
+        }
+        if(customSats.isEmpty())
+        {
+            return null;
+        }
+        
+        MissionSchedulerWorker worker = new MissionSchedulerWorker(customSats, this);
+        worker.start();
+        return worker;
+    } // propagateCustomSatellites
+    
      // routine to do the screen capture:
     public void createScreenCapture()
     {
@@ -2841,6 +3175,56 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
         
     }
 
+    public boolean isRealTimeInterpolation()
+    {
+        return realTimeInterpolation;
+    }
+
+    /**
+     * Real time interpolation mode: in real time mode the satellites are only propagated realTimePropagationRateHz
+     * times a second and the 2D/3D views show the positions interpolated to the real time every realTimeRenderRateMs
+     * (used the next time the animation is started)
+     * @param realTimeInterpolation true to use it
+     */
+    public void setRealTimeInterpolation(boolean realTimeInterpolation)
+    {
+        this.realTimeInterpolation = realTimeInterpolation;
+    }
+
+    public double getRealTimePropagationRateHz()
+    {
+        return realTimePropagationRateHz;
+    }
+
+    /**
+     * @param realTimePropagationRateHz propagation steps per second in real time interpolation mode (e.g. 1-5)
+     */
+    public void setRealTimePropagationRateHz(double realTimePropagationRateHz)
+    {
+        this.realTimePropagationRateHz = Math.max(0.1, Math.min(realTimePropagationRateHz, 100.0));
+    }
+
+    public int getRealTimeRenderRateMs()
+    {
+        return realTimeRenderRateMs;
+    }
+
+    /**
+     * @param realTimeRenderRateMs refresh rate of the views in real time interpolation mode [ms]
+     */
+    public void setRealTimeRenderRateMs(int realTimeRenderRateMs)
+    {
+        this.realTimeRenderRateMs = Math.max(1, realTimeRenderRateMs);
+    }
+
+    /**
+     * @return satellite positions between time steps used by the 2D and 3D views (active in real time interpolation mode)
+     */
+    public SnapshotInterpolator getStateInterpolator()
+    {
+        return stateInterpolator;
+    }
+
     public int getNonRealTimeAnimationRefreshRateMs()
     {
         return nonRealTimeAnimationRefreshRateMs;
@@ -2917,7 +3301,11 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
             }
         }
         
-        // clear satHash
+        // clear satHash (freeing the 3D models)
+        for(AbstractSatellite sat : satHash.values())
+        {
+            sat.releaseThreeDModel();
+        }
         satHash.clear();
         gsHash.clear();
         
@@ -2961,8 +3349,17 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
         
         // clear time dependant objects
         timeDependentObjects.clear();
+        if(stateServer != null)
+        {
+            timeDependentObjects.add(stateServer); // keeps running
+        }
         
         // reset coverage analysis
+        if(coverageStage != null)
+        {
+            coverageStage.dispose();
+            coverageStage = null;
+        }
         coverageAnalyzer = null;
         
         System.gc(); // clean up
@@ -3035,7 +3432,8 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
                     // Cast object to a Vector
                     JstSaveClass openClass = (JstSaveClass) obj;
                                        
-                    // load satHash carefully
+                    // load satHash carefully (the models of the old satellites are freed unless the new ones use them too)
+                    Hashtable<String,AbstractSatellite> oldHash = new Hashtable<String,AbstractSatellite>(satHash);
                     satHash.clear();
                     Hashtable<String,AbstractSatellite> tempHash = openClass.getSatHash();
                     for(String key : tempHash.keySet() )
@@ -3043,6 +3441,10 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
                         satHash.put(key, tempHash.get(key)); // copy manually
                         satHash.get(key).setUse3dModel( satHash.get(key).isUse3dModel() ); // auto-loads 3D models if they are used
                     }
+                    for(AbstractSatellite sat : oldHash.values())
+                    {
+                        sat.releaseThreeDModel();
+                    }
                     
                     // populate ground station hash
                     gsHash.clear();
@@ -3090,7 +3492,7 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
                     this.coverageAnalyzer = openClass.getCa();
                     if(coverageAnalyzer != null)
                     {
-                        timeDependentObjects.add(coverageAnalyzer); // add object to time updates
+                        addCoverageTimeUpdates(); // add object to time updates
                     }
                     
                     // create all the needed 2D windows:
@@ -3260,6 +3662,141 @@ private void lookFeelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//
     {
         return satHash;
     }
+
+    /**
+     * Adds an object to be updated every time step (after the satellites and ground stations)
+     * until a new scenario is started or opened
+     * @param tdo time dependent object (e.g. an AccessMatrix)
+     */
+    public void addTimeDependentObject(JSatTrakTimeDependent tdo)
+    {
+        timeDependentObjects.add(tdo);
+        tdo.updateTime(currentJulianDate, satHash, gsHash);
+    }
+
+    public void removeTimeDependentObject(JSatTrakTimeDependent tdo)
+    {
+        timeDependentObjects.remove(tdo);
+    }
+
+    // adds the coverage analyzer to the time updates, run on its own thread
+    private void addCoverageTimeUpdates()
+    {
+        if(coverageStage != null)
+        {
+            timeDependentObjects.remove(coverageStage);
+            coverageStage.dispose();
+        }
+        coverageStage = new AsyncTimeDependent(coverageAnalyzer);
+        coverageStage.setUpdateListener(new Runnable()
+        {
+            public void run()
+            {
+                // show the new coverage data (also when the time isn't running)
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        forceRepainting();
+                    }
+                });
+            }
+        });
+        timeDependentObjects.add(coverageStage);
+    } // addCoverageTimeUpdates
+
+    /**
+     * Waits until the analyses running on their own threads (coverage) have caught up with the current time
+     * @param timeoutMs maximum time to wait [ms]
+     * @return false if it timed out
+     */
+    public boolean waitForAnalytics(long timeoutMs)
+    {
+        AsyncTimeDependent stage = coverageStage;
+        return (stage == null) || stage.waitUntilIdle(timeoutMs);
+    }
+
+    /**
+     * @return coverage analysis thread (null if coverage isn't set up), e.g. for its dropped time step count
+     */
+    public AsyncTimeDependent getCoverageStage()
+    {
+        return coverageStage;
+    }
+
+    /**
+     * Starts the state query / subscription server (see StateServer), if it isn't running already
+     * @param port TCP port
+     * @return the server
+     * @throws IOException if the port can't be opened
+     */
+    public StateServer startStateServer(int port) throws IOException
+    {
+        if(stateServer == null)
+        {
+            StateServer server = new StateServer();
+            server.start(port);
+            stateServer = server;
+            addTimeDependentObject(stateServer);
+        }
+        return stateServer;
+    } // startStateServer
+
+    public void stopStateServer()
+    {
+        if(stateServer != null)
+        {
+            removeTimeDependentObject(stateServer);
+            stateServer.stop();
+            stateServer = null;
+        }
+    } // stopStateServer
+
+    public StateServer getStateServer()
+    {
+        return stateServer;
+    }
+
+    /**
+     * Lock other threads reading the time and satellite states should hold (read lock), updateTime holds the
+     * write lock while it changes them
+     * @return the lock
+     */
+    public ReadWriteLock getSatStateLock()
+    {
+        return satStateLock;
+    }
+
+    /**
+     * Starts the 2D map tile HTTP server (see MapTileServer), if it isn't running already
+     * @param port TCP port
+     * @return the server
+     * @throws IOException if the port can't be opened
+     */
+    public MapTileServer startMapTileServer(int port) throws IOException
+    {
+        if(mapTileServer == null)
+        {
+            MapTileServer server = new MapTileServer(new J2dMapRenderer(this));
+            server.start(port);
+            mapTileServer = server;
+        }
+        return mapTileServer;
+    } // startMapTileServer
+
+    public void stopMapTileServer()
+    {
+        if(mapTileServer != null)
+        {
+            mapTileServer.stop();
+            mapTileServer = null;
+        }
+    } // stopMapTileServer
+
+    public MapTileServer getMapTileServer()
+    {
+        return mapTileServer;
+    }
     
     public int[] getSatListWHXY()
     {
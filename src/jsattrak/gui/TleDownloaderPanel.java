@@ -24,11 +24,13 @@
 package jsattrak.gui;
 
 import java.util.List;
+import java.util.Set;
 import javax.swing.JInternalFrame;
 import javax.swing.JOptionPane;
 import javax.swing.SwingWorker;
 import jsattrak.utilities.ProgressStatus;
 import jsattrak.utilities.TLEDownloader;
+import jsattrak.utilities.TleDownloadManager;
 
 /**
  *
@@ -215,6 +217,7 @@ private void tleStartDowloadButtonActionPerformed(java.awt.event.ActionEvent evt
     {
         boolean result;
         String errorMessage;
+        Set<String> changedSatNames; // satellites with new element sets
 
         @Override
         public Boolean doInBackground()
@@ -237,21 +240,16 @@ private void tleStartDowloadButtonActionPerformed(java.awt.event.ActionEvent evt
                 tleDownloader.setProxyPort(proxyPortField.getText());
             }
 
-            // run the downloader, and publish the progress after each file
-            // do download
-            result = tleDownloader.startTLEDownload();
-
-            // if started okay download the files
-            if (result)
+            // run the downloader (several files at once, unchanged files are skipped), and publish the progress after each file
+            final TleDownloadManager manager = new TleDownloadManager(tleDownloader);
+            result = manager.downloadAll(new TleDownloadManager.ProgressListener()
             {
-                // while there is more to download and there are no errors
-                while (tleDownloader.hasMoreToDownload() && result)
+                public void fileFinished(TleDownloadManager.FileResult r, int filesDone, int filesTotal)
                 {
-                    publish( new ProgressStatus(tleDownloader.getPercentComplete(), tleDownloader.getNextFileName())  );
-
-                    result = tleDownloader.downloadNextTLE();
+                    publish( new ProgressStatus((int) Math.round((filesDone * 100.0) / filesTotal), r.getFileName()) );
                 }
-            }
+            });
+            changedSatNames = manager.getChangedSatelliteNames();
             publish(new ProgressStatus(100,"")); // finished
             //boolean result = tleDownloader.downloadTLEs();
 
@@ -281,7 +279,7 @@ private void tleStartDowloadButtonActionPerformed(java.awt.event.ActionEvent evt
             // save error if there is one
             if(!result)
             {
-                errorMessage = "ERROR Updating TLE Data: " + tleDownloader.getErrorText();
+                errorMessage = "ERROR Updating TLE Data: " + manager.getErrorText();
             }
 
 
@@ -318,8 +316,8 @@ private void tleStartDowloadButtonActionPerformed(java.awt.event.ActionEvent evt
             // display sucess/failure to user
             if (result) // success
             {
-                // update TLE data in JSatTrak list
-                app.updateTleDataInCurrentList();
+                // update TLE data in JSatTrak list (only satellites that changed)
+                app.updateTleDataInCurrentList(changedSatNames);
 
                 // let user know everything went well
                 String message = "Satellite TLE data was successfully updated!";
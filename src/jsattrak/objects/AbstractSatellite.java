@@ -177,6 +177,8 @@ public abstract class AbstractSatellite implements Serializable
     
     public abstract WWModel3D_new getThreeDModel();
     
+    public abstract void releaseThreeDModel();
+    
     public abstract double[] getTEMEVelocity();
     
     public abstract double getThreeDModelSizeFactor();
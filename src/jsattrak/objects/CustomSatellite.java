@@ -25,10 +25,13 @@ import gov.nasa.worldwind.geom.Position;
 import java.awt.Color;
 import java.awt.Toolkit;
 import java.util.Vector;
+import java.util.concurrent.Future;
 import javax.swing.ImageIcon;
 import jsattrak.customsat.InitialConditionsNode;
+import jsattrak.customsat.ManeuverNode;
 import jsattrak.customsat.PropogatorNode;
 import jsattrak.customsat.StopNode;
+import jsattrak.ephemeris.ChebyshevEphemeris;
 import jsattrak.utilities.StateVector;
 import jsattrak.utilities.TLE;
 import name.gano.astro.AstroConst;
@@ -39,7 +42,8 @@ import name.gano.math.interpolation.LagrangeInterp;
 import name.gano.swingx.treetable.CustomTreeTableNode;
 import name.gano.astro.coordinates.J2kCoordinateConversion;
 import name.gano.worldwind.modelloader.WWModel3D_new;
-import net.java.joglutils.model.ModelFactory;
+import name.gano.worldwind.modelloader.ModelCache;
+import net.java.joglutils.model.geometry.Model;
 import org.jdesktop.swingx.treetable.DefaultTreeTableModel;
 
 /**
@@ -51,7 +55,13 @@ public class CustomSatellite  extends AbstractSatellite
     //====================================
     private int ephemerisIncrement = 30; // number of rows added at a time to improve speed of memory allocation
     // internal ephemeris (Time store in TT)
-    private Vector<StateVector> ephemeris = new Vector<StateVector>(ephemerisIncrement, ephemerisIncrement); // array to store ephemeris
+    // (replaced as a whole when a mission is propagated, methods using it take a local reference first)
+    private volatile Vector<StateVector> ephemeris = new Vector<StateVector>(ephemerisIncrement, ephemerisIncrement); // array to store ephemeris
+    // compressed ephemeris (Chebyshev segments), used instead of the ephemeris points when set
+    private volatile ChebyshevEphemeris chebyshevEphemeris;
+    private boolean storeFullEphemeris = false; // keep every ephemeris point instead of compressing
+    private double ephemerisTolerance = ChebyshevEphemeris.DEFAULT_TOLERANCE; // compressed ephemeris position tolerance [m]
+    private double ephemerisSegmentLength = 0; // compressed ephemeris max segment length [sec], 0 = one orbit
     //====================================
     
     
@@ -115,6 +125,8 @@ public class CustomSatellite  extends AbstractSatellite
     private boolean use3dModel = false; // use custom 3D model (or default sphere)
     private String threeDModelPath = "globalstar/Globalstar.3ds"; // path to the custom model, default= globalstar/Globalstar.3ds ?
     private transient WWModel3D_new threeDModel; // DO NOT STORE when saving -- need to reload this -- TOO MUCH DATA!
+    private transient Future<Model> threeDModelLoading; // shared model being loaded, until threeDModel is made from it
+    private transient String threeDModelCachePath; // model held in the ModelCache (released when not used)
     private double threeDModelSizeFactor = 300000;
     
 //    // Constructors
@@ -178,6 +190,8 @@ public class CustomSatellite  extends AbstractSatellite
     @Override
     public void propogate2JulDate(double julDate)
     {
+        ChebyshevEphemeris chebEphemeris = getChebyshevEphemeris(); // same ephemeris throughout even if a new one is set
+        Vector<StateVector> ephemeris = this.ephemeris;
         // save date
         this.currentJulianDate = julDate; // UTC
         
@@ -191,106 +205,115 @@ public class CustomSatellite  extends AbstractSatellite
 
 
         // find the nodes closest to the current time
-        if (ephemeris.size() > 0) //
+        if (chebEphemeris != null || ephemeris.size() > 0) //
         {
             //double epochkMJD = tleEpochJD - AstroConst.JDminusMJD;
 
             // in UTC
-            minTime = ephemeris.get(0).state[0] - deltaTT2UTC;
-            maxTime = ephemeris.get( ephemeris.size()-1).state[0] - deltaTT2UTC;
+            minTime = getEphemerisStartTime(chebEphemeris, ephemeris) - deltaTT2UTC;
+            maxTime = getEphemerisEndTime(chebEphemeris, ephemeris) - deltaTT2UTC;
 
             // see if the current time in inside of the ephemeris range
             if (julDate <= maxTime && julDate >= minTime)
             {
-
-                /// very simple search (slow!)
-                StateVector tempState = ephemeris.elementAt(1); // first item
-                tempTime = ephemeris.get(1).state[0]- deltaTT2UTC;
-                
-                int i = 1;
-                // find where in the ephemeris to interpolat around
-                
-                while (tempTime < julDate) // not <= causes out of bounds errors
+                if(j2kPos == null)
                 {
-                    i++;
-                    tempState = ephemeris.get(i); // first item
-                    tempTime = tempState.state[0]- deltaTT2UTC;
+                    j2kPos = new double[3];
                 }
-
-                int i1, i2, i3; // indexes for interpolation
-                if (i == 1) // start case
+                if(j2kVel == null)
                 {
-                    i1 = 0;
-                    i2 = 1;
-                    i3 = 2;
+                    j2kVel = new double[3];
                 }
-                else if (i == ephemeris.size() - 1) // other end
+
+                if(chebEphemeris != null)
                 {
-                    i3 = ephemeris.size() - 1;
-                    i2 = ephemeris.size() - 2;
-                    i1 = ephemeris.size() - 3;
+                    double[] state = new double[6];
+                    chebEphemeris.getState(julDate + deltaTT2UTC, state); // in TT
+                    System.arraycopy(state, 0, j2kPos, 0, 3);
+                    System.arraycopy(state, 3, j2kVel, 0, 3);
                 }
                 else
                 {
-                    i1 = i - 1;
-                    i2 = i;
-                    i3 = i + 1;
-                }
 
-                // X,Y,Z position
-                tempState = ephemeris.get(i1); // first item
-                double t1 = tempState.state[0];///86400+epochkMJD;
-                double x1 = tempState.state[1];
-                double y1 = tempState.state[2];
-                double z1 = tempState.state[3];
-                tempState = ephemeris.get(i2);
-                double t2 = tempState.state[0];///86400+epochkMJD;
-                double x2 = tempState.state[1];
-                double y2 = tempState.state[2];
-                double z2 = tempState.state[3];
-                tempState = ephemeris.get(i3);
-                double t3 = tempState.state[0];///86400+epochkMJD;
-                double x3 = tempState.state[1];
-                double y3 = tempState.state[2];
-                double z3 = tempState.state[3];
-
-                double timeSecEpoch = julDate + deltaTT2UTC; // in TT 
+                    /// very simple search (slow!)
+                    StateVector tempState = ephemeris.elementAt(1); // first item
+                    tempTime = ephemeris.get(1).state[0]- deltaTT2UTC;
                 
-                if(j2kPos == null)
-                {
-                    j2kPos = new double[3];
-                }
+                    int i = 1;
+                    // find where in the ephemeris to interpolat around
+                
+                    while (tempTime < julDate) // not <= causes out of bounds errors
+                    {
+                        i++;
+                        tempState = ephemeris.get(i); // first item
+                        tempTime = tempState.state[0]- deltaTT2UTC;
+                    }
 
-                j2kPos[0] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, x1, t2, x2, t3, x3);
-                j2kPos[1] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, y1, t2, y2, t3, y3);
-                j2kPos[2] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, z1, t2, z2, t3, z3);
+                    int i1, i2, i3; // indexes for interpolation
+                    if (i == 1) // start case
+                    {
+                        i1 = 0;
+                        i2 = 1;
+                        i3 = 2;
+                    }
+                    else if (i == ephemeris.size() - 1) // other end
+                    {
+                        i3 = ephemeris.size() - 1;
+                        i2 = ephemeris.size() - 2;
+                        i1 = ephemeris.size() - 3;
+                    }
+                    else
+                    {
+                        i1 = i - 1;
+                        i2 = i;
+                        i3 = i + 1;
+                    }
 
-                // current j2K Velocity
-                // X,Y,Z velocity
-                tempState = ephemeris.get(i1); // first item
-                t1 = tempState.state[0];///86400+epochkMJD;
-                x1 = tempState.state[4];
-                y1 = tempState.state[5];
-                z1 = tempState.state[6];
-                tempState = ephemeris.get(i2);
-                t2 = tempState.state[0];///86400+epochkMJD;
-                x2 = tempState.state[4];
-                y2 = tempState.state[5];
-                z2 = tempState.state[6];
-                tempState = ephemeris.get(i3);
-                t3 = tempState.state[0];///86400+epochkMJD;
-                x3 = tempState.state[4];
-                y3 = tempState.state[5];
-                z3 = tempState.state[6];
+                    // X,Y,Z position
+                    tempState = ephemeris.get(i1); // first item
+                    double t1 = tempState.state[0];///86400+epochkMJD;
+                    double x1 = tempState.state[1];
+                    double y1 = tempState.state[2];
+                    double z1 = tempState.state[3];
+                    tempState = ephemeris.get(i2);
+                    double t2 = tempState.state[0];///86400+epochkMJD;
+                    double x2 = tempState.state[1];
+                    double y2 = tempState.state[2];
+                    double z2 = tempState.state[3];
+                    tempState = ephemeris.get(i3);
+                    double t3 = tempState.state[0];///86400+epochkMJD;
+                    double x3 = tempState.state[1];
+                    double y3 = tempState.state[2];
+                    double z3 = tempState.state[3];
+
+                    double timeSecEpoch = julDate + deltaTT2UTC; // in TT 
                 
-                if(j2kVel == null)
-                {
-                    j2kVel = new double[3];
-                }
-
-                j2kVel[0] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, x1, t2, x2, t3, x3);
-                j2kVel[1] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, y1, t2, y2, t3, y3);
-                j2kVel[2] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, z1, t2, z2, t3, z3);
+                    j2kPos[0] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, x1, t2, x2, t3, x3);
+                    j2kPos[1] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, y1, t2, y2, t3, y3);
+                    j2kPos[2] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, z1, t2, z2, t3, z3);
+
+                    // current j2K Velocity
+                    // X,Y,Z velocity
+                    tempState = ephemeris.get(i1); // first item
+                    t1 = tempState.state[0];///86400+epochkMJD;
+                    x1 = tempState.state[4];
+                    y1 = tempState.state[5];
+                    z1 = tempState.state[6];
+                    tempState = ephemeris.get(i2);
+                    t2 = tempState.state[0];///86400+epochkMJD;
+                    x2 = tempState.state[4];
+                    y2 = tempState.state[5];
+                    z2 = tempState.state[6];
+                    tempState = ephemeris.get(i3);
+                    t3 = tempState.state[0];///86400+epochkMJD;
+                    x3 = tempState.state[4];
+                    y3 = tempState.state[5];
+                    z3 = tempState.state[6];
+
+                    j2kVel[0] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, x1, t2, x2, t3, x3);
+                    j2kVel[1] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, y1, t2, y2, t3, y3);
+                    j2kVel[2] = LagrangeInterp.Lagrange3pt(timeSecEpoch, t1, z1, t2, z2, t3, z3);
+                } // interpolate ephemeris points
                 
                 
                 // convert to LLA -- time in days since J2000
@@ -382,9 +405,11 @@ public class CustomSatellite  extends AbstractSatellite
     
      public double getSatTleEpochJulDate()
     {
-        if(ephemeris.size() > 0)
+        ChebyshevEphemeris chebEphemeris = getChebyshevEphemeris(); // same ephemeris throughout even if a new one is set
+        Vector<StateVector> ephemeris = this.ephemeris;
+        if(chebEphemeris != null || ephemeris.size() > 0)
         {
-            return ephemeris.firstElement().state[0]; // returns TT time
+            return getEphemerisStartTime(chebEphemeris, ephemeris); // returns TT time
         }
         else
         {   
@@ -428,6 +453,8 @@ public class CustomSatellite  extends AbstractSatellite
     @Override
     public double[] calculateJ2KPositionFromUT(double julDate)
     {
+        ChebyshevEphemeris chebEphemeris = getChebyshevEphemeris(); // same ephemeris throughout even if a new one is set
+        Vector<StateVector> ephemeris = this.ephemeris;
         double[] ptPos = new double[3];
 
         double tempTime, maxTime, minTime;
@@ -437,7 +464,11 @@ public class CustomSatellite  extends AbstractSatellite
 
 
         // find the nodes closest to the current time
-        if (ephemeris.size() > 0) //
+        if(chebEphemeris != null)
+        {
+            chebEphemeris.getState(julDate + deltaTT2UTC, ptPos); // in TT, position only (zeros if not in time)
+        }
+        else if (ephemeris.size() > 0) //
         {
             //double epochkMJD = tleEpochJD? - AstroConst.JDminusMJD;
 
@@ -597,6 +628,10 @@ public class CustomSatellite  extends AbstractSatellite
     // 
     private void fillGroundTrack(double lastAscendingNodeTime, double leadEndTime, double lagEndTime)
     {
+        ChebyshevEphemeris chebEphemeris = getChebyshevEphemeris(); // same ephemeris throughout even if a new one is set
+        Vector<StateVector> ephemeris = this.ephemeris;
+        double startTT = getEphemerisStartTime(chebEphemeris, ephemeris);
+        double endTT = getEphemerisEndTime(chebEphemeris, ephemeris);
         // points in the lead direction
         int ptsLead = (int)Math.ceil(grnTrkPointsPerPeriod*groundTrackLeadPeriodMultiplier);
         latLongLead = new double[ptsLead][3];        
@@ -610,7 +645,7 @@ public class CustomSatellite  extends AbstractSatellite
             // make sure the time is in ephemeris -- TIMES IN ARE UTC epeheris time is TT
             // make that time correction
             double deltaTT2UTC = Time.deltaT(ptTime - AstroConst.JDminusMJD); // = TT - UTC
-            if (ptTime >= ephemeris.firstElement().state[0] - deltaTT2UTC && ptTime <= ephemeris.lastElement().state[0] - deltaTT2UTC)
+            if (ptTime >= startTT - deltaTT2UTC && ptTime <= endTT - deltaTT2UTC)
             {
                 // PUT HERE calculate lat lon
                 double[] ptLlaXyz = calculateLatLongAltXyz(ptTime);
@@ -651,7 +686,7 @@ public class CustomSatellite  extends AbstractSatellite
             // make sure the time is in ephemeris -- TIMES IN ARE UTC epeheris time is TT
             // make that time correction
             double deltaTT2UTC = Time.deltaT(ptTime - AstroConst.JDminusMJD); // = TT - UTC
-            if (ptTime >= ephemeris.firstElement().state[0] - deltaTT2UTC && ptTime <= ephemeris.lastElement().state[0] - deltaTT2UTC)
+            if (ptTime >= startTT - deltaTT2UTC && ptTime <= endTT - deltaTT2UTC)
             {
 
                 double[] ptLlaXyz = calculateLatLongAltXyz(ptTime);
@@ -1062,15 +1097,113 @@ public class CustomSatellite  extends AbstractSatellite
         return missionTableModel;
     }
 
+    /**
+     * @return ephemeris points (TT time) - if the ephemeris is compressed this is a new Vector
+     *         evaluated from it at the times of the propagated points on each call (not
+     *         cached, keep the result rather than calling this again)
+     */
     public Vector<StateVector> getEphemeris()
     {
+        ChebyshevEphemeris chebEphemeris = getChebyshevEphemeris();
+        if(chebEphemeris != null)
+        {
+            return chebEphemeris.toStateVectors();
+        }
         return ephemeris;
     }
+
+    /**
+     * @return compressed ephemeris, null if the full ephemeris is stored (or there is none)
+     */
+    public ChebyshevEphemeris getChebyshevEphemeris()
+    {
+        return chebyshevEphemeris;
+    }
+
+    // when loaded from a scenario file: compresses a full ephemeris saved by an older version
+    private Object readResolve()
+    {
+        if(chebyshevEphemeris == null && !storeFullEphemeris && ephemeris != null && ephemeris.size() > 2)
+        {
+            setEphemeris(ephemeris);
+        }
+        return this;
+    }
+
+    // start/end of the ephemeris (TT), NaN if there isn't one
+    private static double getEphemerisStartTime(ChebyshevEphemeris chebEphemeris, Vector<StateVector> ephemeris)
+    {
+        if(chebEphemeris != null)
+        {
+            return chebEphemeris.getStartTime();
+        }
+        return (ephemeris.size() > 0) ? ephemeris.firstElement().state[0] : Double.NaN;
+    }
+
+    private static double getEphemerisEndTime(ChebyshevEphemeris chebEphemeris, Vector<StateVector> ephemeris)
+    {
+        if(chebEphemeris != null)
+        {
+            return chebEphemeris.getEndTime();
+        }
+        return (ephemeris.size() > 0) ? ephemeris.lastElement().state[0] : Double.NaN;
+    }
+    
+    // times (TT) of the impulsive maneuvers in the mission, the compressed ephemeris is split there
+    private double[] getManeuverTimes()
+    {
+        Vector<Double> times = new Vector<Double>();
+        addManeuverTimes((CustomTreeTableNode)missionTableModel.getRoot(), times);
+
+        double[] t = new double[times.size()];
+        for(int i = 0; i < t.length; i++)
+        {
+            t[i] = times.get(i);
+        }
+        return t;
+    }
+
+    private static void addManeuverTimes(CustomTreeTableNode node, Vector<Double> times)
+    {
+        if(node == null)
+        {
+            return;
+        }
+        if(node instanceof ManeuverNode && node.getStartTTjulDate() > 0)
+        {
+            times.add(node.getStartTTjulDate());
+        }
+        for(int i = 0; i < node.getChildCount(); i++)
+        {
+            addManeuverTimes((CustomTreeTableNode)node.getChildAt(i), times);
+        }
+    }
     
-    // set ephemeris
+    // set ephemeris - compressed into Chebyshev segments unless storeFullEphemeris is set
     public void setEphemeris(Vector<StateVector> e)
     {
+        if(!storeFullEphemeris)
+        {
+            double tolerance = (ephemerisTolerance > 0) ? ephemerisTolerance : ChebyshevEphemeris.DEFAULT_TOLERANCE;
+            ChebyshevEphemeris chebEphemeris = ChebyshevEphemeris.fit(e, tolerance, ephemerisSegmentLength, ChebyshevEphemeris.DEFAULT_MAX_DEGREE, getManeuverTimes());
+            if(chebEphemeris != null && chebEphemeris.getMaxError() > chebEphemeris.getTolerance())
+            {
+                // (e.g. a jump in the ephemeris) the points are better than the fit
+                System.out.println("Ephemeris of " + name + " not compressed, the fit is only within " + (float)chebEphemeris.getMaxError() + " m (tolerance " + (float)chebEphemeris.getTolerance() + " m)");
+                chebEphemeris = null;
+            }
+            if(chebEphemeris != null)
+            {
+
+                // compressed ephemeris first, so readers always have one of them
+                this.chebyshevEphemeris = chebEphemeris;
+                this.ephemeris = new Vector<StateVector>(ephemerisIncrement, ephemerisIncrement);
+                return;
+            }
+        }
+
         this.ephemeris = e;
+        this.chebyshevEphemeris = null;
         
 //        // fill out all needed arrays (such as lead or lag etc) in MOD coordinates as needed
 //        // latLongLead // lla
@@ -1111,6 +1244,45 @@ public class CustomSatellite  extends AbstractSatellite
         
     } // set ephemeris
 
+    public boolean isStoreFullEphemeris()
+    {
+        return storeFullEphemeris;
+    }
+
+    /**
+     * @param storeFullEphemeris keep every propagated point instead of the compressed ephemeris (used from the next propagation)
+     */
+    public void setStoreFullEphemeris(boolean storeFullEphemeris)
+    {
+        this.storeFullEphemeris = storeFullEphemeris;
+    }
+
+    public double getEphemerisTolerance()
+    {
+        return ephemerisTolerance;
+    }
+
+    /**
+     * @param ephemerisTolerance compressed ephemeris position tolerance [m] (used from the next propagation)
+     */
+    public void setEphemerisTolerance(double ephemerisTolerance)
+    {
+        this.ephemerisTolerance = ephemerisTolerance;
+    }
+
+    public double getEphemerisSegmentLength()
+    {
+        return ephemerisSegmentLength;
+    }
+
+    /**
+     * @param ephemerisSegmentLength compressed ephemeris max segment length [sec], 0 = one orbit (used from the next propagation)
+     */
+    public void setEphemerisSegmentLength(double ephemerisSegmentLength)
+    {
+        this.ephemerisSegmentLength = ephemerisSegmentLength;
+    }
+
     public boolean isShowConsoleOnPropogate()
     {
         return showConsoleOnPropogate;
@@ -1181,6 +1353,10 @@ public class CustomSatellite  extends AbstractSatellite
             
             loadNewModel(threeDModelPath);
         }
+        else if(!use3dModel)
+        {
+            releaseThreeDModel();
+        }
     }
     
     public String getThreeDModelPath()
@@ -1203,16 +1379,25 @@ public class CustomSatellite  extends AbstractSatellite
         this.threeDModelPath = path; // save path no matter
     }
     
-    private void loadNewModel(String path)
+    private synchronized void loadNewModel(String path)
     {
-        String localPath = "data/models/"; // path to models root from user.dir
-        
-        try
-            {
-                net.java.joglutils.model.geometry.Model model3DS = ModelFactory.createModel(localPath + path);
-                //model3DS.setUseLighting(false); // turn off lighting!
+        // model shared by all satellites using the same file, loaded once on the cache's loader thread
+        // (acquired before releasing the old one, so reloading the same model keeps it in the cache)
+        Future<Model> model = ModelCache.getSharedCache().acquire(path);
+        releaseThreeDModel();
 
-                threeDModel =  new WWModel3D_new(model3DS,
+        threeDModelCachePath = path;
+        threeDModelLoading = model;
+    }
+    
+    public synchronized WWModel3D_new getThreeDModel()
+    {
+        // once the shared model is loaded, make this satellite's own copy of the position and attitude
+        if(threeDModelLoading != null && threeDModelLoading.isDone())
+        {
+            try
+            {
+                threeDModel =  new WWModel3D_new(threeDModelLoading.get(),
                         new Position(Angle.fromRadians(this.getLatitude()),
                         Angle.fromRadians(this.getLongitude()),
                         this.getAltitude()));
@@ -1224,14 +1409,27 @@ public class CustomSatellite  extends AbstractSatellite
                 
             }catch(Exception e)
             {
-                System.out.println("ERROR LOADING 3D MODEL");
+                System.out.println("ERROR LOADING 3D MODEL: " + e.toString());
             }
+            threeDModelLoading = null;
+        }
+        
+        return threeDModel;
     }
     
-    public WWModel3D_new getThreeDModel()
+    /**
+     * Releases the 3D model (call when the satellite is removed), the shared model is freed when no satellite uses it
+     */
+    public synchronized void releaseThreeDModel()
     {
-        return threeDModel;
-    }    
+        if(threeDModelCachePath != null)
+        {
+            ModelCache.getSharedCache().release(threeDModelCachePath);
+            threeDModelCachePath = null;
+        }
+        threeDModelLoading = null;
+        threeDModel = null;
+    }
     
     public  double[] getTEMEVelocity()
     {
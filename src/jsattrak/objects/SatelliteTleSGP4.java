@@ -28,6 +28,7 @@ import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Position;
 import java.awt.Color;
 import java.util.Random;
+import java.util.concurrent.Future;
 import javax.swing.JOptionPane;
 import name.gano.astro.AstroConst;
 import name.gano.astro.GeoFunctions;
@@ -38,7 +39,8 @@ import name.gano.astro.propogators.sgp4_cssi.SGP4SatData;
 import name.gano.astro.propogators.sgp4_cssi.SGP4unit;
 import name.gano.astro.propogators.sgp4_cssi.SGP4utils;
 import name.gano.worldwind.modelloader.WWModel3D_new;
-import net.java.joglutils.model.ModelFactory;
+import name.gano.worldwind.modelloader.ModelCache;
+import net.java.joglutils.model.geometry.Model;
 
 /**
  * 
@@ -100,6 +102,8 @@ public class SatelliteTleSGP4 extends AbstractSatellite
     private boolean use3dModel = false; // use custom 3D model (or default sphere)
     private String threeDModelPath = "globalstar/Globalstar.3ds"; // path to the custom model, default= globalstar/Globalstar.3ds ?
     private transient WWModel3D_new threeDModel; // DO NOT STORE when saving -- need to reload this -- TOO MUCH DATA!
+    private transient Future<Model> threeDModelLoading; // shared model being loaded, until threeDModel is made from it
+    private transient String threeDModelCachePath; // model held in the ModelCache (released when not used)
     private double threeDModelSizeFactor = 300000;
     
     /** Creates a new instance of SatelliteProps - default properties with given name and TLE lines
@@ -117,18 +121,7 @@ public class SatelliteTleSGP4 extends AbstractSatellite
         sgp4SatData = new SGP4SatData();
         
         // randomly pick color for satellite
-        // === pick a random color
-        Random generator = new Random();
-        switch( generator.nextInt(6) )
-        {
-            case 0: satColor = Color.red; break;
-            case 1: satColor = Color.blue; break;
-            case 2: satColor = Color.green; break;
-            case 3: satColor = Color.white; break;
-            case 4: satColor = Color.yellow; break;
-            case 5: satColor = Color.orange; break;
-            default: satColor = Color.red; break;
-        } // random color switch
+        pickRandomColor();
         
         
         // try to load TLE into propogator
@@ -151,6 +144,43 @@ public class SatelliteTleSGP4 extends AbstractSatellite
           
     }
     
+    /** Creates a new instance of SatelliteProps from SGP4 data that has already been
+     * read and initialized from the TLE lines (e.g. by SGP4BulkInitializer)
+     * @param name name of satellite
+     * @param tleLine1 first line of two line element
+     * @param tleLine2 second line of two line element
+     * @param initializedData SGP4 data initialized from the TLE (improved mode, WGS-72)
+     */
+    public SatelliteTleSGP4(String name, String tleLine1, String tleLine2, SGP4SatData initializedData)
+    {
+        // create internal TLE object
+        tle = new TLE(name,tleLine1,tleLine2);
+        
+        sgp4SatData = initializedData;
+        
+        // randomly pick color for satellite
+        pickRandomColor();
+        
+        // calculate TLE age
+        tleEpochJD = sgp4SatData.jdsatepoch;
+    }
+    
+    private void pickRandomColor()
+    {
+        // === pick a random color
+        Random generator = new Random();
+        switch( generator.nextInt(6) )
+        {
+            case 0: satColor = Color.red; break;
+            case 1: satColor = Color.blue; break;
+            case 2: satColor = Color.green; break;
+            case 3: satColor = Color.white; break;
+            case 4: satColor = Color.yellow; break;
+            case 5: satColor = Color.orange; break;
+            default: satColor = Color.red; break;
+        } // random color switch
+    }
+    
     @Override
     public void updateTleData(TLE newTLE)
     {
@@ -640,7 +670,15 @@ public class SatelliteTleSGP4 extends AbstractSatellite
     {
         return tle.getSatName();
     }
-    
+
+    /**
+     * @return the TLE used to initialize the propagator (can be used to create independent propagators, e.g. for exporting)
+     */
+    public TLE getTLE()
+    {
+        return tle;
+    }
+
     public double[] getKeplarianElements()
     {
         return Kepler.SingularOsculatingElements( AstroConst.GM_Earth, j2kPos, j2kVel ); 
@@ -839,6 +877,10 @@ public class SatelliteTleSGP4 extends AbstractSatellite
             
             loadNewModel(threeDModelPath);
         }
+        else if(!use3dModel)
+        {
+            releaseThreeDModel();
+        }
     }
     
     public String getThreeDModelPath()
@@ -861,16 +903,25 @@ public class SatelliteTleSGP4 extends AbstractSatellite
         this.threeDModelPath = path; // save path no matter
     }
     
-    private void loadNewModel(String path)
+    private synchronized void loadNewModel(String path)
     {
-        String localPath = "data/models/"; // path to models root from user.dir
-        
-        try
-            {
-                net.java.joglutils.model.geometry.Model model3DS = ModelFactory.createModel(localPath + path);
-                //model3DS.setUseLighting(false); // turn off lighting!
+        // model shared by all satellites using the same file, loaded once on the cache's loader thread
+        // (acquired before releasing the old one, so reloading the same model keeps it in the cache)
+        Future<Model> model = ModelCache.getSharedCache().acquire(path);
+        releaseThreeDModel();
 
-                threeDModel =  new WWModel3D_new(model3DS,
+        threeDModelCachePath = path;
+        threeDModelLoading = model;
+    }
+    
+    public synchronized WWModel3D_new getThreeDModel()
+    {
+        // once the shared model is loaded, make this satellite's own copy of the position and attitude
+        if(threeDModelLoading != null && threeDModelLoading.isDone())
+        {
+            try
+            {
+                threeDModel =  new WWModel3D_new(threeDModelLoading.get(),
                         new Position(Angle.fromRadians(this.getLatitude()),
                         Angle.fromRadians(this.getLongitude()),
                         this.getAltitude()));
@@ -882,14 +933,27 @@ public class SatelliteTleSGP4 extends AbstractSatellite
                 
             }catch(Exception e)
             {
-                System.out.println("ERROR LOADING 3D MODEL");
+                System.out.println("ERROR LOADING 3D MODEL: " + e.toString());
             }
+            threeDModelLoading = null;
+        }
+        
+        return threeDModel;
     }
     
-    public WWModel3D_new getThreeDModel()
+    /**
+     * Releases the 3D model (call when the satellite is removed), the shared model is freed when no satellite uses it
+     */
+    public synchronized void releaseThreeDModel()
     {
-        return threeDModel;
-    }    
+        if(threeDModelCachePath != null)
+        {
+            ModelCache.getSharedCache().release(threeDModelCachePath);
+            threeDModelCachePath = null;
+        }
+        threeDModelLoading = null;
+        threeDModel = null;
+    }
     
     public  double[] getTEMEVelocity()
     {
@@ -89,6 +89,8 @@ public class ECEFModelRenderable implements Renderable
             throw new IllegalArgumentException(msg);
         }
         
+        long t0 = TickMetrics.start();
+        
         javax.media.opengl.GL gl = dc.getGL();
         
         //gl.glEnable(GL.GL_TEXTURE_2D); // removed so the sun shading wouldn't effect line colors
@@ -241,6 +243,7 @@ public class ECEFModelRenderable implements Renderable
 //        
         gl.glPopAttrib();
         
+        TickMetrics.stop(TickMetrics.RENDER_ECEF, t0);
      } // render
     
     
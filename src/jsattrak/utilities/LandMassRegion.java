@@ -0,0 +1,218 @@
+/*
+ * One land mass outline (region) for plotting
+ *=====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * The points of the outline are packed in float arrays {lat0, lon0, lat1, lon1, ...}
+ * [deg], one array per level of detail: level 0 is the outline as read in, each
+ * further level is simplified (Douglas-Peucker) with a larger tolerance so it
+ * can be drawn with fewer points when zoomed out. The bounding box is used to
+ * skip regions that are out of view.
+ *
+ */
+
+package jsattrak.utilities;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class LandMassRegion
+{
+    private final String name;
+    private final float[][] levels; // packed lat/lon of each level of detail
+    private final float minLat, maxLat, minLon, maxLon; // bounding box [deg]
+
+    /**
+     * @param name region name
+     * @param levels packed lat/lon points of each level of detail (level 0 = all points)
+     */
+    public LandMassRegion(String name, float[][] levels)
+    {
+        this.name = name;
+        this.levels = levels;
+
+        // (simplifying only drops points, so the box of level 0 is the box of all levels)
+        float[] ll = levels[0];
+        float latMin = Float.MAX_VALUE, latMax = -Float.MAX_VALUE;
+        float lonMin = Float.MAX_VALUE, lonMax = -Float.MAX_VALUE;
+        for(int i = 0; i < ll.length; i += 2)
+        {
+            latMin = Math.min(latMin, ll[i]);
+            latMax = Math.max(latMax, ll[i]);
+            lonMin = Math.min(lonMin, ll[i + 1]);
+            lonMax = Math.max(lonMax, ll[i + 1]);
+        }
+        minLat = latMin;
+        maxLat = latMax;
+        minLon = lonMin;
+        maxLon = lonMax;
+    } // constructor
+
+    /**
+     * Creates a region with its levels of detail
+     * @param name region name
+     * @param ll packed lat/lon points of the outline [deg]
+     * @param tolerances Douglas-Peucker tolerance of each level [deg] (level 0 is not simplified)
+     * @return region
+     */
+    public static LandMassRegion create(String name, float[] ll, double[] tolerances)
+    {
+        float[][] levels = new float[tolerances.length][];
+        levels[0] = ll;
+        for(int k = 1; k < tolerances.length; k++)
+        {
+            levels[k] = simplify(levels[k - 1], tolerances[k]); // each level from the one before (fewer points to look at)
+        }
+        return new LandMassRegion(name, levels);
+    } // create
+
+    /**
+     * Douglas-Peucker simplification of a polyline (the first and last points are always kept)
+     * @param ll packed lat/lon points
+     * @param tolerance largest distance a dropped point may be from the simplified line [deg]
+     * @return packed lat/lon points kept (ll itself if all are kept)
+     */
+    public static float[] simplify(float[] ll, double tolerance)
+    {
+        int n = ll.length / 2;
+        if(n < 3)
+        {
+            return ll;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        // segments still to look at (a stack instead of recursion, outlines can have thousands of points)
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double tol2 = tolerance * tolerance;
+        int kept = 2;
+
+        while(top > 0)
+        {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double x0 = ll[2 * first + 1], y0 = ll[2 * first];
+            double dx = ll[2 * last + 1] - x0, dy = ll[2 * last] - y0;
+            double len2 = dx * dx + dy * dy;
+
+            int farthest = -1;
+            double maxDist2 = tol2;
+            for(int i = first + 1; i < last; i++)
+            {
+                double px = ll[2 * i + 1] - x0, py = ll[2 * i] - y0;
+                double d2;
+                if(len2 == 0)
+                {
+                    d2 = px * px + py * py; // closed outline: distance to the end point
+                }
+                else
+                {
+                    double t = Math.max(0.0, Math.min(1.0, (px * dx + py * dy) / len2));
+                    double ex = px - t * dx, ey = py - t * dy;
+                    d2 = ex * ex + ey * ey;
+                }
+                if(d2 > maxDist2)
+                {
+                    maxDist2 = d2;
+                    farthest = i;
+                }
+            }
+
+            if(farthest >= 0)
+            {
+                keep[farthest] = true;
+                kept++;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        } // while segments left
+
+        if(kept == n)
+        {
+            return ll;
+        }
+        float[] out = new float[2 * kept];
+        int j = 0;
+        for(int i = 0; i < n; i++)
+        {
+            if(keep[i])
+            {
+                out[j++] = ll[2 * i];
+                out[j++] = ll[2 * i + 1];
+            }
+        }
+        return out;
+    } // simplify
+
+    /**
+     * @return true if the bounding box overlaps the given area [deg]
+     */
+    public boolean intersects(double minLat, double maxLat, double minLon, double maxLon)
+    {
+        return this.maxLat >= minLat && this.minLat <= maxLat && this.maxLon >= minLon && this.minLon <= maxLon;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getNumLevels()
+    {
+        return levels.length;
+    }
+
+    /**
+     * @param level level of detail (0 = all points)
+     * @return packed lat/lon points {lat0, lon0, lat1, lon1, ...} [deg] (not to be modified)
+     */
+    public float[] getPoints(int level)
+    {
+        return levels[Math.max(0, Math.min(levels.length - 1, level))];
+    }
+
+    public float getMinLat()
+    {
+        return minLat;
+    }
+
+    public float getMaxLat()
+    {
+        return maxLat;
+    }
+
+    public float getMinLon()
+    {
+        return minLon;
+    }
+
+    public float getMaxLon()
+    {
+        return maxLon;
+    }
+
+} // LandMassRegion
@@ -28,10 +28,20 @@
 package jsattrak.utilities;
 
 import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 
 /**
@@ -44,8 +54,15 @@ public class LandMassRegions
     private String rootDir = "data/regions/";
     private String dataFileName = "worldlandmass.rl"; // "usstates.rl"  "worldlandmass.rl"  "new_coast_50.dat"
     
-    // hashtable to store region name and array containint the lat/long surrounding the region
-    private Hashtable<String,Vector<float[]>> landRegionHash = null;
+    // Douglas-Peucker tolerance of each level of detail [deg] (level 0 = points as read in)
+    private static final double[] LEVEL_TOLERANCES = {0.0, 0.02, 0.05, 0.15, 0.5};
+    
+    // the regions with their levels of detail are saved in this file next to the data file (read instead of the data next time)
+    public static final String CACHE_FILE_EXTENSION = ".lod";
+    private static final int CACHE_FILE_ID = 0x4C4D5231; // "LMR1"
+    
+    // regions (outlines) read in, null if not loaded
+    private List<LandMassRegion> regions = null;
     
     private boolean showLandMassOutlines = false;
     private Color landOutlineColor = Color.WHITE;
@@ -64,6 +81,17 @@ public class LandMassRegions
     // general function to load in data
     public void readInLandMassRegions()
     {
+        File dataFile = new File(rootDir+dataFileName);
+        File cacheFile = new File(rootDir+dataFileName+CACHE_FILE_EXTENSION);
+        
+        // use the saved levels of detail if they are from this data file
+        regions = readCacheFile(cacheFile, dataFile);
+        if(regions != null)
+        {
+            System.out.println("Number of Regions Read: " + regions.size() );
+            return;
+        }
+        
         String[] parts = (rootDir+dataFileName).split("\\."); // split by period
         
         if( parts[1].equalsIgnoreCase("rl") )
@@ -74,13 +102,18 @@ public class LandMassRegions
         {
             readInLandMassRegionsDat();
         }
+        
+        if(regions.size() > 0)
+        {
+            writeCacheFile(cacheFile, dataFile);
+        }
     }
     
     // read in land mass regions data from txt file -- with format RL
     private void readInLandMassRegionsRL()
     {
         
-         landRegionHash = new Hashtable<String,Vector<float[]>>();
+         regions = new ArrayList<LandMassRegion>();
         
          try
          {
@@ -94,7 +127,9 @@ public class LandMassRegions
              String nextLine;
              String[] dataArray;
              String currentRegionName;
-             Vector<float[]> tempLLVector;
+             float[] pair = new float[2];
+             float[] ll = new float[100];
+             int count;
              
              while( (nextLine = dataReader.readLine()) != null)
              {
@@ -105,7 +140,7 @@ public class LandMassRegions
                  {
                      currentRegionName = dataArray[1]; 
                      
-                     tempLLVector = new Vector<float[]>(50,50);  // ini size=50, increment=50
+                     count = 0; // floats in ll
                      
                      nextLine = dataReader.readLine();
                      
@@ -116,24 +151,23 @@ public class LandMassRegions
                          {
                              // skip line
                          }
-                         else
+                         else if(parsePair(nextLine, pair))
                          {
-                             // good line:
-                             dataArray = nextLine.split("\\s+"); // split by spaces of any size"   "
-                             
-                             //System.out.println("line: " + nextLine);
-                             
-                             float lat = Float.parseFloat(dataArray[0]);
-                             float lon = Float.parseFloat(dataArray[1]);
-                             tempLLVector.add(new float[] {lat,lon});
+                             // good line: lat lon
+                             if(count + 2 > ll.length)
+                             {
+                                 ll = Arrays.copyOf(ll, 2*ll.length);
+                             }
+                             ll[count++] = pair[0];
+                             ll[count++] = pair[1];
                          }
                          
                          // read next line
                          nextLine = dataReader.readLine();
                      } // until END is reached
                      
-                     // save name and vector
-                     landRegionHash.put(currentRegionName, tempLLVector);
+                     // save name and points
+                     addRegion(currentRegionName, ll, count);
                      
                  } // region name
                  
@@ -144,7 +178,7 @@ public class LandMassRegions
              dataFileReader.close();
              
              // debug
-             System.out.println("Number of Regions Read: " + landRegionHash.size() );
+             System.out.println("Number of Regions Read: " + regions.size() );
              
          }
          catch(Exception e)
@@ -158,7 +192,7 @@ public class LandMassRegions
      private void readInLandMassRegionsDat()
     {
      
-         landRegionHash = new Hashtable<String,Vector<float[]>>();
+         regions = new ArrayList<LandMassRegion>();
          
          try
          {
@@ -170,11 +204,9 @@ public class LandMassRegions
              dataReader = new BufferedReader(dataFileReader); // from local file
              
              String nextLine;
-             String[] dataArray;
-             String currentRegionName;
-             Vector<float[]> tempLLVector;
-             
-             tempLLVector = new Vector<float[]>(50,20);  // ini size=50, increment=50
+             float[] pair = new float[2];
+             float[] ll = new float[1000];
+             int count = 0; // floats in ll
              
              int landmassCount = 0;
              
@@ -184,38 +216,35 @@ public class LandMassRegions
                  if( nextLine.startsWith("#") )
                  {
                      // save off previous section
-                     landRegionHash.put("landmass"+landmassCount, tempLLVector);
+                     addRegion("landmass"+landmassCount, ll, count);
                      
                      landmassCount++; // add to count
                      
                      // then a new array is starting
-                     tempLLVector = new Vector<float[]>(50,50);  // ini size=50, increment=50
+                     count = 0;
                  }
-                 else
+                 else if(parsePair(nextLine, pair)) // make sure line is not blank
                  {
-                     dataArray = nextLine.trim().split("\\s+"); // split by spaces
-                     
-                     if(dataArray[0].length() > 1) // make sure line is not blank
+                     // lon lat
+                     if(count + 2 > ll.length)
                      {
-                         float lon = Float.parseFloat(dataArray[0]);
-                         float lat = Float.parseFloat(dataArray[1]);
-                         tempLLVector.add(new float[] {lat,lon});
+                         ll = Arrays.copyOf(ll, 2*ll.length);
                      }
-                     
-                 } // save current line to Vector
+                     ll[count++] = pair[1];
+                     ll[count++] = pair[0];
+                 } // save current line
                  
                  
              } // while loop
              
-             // final save to Hash
-             landRegionHash.put("landmass"+landmassCount, tempLLVector);
+             // final save
+             addRegion("landmass"+landmassCount, ll, count);
                      
              // close file
              dataFileReader.close();
              
              // debug
-             System.out.println("Number of Regions Read: " + landRegionHash.size() );
-             //System.out.println("Size 0 = " + landRegionHash.get("landmass0").size());
+             System.out.println("Number of Regions Read: " + regions.size() );
 
          }
          catch(Exception e)
@@ -225,16 +254,220 @@ public class LandMassRegions
          
     } // readInLandMassRegionsDAT
     
-    // get hash
+    // simplifies the points read in for a region and saves it (empty regions are skipped)
+    private void addRegion(String name, float[] ll, int count)
+    {
+        if(count > 0)
+        {
+            regions.add(LandMassRegion.create(name, Arrays.copyOf(ll, count), LEVEL_TOLERANCES));
+        }
+    }
+    
+    // reads the first two numbers of a line (separated by any white space) into pair, false if there aren't two
+    private static boolean parsePair(String line, float[] pair)
+    {
+        int len = line.length();
+        int i = 0;
+        for(int k = 0; k < 2; k++)
+        {
+            while(i < len && Character.isWhitespace(line.charAt(i)))
+            {
+                i++;
+            }
+            int start = i;
+            while(i < len && !Character.isWhitespace(line.charAt(i)))
+            {
+                i++;
+            }
+            if(i == start)
+            {
+                return false;
+            }
+            pair[k] = Float.parseFloat(line.substring(start, i));
+        }
+        return true;
+    } // parsePair
+    
+    // reads the regions saved for the data file, null if there is no cache file or it is out of date
+    private static List<LandMassRegion> readCacheFile(File cacheFile, File dataFile)
+    {
+        if(!cacheFile.exists() || !dataFile.exists())
+        {
+            return null;
+        }
+        
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            
+            // check it was made from this data file with these levels of detail
+            if(in.readInt() != CACHE_FILE_ID || in.readLong() != dataFile.length() || in.readLong() != dataFile.lastModified())
+            {
+                return null;
+            }
+            int numLevels = in.readInt();
+            if(numLevels != LEVEL_TOLERANCES.length)
+            {
+                return null;
+            }
+            for(int k = 0; k < numLevels; k++)
+            {
+                if(in.readDouble() != LEVEL_TOLERANCES[k])
+                {
+                    return null;
+                }
+            }
+            
+            int numRegions = in.readInt();
+            List<LandMassRegion> cached = new ArrayList<LandMassRegion>(numRegions);
+            for(int r = 0; r < numRegions; r++)
+            {
+                String name = in.readUTF();
+                float[][] levels = new float[numLevels][];
+                for(int k = 0; k < numLevels; k++)
+                {
+                    levels[k] = new float[in.readInt()];
+                    for(int i = 0; i < levels[k].length; i++)
+                    {
+                        levels[k][i] = in.readFloat();
+                    }
+                }
+                cached.add(new LandMassRegion(name, levels));
+            }
+            return cached;
+        }
+        catch(IOException e)
+        {
+            System.out.println("Error reading land mass cache file, reading the data file instead: " + e.toString());
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    } // readCacheFile
+    
+    // saves the regions with their levels of detail (if the directory can't be written to they are made each time instead)
+    private void writeCacheFile(File cacheFile, File dataFile)
+    {
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+            out.writeInt(CACHE_FILE_ID);
+            out.writeLong(dataFile.length());
+            out.writeLong(dataFile.lastModified());
+            out.writeInt(LEVEL_TOLERANCES.length);
+            for(double tol : LEVEL_TOLERANCES)
+            {
+                out.writeDouble(tol);
+            }
+            
+            out.writeInt(regions.size());
+            for(LandMassRegion region : regions)
+            {
+                out.writeUTF(region.getName());
+                for(int k = 0; k < region.getNumLevels(); k++)
+                {
+                    float[] ll = region.getPoints(k);
+                    out.writeInt(ll.length);
+                    for(float f : ll)
+                    {
+                        out.writeFloat(f);
+                    }
+                }
+            }
+            out.close();
+            out = null;
+        }
+        catch(IOException e)
+        {
+            System.out.println("Error writing land mass cache file: " + e.toString());
+            close(out);
+            cacheFile.delete(); // don't leave half a file
+        }
+    } // writeCacheFile
+    
+    private static void close(java.io.Closeable c)
+    {
+        if(c != null)
+        {
+            try
+            {
+                c.close();
+            }
+            catch(IOException e)
+            {
+            }
+        }
+    }
+    
+    /**
+     * Level of detail to draw with so the simplified outlines are off by at most about a pixel
+     * @param degreesPerPixel longitude span of one pixel at the current zoom [deg]
+     * @return level of detail (0 = all points)
+     */
+    public int getLevelOfDetail(double degreesPerPixel)
+    {
+        int level = 0;
+        for(int k = 1; k < LEVEL_TOLERANCES.length; k++)
+        {
+            if(LEVEL_TOLERANCES[k] <= degreesPerPixel)
+            {
+                level = k;
+            }
+        }
+        return level;
+    }
+    
+    /**
+     * @return regions read in (with their levels of detail and bounding boxes), null if not loaded
+     */
+    public List<LandMassRegion> getRegions()
+    {
+        return regions;
+    }
+    
+    // get hash (a copy of the full detail points of the regions, one {lat,lon} per point)
     public Hashtable<String,Vector<float[]>> getLandMassHash()
     {
+        Hashtable<String,Vector<float[]>> landRegionHash = new Hashtable<String,Vector<float[]>>();
+        if(regions != null)
+        {
+            for(LandMassRegion region : regions)
+            {
+                landRegionHash.put(region.getName(), toVector(region));
+            }
+        }
         return landRegionHash;
     }
     
-    // get vector from has using key
+    // get vector from has using key (a copy of the full detail points)
     public Vector<float[]> getLandMassVector(String key)
     {
-        return landRegionHash.get(key);
+        if(regions != null)
+        {
+            for(LandMassRegion region : regions)
+            {
+                if(region.getName().equals(key))
+                {
+                    return toVector(region);
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static Vector<float[]> toVector(LandMassRegion region)
+    {
+        float[] ll = region.getPoints(0);
+        Vector<float[]> vec = new Vector<float[]>(ll.length/2);
+        for(int i = 0; i < ll.length; i += 2)
+        {
+            vec.add(new float[] {ll[i], ll[i+1]});
+        }
+        return vec;
     }
 
     public String getDataFileName()
@@ -281,7 +514,7 @@ public class LandMassRegions
             else
             {
                 // off -- save memory
-                landRegionHash.clear();
+                regions = null;
                 System.gc(); // garbage collect
             }
             
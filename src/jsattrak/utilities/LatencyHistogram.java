@@ -0,0 +1,170 @@
+/*
+ * LatencyHistogram.java
+ *
+ * Fixed-size, lock free histogram of timings (nanoseconds) using log2 buckets
+ * with 8 linear sub-buckets each. Recording is a couple of integer operations
+ * and one atomic increment so it can be used inside the animation hot path.
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram, values are recorded in nanoseconds, resolution is about 12%
+ * (8 sub-buckets per power of 2) which is plenty to tell p50 from p99.
+ *
+ * @author Shawn E. Gano
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3; // 8 sub-buckets per power of 2
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = 64 * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Record one timing
+     * @param nanos elapsed time in nanoseconds (negative values are ignored)
+     */
+    public void record(long nanos)
+    {
+        if(nanos < 0)
+        {
+            return;
+        }
+
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long currentMax = maxNanos.get();
+        while(nanos > currentMax && !maxNanos.compareAndSet(currentMax, nanos))
+        {
+            currentMax = maxNanos.get();
+        }
+    } // record
+
+    // bucket = (exponent * SUB_BUCKETS) + top mantissa bits below the leading one
+    static int bucketIndex(long nanos)
+    {
+        if(nanos < SUB_BUCKETS)
+        {
+            return (int) nanos; // exact for tiny values
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return exponent * SUB_BUCKETS + sub;
+    }
+
+    // upper (inclusive) value represented by a bucket
+    static long bucketUpperBound(int index)
+    {
+        int exponent = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if(exponent < SUB_BUCKET_BITS)
+        {
+            return index;
+        }
+        long base = 1L << exponent;
+        long width = base >>> SUB_BUCKET_BITS;
+        return base + (sub + 1) * width - 1;
+    }
+
+    /**
+     * Approximate percentile (bucket upper bound, clipped to the maximum seen)
+     * @param percentile 0-100
+     * @return nanoseconds, 0 if no data
+     */
+    public long getPercentileNanos(double percentile)
+    {
+        long n = totalCount.get();
+        if(n == 0)
+        {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100.0 * n);
+        if(rank < 1)
+        {
+            rank = 1;
+        }
+
+        long cum = 0;
+        for(int i = 0; i < NUM_BUCKETS; i++)
+        {
+            cum += counts.get(i);
+            if(cum >= rank)
+            {
+                return Math.min(bucketUpperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    } // getPercentileNanos
+
+    public double getPercentileMs(double percentile)
+    {
+        return getPercentileNanos(percentile) / 1.0E6;
+    }
+
+    public long getCount()
+    {
+        return totalCount.get();
+    }
+
+    public double getMeanMs()
+    {
+        long n = totalCount.get();
+        return (n == 0) ? 0.0 : totalNanos.get() / (1.0E6 * n);
+    }
+
+    public double getMaxMs()
+    {
+        return maxNanos.get() / 1.0E6;
+    }
+
+    public void reset()
+    {
+        for(int i = 0; i < NUM_BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+} // LatencyHistogram
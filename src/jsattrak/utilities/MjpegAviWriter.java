@@ -0,0 +1,376 @@
+/*
+ * MjpegAviWriter.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Writes a Motion JPEG AVI movie (every frame a JPEG image, plays in most
+ * players) without JMF or temporary files: the headers are written first with
+ * the counts left at zero, each JPEG frame is appended to the 'movi' list as it
+ * comes, and on close the frame index is appended and the counts and sizes in
+ * the headers are filled in. Only the index (8 bytes a frame) is kept in memory.
+ *
+ * AVI 1.0 (RIFF) files are limited to 2 GB, more than that is an error (lower
+ * the JPEG quality or the frame size for very long movies).
+ *
+ */
+
+package jsattrak.utilities;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class MjpegAviWriter implements MovieWriter
+{
+    public static final float DEFAULT_QUALITY = 0.9f; // same JPEG quality the movie screen captures used
+
+    private static final long MAX_FILE_SIZE = 0x7FFFFFFFL; // RIFF sizes are 32 bit (and many players treat them as signed)
+
+    // file positions of the header fields filled in on close
+    private static final int RIFF_SIZE_POS = 4;
+    private static final int AVIH_MAX_BYTES_PER_SEC_POS = 36;
+    private static final int AVIH_TOTAL_FRAMES_POS = 48;
+    private static final int AVIH_SUGGESTED_BUFFER_POS = 60;
+    private static final int STRH_LENGTH_POS = 140;
+    private static final int STRH_SUGGESTED_BUFFER_POS = 144;
+    private static final int MOVI_SIZE_POS = 216;
+    private static final int MOVI_POS = 220; // 'movi' (frame offsets in the index are from here)
+    private static final int HEADER_SIZE = 224;
+
+    private final File file;
+    private final int width, height;
+    private final int fps;
+    private final float quality;
+
+    private OutputStream out;
+    private long position; // bytes written to the file
+    private int[] index = new int[2 * 256]; // offset, size of each frame
+    private int framesWritten = 0;
+    private int maxFrameSize = 0;
+
+    /**
+     * Creates the movie file and writes the headers
+     * @param file output file (*.avi)
+     * @param width frame width [pixels]
+     * @param height frame height [pixels]
+     * @param fps playback rate [frames per second]
+     * @param quality JPEG quality 0.0-1.0 (1 = best)
+     * @throws IOException if the file can't be written
+     */
+    public MjpegAviWriter(File file, int width, int height, int fps, float quality) throws IOException
+    {
+        if(width <= 0 || height <= 0 || fps <= 0)
+        {
+            throw new IllegalArgumentException("Bad movie size or frame rate: " + width + "x" + height + ", " + fps + " fps");
+        }
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.quality = quality;
+
+        out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        writeHeaders();
+    } // constructor
+
+    public MjpegAviWriter(File file, int width, int height, int fps) throws IOException
+    {
+        this(file, width, height, fps, DEFAULT_QUALITY);
+    }
+
+    // RIFF AVI headers (one MJPG video stream), counts filled in by close()
+    private void writeHeaders() throws IOException
+    {
+        ByteArrayOutputStream h = new ByteArrayOutputStream(HEADER_SIZE);
+
+        writeFourCC(h, "RIFF");
+        writeInt(h, 0); // file size - 8
+        writeFourCC(h, "AVI ");
+
+        writeFourCC(h, "LIST");
+        writeInt(h, 192); // hdrl size
+        writeFourCC(h, "hdrl");
+
+        // main header
+        writeFourCC(h, "avih");
+        writeInt(h, 56);
+        writeInt(h, 1000000 / fps); // microseconds per frame
+        writeInt(h, 0); // max bytes per second
+        writeInt(h, 0); // padding granularity
+        writeInt(h, 0x10); // AVIF_HASINDEX
+        writeInt(h, 0); // total frames
+        writeInt(h, 0); // initial frames
+        writeInt(h, 1); // streams
+        writeInt(h, 0); // suggested buffer size
+        writeInt(h, width);
+        writeInt(h, height);
+        writeInt(h, 0); // reserved
+        writeInt(h, 0);
+        writeInt(h, 0);
+        writeInt(h, 0);
+
+        writeFourCC(h, "LIST");
+        writeInt(h, 116); // strl size
+        writeFourCC(h, "strl");
+
+        // stream header
+        writeFourCC(h, "strh");
+        writeInt(h, 56);
+        writeFourCC(h, "vids");
+        writeFourCC(h, "MJPG");
+        writeInt(h, 0); // flags
+        writeInt(h, 0); // priority, language
+        writeInt(h, 0); // initial frames
+        writeInt(h, 1); // scale
+        writeInt(h, fps); // rate (rate/scale = frames per second)
+        writeInt(h, 0); // start
+        writeInt(h, 0); // length (frames)
+        writeInt(h, 0); // suggested buffer size
+        writeInt(h, -1); // quality (default)
+        writeInt(h, 0); // sample size (varies)
+        writeShort(h, 0); // frame rectangle
+        writeShort(h, 0);
+        writeShort(h, width);
+        writeShort(h, height);
+
+        // stream format (BITMAPINFOHEADER)
+        writeFourCC(h, "strf");
+        writeInt(h, 40);
+        writeInt(h, 40); // header size
+        writeInt(h, width);
+        writeInt(h, height);
+        writeShort(h, 1); // planes
+        writeShort(h, 24); // bits per pixel
+        writeFourCC(h, "MJPG"); // compression
+        writeInt(h, width * height * 3); // image size
+        writeInt(h, 0); // pixels per meter x, y
+        writeInt(h, 0);
+        writeInt(h, 0); // colors used, important
+        writeInt(h, 0);
+
+        writeFourCC(h, "LIST");
+        writeInt(h, 0); // movi size
+        writeFourCC(h, "movi");
+
+        h.writeTo(out);
+        position = h.size();
+    } // writeHeaders
+
+    /**
+     * Encodes a frame as a JPEG image (thread safe)
+     */
+    public byte[] encodeFrame(BufferedImage frame) throws IOException
+    {
+        BufferedImage image = frame;
+        if(frame.getWidth() != width || frame.getHeight() != height || frame.getColorModel().hasAlpha())
+        {
+            // all frames of the movie have the same size, JPEG has no alpha
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = image.createGraphics();
+            g2.drawImage(frame, 0, 0, null);
+            g2.dispose();
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if(!writers.hasNext())
+        {
+            throw new IOException("No JPEG image writer");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(width * height / 4);
+        MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(bytes);
+        try
+        {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally
+        {
+            writer.dispose();
+            ios.close();
+        }
+        return bytes.toByteArray();
+    } // encodeFrame
+
+    /**
+     * Appends a JPEG frame (from encodeFrame) to the movie
+     */
+    public void writeFrame(byte[] encodedFrame) throws IOException
+    {
+        if(out == null)
+        {
+            throw new IOException("Movie file is closed: " + file);
+        }
+
+        int size = encodedFrame.length;
+        int padding = size & 1; // chunks are word aligned
+        if(position + 8 + size + padding + 16L * (framesWritten + 1) + 8 > MAX_FILE_SIZE)
+        {
+            throw new IOException("AVI movie file is too large (over 2 GB), frame " + framesWritten);
+        }
+
+        if(2 * framesWritten + 2 > index.length)
+        {
+            int[] newIndex = new int[2 * index.length];
+            System.arraycopy(index, 0, newIndex, 0, index.length);
+            index = newIndex;
+        }
+        index[2 * framesWritten] = (int)(position - MOVI_POS);
+        index[2 * framesWritten + 1] = size;
+
+        writeFourCC(out, "00dc"); // compressed video frame of stream 0
+        writeInt(out, size);
+        out.write(encodedFrame);
+        if(padding != 0)
+        {
+            out.write(0);
+        }
+        position += 8 + size + padding;
+
+        framesWritten++;
+        maxFrameSize = Math.max(maxFrameSize, size);
+    } // writeFrame
+
+    /**
+     * Writes the frame index and fills in the headers
+     */
+    public void close() throws IOException
+    {
+        if(out == null)
+        {
+            return; // already closed
+        }
+
+        long moviEnd = position;
+        try
+        {
+            // index, each frame is a key frame
+            writeFourCC(out, "idx1");
+            writeInt(out, 16 * framesWritten);
+            for(int i = 0; i < framesWritten; i++)
+            {
+                writeFourCC(out, "00dc");
+                writeInt(out, 0x10); // AVIIF_KEYFRAME
+                writeInt(out, index[2 * i]);
+                writeInt(out, index[2 * i + 1]);
+            }
+            position += 8 + 16L * framesWritten;
+        }
+        finally
+        {
+            out.close();
+            out = null;
+        }
+
+        // fill in the header
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            int suggestedBuffer = maxFrameSize + 8;
+            long maxBytesPerSec = (long)suggestedBuffer * fps;
+
+            patchInt(raf, RIFF_SIZE_POS, (int)(position - 8));
+            patchInt(raf, AVIH_MAX_BYTES_PER_SEC_POS, (int)Math.min(maxBytesPerSec, Integer.MAX_VALUE));
+            patchInt(raf, AVIH_TOTAL_FRAMES_POS, framesWritten);
+            patchInt(raf, AVIH_SUGGESTED_BUFFER_POS, suggestedBuffer);
+            patchInt(raf, STRH_LENGTH_POS, framesWritten);
+            patchInt(raf, STRH_SUGGESTED_BUFFER_POS, suggestedBuffer);
+            patchInt(raf, MOVI_SIZE_POS, (int)(moviEnd - MOVI_POS));
+        }
+        finally
+        {
+            raf.close();
+        }
+    } // close
+
+    public int getFramesWritten()
+    {
+        return framesWritten;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public int getFps()
+    {
+        return fps;
+    }
+
+    // little endian writing (RIFF)
+
+    private static void writeFourCC(OutputStream os, String fourCC) throws IOException
+    {
+        for(int i = 0; i < 4; i++)
+        {
+            os.write(fourCC.charAt(i));
+        }
+    }
+
+    private static void writeInt(OutputStream os, int v) throws IOException
+    {
+        os.write(v & 0xFF);
+        os.write((v >>> 8) & 0xFF);
+        os.write((v >>> 16) & 0xFF);
+        os.write((v >>> 24) & 0xFF);
+    }
+
+    private static void writeShort(OutputStream os, int v) throws IOException
+    {
+        os.write(v & 0xFF);
+        os.write((v >>> 8) & 0xFF);
+    }
+
+    private static void patchInt(RandomAccessFile raf, long pos, int v) throws IOException
+    {
+        raf.seek(pos);
+        raf.write(new byte[] {(byte)v, (byte)(v >>> 8), (byte)(v >>> 16), (byte)(v >>> 24)});
+    }
+
+} // MjpegAviWriter
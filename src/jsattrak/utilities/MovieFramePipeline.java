@@ -0,0 +1,207 @@
+/*
+ * MovieFramePipeline.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Makes a movie in three stages: the frames are made by the frame source (on
+ * several threads if the source allows it, the frames are at independent
+ * times), encoded by the movie writer on several threads, and written in frame
+ * order by the thread calling run(). At most maxQueuedFrames frames (made,
+ * encoded or waiting to be written) are in memory at once, frames further
+ * ahead aren't started until the oldest one is written, so long movies don't
+ * use more memory and nothing goes through temporary files.
+ *
+ */
+
+package jsattrak.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class MovieFramePipeline
+{
+    private final int numThreads; // threads making frames (if the source allows) and encoding them
+    private final int maxQueuedFrames;
+    private volatile boolean cancelled = false;
+
+    public MovieFramePipeline()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param numThreads threads making and encoding frames
+     */
+    public MovieFramePipeline(int numThreads)
+    {
+        this(numThreads, 2 * Math.max(1, numThreads) + 2);
+    }
+
+    /**
+     * @param numThreads threads making and encoding frames
+     * @param maxQueuedFrames most frames in memory at once
+     */
+    public MovieFramePipeline(int numThreads, int maxQueuedFrames)
+    {
+        this.numThreads = Math.max(1, numThreads);
+        this.maxQueuedFrames = Math.max(1, maxQueuedFrames);
+    }
+
+    /**
+     * Makes the movie (blocks until all frames are written or there is an error), doesn't close the writer
+     * @param source makes the frames
+     * @param writer encodes and writes the frames
+     * @param startJulDate time of the first frame (UTC Julian Date)
+     * @param timeStepSec time between frames [sec]
+     * @param numFrames number of frames
+     * @return number of frames written (less than numFrames if cancelled)
+     * @throws IOException if a frame can't be made, encoded or written (the frames before it are written)
+     */
+    public int run(final MovieFrameSource source, final MovieWriter writer, double startJulDate, double timeStepSec, int numFrames) throws IOException
+    {
+        cancelled = false;
+
+        ExecutorService framePool = createPool(source.isParallel() ? numThreads : 1, "MovieFrame"); // one thread keeps the frames in order
+        ExecutorService encodePool = createPool(numThreads, "MovieEncode");
+        ArrayDeque<Future<byte[]>> queue = new ArrayDeque<Future<byte[]>>(maxQueuedFrames); // frames in time order
+        int started = 0;
+        int written = 0;
+        try
+        {
+            while(written < numFrames && !cancelled)
+            {
+                // start frames until the queue is full
+                while(started < numFrames && queue.size() < maxQueuedFrames)
+                {
+                    // (time of each frame from the start, no round off adding up)
+                    final double julDate = startJulDate + started * timeStepSec / 86400.0;
+                    final Future<BufferedImage> frame = framePool.submit(new Callable<BufferedImage>()
+                    {
+                        public BufferedImage call() throws Exception
+                        {
+                            return source.getFrame(julDate);
+                        }
+                    });
+                    queue.add(encodePool.submit(new Callable<byte[]>()
+                    {
+                        public byte[] call() throws Exception
+                        {
+                            return writer.encodeFrame(frame.get());
+                        }
+                    }));
+                    started++;
+                }
+
+                // write the oldest frame
+                byte[] data;
+                try
+                {
+                    data = queue.poll().get();
+                }
+                catch(ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    while(cause instanceof ExecutionException && cause.getCause() != null)
+                    {
+                        cause = cause.getCause(); // frame failed (encoding was waiting for it)
+                    }
+                    if(cause instanceof IOException)
+                    {
+                        throw (IOException)cause;
+                    }
+                    throw new IOException("Error making movie frame " + written + ": " + cause.toString(), cause);
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Movie interrupted at frame " + written);
+                }
+                writer.writeFrame(data);
+                written++;
+
+                frameWritten(written, numFrames);
+            } // while frames left
+        }
+        finally
+        {
+            // (frames still queued after an error or cancel are dropped)
+            framePool.shutdownNow();
+            encodePool.shutdownNow();
+        }
+
+        return written;
+    } // run
+
+    /**
+     * Called (on the thread running the pipeline) after each frame is written, e.g. to show progress
+     * @param framesWritten frames written so far
+     * @param numFrames frames in the movie
+     */
+    protected void frameWritten(int framesWritten, int numFrames)
+    {
+    }
+
+    /**
+     * Stops the movie after the frame being written (from any thread)
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    private static ExecutorService createPool(int threads, final String name)
+    {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public int getMaxQueuedFrames()
+    {
+        return maxQueuedFrames;
+    }
+
+} // MovieFramePipeline
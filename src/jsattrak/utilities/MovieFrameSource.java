@@ -0,0 +1,60 @@
+/*
+ * MovieFrameSource.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Makes the images of a movie, one for each time (see MovieFramePipeline).
+ *
+ */
+
+package jsattrak.utilities;
+
+import java.awt.image.BufferedImage;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public interface MovieFrameSource
+{
+    /**
+     * Makes the frame of the given time
+     * @param julDate time of the frame (UTC Julian Date)
+     * @return frame image (getWidth() x getHeight())
+     * @throws Exception if the frame can't be made
+     */
+    public BufferedImage getFrame(double julDate) throws Exception;
+
+    /**
+     * @return true if getFrame can be called from several threads at once (for any times),
+     *         false if the frames have to be made one at a time in time order (e.g. from the screen)
+     */
+    public boolean isParallel();
+
+    /**
+     * @return frame width [pixels]
+     */
+    public int getWidth();
+
+    /**
+     * @return frame height [pixels]
+     */
+    public int getHeight();
+
+} // MovieFrameSource
@@ -0,0 +1,65 @@
+/*
+ * MovieWriter.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Streaming output of a movie: each frame is encoded on its own (so frames can
+ * be encoded on several threads at once) and the encoded frames are then
+ * written in order as they come, nothing is kept until the end.
+ *
+ */
+
+package jsattrak.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public interface MovieWriter
+{
+    /**
+     * Encodes a frame (can be called from several threads at once)
+     * @param frame frame image
+     * @return encoded frame, to pass to writeFrame
+     * @throws IOException if the frame can't be encoded
+     */
+    public byte[] encodeFrame(BufferedImage frame) throws IOException;
+
+    /**
+     * Writes the next frame of the movie (frames are written in the order of the calls)
+     * @param encodedFrame frame from encodeFrame
+     * @throws IOException if the frame can't be written
+     */
+    public void writeFrame(byte[] encodedFrame) throws IOException;
+
+    /**
+     * Finishes the movie (headers, index) and closes the output
+     * @throws IOException if it can't be written
+     */
+    public void close() throws IOException;
+
+    /**
+     * @return number of frames written so far
+     */
+    public int getFramesWritten();
+
+} // MovieWriter
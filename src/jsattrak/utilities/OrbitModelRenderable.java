@@ -25,7 +25,9 @@
 package jsattrak.utilities;
 
 import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
 import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sphere;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.render.AnnotationAttributes;
@@ -38,6 +40,7 @@ import gov.nasa.worldwind.util.Logging;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Point;
+import java.util.HashMap;
 import java.util.Hashtable;
 import javax.media.opengl.GL;
 import jsattrak.objects.AbstractSatellite;
@@ -68,6 +71,19 @@ public class OrbitModelRenderable implements Renderable
     // save globe
     Globe globe;
     
+    // current ECI rotation of the layer (set in updateMJD) - used for view frustum culling
+    double eciRotDeg = 0;
+    
+    // cached trace geometry and labels, by satellite name
+    private final HashMap<String,OrbitTraceGeometry> traceCache = new HashMap<String,OrbitTraceGeometry>();
+    private final HashMap<String,GlobeAnnotation> labelCache = new HashMap<String,GlobeAnnotation>();
+    
+    private static final Font LABEL_FONT = Font.decode("Arial-ITALIC-12");
+    // positions between time steps (used when active), can be null
+    private SnapshotInterpolator stateInterpolator;
+    
+    private static final double MODEL_CULL_RADIUS = 1000000; // [m] generous size of a 3D model for culling
+    
     
     /** Creates a new instance of OrbitModel
      * @param satHash
@@ -97,6 +113,8 @@ public class OrbitModelRenderable implements Renderable
             throw new IllegalArgumentException(msg);
         }
         
+        long t0 = TickMetrics.start();
+        
         javax.media.opengl.GL gl = dc.getGL();
         
 //        gl.glEnable(GL.GL_TEXTURE_2D); // removed - sun shading disabeled below
@@ -105,6 +123,25 @@ public class OrbitModelRenderable implements Renderable
 
         // Added so that the colors wouldn't depend on sun shading
         gl.glDisable(GL.GL_TEXTURE_2D);
+        
+        // view frustum and eye in model coordinates (this layer is drawn rotated by the ECI angle)
+        Frustum frustum = dc.getView().getFrustumInModelCoordinates();
+        Vec4 eye = dc.getView().getEyePoint();
+        double rotRad = Math.toRadians(-eciRotDeg);
+        double cosRot = Math.cos(rotRad);
+        double sinRot = Math.sin(rotRad);
+        
+        // drop cached traces and labels of satellites that were removed
+        if(traceCache.size() > satHash.size() || labelCache.size() > satHash.size())
+        {
+            traceCache.keySet().retainAll(satHash.keySet());
+            labelCache.keySet().retainAll(satHash.keySet());
+        }
+              
+        // positions between time steps in real time interpolation mode
+        SnapshotInterpolator interpolator = (stateInterpolator != null && stateInterpolator.isActive()) ? stateInterpolator : null;
+        double[] interpPos = new double[3];
+        double[] interpLla = new double[3];
               
         // for each satellite
         for(AbstractSatellite sat : satHash.values() ) // search through all sat nodes
@@ -113,52 +150,64 @@ public class OrbitModelRenderable implements Renderable
             Color satColor = sat.getSatColor();
             gl.glColor3f( satColor.getRed()/255.0f , satColor.getGreen()/255.0f , satColor.getBlue()/255.0f ); // COLOR
             
-            Double nanDbl = new Double(Double.NaN);
-            
             if (sat.isShow3DOrbitTrace() && sat.isShow3DOrbitTraceECI())
             {
-                // plot lag orbit
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLagPts(); i++)
+                OrbitTraceGeometry trace = traceCache.get(sat.getName());
+                if(trace == null)
                 {
-                    // add next Mean of Date vertex
-                    double[] xyz = sat.getGroundTrackXyzLagPt(i);
-                    if(!nanDbl.equals(xyz[0])) // NaN check
-                    {
-                        gl.glVertex3f((float)-xyz[0], (float)xyz[2], (float)xyz[1]);
-                    }
+                    trace = new OrbitTraceGeometry();
+                    traceCache.put(sat.getName(), trace);
                 }
-                gl.glEnd();
-
-                // plot lead orbit
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLeadPts(); i++)
+                trace.update(sat); // only rebuilt if the ground track changed
+                
+                double[] c = trace.getCenter();
+                Vec4 center = eciToModel(c[0], c[1], c[2], cosRot, sinRot);
+                if(frustum.intersects(new Sphere(center, Math.max(trace.getRadius(), 1.0))))
                 {
-                    // add next Mean of Date vertex
-                    double[] xyz = sat.getGroundTrackXyzLeadPt(i);
-                    if(!nanDbl.equals(xyz[0])) // NaN check
+                    int level = trace.selectLevel(eye.distanceTo3(center));
+                    
+                    gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+                    gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+                    
+                    // plot lag orbit
+                    if(trace.getNumLagPoints(level) > 0)
                     {
-                        gl.glVertex3f((float)-xyz[0], (float)xyz[2], (float)xyz[1]);
+                        gl.glVertexPointer(3, GL.GL_FLOAT, 0, trace.getLagBuffer(level));
+                        gl.glDrawArrays(GL.GL_LINE_STRIP, 0, trace.getNumLagPoints(level));
                     }
-                }
-                gl.glEnd();
+                    
+                    // plot lead orbit
+                    if(trace.getNumLeadPoints(level) > 0)
+                    {
+                        gl.glVertexPointer(3, GL.GL_FLOAT, 0, trace.getLeadBuffer(level));
+                        gl.glDrawArrays(GL.GL_LINE_STRIP, 0, trace.getNumLeadPoints(level));
+                    }
+                    
+                    gl.glPopClientAttrib();
+                } // in view
             } // show orbit trace
             
             // plot position 
             double[] xyz = sat.getTEMEPos();
+            if(interpolator != null && interpolator.getTEMEPos(sat.getName(), interpPos))
+            {
+                xyz = interpPos; // between time steps (real time interpolation mode)
+            }
             if(xyz != null)
             {
+                Vec4 satPos = eciToModel(-xyz[0], xyz[2], xyz[1], cosRot, sinRot);
+                
                 // 3D model is rendered Here
                 if(sat.isUse3dModel())
                 {
                     // custom 3D object
-                    if(sat.getThreeDModel() != null) // make sure it is not null
+                    if(sat.getThreeDModel() != null && frustum.intersects(new Sphere(satPos, MODEL_CULL_RADIUS))) // make sure it is not null
                     {
                        //- 
                         sat.getThreeDModel().render(dc); // render model
                     }
                 }
-                else
+                else if(frustum.intersects(new Sphere(satPos, sphereRadius)))
                 {
                     // default "sphere" for model
                     sphere.setCenter(-xyz[0], xyz[2], xyz[1]);
@@ -169,22 +218,46 @@ public class OrbitModelRenderable implements Renderable
             // draw name
             if(sat.isShow3DName())
             {
-                // this may be REALLY slow creating this every repaint! - maybe store in sat object and update its position?
-                AnnotationAttributes geoAttr = createFontAttribs(sat.getSatColor());
-                GlobeAnnotation an = new GlobeAnnotation(sat.getName(), Position.fromRadians(sat.getLatitude(), sat.getLongitude(), sat.getAltitude()), geoAttr);
-                
-                // annotation - without any attribs, gives a bubble box
-                // annotation doesn't strech well in GLCanvas
-                //GlobeAnnotation an = new GlobeAnnotation(gs.getStationName(), Position.fromDegrees(gs.getLatitude(), gs.getLongitude(), gs.getAltitude()));
-                an.render(dc);
-                
+                Position labelPos = Position.fromRadians(sat.getLatitude(), sat.getLongitude(), sat.getAltitude());
+                if(interpolator != null && interpolator.getLLA(sat.getName(), interpLla))
+                {
+                    labelPos = Position.fromRadians(interpLla[0], interpLla[1], interpLla[2]);
+                }
+                if(frustum.contains(dc.getGlobe().computePointFromPosition(labelPos)))
+                {
+                    // annotations are reused (creating them every repaint was REALLY slow)
+                    GlobeAnnotation an = labelCache.get(sat.getName());
+                    if(an == null)
+                    {
+                        an = new GlobeAnnotation(sat.getName(), labelPos, createFontAttribs(satColor));
+                        labelCache.put(sat.getName(), an);
+                    }
+                    else
+                    {
+                        an.setPosition(labelPos);
+                        if(!satColor.equals(an.getAttributes().getTextColor()))
+                        {
+                            an.getAttributes().setTextColor(satColor);
+                        }
+                    }
+
+                    // annotation - without any attribs, gives a bubble box
+                    // annotation doesn't strech well in GLCanvas
+                    //GlobeAnnotation an = new GlobeAnnotation(gs.getStationName(), Position.fromDegrees(gs.getLatitude(), gs.getLongitude(), gs.getAltitude()));
+                    an.render(dc);
+                }
             }
             
             // draw earth footprint
             if (sat.isShow3DFootprint())
             {
                 double[] lla = sat.getLLA();
-                if (lla != null)
+                if(interpolator != null && interpolator.getLLA(sat.getName(), interpLla))
+                {
+                    lla = interpLla;
+                }
+                // the cone fits in a sphere around the satellite with radius = distance to the Earth's center
+                if (lla != null && xyz != null && frustum.intersects(new Sphere(eciToModel(-xyz[0], xyz[2], xyz[1], cosRot, sinRot), MathUtils.norm(xyz))))
                 {
 //                    surfCirc.setCenter(LatLon.fromRadians(lla[0], lla[1]));
 //                    surfCirc.setRadius(calcFootPrintRadiusFromAlt(lla[2]));
@@ -209,13 +282,23 @@ public class OrbitModelRenderable implements Renderable
         
         gl.glPopAttrib();
         
+        TickMetrics.stop(TickMetrics.RENDER_ORBIT, t0);
      } // render
     
+    /**
+     * Rotates a point from JOGL ECI coordinates into the model coordinates
+     * (same rotation ECIRenderableLayer applies with glRotated)
+     */
+    private static Vec4 eciToModel(double x, double y, double z, double cosRot, double sinRot)
+    {
+        return new Vec4(cosRot * x + sinRot * z, y, -sinRot * x + cosRot * z);
+    }
+    
     private AnnotationAttributes createFontAttribs(Color textColor)
     {
         AnnotationAttributes geoAttr = new AnnotationAttributes();
             geoAttr.setFrameShape(FrameFactory.SHAPE_NONE);  // No frame
-            geoAttr.setFont(Font.decode("Arial-ITALIC-12"));
+            geoAttr.setFont(LABEL_FONT);
             geoAttr.setTextColor(textColor);
             geoAttr.setTextAlign(MultiLineTextRenderer.ALIGN_CENTER);
             geoAttr.setDrawOffset(new Point(0, 5)); // centered just above
@@ -259,8 +342,21 @@ public class OrbitModelRenderable implements Renderable
         return rh;
     }
     
+    /**
+     * @param stateInterpolator positions of the satellites between time steps, used when it is active (can be null)
+     */
+    public void setStateInterpolator(SnapshotInterpolator stateInterpolator)
+    {
+        this.stateInterpolator = stateInterpolator;
+    }
+    
     public void updateMJD(double MJD, double eciRotDeg)
     {
+        this.eciRotDeg = eciRotDeg;
+        
+        SnapshotInterpolator interpolator = (stateInterpolator != null && stateInterpolator.isActive()) ? stateInterpolator : null;
+        double[] interpLla = new double[3];
+        
         for (AbstractSatellite sat : satHash.values()) // search through all sat nodes
         {
             // set position 
@@ -269,9 +365,17 @@ public class OrbitModelRenderable implements Renderable
             {
                 if(sat.getThreeDModel() != null)
                 {
-                    sat.getThreeDModel().setPosition(new Position(Angle.fromRadians(sat.getLatitude()),
+                    if(interpolator != null && interpolator.getLLA(sat.getName(), interpLla))
+                    {
+                        // between time steps (real time interpolation mode)
+                        sat.getThreeDModel().setPosition(Position.fromRadians(interpLla[0], interpLla[1], interpLla[2]));
+                    }
+                    else
+                    {
+                        sat.getThreeDModel().setPosition(new Position(Angle.fromRadians(sat.getLatitude()),
                             Angle.fromRadians(sat.getLongitude()),
                             sat.getAltitude()));
+                    }
                     // set roll pitch yaw (assume user wants LVLH, velcorty aligned)
 
                     // calculate TEME velocity and set rotation angles and axis
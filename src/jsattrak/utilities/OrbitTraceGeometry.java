@@ -0,0 +1,270 @@
+/*
+ * OrbitTraceGeometry.java
+ *
+ * Cached 3D orbit trace (lag and lead) of one satellite for OrbitModelRenderable.
+ * The TEME points are packed once into float arrays in JOGL ECI order (-x, z, y)
+ * and only rebuilt when the satellite regenerates its ground track (the
+ * satellites create new lag/lead arrays when they do). Decimated copies for
+ * far away views and a bounding sphere for frustum culling are kept as well.
+ *=====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import jsattrak.objects.AbstractSatellite;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class OrbitTraceGeometry
+{
+    /** number of detail levels, level n keeps every 2^n th point */
+    public static final int NUM_LEVELS = 4;
+    /** levels are not used if they would have fewer points than this */
+    public static final int MIN_POINTS_PER_LEVEL = 16;
+
+    // ground track arrays the geometry was built from
+    private double[][] srcLag;
+    private double[][] srcLead;
+
+    // packed x,y,z [level]
+    private final float[][] lag = new float[NUM_LEVELS][];
+    private final float[][] lead = new float[NUM_LEVELS][];
+    private final FloatBuffer[] lagBuffer = new FloatBuffer[NUM_LEVELS];
+    private final FloatBuffer[] leadBuffer = new FloatBuffer[NUM_LEVELS];
+
+    // bounding sphere (JOGL ECI coordinates)
+    private final double[] center = new double[3];
+    private double radius = 0;
+
+    public OrbitTraceGeometry()
+    {
+    }
+
+    /**
+     * Rebuilds the geometry if the satellite's ground track has changed
+     * @param sat satellite
+     * @return true if the geometry was rebuilt
+     */
+    public boolean update(AbstractSatellite sat)
+    {
+        double[][] newLag = sat.getTemePosLag();
+        double[][] newLead = sat.getTemePosLead();
+        if(newLag == srcLag && newLead == srcLead && lag[0] != null)
+        {
+            return false;
+        }
+
+        srcLag = newLag;
+        srcLead = newLead;
+
+        // the number of points is taken from the satellite (arrays can be place holders)
+        lag[0] = pack(newLag, newLag == null ? 0 : sat.getNumGroundTrackLagPts());
+        lead[0] = pack(newLead, newLead == null ? 0 : sat.getNumGroundTrackLeadPts());
+        for(int level = 1; level < NUM_LEVELS; level++)
+        {
+            lag[level] = decimate(lag[level - 1], 2);
+            lead[level] = decimate(lead[level - 1], 2);
+        }
+        for(int level = 0; level < NUM_LEVELS; level++)
+        {
+            // levels that could not be decimated share the finer level's buffer
+            boolean sameLag = level > 0 && lag[level] == lag[level - 1];
+            boolean sameLead = level > 0 && lead[level] == lead[level - 1];
+            lagBuffer[level] = sameLag ? lagBuffer[level - 1] : toBuffer(lag[level]);
+            leadBuffer[level] = sameLead ? leadBuffer[level - 1] : toBuffer(lead[level]);
+        }
+
+        computeBoundingSphere();
+
+        return true;
+    } // update
+
+    /**
+     * Packs the valid (non NaN) points, in JOGL ECI order (-x, z, y)
+     */
+    public static float[] pack(double[][] teme, int numPts)
+    {
+        numPts = Math.min(numPts, teme == null ? 0 : teme.length);
+        float[] tmp = new float[numPts * 3];
+        int n = 0;
+        for(int i = 0; i < numPts; i++)
+        {
+            double[] xyz = teme[i];
+            if(xyz.length < 3 || Double.isNaN(xyz[0])) // NaN check
+            {
+                continue;
+            }
+            tmp[n++] = (float) -xyz[0];
+            tmp[n++] = (float) xyz[2];
+            tmp[n++] = (float) xyz[1];
+        }
+        if(n == tmp.length)
+        {
+            return tmp;
+        }
+        float[] packed = new float[n];
+        System.arraycopy(tmp, 0, packed, 0, n);
+        return packed;
+    } // pack
+
+    /**
+     * Keeps every stride-th point, always keeping the last one so the trace keeps its end points
+     */
+    public static float[] decimate(float[] pts, int stride)
+    {
+        int numPts = pts.length / 3;
+        if(numPts / stride < MIN_POINTS_PER_LEVEL)
+        {
+            return pts; // not worth it, keep the finer level
+        }
+
+        int keep = (numPts - 1) / stride + 1;
+        boolean addLast = (numPts - 1) % stride != 0;
+        float[] dec = new float[(keep + (addLast ? 1 : 0)) * 3];
+        int n = 0;
+        for(int i = 0; i < numPts; i += stride)
+        {
+            System.arraycopy(pts, i * 3, dec, n, 3);
+            n += 3;
+        }
+        if(addLast)
+        {
+            System.arraycopy(pts, (numPts - 1) * 3, dec, n, 3);
+        }
+        return dec;
+    } // decimate
+
+    private static FloatBuffer toBuffer(float[] pts)
+    {
+        FloatBuffer fb = ByteBuffer.allocateDirect(Math.max(1, pts.length) * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        fb.put(pts);
+        fb.rewind();
+        return fb;
+    }
+
+    private void computeBoundingSphere()
+    {
+        double sx = 0, sy = 0, sz = 0;
+        int n = 0;
+        float[][] all = {lag[0], lead[0]};
+        for(float[] pts : all)
+        {
+            for(int i = 0; i < pts.length; i += 3)
+            {
+                sx += pts[i];
+                sy += pts[i + 1];
+                sz += pts[i + 2];
+                n++;
+            }
+        }
+        if(n == 0)
+        {
+            center[0] = center[1] = center[2] = 0;
+            radius = 0;
+            return;
+        }
+        center[0] = sx / n;
+        center[1] = sy / n;
+        center[2] = sz / n;
+
+        double r2 = 0;
+        for(float[] pts : all)
+        {
+            for(int i = 0; i < pts.length; i += 3)
+            {
+                double dx = pts[i] - center[0];
+                double dy = pts[i + 1] - center[1];
+                double dz = pts[i + 2] - center[2];
+                r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+            }
+        }
+        radius = Math.sqrt(r2);
+    } // computeBoundingSphere
+
+    /**
+     * Picks a detail level from how far the viewer is compared to the size of the trace
+     * @param eyeDistance distance from the eye to the trace center [m]
+     * @return detail level 0 (all points) to NUM_LEVELS-1
+     */
+    public int selectLevel(double eyeDistance)
+    {
+        if(radius <= 0)
+        {
+            return 0;
+        }
+        double ratio = eyeDistance / radius;
+        int level = 0;
+        double limit = 4.0;
+        while(level < NUM_LEVELS - 1 && ratio > limit)
+        {
+            level++;
+            limit *= 2.0;
+        }
+        return level;
+    } // selectLevel
+
+    public float[] getLagPoints(int level)
+    {
+        return lag[level];
+    }
+
+    public float[] getLeadPoints(int level)
+    {
+        return lead[level];
+    }
+
+    public FloatBuffer getLagBuffer(int level)
+    {
+        return lagBuffer[level];
+    }
+
+    public FloatBuffer getLeadBuffer(int level)
+    {
+        return leadBuffer[level];
+    }
+
+    public int getNumLagPoints(int level)
+    {
+        return lag[level].length / 3;
+    }
+
+    public int getNumLeadPoints(int level)
+    {
+        return lead[level].length / 3;
+    }
+
+    /**
+     * @return bounding sphere center (JOGL ECI coordinates)
+     */
+    public double[] getCenter()
+    {
+        return center;
+    }
+
+    public double getRadius()
+    {
+        return radius;
+    }
+
+} // OrbitTraceGeometry
@@ -0,0 +1,186 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+// Propagation stage of a time step: propagates all the satellites to the new
+// time on a pool of worker threads (each satellite only uses its own data, see
+// SatelliteBulkLoader) and returns when they are all done, so the GUI thread
+// never paints a satellite in the middle of its propagation. The threads are
+// kept between time steps.
+
+package jsattrak.utilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import jsattrak.objects.AbstractSatellite;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class ParallelPropagator
+{
+    private final int numThreads;
+    private int minParallelSats = 64; // fewer satellites than this are propagated on the calling thread
+
+    private ExecutorService pool; // created when first needed
+
+    public ParallelPropagator()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelPropagator(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Propagates the satellites to the given time (blocks until all are done)
+     * @param sats satellites (not modified while this runs)
+     * @param julDate time to propagate to (UTC Julian Date)
+     * @return number of satellites propagated
+     */
+    public int propagate(Collection<AbstractSatellite> sats, final double julDate)
+    {
+        int count = sats.size();
+        if(numThreads == 1 || count < minParallelSats)
+        {
+            for(AbstractSatellite sat : sats)
+            {
+                sat.propogate2JulDate(julDate);
+            }
+            return count;
+        }
+
+        // one block of satellites per thread (the calling thread does the last block)
+        final AbstractSatellite[] satArray = sats.toArray(new AbstractSatellite[count]);
+        int numBlocks = Math.min(numThreads, count);
+        List<Future<?>> futures = new ArrayList<Future<?>>(numBlocks - 1);
+        ExecutorService workers = getPool();
+        for(int b = 0; b < numBlocks - 1; b++)
+        {
+            final int start = b * count / numBlocks;
+            final int end = (b + 1) * count / numBlocks;
+            futures.add(workers.submit(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    propagateBlock(satArray, start, end, julDate);
+                    return null;
+                }
+            }));
+        }
+        try
+        {
+            propagateBlock(satArray, (numBlocks - 1) * count / numBlocks, count, julDate);
+        }
+        catch(RuntimeException e)
+        {
+            System.out.println("Error propagating satellites: " + e.toString());
+        }
+
+        boolean interrupted = false;
+        for(Future<?> f : futures)
+        {
+            while(true)
+            {
+                try
+                {
+                    f.get();
+                    break;
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true; // all blocks have to be finished before returning
+                }
+                catch(ExecutionException e)
+                {
+                    System.out.println("Error propagating satellites: " + e.getCause().toString());
+                    break;
+                }
+            }
+        }
+        if(interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return count;
+    } // propagate
+
+    private static void propagateBlock(AbstractSatellite[] sats, int start, int end, double julDate)
+    {
+        for(int i = start; i < end; i++)
+        {
+            sats[i].propogate2JulDate(julDate);
+        }
+    }
+
+    private synchronized ExecutorService getPool()
+    {
+        if(pool == null)
+        {
+            pool = Executors.newFixedThreadPool(numThreads - 1, new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "ParallelPropagator");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Stops the worker threads (they are started again if needed)
+     */
+    public synchronized void shutdown()
+    {
+        if(pool != null)
+        {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public int getMinParallelSats()
+    {
+        return minParallelSats;
+    }
+
+    public void setMinParallelSats(int minParallelSats)
+    {
+        this.minParallelSats = Math.max(1, minParallelSats);
+    }
+
+} // ParallelPropagator
@@ -0,0 +1,108 @@
+/*
+ * PngSequenceWriter.java
+ *
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Writes the frames of a movie as numbered PNG images (lossless, e.g. to edit
+ * or encode with other tools): frame i of "movie.png" is "movie_00012.png".
+ *
+ */
+
+package jsattrak.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class PngSequenceWriter implements MovieWriter
+{
+    private final File directory;
+    private final String rootName; // file name without the .png
+    private int framesWritten = 0;
+
+    /**
+     * @param file name of the images without the frame number, e.g. movie.png (the directory must exist)
+     */
+    public PngSequenceWriter(File file)
+    {
+        File dir = file.getAbsoluteFile().getParentFile();
+        directory = (dir != null) ? dir : new File(".");
+
+        String name = file.getName();
+        if(name.toLowerCase().endsWith(".png"))
+        {
+            name = name.substring(0, name.length() - 4);
+        }
+        rootName = name;
+    } // constructor
+
+    /**
+     * Encodes a frame as a PNG image (thread safe)
+     */
+    public byte[] encodeFrame(BufferedImage frame) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(frame.getWidth() * frame.getHeight());
+        if(!ImageIO.write(frame, "png", bytes))
+        {
+            throw new IOException("No PNG image writer");
+        }
+        return bytes.toByteArray();
+    }
+
+    public void writeFrame(byte[] encodedFrame) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(getFrameFile(framesWritten));
+        try
+        {
+            out.write(encodedFrame);
+        }
+        finally
+        {
+            out.close();
+        }
+        framesWritten++;
+    } // writeFrame
+
+    public void close() throws IOException
+    {
+        // each image is closed when written
+    }
+
+    /**
+     * @param frame frame number (from 0)
+     * @return image file of the frame
+     */
+    public File getFrameFile(int frame)
+    {
+        return new File(directory, rootName + "_" + String.format("%05d", frame) + ".png");
+    }
+
+    public int getFramesWritten()
+    {
+        return framesWritten;
+    }
+
+} // PngSequenceWriter
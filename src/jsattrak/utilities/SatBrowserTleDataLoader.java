@@ -28,15 +28,15 @@ package jsattrak.utilities;
 import jsattrak.gui.JProgressDialog;
 import jsattrak.gui.LoadTleDirectDialog;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.Future;
 import javax.swing.JOptionPane;
 import javax.swing.JTextArea;
 import javax.swing.JTree;
@@ -192,6 +192,13 @@ public class SatBrowserTleDataLoader extends SwingWorker<Boolean,ProgressStatus>
         
 
                 
+        // when reading from the web, start fetching all the files at once (they are parsed in order below)
+        List<Future<byte[]>> webFiles = null;
+        if(loadTLEfromWeb)
+        {
+            webFiles = new TleDownloadManager(tleDownloader).fetchAllAsync();
+        }
+                
         // Assumes each satellite TLE has a unique name
         for(int i=0; i<tleDownloader.fileNames.length; i++)
         {
@@ -239,10 +246,8 @@ public class SatBrowserTleDataLoader extends SwingWorker<Boolean,ProgressStatus>
                         return new Boolean(result);
                     }
                     
-                    // read from web
-                    URL url = new URL(tleDownloader.getTleWebPath(i));
-                    URLConnection c = url.openConnection();
-                    InputStreamReader isr = new InputStreamReader(c.getInputStream());
+                    // read from web (waits for this file's download)
+                    InputStreamReader isr = new InputStreamReader(new ByteArrayInputStream(webFiles.get(i).get()));
                     tleReader = new BufferedReader(isr); // from the web
                     
                     // update progress?
@@ -0,0 +1,160 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+// Creates many SGP4 satellites at once: the SGP4 initialization (see
+// SGP4BulkInitializer), first propagation and ground track of each satellite
+// are done in parallel (each satellite only uses its own data), ready to be
+// added to the satellite list.
+
+package jsattrak.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import jsattrak.objects.SatelliteTleSGP4;
+import name.gano.astro.propogators.sgp4_cssi.SGP4BulkInitializer;
+import name.gano.astro.propogators.sgp4_cssi.SGP4SatData;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class SatelliteBulkLoader
+{
+    private SatelliteBulkLoader()
+    {
+    }
+
+    /**
+     * Creates and propagates the satellites using all the processors
+     * @param tles element sets
+     * @param julDate date to propagate each satellite to (ground track is initialized too)
+     * @param errors if not null, a message is added for each satellite that could not be created
+     * @return satellites in the same order as the TLEs (bad TLEs are left out)
+     */
+    public static List<SatelliteTleSGP4> createSatellites(List<TLE> tles, double julDate, List<String> errors)
+    {
+        return createSatellites(tles, julDate, Runtime.getRuntime().availableProcessors(), errors);
+    }
+
+    public static List<SatelliteTleSGP4> createSatellites(List<TLE> tles, final double julDate, int numThreads, List<String> errors)
+    {
+        List<SatelliteTleSGP4> sats = new ArrayList<SatelliteTleSGP4>(tles.size());
+        if(tles.isEmpty())
+        {
+            return sats;
+        }
+
+        // read the TLEs and initialize SGP4 for all of them
+        int count = tles.size();
+        String[] names = new String[count];
+        String[] line1s = new String[count];
+        String[] line2s = new String[count];
+        for(int i = 0; i < count; i++)
+        {
+            TLE tle = tles.get(i);
+            names[i] = tle.getSatName();
+            line1s[i] = tle.getLine1();
+            line2s[i] = tle.getLine2();
+        }
+        SGP4BulkInitializer initializer = new SGP4BulkInitializer();
+        initializer.setNumThreads(numThreads);
+        final SGP4SatData[] sgp4Data = initializer.initialize(names, line1s, line2s);
+        int[] errorCodes = initializer.getErrorCodes();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, count)), new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "SatelliteBulkLoader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try
+        {
+            // create the satellites and propagate them (and their ground tracks)
+            List<Future<SatelliteTleSGP4>> futures = new ArrayList<Future<SatelliteTleSGP4>>(count);
+            for(int i = 0; i < count; i++)
+            {
+                if(sgp4Data[i] == null)
+                {
+                    // ignore the bad satellite (and don't add it)
+                    futures.add(null);
+                    if(errors != null)
+                    {
+                        errors.add(names[i].trim() + ": Error loading TLE error code:" + errorCodes[i]);
+                    }
+                    continue;
+                }
+
+                final String name = names[i];
+                final String line1 = line1s[i];
+                final String line2 = line2s[i];
+                final SGP4SatData data = sgp4Data[i];
+                futures.add(pool.submit(new Callable<SatelliteTleSGP4>()
+                {
+                    public SatelliteTleSGP4 call() throws Exception
+                    {
+                        SatelliteTleSGP4 sat = new SatelliteTleSGP4(name, line1, line2, data);
+                        sat.propogate2JulDate(julDate);
+                        return sat;
+                    }
+                }));
+            }
+
+            for(int i = 0; i < futures.size(); i++)
+            {
+                if(futures.get(i) == null)
+                {
+                    continue;
+                }
+                try
+                {
+                    sats.add(futures.get(i).get());
+                }
+                catch(ExecutionException e)
+                {
+                    // ignore the bad satellite (and don't add it)
+                    if(errors != null)
+                    {
+                        errors.add(names[i].trim() + ": " + e.getCause().toString());
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return sats;
+    } // createSatellites
+
+} // SatelliteBulkLoader
@@ -0,0 +1,187 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+// Copy of the state of every satellite at one time step, taken on the thread
+// that propagates them (after the propagation) so other threads (servers,
+// publishers, analytics) can read it without touching the satellites.
+
+package jsattrak.utilities;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import jsattrak.objects.AbstractSatellite;
+
+/**
+ * Immutable. The states of satellite i are getState(i): J2000 position [m],
+ * J2000 velocity [m/s], geodetic latitude [deg], longitude [deg], altitude [m],
+ * TEME position [m] (NaN if the satellite has no current state).
+ *
+ * @author Shawn E. Gano
+ */
+public class SatelliteStateSnapshot
+{
+    // state layout
+    public static final int X = 0, Y = 1, Z = 2, DX = 3, DY = 4, DZ = 5, LAT = 6, LON = 7, ALT = 8;
+    public static final int TEME_X = 9, TEME_Y = 10, TEME_Z = 11;
+    public static final int STATE_SIZE = 12;
+
+    private final double julDate;
+    private final String[] names; // sorted, trimmed (TLE names are padded with spaces)
+    private final double[] states; // [STATE_SIZE * i + k]
+    private final Map<String, Integer> index;
+
+    private SatelliteStateSnapshot(double julDate, String[] names, double[] states)
+    {
+        this.julDate = julDate;
+        this.names = names;
+        this.states = states;
+
+        index = new HashMap<String, Integer>(names.length * 2);
+        for(int i = 0; i < names.length; i++)
+        {
+            if(!index.containsKey(names[i]))
+            {
+                index.put(names[i], i); // (first if two names only differ in spaces)
+            }
+        }
+    }
+
+    /**
+     * Copies the current states of the satellites (call on the thread propagating them)
+     * @param julDate current time (UTC Julian Date)
+     * @param satHash satellites
+     * @return the snapshot
+     */
+    public static SatelliteStateSnapshot create(double julDate, Map<String, AbstractSatellite> satHash)
+    {
+        String[] keys = satHash.keySet().toArray(new String[0]);
+        Arrays.sort(keys, new Comparator<String>()
+        {
+            public int compare(String a, String b)
+            {
+                return a.trim().compareTo(b.trim());
+            }
+        });
+
+        String[] names = new String[keys.length];
+        double[] states = new double[names.length * STATE_SIZE];
+        Arrays.fill(states, Double.NaN);
+        for(int i = 0; i < names.length; i++)
+        {
+            names[i] = keys[i].trim();
+            AbstractSatellite sat = satHash.get(keys[i]);
+            double[] pos = (sat == null) ? null : sat.getJ2000Position();
+            double[] vel = (sat == null) ? null : sat.getJ2000Velocity();
+            if(pos == null || vel == null)
+            {
+                continue;
+            }
+
+            int k = i * STATE_SIZE;
+            states[k + X] = pos[0];
+            states[k + Y] = pos[1];
+            states[k + Z] = pos[2];
+            states[k + DX] = vel[0];
+            states[k + DY] = vel[1];
+            states[k + DZ] = vel[2];
+            states[k + LAT] = sat.getLatitude() * 180.0 / Math.PI;
+            states[k + LON] = sat.getLongitude() * 180.0 / Math.PI;
+            states[k + ALT] = sat.getAltitude();
+            double[] teme = sat.getTEMEPos();
+            if(teme != null)
+            {
+                states[k + TEME_X] = teme[0];
+                states[k + TEME_Y] = teme[1];
+                states[k + TEME_Z] = teme[2];
+            }
+        }
+
+        return new SatelliteStateSnapshot(julDate, names, states);
+    } // create
+
+    /**
+     * @return time of the snapshot (UTC Julian Date)
+     */
+    public double getJulianDate()
+    {
+        return julDate;
+    }
+
+    public int getNumSatellites()
+    {
+        return names.length;
+    }
+
+    /**
+     * @return name of the satellite (without the spaces TLE names are padded with)
+     */
+    public String getName(int i)
+    {
+        return names[i];
+    }
+
+    /**
+     * @param name satellite name (leading and trailing spaces are ignored)
+     * @return index of the satellite or -1 if it isn't in the snapshot
+     */
+    public int indexOf(String name)
+    {
+        Integer i = (name == null) ? null : index.get(name.trim());
+        return (i == null) ? -1 : i;
+    }
+
+    /**
+     * @return true if the satellite had a state
+     */
+    public boolean hasState(int i)
+    {
+        return !Double.isNaN(states[i * STATE_SIZE]);
+    }
+
+    /**
+     * @param i satellite index
+     * @param k X, Y, Z, DX, DY, DZ, LAT, LON, ALT, TEME_X, TEME_Y or TEME_Z
+     */
+    public double get(int i, int k)
+    {
+        return states[i * STATE_SIZE + k];
+    }
+
+    /**
+     * @return copy of the state of satellite i (see the class comment)
+     */
+    public double[] getState(int i)
+    {
+        double[] s = new double[STATE_SIZE];
+        System.arraycopy(states, i * STATE_SIZE, s, 0, STATE_SIZE);
+        return s;
+    }
+
+    /**
+     * @return copy of the TEME position [m] of satellite i
+     */
+    public double[] getTEMEPosition(int i)
+    {
+        int k = i * STATE_SIZE;
+        return new double[] {states[k + TEME_X], states[k + TEME_Y], states[k + TEME_Z]};
+    }
+
+} // SatelliteStateSnapshot
@@ -0,0 +1,231 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+// Keeps the last few snapshots of the satellite states so the 2D and 3D views
+// can draw the satellites at any time in between (the real time when painting)
+// while the satellites themselves are only propagated a few times a second
+// (see JSatTrak real time interpolation mode). Positions are interpolated
+// linearly, over a second or less the error is only about a meter for a low
+// Earth orbit.
+
+package jsattrak.utilities;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class SnapshotInterpolator
+{
+    private static final int NUM_SNAPSHOTS = 3; // kept, so the propagation can run ahead of the render time
+
+    // two snapshots bracketing a time (prev is null if there is only one to use)
+    private static class Bracket
+    {
+        final SatelliteStateSnapshot prev;
+        final SatelliteStateSnapshot next;
+        final double f; // 0 = prev, 1 = next
+
+        Bracket(SatelliteStateSnapshot prev, SatelliteStateSnapshot next, double f)
+        {
+            this.prev = prev;
+            this.next = next;
+            this.f = f;
+        }
+    }
+
+    private volatile SatelliteStateSnapshot[] snapshots = new SatelliteStateSnapshot[0]; // by time, replaced on each push
+    private volatile boolean active = false; // if the views should use this instead of the satellites
+    private volatile double renderJulianDate = Double.NaN; // time the views show
+
+    public SnapshotInterpolator()
+    {
+    }
+
+    /**
+     * Adds the snapshot of the latest propagation (the oldest one kept is dropped)
+     * @param snapshot states at a later time than the previous one
+     */
+    public synchronized void push(SatelliteStateSnapshot snapshot)
+    {
+        SatelliteStateSnapshot[] old = snapshots;
+        if(old.length > 0 && snapshot.getJulianDate() <= old[old.length - 1].getJulianDate())
+        {
+            snapshots = new SatelliteStateSnapshot[] {snapshot}; // time went back, start over
+            return;
+        }
+
+        int keep = Math.min(old.length, NUM_SNAPSHOTS - 1);
+        SatelliteStateSnapshot[] s = new SatelliteStateSnapshot[keep + 1];
+        System.arraycopy(old, old.length - keep, s, 0, keep);
+        s[keep] = snapshot;
+        snapshots = s;
+    }
+
+    /**
+     * Drops the snapshots
+     */
+    public synchronized void clear()
+    {
+        snapshots = new SatelliteStateSnapshot[0];
+        renderJulianDate = Double.NaN;
+    }
+
+    /**
+     * @return true if the views should draw the satellites from the snapshots at the render time
+     */
+    public boolean isActive()
+    {
+        return active && snapshots.length > 0 && !Double.isNaN(renderJulianDate);
+    }
+
+    public void setActive(boolean active)
+    {
+        this.active = active;
+    }
+
+    public double getRenderJulianDate()
+    {
+        return renderJulianDate;
+    }
+
+    /**
+     * @param renderJulianDate time the views show (UTC Julian Date)
+     */
+    public void setRenderJulianDate(double renderJulianDate)
+    {
+        this.renderJulianDate = renderJulianDate;
+    }
+
+    /**
+     * Interpolated geodetic position of a satellite at the render time
+     * @param name satellite name
+     * @param lla filled with latitude [rad], longitude [rad], altitude [m]
+     * @return false if the satellite has no state (lla isn't changed)
+     */
+    public boolean getLLA(String name, double[] lla)
+    {
+        Bracket b = bracket(renderJulianDate);
+        if(b == null)
+        {
+            return false;
+        }
+        int j = b.next.indexOf(name);
+        if(j < 0 || !b.next.hasState(j))
+        {
+            return false;
+        }
+
+        double lat = b.next.get(j, SatelliteStateSnapshot.LAT);
+        double lon = b.next.get(j, SatelliteStateSnapshot.LON);
+        double alt = b.next.get(j, SatelliteStateSnapshot.ALT);
+
+        int i = (b.prev == null) ? -1 : b.prev.indexOf(name);
+        if(i >= 0 && b.prev.hasState(i))
+        {
+            double f = b.f;
+            double lat0 = b.prev.get(i, SatelliteStateSnapshot.LAT);
+            double lon0 = b.prev.get(i, SatelliteStateSnapshot.LON);
+            double alt0 = b.prev.get(i, SatelliteStateSnapshot.ALT);
+
+            // take the short way around the date line
+            if(lon - lon0 > 180.0)
+            {
+                lon0 += 360.0;
+            }
+            else if(lon0 - lon > 180.0)
+            {
+                lon0 -= 360.0;
+            }
+
+            lat = lat0 + f * (lat - lat0);
+            lon = lon0 + f * (lon - lon0);
+            alt = alt0 + f * (alt - alt0);
+            if(lon > 180.0)
+            {
+                lon -= 360.0;
+            }
+            else if(lon < -180.0)
+            {
+                lon += 360.0;
+            }
+        }
+
+        lla[0] = lat * Math.PI / 180.0;
+        lla[1] = lon * Math.PI / 180.0;
+        lla[2] = alt;
+        return true;
+    } // getLLA
+
+    /**
+     * Interpolated TEME position of a satellite at the render time
+     * @param name satellite name
+     * @param pos filled with the TEME position [m]
+     * @return false if the satellite has no state (pos isn't changed)
+     */
+    public boolean getTEMEPos(String name, double[] pos)
+    {
+        Bracket b = bracket(renderJulianDate);
+        if(b == null)
+        {
+            return false;
+        }
+        int j = b.next.indexOf(name);
+        if(j < 0 || !b.next.hasState(j))
+        {
+            return false;
+        }
+
+        int i = (b.prev == null) ? -1 : b.prev.indexOf(name);
+        boolean interpolate = i >= 0 && b.prev.hasState(i);
+        for(int k = 0; k < 3; k++)
+        {
+            double p1 = b.next.get(j, SatelliteStateSnapshot.TEME_X + k);
+            pos[k] = interpolate ? b.prev.get(i, SatelliteStateSnapshot.TEME_X + k) * (1.0 - b.f) + p1 * b.f : p1;
+        }
+        return true;
+    } // getTEMEPos
+
+    // snapshots bracketing julDate (outside them the nearest one is used alone), null if there are none
+    private Bracket bracket(double julDate)
+    {
+        SatelliteStateSnapshot[] s = snapshots;
+        if(s.length == 0)
+        {
+            return null;
+        }
+        if(Double.isNaN(julDate) || julDate >= s[s.length - 1].getJulianDate())
+        {
+            return new Bracket(null, s[s.length - 1], 1.0);
+        }
+        if(julDate <= s[0].getJulianDate())
+        {
+            return new Bracket(null, s[0], 1.0);
+        }
+
+        int n = 1;
+        while(s[n].getJulianDate() < julDate)
+        {
+            n++;
+        }
+        double t0 = s[n - 1].getJulianDate();
+        double t1 = s[n].getJulianDate();
+        return new Bracket(s[n - 1], s[n], (julDate - t0) / (t1 - t0));
+    } // bracket
+
+} // SnapshotInterpolator
@@ -201,23 +201,17 @@ public class TLEDownloader implements java.io.Serializable
 
     /**
      * downloads all the TLEs without stopping inbetween each file
+     * (several files at a time, files that have not changed on the server are not downloaded again - see TleDownloadManager)
      * @return if all files were downloaded successfully (if returns false see getErrorText for reason)
      */
     public boolean downloadAllTLEs()
     {
-         boolean success = true; // flag to tell if everyting worked
+         TleDownloadManager manager = new TleDownloadManager(this);
          
-         // do download
-         success = startTLEDownload();
-
-         // if started okay download the files
-         if(success)
+         boolean success = manager.downloadAll(null);
+         if(!success)
          {
-             // while there is more to download and there are no errors
-             while( this.hasMoreToDownload() && success )
-             {
-                success = this.downloadNextTLE();
-             }
+             errorText = manager.getErrorText();
          }
          
          //
@@ -431,6 +425,19 @@ public class TLEDownloader implements java.io.Serializable
         return rootWeb + fileNames[index];
     }
 
+    public String getRootWeb()
+    {
+        return rootWeb;
+    }
+
+    /**
+     * @param rootWeb root URL of the TLE files (ending with "/")
+     */
+    public void setRootWeb(String rootWeb)
+    {
+        this.rootWeb = rootWeb;
+    }
+
     public void setUsingProxy(boolean b)
     {
         this.usingProxy = b;
@@ -0,0 +1,319 @@
+/*
+ * TickMetrics.java
+ *
+ * Low overhead instrumentation of the animation "tick" (JSatTrak.updateTime)
+ * and the 2D/3D painting it triggers. Each stage aggregates into a
+ * LatencyHistogram, results are available through JMX (jsattrak:type=TickMetrics)
+ * and in the MemoryStatusPanel overlay.
+ *
+ * Usage:
+ *      long t0 = TickMetrics.start();
+ *      ... work ...
+ *      TickMetrics.stop(TickMetrics.PROPAGATION, t0);
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.utilities;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Singleton holding the hot path timers and counters
+ *
+ * @author Shawn E. Gano
+ */
+public class TickMetrics implements TickMetricsMBean
+{
+    // stages (index into histogram array)
+    public static final int TICK = 0;            // all of JSatTrak.updateTime
+    public static final int PROPAGATION = 1;     // propagate all satellites
+    public static final int GROUND_TRACK = 2;    // ground track regeneration check/reset
+    public static final int GROUND_STATIONS = 3; // ground station time updates
+    public static final int THREE_D_UPDATE = 4;  // setMJD on 3D windows
+    public static final int TIME_DEPENDENT = 5;  // JSatTrakTimeDependent objects (coverage)
+    public static final int COVERAGE = 6;        // CoverageAnalyzer.performCoverageAnalysis
+    public static final int REPAINT = 7;         // forceRepainting (request only, painting is async)
+    public static final int PAINT_2D = 8;        // J2dEarthLabel2.paintComponent
+    public static final int RENDER_ORBIT = 9;    // OrbitModelRenderable.render
+    public static final int RENDER_ECEF = 10;    // ECEFModelRenderable.render
+    public static final int RENDER_COVERAGE = 11;// CoverageDataGeom.render
+    public static final int UI_UPDATE = 12;      // property panels and tracking windows
+
+    private static final String[] STAGE_NAMES = new String[] {
+        "tick", "propagation", "groundTrack", "groundStations", "threeDUpdate",
+        "timeDependent", "coverage", "repaint", "paint2d", "renderOrbit",
+        "renderEcef", "renderCoverage", "uiUpdate"};
+
+    public static final String OBJECT_NAME = "jsattrak:type=TickMetrics";
+
+    private static final TickMetrics INSTANCE = new TickMetrics();
+
+    private volatile boolean enabled = true;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGE_NAMES.length];
+
+    // counters
+    private final AtomicLong tickCount = new AtomicLong();
+    private final AtomicLong satsPropagated = new AtomicLong();
+    private final AtomicLong propagationNanos = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong allocationSamples = new AtomicLong();
+
+    // per thread allocation counter (HotSpot only, found by reflection so other VMs still work)
+    private final ThreadMXBean threadBean;
+    private final Method allocatedBytesMethod;
+
+    private TickMetrics()
+    {
+        for(int i = 0; i < STAGE_NAMES.length; i++)
+        {
+            histograms[i] = new LatencyHistogram(STAGE_NAMES[i]);
+        }
+
+        ThreadMXBean tb = null;
+        Method m = null;
+        try
+        {
+            tb = ManagementFactory.getThreadMXBean();
+            Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+            if(sunBean.isInstance(tb))
+            {
+                m = sunBean.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        }
+        catch(Exception e)
+        {
+            m = null; // allocation tracking not supported
+        }
+        threadBean = tb;
+        allocatedBytesMethod = m;
+    } // constructor
+
+    public static TickMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    // ---- hot path static helpers ------------------------------------
+
+    /**
+     * @return start time stamp to pass into stop(), 0 if metrics are disabled
+     */
+    public static long start()
+    {
+        return INSTANCE.enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the time since start for a stage
+     * @param stage stage constant (e.g. TickMetrics.PROPAGATION)
+     * @param startNanos value returned from start()
+     */
+    public static void stop(int stage, long startNanos)
+    {
+        if(startNanos == 0L)
+        {
+            return; // was disabled when started
+        }
+        INSTANCE.histograms[stage].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the propagation stage and the number of satellites propagated
+     * @param startNanos value returned from start()
+     * @param numSats number of satellites propagated
+     */
+    public static void stopPropagation(long startNanos, int numSats)
+    {
+        if(startNanos == 0L)
+        {
+            return;
+        }
+        long dt = System.nanoTime() - startNanos;
+        INSTANCE.histograms[PROPAGATION].record(dt);
+        INSTANCE.satsPropagated.addAndGet(numSats);
+        INSTANCE.propagationNanos.addAndGet(dt);
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, -1 if not supported (or disabled)
+     */
+    public static long currentThreadAllocatedBytes()
+    {
+        if(!INSTANCE.enabled || INSTANCE.allocatedBytesMethod == null)
+        {
+            return -1L;
+        }
+        try
+        {
+            Object bytes = INSTANCE.allocatedBytesMethod.invoke(INSTANCE.threadBean, Thread.currentThread().getId());
+            return ((Long) bytes).longValue();
+        }
+        catch(Exception e)
+        {
+            return -1L;
+        }
+    }
+
+    /**
+     * Finish a full tick
+     * @param startNanos value returned from start() at the beginning of the tick
+     * @param startAllocatedBytes value of currentThreadAllocatedBytes() at the beginning of the tick
+     */
+    public static void endTick(long startNanos, long startAllocatedBytes)
+    {
+        if(startNanos == 0L)
+        {
+            return;
+        }
+        stop(TICK, startNanos);
+        INSTANCE.tickCount.incrementAndGet();
+
+        if(startAllocatedBytes >= 0)
+        {
+            long endBytes = currentThreadAllocatedBytes();
+            if(endBytes >= startAllocatedBytes)
+            {
+                INSTANCE.allocatedBytes.addAndGet(endBytes - startAllocatedBytes);
+                INSTANCE.allocationSamples.incrementAndGet();
+            }
+        }
+    } // endTick
+
+    // ---- registration ------------------------------------------------
+
+    /**
+     * Registers the metrics with the platform MBean server (safe to call more than once)
+     */
+    public static void registerMBean()
+    {
+        try
+        {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!mbs.isRegistered(name))
+            {
+                mbs.registerMBean(INSTANCE, name);
+            }
+        }
+        catch(Exception e)
+        {
+            System.out.println("Error registering tick metrics MBean: " + e.toString());
+        }
+    } // registerMBean
+
+    // ---- access ------------------------------------------------------
+
+    public LatencyHistogram getHistogram(int stage)
+    {
+        return histograms[stage];
+    }
+
+    /**
+     * One line summary used by the memory status overlay
+     * @return e.g. "tick 1.23/4.56 ms"
+     */
+    public String getShortSummary()
+    {
+        DecimalFormat df = new DecimalFormat("#,##0.00"); // not thread safe, so one per call
+        LatencyHistogram tick = histograms[TICK];
+        return "tick " + df.format(tick.getPercentileMs(50)) + "/" + df.format(tick.getPercentileMs(99)) + " ms";
+    }
+
+    // TickMetricsMBean ==================================================
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public long getTickCount()
+    {
+        return tickCount.get();
+    }
+
+    public double getSatellitesPropagatedPerSecond()
+    {
+        long nanos = propagationNanos.get();
+        return (nanos == 0) ? 0.0 : satsPropagated.get() / (nanos / 1.0E9);
+    }
+
+    public long getAllocatedBytesPerTick()
+    {
+        long n = allocationSamples.get();
+        return (n == 0) ? -1L : allocatedBytes.get() / n;
+    }
+
+    public String[] getStageNames()
+    {
+        return STAGE_NAMES.clone();
+    }
+
+    public String[] getStageSummary()
+    {
+        DecimalFormat df = new DecimalFormat("#,##0.00");
+        String[] summary = new String[STAGE_NAMES.length];
+        for(int i = 0; i < STAGE_NAMES.length; i++)
+        {
+            LatencyHistogram h = histograms[i];
+            summary[i] = STAGE_NAMES[i] + ": n=" + h.getCount()
+                    + ", p50=" + df.format(h.getPercentileMs(50))
+                    + " ms, p99=" + df.format(h.getPercentileMs(99))
+                    + " ms, max=" + df.format(h.getMaxMs()) + " ms";
+        }
+        return summary;
+    }
+
+    public double getPercentileMs(String stageName, double percentile)
+    {
+        for(int i = 0; i < STAGE_NAMES.length; i++)
+        {
+            if(STAGE_NAMES[i].equals(stageName))
+            {
+                return histograms[i].getPercentileMs(percentile);
+            }
+        }
+        return 0.0;
+    }
+
+    public void reset()
+    {
+        for(LatencyHistogram h : histograms)
+        {
+            h.reset();
+        }
+        tickCount.set(0);
+        satsPropagated.set(0);
+        propagationNanos.set(0);
+        allocatedBytes.set(0);
+        allocationSamples.set(0);
+    }
+
+} // TickMetrics
@@ -0,0 +1,55 @@
+/*
+ * TickMetricsMBean.java
+ *
+ * JMX management interface for TickMetrics (shows up in jconsole / VisualVM
+ * under jsattrak:type=TickMetrics)
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package jsattrak.utilities;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public interface TickMetricsMBean
+{
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    public long getTickCount();
+
+    public double getSatellitesPropagatedPerSecond();
+
+    public long getAllocatedBytesPerTick();
+
+    public String[] getStageNames();
+
+    public String[] getStageSummary();
+
+    /**
+     * @param stageName one of getStageNames()
+     * @param percentile 0-100, e.g. 50 or 99
+     * @return latency in milliseconds (0 if unknown stage or no data)
+     */
+    public double getPercentileMs(String stageName, double percentile);
+
+    public void reset();
+}
@@ -0,0 +1,290 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+// Shared index of all the local TLE data (the TLEDownloader files and the user
+// supplied files in data/tle_user), loaded once and looked up by name, NORAD
+// catalog number or category - so adding satellites doesn't require re-reading
+// every TLE file (as creating a new JSatBrowser does).
+
+package jsattrak.utilities;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import name.gano.astro.propogators.sgp4_cssi.SGP4BulkInitializer;
+import name.gano.file.IOFileFilter;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class TleCatalog
+{
+    private static TleCatalog sharedCatalog = null;
+
+    // same keys as the satellite browser (name line as read from the file)
+    private final Hashtable<String, TLE> byName = new Hashtable<String, TLE>();
+    private final HashMap<String, TLE> byTrimmedName = new HashMap<String, TLE>(); // upper case, trimmed
+    private final HashMap<Integer, TLE> byCatalogNumber = new HashMap<Integer, TLE>();
+    private final LinkedHashMap<String, List<TLE>> byCategory = new LinkedHashMap<String, List<TLE>>(); // lower case keys
+
+    /**
+     * @return the shared catalog, loaded from the local TLE files the first time it is used
+     */
+    public static synchronized TleCatalog getSharedCatalog()
+    {
+        if(sharedCatalog == null)
+        {
+            TleCatalog catalog = new TleCatalog();
+            catalog.load(new TLEDownloader(), new File(SatBrowserTleDataLoader.usrTLEpath));
+            sharedCatalog = catalog;
+        }
+        return sharedCatalog;
+    }
+
+    /**
+     * Drops the shared catalog so it is reloaded on next use (call after the TLE files are updated)
+     */
+    public static synchronized void invalidateSharedCatalog()
+    {
+        sharedCatalog = null;
+    }
+
+    public TleCatalog()
+    {
+    }
+
+    /**
+     * Loads the TLE files (missing or bad files are reported and skipped)
+     * @param downloader file names and categories of the standard TLE files
+     * @param userTleDir directory of user supplied TLE files (can be null)
+     */
+    public void load(TLEDownloader downloader, File userTleDir)
+    {
+        for(int i = 0; i < downloader.fileNames.length; i++)
+        {
+            loadFile(new File(downloader.getTleFilePath(i)), downloader.primCat[i], downloader.secondCat[i], downloader.fileNames[i]);
+        }
+
+        // user supplied files - same categories as the satellite browser
+        if(userTleDir != null && userTleDir.isDirectory())
+        {
+            File[] tleFiles = userTleDir.listFiles(new IOFileFilter("txt", "tle", "dat"));
+            for(File f : tleFiles)
+            {
+                String fn = f.getName();
+                loadFile(f, "Custom", fn.substring(0, fn.length() - 4), fn);
+            }
+        }
+    } // load
+
+    /**
+     * Adds all the element sets in a 3 line TLE file
+     * @return true if the file was read
+     */
+    public boolean loadFile(File tleFile, String primaryCategory, String secondaryCategory, String fileName)
+    {
+        if(!tleFile.exists())
+        {
+            return false;
+        }
+
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<String> line1s = new ArrayList<String>();
+        ArrayList<String> line2s = new ArrayList<String>();
+        try
+        {
+            SGP4BulkInitializer.readElementSets(tleFile, names, line1s, line2s);
+        }
+        catch(Exception e)
+        {
+            System.out.println("Error reading TLE file " + tleFile.getPath() + ": " + e.toString());
+            return false;
+        }
+
+        for(int i = 0; i < names.size(); i++)
+        {
+            add(new TLE(names.get(i), line1s.get(i), line2s.get(i)), primaryCategory, secondaryCategory, fileName);
+        }
+        return true;
+    } // loadFile
+
+    /**
+     * Adds one element set to the index
+     */
+    public synchronized void add(TLE tle, String primaryCategory, String secondaryCategory, String fileName)
+    {
+        byName.put(tle.getSatName(), tle);
+        byTrimmedName.put(tle.getSatName().trim().toUpperCase(), tle);
+
+        int catNum = getCatalogNumber(tle);
+        if(catNum >= 0)
+        {
+            byCatalogNumber.put(catNum, tle);
+        }
+
+        addToCategory(primaryCategory, tle);
+        addToCategory(secondaryCategory, tle);
+        addToCategory(fileName, tle);
+    }
+
+    private void addToCategory(String category, TLE tle)
+    {
+        if(category == null)
+        {
+            return;
+        }
+        String key = category.trim().toLowerCase();
+        List<TLE> list = byCategory.get(key);
+        if(list == null)
+        {
+            list = new ArrayList<TLE>();
+            byCategory.put(key, list);
+        }
+        list.add(tle);
+    }
+
+    /**
+     * @return NORAD catalog number from line 1 (columns 3-7), -1 if it can't be read
+     */
+    public static int getCatalogNumber(TLE tle)
+    {
+        String l1 = tle.getLine1();
+        if(l1 == null || l1.length() < 7)
+        {
+            return -1;
+        }
+        try
+        {
+            return Integer.parseInt(l1.substring(2, 7).trim());
+        }
+        catch(NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * @param name satellite name, exact (as in the TLE file) or trimmed and ignoring case
+     * @return TLE or null if not found
+     */
+    public synchronized TLE getByName(String name)
+    {
+        TLE tle = byName.get(name);
+        if(tle == null)
+        {
+            tle = byTrimmedName.get(name.trim().toUpperCase());
+        }
+        return tle;
+    }
+
+    /**
+     * @return TLE or null if not found
+     */
+    public synchronized TLE getByCatalogNumber(int catalogNumber)
+    {
+        return byCatalogNumber.get(catalogNumber);
+    }
+
+    /**
+     * @param category primary category (e.g. "Navigation"), secondary category (e.g. "GPS Operational") or file name (e.g. "gps-ops.txt"), ignoring case
+     * @return TLEs in the category (empty if not found)
+     */
+    public synchronized List<TLE> getCategory(String category)
+    {
+        List<TLE> list = byCategory.get(category.trim().toLowerCase());
+        if(list == null)
+        {
+            return Collections.emptyList();
+        }
+        return new ArrayList<TLE>(list);
+    }
+
+    /**
+     * Resolves a satellite name, NORAD catalog number or category
+     * @param query name, number or category
+     * @return matching TLEs (empty if none)
+     */
+    public synchronized List<TLE> resolve(String query)
+    {
+        List<TLE> result = new ArrayList<TLE>();
+
+        TLE tle = getByName(query);
+        if(tle != null)
+        {
+            result.add(tle);
+            return result;
+        }
+
+        String q = query.trim();
+        if(q.length() > 0 && isDigits(q))
+        {
+            tle = getByCatalogNumber(Integer.parseInt(q));
+            if(tle != null)
+            {
+                result.add(tle);
+            }
+            return result;
+        }
+
+        return getCategory(q);
+    } // resolve
+
+    private static boolean isDigits(String s)
+    {
+        if(s.length() > 9)
+        {
+            return false;
+        }
+        for(int i = 0; i < s.length(); i++)
+        {
+            if(!Character.isDigit(s.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return copy of the name to TLE table (same keys as JSatBrowser.getTleHash)
+     */
+    public synchronized Hashtable<String, TLE> getTleHash()
+    {
+        return new Hashtable<String, TLE>(byName);
+    }
+
+    /**
+     * @return category names (lower case)
+     */
+    public synchronized List<String> getCategoryNames()
+    {
+        return new ArrayList<String>(byCategory.keySet());
+    }
+
+    public synchronized int size()
+    {
+        return byName.size();
+    }
+
+} // TleCatalog
@@ -0,0 +1,631 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+// Downloads the TLE files listed in a TLEDownloader concurrently (bounded pool).
+// - conditional requests (If-None-Match / If-Modified-Since), the ETag and
+//   Last-Modified of each file are kept in a properties file in the local path
+// - gzip transfer encoding
+// - each file is written to a temp file and then renamed over the old one
+// - the element sets of the new and old file are compared so the changed
+//   satellites can be reported (and only those refreshed)
+// The web root comes from the TLEDownloader, so a local HTTP server can be used for testing.
+
+package jsattrak.utilities;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class TleDownloadManager
+{
+    public static final String CACHE_INFO_FILE = "tle_download_cache.properties";
+
+    public enum Status
+    {
+        UPDATED, NOT_MODIFIED, FAILED
+    }
+
+    /**
+     * Outcome of downloading one TLE file
+     */
+    public static class FileResult
+    {
+        private final String fileName;
+        private Status status = Status.FAILED;
+        private Set<String> changedSatellites = Collections.emptySet(); // new or changed element sets
+        private Set<String> removedSatellites = Collections.emptySet();
+        private String errorText = "";
+
+        FileResult(String fileName)
+        {
+            this.fileName = fileName;
+        }
+
+        public String getFileName()
+        {
+            return fileName;
+        }
+
+        public Status getStatus()
+        {
+            return status;
+        }
+
+        public Set<String> getChangedSatellites()
+        {
+            return changedSatellites;
+        }
+
+        public Set<String> getRemovedSatellites()
+        {
+            return removedSatellites;
+        }
+
+        public String getErrorText()
+        {
+            return errorText;
+        }
+    } // FileResult
+
+    /**
+     * Progress callback, called from the thread running downloadAll()
+     */
+    public interface ProgressListener
+    {
+        public void fileFinished(FileResult result, int filesDone, int filesTotal);
+    }
+
+    private final TLEDownloader settings; // file names, web root, local path and proxy
+
+    private int maxConcurrentDownloads = 4;
+    private int connectTimeoutMs = 15000;
+    private int readTimeoutMs = 30000;
+    private boolean useConditionalRequests = true;
+
+    private final Properties cacheInfo = new Properties(); // ETag / Last-Modified of each file
+    private final List<FileResult> results = new ArrayList<FileResult>();
+    private String errorText = "";
+
+    public TleDownloadManager(TLEDownloader settings)
+    {
+        this.settings = settings;
+    }
+
+    /**
+     * Downloads all the TLE files to the local path, blocks until done
+     * @param listener progress listener (can be null)
+     * @return true if every file was downloaded or was already up to date (if false see getErrorText)
+     */
+    public boolean downloadAll(ProgressListener listener)
+    {
+        results.clear();
+        errorText = "";
+
+        // creates the local directory and sets the proxy
+        if(!settings.startTLEDownload())
+        {
+            errorText = settings.getErrorText();
+            return false;
+        }
+
+        loadCacheInfo();
+
+        int total = settings.fileNames.length;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrentDownloads, total)), new DownloadThreadFactory());
+        boolean success = true;
+        try
+        {
+            CompletionService<FileResult> completion = new ExecutorCompletionService<FileResult>(pool);
+            for(int i = 0; i < total; i++)
+            {
+                final String fileName = settings.fileNames[i];
+                completion.submit(new Callable<FileResult>()
+                {
+                    public FileResult call()
+                    {
+                        return downloadFile(fileName);
+                    }
+                });
+            }
+
+            for(int i = 0; i < total; i++)
+            {
+                FileResult r = completion.take().get();
+                results.add(r);
+                if(r.getStatus() == Status.FAILED)
+                {
+                    System.out.println("Error Reading/Writing TLE - " + r.getFileName() + "\n" + r.getErrorText());
+                    if(success)
+                    {
+                        errorText = r.getFileName() + ": " + r.getErrorText();
+                    }
+                    success = false;
+                }
+                if(listener != null)
+                {
+                    listener.fileFinished(r, i + 1, total);
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            errorText = "TLE download interrupted";
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        catch(ExecutionException e)
+        {
+            errorText = e.getCause().toString();
+            success = false;
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        saveCacheInfo();
+        
+        for(FileResult r : results)
+        {
+            if(r.getStatus() == Status.UPDATED)
+            {
+                TleCatalog.invalidateSharedCatalog(); // local TLE files changed
+                break;
+            }
+        }
+
+        return success;
+    } // downloadAll
+
+    /**
+     * Starts fetching all the TLE files into memory (nothing is written locally),
+     * unconditionally; the futures are in the same order as the file names.
+     * The pool is shut down once all the downloads are done.
+     * @return contents of each file
+     */
+    public List<Future<byte[]>> fetchAllAsync()
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrentDownloads, settings.fileNames.length)), new DownloadThreadFactory());
+        List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>(settings.fileNames.length);
+        for(final String fileName : settings.fileNames)
+        {
+            futures.add(pool.submit(new Callable<byte[]>()
+            {
+                public byte[] call() throws Exception
+                {
+                    HttpResponse response = get(settings.getRootWeb() + fileName, null, 0);
+                    if(response.code != HttpURLConnection.HTTP_OK)
+                    {
+                        throw new IOException("HTTP " + response.code + " for " + fileName);
+                    }
+                    return response.body;
+                }
+            }));
+        }
+        pool.shutdown(); // already submitted tasks still run
+        return futures;
+    } // fetchAllAsync
+
+    // downloads one file (runs in a pool thread)
+    private FileResult downloadFile(String fileName)
+    {
+        FileResult result = new FileResult(fileName);
+        File localFile = new File(settings.getLocalPath() + fileName);
+
+        try
+        {
+            String etag = null;
+            long lastModified = 0;
+            if(useConditionalRequests && localFile.exists())
+            {
+                synchronized(cacheInfo)
+                {
+                    etag = cacheInfo.getProperty(fileName + ".etag");
+                    lastModified = Long.parseLong(cacheInfo.getProperty(fileName + ".lastModified", "0"));
+                }
+            }
+
+            HttpResponse response = get(settings.getRootWeb() + fileName, etag, lastModified);
+
+            if(response.code == HttpURLConnection.HTTP_NOT_MODIFIED)
+            {
+                result.status = Status.NOT_MODIFIED;
+                return result;
+            }
+            if(response.code != HttpURLConnection.HTTP_OK)
+            {
+                result.errorText = "HTTP response " + response.code;
+                return result;
+            }
+
+            // what changed compared to the current file
+            Map<String, String> oldSets = localFile.exists() ? readElementSets(new FileReader(localFile)) : new LinkedHashMap<String, String>();
+            Map<String, String> newSets = readElementSets(new InputStreamReader(new ByteArrayInputStream(response.body)));
+            Set<String> changed = new TreeSet<String>();
+            for(Map.Entry<String, String> e : newSets.entrySet())
+            {
+                if(!e.getValue().equals(oldSets.get(e.getKey())))
+                {
+                    changed.add(e.getKey());
+                }
+            }
+            Set<String> removed = new TreeSet<String>(oldSets.keySet());
+            removed.removeAll(newSets.keySet());
+
+            writeAtomically(response.body, localFile);
+
+            synchronized(cacheInfo)
+            {
+                cacheInfo.remove(fileName + ".etag");
+                cacheInfo.remove(fileName + ".lastModified");
+                if(response.etag != null)
+                {
+                    cacheInfo.setProperty(fileName + ".etag", response.etag);
+                }
+                if(response.lastModified > 0)
+                {
+                    cacheInfo.setProperty(fileName + ".lastModified", Long.toString(response.lastModified));
+                }
+            }
+
+            result.changedSatellites = changed;
+            result.removedSatellites = removed;
+            result.status = Status.UPDATED;
+        }
+        catch(Exception e)
+        {
+            result.errorText = e.toString();
+        }
+
+        return result;
+    } // downloadFile
+
+    private static class HttpResponse
+    {
+        int code;
+        String etag;
+        long lastModified;
+        byte[] body;
+    }
+
+    // HTTP GET, follows redirects (including http -> https which URLConnection won't do)
+    private HttpResponse get(String address, String etag, long lastModified) throws IOException
+    {
+        URL url = new URL(address);
+        for(int redirects = 0; redirects < 5; redirects++)
+        {
+            URLConnection c = url.openConnection();
+            c.setConnectTimeout(connectTimeoutMs);
+            c.setReadTimeout(readTimeoutMs);
+            c.setRequestProperty("Accept-Encoding", "gzip");
+            if(etag != null)
+            {
+                c.setRequestProperty("If-None-Match", etag);
+            }
+            if(lastModified > 0)
+            {
+                c.setIfModifiedSince(lastModified);
+            }
+
+            HttpResponse response = new HttpResponse();
+            if(!(c instanceof HttpURLConnection)) // e.g. a file: URL
+            {
+                response.code = HttpURLConnection.HTTP_OK;
+                response.body = readFully(c.getInputStream(), null);
+                return response;
+            }
+
+            HttpURLConnection http = (HttpURLConnection) c;
+            http.setInstanceFollowRedirects(false);
+            try
+            {
+                response.code = http.getResponseCode();
+                if(response.code >= 300 && response.code < 400 && response.code != HttpURLConnection.HTTP_NOT_MODIFIED)
+                {
+                    String location = http.getHeaderField("Location");
+                    if(location == null)
+                    {
+                        throw new IOException("Redirect without a location");
+                    }
+                    url = new URL(url, location);
+                    continue;
+                }
+
+                response.etag = http.getHeaderField("ETag");
+                response.lastModified = http.getLastModified();
+                if(response.code == HttpURLConnection.HTTP_OK)
+                {
+                    response.body = readFully(http.getInputStream(), http.getContentEncoding());
+                }
+                return response;
+            }
+            finally
+            {
+                http.disconnect();
+            }
+        }
+        throw new IOException("Too many redirects: " + address);
+    } // get
+
+    private static byte[] readFully(InputStream in, String contentEncoding) throws IOException
+    {
+        try
+        {
+            if(contentEncoding != null && contentEncoding.toLowerCase().contains("gzip"))
+            {
+                in = new GZIPInputStream(in);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            byte[] buf = new byte[16 * 1024];
+            int n;
+            while((n = in.read(buf)) > 0)
+            {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    } // readFully
+
+    /**
+     * Reads the 3 line element sets
+     * @return satellite name (as used in the satellite browser) -> line 1 and 2
+     */
+    public static Map<String, String> readElementSets(Reader reader) throws IOException
+    {
+        Map<String, String> sets = new LinkedHashMap<String, String>();
+        BufferedReader br = new BufferedReader(reader);
+        try
+        {
+            String name;
+            while((name = br.readLine()) != null)
+            {
+                String l1 = br.readLine();
+                String l2 = br.readLine();
+                if(l1 == null || l2 == null)
+                {
+                    break; // incomplete set at the end
+                }
+                sets.put(name, l1.trim() + "\n" + l2.trim());
+            }
+        }
+        finally
+        {
+            br.close();
+        }
+        return sets;
+    } // readElementSets
+
+    // write to a temp file next to the target, then rename it over the target
+    private static void writeAtomically(byte[] data, File target) throws IOException
+    {
+        File tmp = new File(target.getPath() + ".part" + Thread.currentThread().getId());
+
+        // saved line by line with the system line separator, same as before
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data)));
+        BufferedWriter writer = new BufferedWriter(new FileWriter(tmp));
+        try
+        {
+            String currentLine;
+            while((currentLine = br.readLine()) != null)
+            {
+                writer.write(currentLine);
+                writer.newLine();   // Write system dependent end of line.
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        replaceFile(tmp, target);
+    } // writeAtomically
+
+    private static void replaceFile(File tmp, File target) throws IOException
+    {
+        if(!tmp.renameTo(target))
+        {
+            // some platforms (Windows) can't rename over an existing file
+            target.delete();
+            if(!tmp.renameTo(target))
+            {
+                tmp.delete();
+                throw new IOException("Could not replace " + target.getPath());
+            }
+        }
+    }
+
+    private void loadCacheInfo()
+    {
+        synchronized(cacheInfo)
+        {
+            cacheInfo.clear();
+            File f = new File(settings.getLocalPath() + CACHE_INFO_FILE);
+            if(!f.exists())
+            {
+                return;
+            }
+            try
+            {
+                FileInputStream in = new FileInputStream(f);
+                try
+                {
+                    cacheInfo.load(in);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch(Exception e)
+            {
+                System.out.println("Error reading TLE download cache info (full downloads will be used): " + e.toString());
+                cacheInfo.clear();
+            }
+        }
+    } // loadCacheInfo
+
+    private void saveCacheInfo()
+    {
+        synchronized(cacheInfo)
+        {
+            File f = new File(settings.getLocalPath() + CACHE_INFO_FILE);
+            File tmp = new File(f.getPath() + ".part");
+            try
+            {
+                FileOutputStream out = new FileOutputStream(tmp);
+                try
+                {
+                    cacheInfo.store(out, "JSatTrak TLE download info (ETag / Last-Modified)");
+                }
+                finally
+                {
+                    out.close();
+                }
+                replaceFile(tmp, f);
+            }
+            catch(Exception e)
+            {
+                System.out.println("Error saving TLE download cache info: " + e.toString());
+            }
+        }
+    } // saveCacheInfo
+
+    private static class DownloadThreadFactory implements ThreadFactory
+    {
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "TleDownload");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    // ---- results -----------------------------------------------------
+
+    /**
+     * @return result of each file from the last downloadAll, in the order they finished
+     */
+    public List<FileResult> getResults()
+    {
+        return results;
+    }
+
+    /**
+     * @return names of all satellites whose element sets are new or changed in the last downloadAll
+     */
+    public Set<String> getChangedSatelliteNames()
+    {
+        Set<String> changed = new HashSet<String>();
+        for(FileResult r : results)
+        {
+            changed.addAll(r.getChangedSatellites());
+        }
+        return changed;
+    }
+
+    public String getErrorText()
+    {
+        return errorText;
+    }
+
+    // ---- settings ----------------------------------------------------
+
+    public int getMaxConcurrentDownloads()
+    {
+        return maxConcurrentDownloads;
+    }
+
+    public void setMaxConcurrentDownloads(int maxConcurrentDownloads)
+    {
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+    }
+
+    public int getConnectTimeoutMs()
+    {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(int connectTimeoutMs)
+    {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public int getReadTimeoutMs()
+    {
+        return readTimeoutMs;
+    }
+
+    public void setReadTimeoutMs(int readTimeoutMs)
+    {
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    public boolean isUseConditionalRequests()
+    {
+        return useConditionalRequests;
+    }
+
+    /**
+     * @param useConditionalRequests if false every file is downloaded in full
+     */
+    public void setUseConditionalRequests(boolean useConditionalRequests)
+    {
+        this.useConditionalRequests = useConditionalRequests;
+    }
+
+} // TleDownloadManager
@@ -0,0 +1,101 @@
+/*
+ * Sun positions over a time span, calculated once and shared by many threads
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.bodies;
+
+import name.gano.astro.AstroConst;
+import name.gano.astro.time.Time;
+
+/**
+ * The J2000 Sun position (Sun.calculateSunPositionLowTT) is tabulated at fixed
+ * nodes and linearly interpolated; with the default 10 minute spacing the
+ * interpolation error is a few hundred meters (about 2e-9 rad seen from the
+ * Earth), far below the accuracy of the series itself. Immutable, so it can
+ * be shared by any number of threads.
+ *
+ * @author Shawn E. Gano
+ */
+public class SunEphemerisCache
+{
+    private final double startJulDate; // UTC
+    private final double nodeSpacingDays;
+    private final double[][] positions; // [node][x,y,z] J2000 [m]
+
+    /**
+     * @param startJulDate start of the span (UTC Julian Date)
+     * @param endJulDate end of the span (UTC Julian Date)
+     * @param nodeSpacingSec time between the tabulated positions [sec]
+     */
+    public SunEphemerisCache(double startJulDate, double endJulDate, double nodeSpacingSec)
+    {
+        this.startJulDate = startJulDate;
+        this.nodeSpacingDays = nodeSpacingSec / 86400.0;
+
+        int numNodes = (int) Math.ceil((endJulDate - startJulDate) / nodeSpacingDays) + 2;
+        positions = new double[numNodes][];
+        for(int i = 0; i < numNodes; i++)
+        {
+            double mjd = startJulDate + i * nodeSpacingDays - AstroConst.JDminusMJD;
+            positions[i] = Sun.calculateSunPositionLowTT(mjd + Time.deltaT(mjd));
+        }
+    } // constructor
+
+    public SunEphemerisCache(double startJulDate, double endJulDate)
+    {
+        this(startJulDate, endJulDate, 600.0);
+    }
+
+    /**
+     * J2000 position of the Sun, outside of the span the series is evaluated directly
+     * @param julDate UTC Julian Date
+     * @param pos output position [m]
+     */
+    public void getPosition(double julDate, double[] pos)
+    {
+        double x = (julDate - startJulDate) / nodeSpacingDays;
+        int i = (int) Math.floor(x);
+        if(i < 0 || i >= positions.length - 1)
+        {
+            double mjd = julDate - AstroConst.JDminusMJD;
+            System.arraycopy(Sun.calculateSunPositionLowTT(mjd + Time.deltaT(mjd)), 0, pos, 0, 3);
+            return;
+        }
+
+        double f = x - i;
+        double[] p0 = positions[i];
+        double[] p1 = positions[i + 1];
+        for(int k = 0; k < 3; k++)
+        {
+            pos[k] = p0[k] + f * (p1[k] - p0[k]);
+        }
+    } // getPosition
+
+    public double getStartJulDate()
+    {
+        return startJulDate;
+    }
+
+    public double getEndJulDate()
+    {
+        return startJulDate + (positions.length - 1) * nodeSpacingDays;
+    }
+
+} // SunEphemerisCache
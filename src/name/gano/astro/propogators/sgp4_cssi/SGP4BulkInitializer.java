@@ -0,0 +1,315 @@
+/*
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+/**     ----------------------------------------------------------------
+ * Reads and initializes the SGP4 propogator for a whole catalog of TLEs at
+ * once. Each element set is read with SGP4utils.readTLE and initialized with
+ * SGP4unit.sgp4init exactly as readTLEandIniSGP4 does (so the results are
+ * identical), but the work is split over several threads - the SGP4 routines
+ * only use the SGP4SatData object passed in.
+ *
+ * TLE checksums (column 69) are checked, element sets with bad checksums are
+ * counted and only rejected if setRejectBadChecksums(true) is used (the single
+ * satellite routines don't check them).
+ *       ----------------------------------------------------------------      */
+package name.gano.astro.propogators.sgp4_cssi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * @author Shawn E. Gano, shawn@gano.name
+ */
+public class SGP4BulkInitializer
+{
+    // element sets per task (small enough to balance deep space and near earth sats)
+    private static final int CHUNK_SIZE = 256;
+
+    private final char opsmode;
+    private final SGP4unit.Gravconsttype whichconst;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private boolean rejectBadChecksums = false;
+
+    // results of the last call to initialize
+    private int[] errorCodes = new int[0];
+    private final AtomicInteger checksumErrors = new AtomicInteger(0);
+
+    /**
+     * Same options as SatelliteTleSGP4 (improved mode, WGS-72)
+     */
+    public SGP4BulkInitializer()
+    {
+        this(SGP4utils.OPSMODE_IMPROVED, SGP4unit.Gravconsttype.wgs72);
+    }
+
+    public SGP4BulkInitializer(char opsmode, SGP4unit.Gravconsttype whichconst)
+    {
+        this.opsmode = opsmode;
+        this.whichconst = whichconst;
+    }
+
+    /**
+     * Reads the TLEs and initializes the propogator for each one, in parallel
+     * @param names satellite names
+     * @param line1s TLE line 1 of each satellite
+     * @param line2s TLE line 2 of each satellite
+     * @return initialized data in the same order, null where the TLE could not be
+     *         read or initialized (see getErrorCodes)
+     */
+    public SGP4SatData[] initialize(final String[] names, final String[] line1s, final String[] line2s)
+    {
+        final int count = names.length;
+        final SGP4SatData[] results = new SGP4SatData[count];
+        final int[] errors = new int[count];
+        checksumErrors.set(0);
+
+        int numTasks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int threads = Math.max(1, Math.min(numThreads, numTasks));
+        if(threads == 1)
+        {
+            initializeRange(names, line1s, line2s, 0, count, results, errors);
+            errorCodes = errors;
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "SGP4BulkInitializer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(numTasks);
+            for(int start = 0; start < count; start += CHUNK_SIZE)
+            {
+                final int from = start;
+                final int to = Math.min(count, start + CHUNK_SIZE);
+                futures.add(pool.submit(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        initializeRange(names, line1s, line2s, from, to, results, errors);
+                        return null;
+                    }
+                }));
+            }
+
+            // wait for every chunk, one that failed (or wasn't waited for) gets an error code for each sat it didn't do
+            for(int k = 0; k < futures.size(); k++)
+            {
+                int from = k * CHUNK_SIZE;
+                try
+                {
+                    futures.get(k).get();
+                }
+                catch(ExecutionException e)
+                {
+                    System.out.println("Error initializing SGP4 data: " + e.getCause().toString());
+                    markUnfinished(from, Math.min(count, from + CHUNK_SIZE), results, errors);
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    markUnfinished(from, count, results, errors);
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        errorCodes = errors;
+        return results;
+    } // initialize
+
+    // sats in [from,to) that weren't initialized and have no error code yet
+    private static void markUnfinished(int from, int to, SGP4SatData[] results, int[] errors)
+    {
+        for(int i = from; i < to; i++)
+        {
+            if(results[i] == null && errors[i] == 0)
+            {
+                errors[i] = 7; // not read / initialized
+            }
+        }
+    } // markUnfinished
+
+    private void initializeRange(String[] names, String[] line1s, String[] line2s, int from, int to, SGP4SatData[] results, int[] errors)
+    {
+        for(int i = from; i < to; i++)
+        {
+            if(!SGP4TleParser.isChecksumValid(line1s[i]) || !SGP4TleParser.isChecksumValid(line2s[i]))
+            {
+                checksumErrors.incrementAndGet();
+                if(rejectBadChecksums)
+                {
+                    errors[i] = 7; // tle data
+                    continue;
+                }
+            }
+
+            SGP4SatData satrec = new SGP4SatData();
+            if(SGP4utils.readTLEandIniSGP4(names[i], line1s[i], line2s[i], opsmode, whichconst, satrec))
+            {
+                results[i] = satrec;
+            }
+            else
+            {
+                errors[i] = (satrec.error != 0) ? satrec.error : 7;
+            }
+        }
+    } // initializeRange
+
+    /**
+     * Splits 3 line element set text (name, line 1, line 2) into its lines, the same
+     * way the TLE files are read line by line elsewhere (\n, \r or \r\n line ends,
+     * an incomplete set at the end is ignored)
+     * @param data file contents
+     * @param length number of bytes of data to use
+     * @param names satellite name lines are added to this list
+     * @param line1s TLE line 1 are added to this list
+     * @param line2s TLE line 2 are added to this list
+     * @return number of element sets read
+     */
+    public static int readElementSets(byte[] data, int length, List<String> names, List<String> line1s, List<String> line2s)
+    {
+        String[] set = new String[3];
+        int numLines = 0;
+        int numSets = 0;
+        int pos = 0;
+        while(pos < length)
+        {
+            int end = pos;
+            while(end < length && data[end] != '\n' && data[end] != '\r')
+            {
+                end++;
+            }
+            set[numLines++] = new String(data, pos, end - pos);
+            if(numLines == 3)
+            {
+                names.add(set[0]);
+                line1s.add(set[1]);
+                line2s.add(set[2]);
+                numSets++;
+                numLines = 0;
+            }
+
+            // skip the line end
+            if(end < length && data[end] == '\r' && end + 1 < length && data[end + 1] == '\n')
+            {
+                end++;
+            }
+            pos = end + 1;
+        }
+        return numSets;
+    } // readElementSets
+
+    /**
+     * Reads all the 3 line element sets in a file (in one read)
+     * @return number of element sets read
+     * @throws IOException if the file can't be read
+     */
+    public static int readElementSets(File tleFile, List<String> names, List<String> line1s, List<String> line2s) throws IOException
+    {
+        long fileLength = tleFile.length();
+        if(fileLength > Integer.MAX_VALUE)
+        {
+            throw new IOException("TLE file too large: " + tleFile.getPath());
+        }
+
+        byte[] data = new byte[(int) fileLength];
+        int read = 0;
+        FileInputStream in = new FileInputStream(tleFile);
+        try
+        {
+            while(read < data.length)
+            {
+                int n = in.read(data, read, data.length - read);
+                if(n < 0)
+                {
+                    break;
+                }
+                read += n;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return readElementSets(data, read, names, line1s, line2s);
+    } // readElementSets
+
+    /**
+     * @return error code of each element set in the last call to initialize (0 = ok, see SGP4SatData.error)
+     */
+    public int[] getErrorCodes()
+    {
+        return errorCodes;
+    }
+
+    /**
+     * @return number of element sets with a bad line 1 or line 2 checksum in the last call to initialize
+     */
+    public int getChecksumErrorCount()
+    {
+        return checksumErrors.get();
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public boolean isRejectBadChecksums()
+    {
+        return rejectBadChecksums;
+    }
+
+    /**
+     * @param rejectBadChecksums if true element sets with a bad checksum are not initialized (error code 7)
+     */
+    public void setRejectBadChecksums(boolean rejectBadChecksums)
+    {
+        this.rejectBadChecksums = rejectBadChecksums;
+    }
+
+} // SGP4BulkInitializer
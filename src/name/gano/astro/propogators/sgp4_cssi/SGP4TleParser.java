@@ -0,0 +1,216 @@
+/*
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+/**     ----------------------------------------------------------------
+ * Fixed column TLE field decoding used by SGP4utils.
+ *
+ * Numeric fields are decoded in place (no substrings, no DecimalFormat) from
+ * the TLE line (any CharSequence). The decoded values are identical to SGP4utils.readFloatFromString: plain
+ * decimal fields with up to 15 significant digits are computed as
+ * mantissa / 10^n, which (both being exact doubles) is the same correctly
+ * rounded value that Double.parseDouble gives; anything unusual falls back
+ * to readFloatFromString.
+ *
+ * Also has the TLE checksum (column 69) routines.
+ *       ----------------------------------------------------------------      */
+package name.gano.astro.propogators.sgp4_cssi;
+
+/**
+ *
+ * @author Shawn E. Gano, shawn@gano.name
+ */
+public class SGP4TleParser
+{
+    // exact powers of ten (all exactly representable as doubles)
+    private static final double[] POW10 =
+    {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private SGP4TleParser()
+    {
+    }
+
+    /**
+     * Reads a number from the columns [start,end) of a TLE line, same result as
+     * SGP4utils.readFloatFromString(line.substring(start, end))
+     * @param line TLE line
+     * @param start first column (0 based)
+     * @param end column after the last one
+     * @return value
+     * @throws Exception if there is no number in the field (or the line is too short)
+     */
+    public static double readField(CharSequence line, int start, int end) throws Exception
+    {
+        if(end > line.length() || start > end)
+        {
+            throw new StringIndexOutOfBoundsException("TLE line too short: " + line.length() + " < " + end);
+        }
+
+        // trim white space (same as String.trim) and a leading +
+        int i = start;
+        int last = end;
+        while(i < last && line.charAt(i) <= ' ')
+        {
+            i++;
+        }
+        while(last > i && line.charAt(last - 1) <= ' ')
+        {
+            last--;
+        }
+        if(i < last && line.charAt(i) == '+')
+        {
+            i++;
+        }
+
+        boolean negative = false;
+        if(i < last && line.charAt(i) == '-')
+        {
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int numDigits = 0;
+        int fracDigits = 0;
+        boolean decimalPoint = false;
+        for(; i < last; i++)
+        {
+            char c = line.charAt(i);
+            if(c >= '0' && c <= '9')
+            {
+                if(mantissa > 0 || c != '0')
+                {
+                    numDigits++; // significant digits
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if(decimalPoint)
+                {
+                    fracDigits++;
+                }
+                if(numDigits > 15 || fracDigits >= POW10.length)
+                {
+                    return slowField(line, start, end);
+                }
+            }
+            else if(c == '.' && !decimalPoint)
+            {
+                decimalPoint = true;
+            }
+            else
+            {
+                // anything else (exponents, embedded spaces, second sign ...) the old way
+                return slowField(line, start, end);
+            }
+        }
+
+        if(mantissa >= MAX_EXACT_MANTISSA || (numDigits == 0 && !hasDigit(line, start, end)))
+        {
+            return slowField(line, start, end);
+        }
+
+        double value = (fracDigits == 0) ? (double) mantissa : mantissa / POW10[fracDigits];
+        if(negative)
+        {
+            // DecimalFormat gives -0.0 for a negative zero, as does this
+            value = -value;
+        }
+        return value;
+    } // readField
+
+    private static boolean hasDigit(CharSequence line, int start, int end)
+    {
+        for(int i = start; i < end; i++)
+        {
+            char c = line.charAt(i);
+            if(c >= '0' && c <= '9')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double slowField(CharSequence line, int start, int end) throws Exception
+    {
+        return SGP4utils.readFloatFromString(line.subSequence(start, end).toString());
+    }
+
+    /**
+     * @return true if the columns [start,end) are all blanks
+     */
+    public static boolean isBlank(CharSequence line, int start, int end)
+    {
+        if(end > line.length())
+        {
+            throw new StringIndexOutOfBoundsException("TLE line too short: " + line.length() + " < " + end);
+        }
+        for(int i = start; i < end; i++)
+        {
+            if(line.charAt(i) != ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the TLE checksum of the first 68 columns: sum of the digits,
+     * with each minus sign counting as 1, modulo 10
+     * @param line TLE line
+     * @return checksum 0-9
+     */
+    public static int computeChecksum(CharSequence line)
+    {
+        int sum = 0;
+        int n = Math.min(68, line.length());
+        for(int i = 0; i < n; i++)
+        {
+            char c = line.charAt(i);
+            if(c >= '0' && c <= '9')
+            {
+                sum += c - '0';
+            }
+            else if(c == '-')
+            {
+                sum++;
+            }
+        }
+        return sum % 10;
+    }
+
+    /**
+     * @param line TLE line
+     * @return true if the line has a checksum digit in column 69 and it matches the line
+     */
+    public static boolean isChecksumValid(CharSequence line)
+    {
+        if(line.length() < 69)
+        {
+            return false;
+        }
+        char c = line.charAt(68);
+        return c >= '0' && c <= '9' && (c - '0') == computeChecksum(line);
+    }
+
+} // SGP4TleParser
@@ -77,6 +77,35 @@ public class SGP4utils
      * @return if the sgp4 propogator was initialized properly
      */
     public static boolean readTLEandIniSGP4(String satName, String line1, String line2, char opsmode, SGP4unit.Gravconsttype whichconst, SGP4SatData satrec)
+    {
+        if(!readTLE(satName, line1, line2, whichconst, satrec))
+        {
+            return false;
+        }
+
+        // ---------------- initialize the orbit at sgp4epoch -------------------
+        boolean result = SGP4unit.sgp4init(whichconst, opsmode, satrec.satnum,
+                satrec.jdsatepoch - 2433281.5, satrec.bstar,
+                satrec.ecco, satrec.argpo, satrec.inclo, satrec.mo, satrec.no,
+                satrec.nodeo, satrec);
+
+        return result;
+
+    } // readTLEandIniSGP4
+
+    /**
+     * Reads the data from the TLE into satrec (converted to SGP4 units, with the epoch
+     * Julian date) without initializing the propogator - the first half of readTLEandIniSGP4,
+     * SGP4unit.sgp4init can then be called separately (e.g. on another thread, see SGP4BulkInitializer)
+     *
+     * @param satName
+     * @param line1  TLE line 1
+     * @param line2  TLE line 2
+     * @param whichconst which constants to use in propogation
+     * @param satrec  object to store the SGP4 data
+     * @return if the TLE data was read
+     */
+    public static boolean readTLE(String satName, String line1, String line2, SGP4unit.Gravconsttype whichconst, SGP4SatData satrec)
     {
         final double deg2rad = pi / 180.0;         //   0.0174532925199433
         final double xpdotp = 1440.0 / (2.0 * pi);  // 229.1831180523293
@@ -182,66 +211,60 @@ public class SGP4utils
         // computes the jd from  m/d/...
         satrec.jdsatepoch = jday(year, mon, day, hr, minute, sec);
 
-        // ---------------- initialize the orbit at sgp4epoch -------------------
-        boolean result = SGP4unit.sgp4init(whichconst, opsmode, satrec.satnum,
-                satrec.jdsatepoch - 2433281.5, satrec.bstar,
-                satrec.ecco, satrec.argpo, satrec.inclo, satrec.mo, satrec.no,
-                satrec.nodeo, satrec);
-
-        return result;
+        return true;
 
-    } // readTLEandIniSGP4
+    } // readTLE
 
-    private static boolean readLine1(String line1, SGP4SatData satrec) throws Exception
+    private static boolean readLine1(CharSequence line1, SGP4SatData satrec) throws Exception
     {
-        String tleLine1 = line1; // first line
-        if(!tleLine1.startsWith("1 "))
+        CharSequence tleLine1 = line1; // first line
+        if(!startsWith(tleLine1, '1'))
         {
             throw new Exception("TLE line 1 not valid first line");
         }
 
         // satnum
-        satrec.satnum = (int)readFloatFromString(tleLine1.substring(2, 7));
+        satrec.satnum = (int)SGP4TleParser.readField(tleLine1, 2, 7);
         // classification
-        satrec.classification = tleLine1.substring(7, 8); // 1 char
+        satrec.classification = tleLine1.subSequence(7, 8).toString(); // 1 char
         // intln designator
-        satrec.intldesg = tleLine1.substring(9, 17); // should be within 8
+        satrec.intldesg = tleLine1.subSequence(9, 17).toString(); // should be within 8
 
         // epochyr
-        satrec.epochyr = (int)readFloatFromString(tleLine1.substring(18, 20));
+        satrec.epochyr = (int)SGP4TleParser.readField(tleLine1, 18, 20);
 
         // epoch days
-        satrec.epochdays = readFloatFromString(tleLine1.substring(20, 32));
+        satrec.epochdays = SGP4TleParser.readField(tleLine1, 20, 32);
 
         // ndot
-        satrec.ndot = readFloatFromString(tleLine1.substring(33, 43));
+        satrec.ndot = SGP4TleParser.readField(tleLine1, 33, 43);
 
         // nddot
         //nexp
-        if((tleLine1.substring(44, 52)).equals("        "))
+        if(SGP4TleParser.isBlank(tleLine1, 44, 52))
         {
             satrec.nddot = 0;
             satrec.nexp = 0;
         }
         else
         {
-            satrec.nddot = readFloatFromString(tleLine1.substring(44, 50)) / 1.0E5;
+            satrec.nddot = SGP4TleParser.readField(tleLine1, 44, 50) / 1.0E5;
             //nexp
-            satrec.nexp = (int)readFloatFromString(tleLine1.substring(50, 52));
+            satrec.nexp = (int)SGP4TleParser.readField(tleLine1, 50, 52);
         }
         //bstar
-        satrec.bstar = readFloatFromString(tleLine1.substring(53, 59)) / 1.0E5;
+        satrec.bstar = SGP4TleParser.readField(tleLine1, 53, 59) / 1.0E5;
         //ibex
-        satrec.ibexp = (int)readFloatFromString(tleLine1.substring(59, 61));
+        satrec.ibexp = (int)SGP4TleParser.readField(tleLine1, 59, 61);
 
         // these last things are not essential so just try to read them, and give a warning - but no error
         try
         {
             // num b.
-            satrec.numb = (int)readFloatFromString(tleLine1.substring(62, 63));
+            satrec.numb = (int)SGP4TleParser.readField(tleLine1, 62, 63);
 
             //  elnum
-            satrec.elnum = (long)readFloatFromString(tleLine1.substring(64, 68));
+            satrec.elnum = (long)SGP4TleParser.readField(tleLine1, 64, 68);
         }
         catch(Exception e)
         {
@@ -255,47 +278,52 @@ public class SGP4utils
         return true;
     } // readLine1
 
-    private static boolean readLine2(String line2, SGP4SatData satrec) throws Exception
+    private static boolean startsWith(CharSequence line, char lineNumber)
+    {
+        return line.length() >= 2 && line.charAt(0) == lineNumber && line.charAt(1) == ' ';
+    }
+
+    private static boolean readLine2(CharSequence line2, SGP4SatData satrec) throws Exception
     {
         /* Read the second line of elements. */
 
         //theLine = aFile.readLine();
-        String tleLine2 = line2; // second line
-        if(!tleLine2.startsWith("2 "))
+        CharSequence tleLine2 = line2; // second line
+        if(!startsWith(tleLine2, '2'))
         {
             throw new Exception("TLE line 2 not valid second line");
         }
 
         // satnum
-        int satnum = (int)readFloatFromString(tleLine2.substring(2, 7));
+        int satnum = (int)SGP4TleParser.readField(tleLine2, 2, 7);
         if(satnum != satrec.satnum)
         {
             System.out.println("Warning TLE line 2 Sat Num doesn't match line1 for sat: " + satrec.name);
         }
 
         // inclination
-        satrec.inclo = readFloatFromString(tleLine2.substring(8, 17));
+        satrec.inclo = SGP4TleParser.readField(tleLine2, 8, 17);
 
         // nodeo
-        satrec.nodeo = readFloatFromString(tleLine2.substring(17, 26));
+        satrec.nodeo = SGP4TleParser.readField(tleLine2, 17, 26);
 
         //satrec.ecco
-        satrec.ecco = readFloatFromString(tleLine2.substring(26, 34)) / 1.0E7;
+        satrec.ecco = SGP4TleParser.readField(tleLine2, 26, 34) / 1.0E7;
 
         // satrec.argpo
-        satrec.argpo = readFloatFromString(tleLine2.substring(34, 43));
+        satrec.argpo = SGP4TleParser.readField(tleLine2, 34, 43);
 
         // satrec.mo
-        satrec.mo = readFloatFromString(tleLine2.substring(43, 52));
+        satrec.mo = SGP4TleParser.readField(tleLine2, 43, 52);
 
         // no
-        satrec.no = readFloatFromString(tleLine2.substring(52, 63));
+        satrec.no = SGP4TleParser.readField(tleLine2, 52, 63);
 
         // try to read other data
         try
         {
             // revnum
-            satrec.revnum = (long)readFloatFromString(tleLine2.substring(63, 68));
+            satrec.revnum = (long)SGP4TleParser.readField(tleLine2, 63, 68);
         }
         catch(Exception e)
         {
@@ -0,0 +1,99 @@
+/*
+ * Base class for event detectors, records the events found
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+import java.util.Vector;
+import jsattrak.utilities.StateVector;
+
+/**
+ * Events are saved as state vectors (t [sec], x, y, z, dx, dy, dz), if
+ * stopOnEvent is set the propogation stops at the first event.
+ *
+ * @author Shawn E. Gano
+ */
+public abstract class AbstractEventDetector implements EventDetector
+{
+    private int direction = EventDetector.BOTH;
+    private boolean stopOnEvent = false;
+
+    private Vector<StateVector> events = new Vector<StateVector>();
+    private Vector<Boolean> eventIncreasing = new Vector<Boolean>();
+
+    public AbstractEventDetector(int direction, boolean stopOnEvent)
+    {
+        this.direction = direction;
+        this.stopOnEvent = stopOnEvent;
+    }
+
+    public abstract double g(double t, double[] x, double[] dx);
+
+    public int getDirection()
+    {
+        return direction;
+    }
+
+    public void setDirection(int direction)
+    {
+        this.direction = direction;
+    }
+
+    public boolean eventOccurred(double t, double[] x, double[] dx, boolean increasing)
+    {
+        events.add(new StateVector(t, x[0], x[1], x[2], dx[0], dx[1], dx[2]));
+        eventIncreasing.add(increasing);
+
+        return stopOnEvent;
+    }
+
+    public boolean isStopOnEvent()
+    {
+        return stopOnEvent;
+    }
+
+    public void setStopOnEvent(boolean stopOnEvent)
+    {
+        this.stopOnEvent = stopOnEvent;
+    }
+
+    /**
+     * @return events found so far (t [sec], x, y, z, dx, dy, dz)
+     */
+    public Vector<StateVector> getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * @return for each event, true if g went from - to +
+     */
+    public Vector<Boolean> getEventIncreasing()
+    {
+        return eventIncreasing;
+    }
+
+    public void clearEvents()
+    {
+        events.clear();
+        eventIncreasing.clear();
+    }
+
+} // AbstractEventDetector
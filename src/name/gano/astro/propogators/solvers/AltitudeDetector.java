@@ -0,0 +1,54 @@
+/*
+ * Event detector for crossings of a geodetic altitude
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class AltitudeDetector extends GeodeticEventDetector
+{
+    private double altitude; // [m]
+
+    /**
+     * @param altitude geodetic altitude [m]
+     * @param julDateTT0 julian date (TT) of integrator time 0
+     * @param direction EventDetector.INCREASING (going up through the altitude), DECREASING or BOTH
+     * @param stopOnEvent stop the propogation at the first crossing
+     */
+    public AltitudeDetector(double altitude, double julDateTT0, int direction, boolean stopOnEvent)
+    {
+        super(julDateTT0, direction, stopOnEvent);
+        this.altitude = altitude;
+    }
+
+    public double g(double t, double[] x, double[] dx)
+    {
+        return calculateLLA(t, x)[2] - altitude;
+    }
+
+    public double getAltitude()
+    {
+        return altitude;
+    }
+
+} // AltitudeDetector
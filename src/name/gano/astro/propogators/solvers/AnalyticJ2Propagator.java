@@ -0,0 +1,430 @@
+/*
+ * Analytic (closed form) propogator: two-body plus J2 secular rates and optionally
+ * the J2^2/J4 secular rates and first order J2 short-period terms
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+package name.gano.astro.propogators.solvers;
+
+import java.util.Vector;
+import jsattrak.utilities.StateVector;
+import name.gano.astro.AstroConst;
+import name.gano.astro.Kepler;
+
+/**
+ * Closed form propogator for quick what-if studies of custom satellites. Each
+ * output point is evaluated directly from mean elements at the epoch (no
+ * integration), so the cost does not depend on the step size or the length of
+ * the propogation.
+ *
+ * The initial (osculating) state is first converted to mean elements by a
+ * fixed point iteration on the short-period model (the mean semimajor axis,
+ * which sets the along track drift, is the orbit averaged one so that it also
+ * holds for eccentric orbits). The mean elements are then advanced with the
+ * secular rates of the SGP4 theory (Brouwer mean elements, no drag): J2 only
+ * or J2, J2^2 and J4. With the higher order option the first order J2
+ * short-period terms (also as in SGP4) are added back to the output states,
+ * otherwise the mean state is output.
+ *
+ * Max position error against HPROP78 (rel. tol 1e-10) over 1 hour / 1 day,
+ * 60 s output steps (J2 / J2-J4):
+ *
+ *   force model          orbit                   J2               J2-J4
+ *   zonal only (J2-J4)   500 km, 45 deg          4.0 / 6.8 km     0.27 / 4.7 km
+ *                        800 km SSO              5.8 / 7.4 km     0.18 / 5.7 km
+ *                        GPS (e 0.01)            0.57 / 0.67 km   0.01 / 0.12 km
+ *                        GTO (e 0.7)             12 / 37 km       12 / 34 km
+ *   default (20x20,      500 km, 45 deg          3.9 / 13 km      0.67 / 12 km
+ *   Sun, Moon, SRP,      800 km SSO              5.8 / 8.6 km     0.18 / 7.8 km
+ *   drag)                GPS (e 0.01)            0.58 / 1.2 km    0.04 / 1.0 km
+ *
+ * and it runs about 30 (MEO/GTO) to 100-600 (LEO) times faster than HPROP78.
+ * The errors are mostly along track and grow with time, so this is meant for
+ * quick what-if studies not precise ephemerides.
+ *
+ * The elements are in the J2000 frame, i.e. the J2000 equator is used as the
+ * Earth's equator.
+ *
+ * @author Shawn E. Gano
+ */
+public class AnalyticJ2Propagator
+{
+    // zonal harmonics (AstroConst.CS is unnormalized, J_n = -C_n0)
+    private static final double J2 = -AstroConst.CS[2][0];
+    private static final double J4 = -AstroConst.CS[4][0];
+
+    private static final double GM = AstroConst.GM_Earth;
+    private static final double RE = AstroConst.R_Earth;
+
+    private double t;
+    private double tEpoch; // t0, time of the mean elements [sec]
+    private double dt;
+    private int nSteps;
+    private OrbitProblem func;
+
+    private boolean higherOrder;
+
+    // mean elements at t0 (a,e,i,Omega,omega,M)
+    private double[] meanElements;
+    // secular rates of Omega, omega and M [rad/s]
+    private double nodeDot, argpDot, mDot;
+
+    // vector of stopping conditions
+    Vector<StoppingCondition> stopConditionsVec = new Vector<StoppingCondition>();
+
+    // vector of event detectors (the events are found on the closed form trajectory)
+    Vector<EventDetector> eventDetectorsVec = new Vector<EventDetector>();
+    private EventHandler eventHandler;
+
+    /**
+     * Creates an analytic propogator
+     * @param t0 start time [sec] (output states are relative to this time)
+     * @param dt0 output step size [sec]
+     * @param var0 initial j2k position [m]
+     * @param vel0 initial j2k velocity [m/s]
+     * @param nSteps number of output steps
+     * @param func problem the output states are added to (only addState2Ephemeris is used)
+     * @param higherOrder false: J2 secular rates only, true: J2, J2^2, J4 secular rates plus J2 short-period terms
+     */
+    public AnalyticJ2Propagator(double t0, double dt0, double[] var0, double[] vel0, int nSteps, OrbitProblem func, boolean higherOrder)
+    {
+        t = t0;
+        tEpoch = t0;
+        dt = dt0;
+        this.nSteps = nSteps;
+        this.func = func;
+        this.higherOrder = higherOrder;
+
+        eventHandler = new EventHandler(func, eventDetectorsVec)
+        {
+            // exact state between the output steps instead of the Hermite interpolation
+            @Override
+            protected double[] acceleration(double t, double[] x, double[] v)
+            {
+                return null; // not used
+            }
+
+            @Override
+            public void interpolate(double t, double[] x, double[] v)
+            {
+                double[] s = state(t - tEpoch);
+                System.arraycopy(s, 0, x, 0, 3);
+                System.arraycopy(s, 3, v, 0, 3);
+            }
+        };
+
+        double[] x0 = new double[] {var0[0], var0[1], var0[2], vel0[0], vel0[1], vel0[2]};
+        meanElements = calculateMeanElements(x0);
+        meanElements[0] = meanSemimajorAxis(x0); // sets the mean motion, the short-period model above is only good for small e
+        calculateRates();
+    } // constructor
+
+    /**
+     * Creates an analytic propogator directly from mean elements (e.g. the nominal
+     * elements of a constellation), only the state functions can be used
+     * @param meanElements mean elements at the epoch (a,e,i,Omega,omega,M) [m, rad]
+     * @param higherOrder false: J2 secular rates only, true: J2, J2^2, J4 secular rates plus J2 short-period terms
+     */
+    public AnalyticJ2Propagator(double[] meanElements, boolean higherOrder)
+    {
+        this.higherOrder = higherOrder;
+        this.meanElements = meanElements.clone();
+        calculateRates();
+    } // constructor
+
+    // solve returns solve time in milliseconds
+    public long solve()
+    {
+        double t0 = t; // store inital time
+
+        long startTime = System.currentTimeMillis();
+
+        double[] x = state(0.0);
+
+        // initialize stopping conditions
+        for (StoppingCondition sc : stopConditionsVec)
+        {
+            sc.iniStoppingCondition(t, new double[] {x[0], x[1], x[2]}, new double[] {x[3], x[4], x[5]});
+        }
+        boolean checkEvents = !eventDetectorsVec.isEmpty();
+        if (checkEvents)
+        {
+            eventHandler.init(t, new double[] {x[0], x[1], x[2]}, new double[] {x[3], x[4], x[5]});
+        }
+
+        func.addState2Ephemeris(new StateVector(t, x[0], x[1], x[2], x[3], x[4], x[5]));
+
+        TIME_STEPPING:
+        for (int n = 0; n < nSteps; n++)
+        {
+            t = t0 + dt * (n + 1);
+            x = state(t - t0);
+
+            // check events - if one stops the propogation the last state is the event
+            if (checkEvents && eventHandler.step(t, new double[] {x[0], x[1], x[2]}, new double[] {x[3], x[4], x[5]}))
+            {
+                t = eventHandler.getStopTime();
+                x = state(t - t0);
+                func.addState2Ephemeris(new StateVector(t, x[0], x[1], x[2], x[3], x[4], x[5]));
+                break TIME_STEPPING;
+            }
+
+            func.addState2Ephemeris(new StateVector(t, x[0], x[1], x[2], x[3], x[4], x[5]));
+
+            // check stopping conditions - if met - fix last epehermis point and break
+            for (StoppingCondition sc : stopConditionsVec)
+            {
+                if (sc.checkStoppingCondition(t, new double[] {x[0], x[1], x[2]}, new double[] {x[3], x[4], x[5]}))
+                {
+                    break TIME_STEPPING;
+                }
+            }
+        } // output steps
+
+        return System.currentTimeMillis() - startTime;
+    } // solve
+
+    /**
+     * Calculates the state at a given time
+     * @param tSinceEpoch time since t0 [sec]
+     * @return j2k state (x,y,z,dx,dy,dz) [m, m/s]
+     */
+    public double[] state(double tSinceEpoch)
+    {
+        return state(tSinceEpoch, 0.0);
+    }
+
+    /**
+     * Calculates the state of a satellite in the same orbit plane with a different
+     * phase (all the satellites in a plane share the same mean elements and rates,
+     * so one propogator can be used for the whole plane), thread safe
+     * @param tSinceEpoch time since t0 [sec]
+     * @param meanAnomalyOffset offset added to the mean anomaly at the epoch [rad]
+     * @return j2k state (x,y,z,dx,dy,dz) [m, m/s]
+     */
+    public double[] state(double tSinceEpoch, double meanAnomalyOffset)
+    {
+        double[] kep = meanElements.clone();
+        kep[3] += nodeDot * tSinceEpoch;
+        kep[4] += argpDot * tSinceEpoch;
+        kep[5] += meanAnomalyOffset + mDot * tSinceEpoch;
+
+        if (higherOrder)
+        {
+            return shortPeriodState(kep);
+        }
+
+        // Keplerian state of the mean elements, the velocity also gets the secular
+        // drift of the orbit (so it is the time derivative of the position)
+        double[] x = Kepler.state(GM, kep, 0.0);
+        double n = Math.sqrt(GM / (kep[0] * kep[0] * kep[0]));
+        double[] h = new double[] {x[1] * x[5] - x[2] * x[4], x[2] * x[3] - x[0] * x[5], x[0] * x[4] - x[1] * x[3]};
+        double hNorm = Math.sqrt(h[0] * h[0] + h[1] * h[1] + h[2] * h[2]);
+        double[] hxr = new double[] {(h[1] * x[2] - h[2] * x[1]) / hNorm, (h[2] * x[0] - h[0] * x[2]) / hNorm, (h[0] * x[1] - h[1] * x[0]) / hNorm};
+        double[] zxr = new double[] {-x[1], x[0], 0.0};
+        for (int i = 0; i < 3; i++)
+        {
+            x[3 + i] = x[3 + i] * mDot / n + argpDot * hxr[i] + nodeDot * zxr[i];
+        }
+        return x;
+    } // state
+
+    // secular rates from the mean elements (as in SGP4 initialization, without drag)
+    private void calculateRates()
+    {
+        double a = meanElements[0];
+        double e = meanElements[1];
+        double cosi = Math.cos(meanElements[2]);
+        double cosi2 = cosi * cosi;
+        double cosi4 = cosi2 * cosi2;
+
+        double n = Math.sqrt(GM / (a * a * a));
+        double beta = Math.sqrt(1.0 - e * e);
+        double p = a * (1.0 - e * e) / RE; // Earth radii
+        double pinvsq = 1.0 / (p * p);
+
+        double temp1 = 1.5 * J2 * pinvsq * n;
+
+        mDot = n + 0.5 * temp1 * beta * (3.0 * cosi2 - 1.0);
+        argpDot = -0.5 * temp1 * (1.0 - 5.0 * cosi2);
+        nodeDot = -temp1 * cosi;
+
+        if (higherOrder)
+        {
+            double temp2 = 0.5 * temp1 * J2 * pinvsq;
+            double temp3 = -0.46875 * J4 * pinvsq * pinvsq * n;
+
+            mDot += 0.0625 * temp2 * beta * (13.0 - 78.0 * cosi2 + 137.0 * cosi4);
+            argpDot += 0.0625 * temp2 * (7.0 - 114.0 * cosi2 + 395.0 * cosi4) + temp3 * (3.0 - 36.0 * cosi2 + 49.0 * cosi4);
+            nodeDot += (0.5 * temp2 * (4.0 - 19.0 * cosi2) + 2.0 * temp3 * (3.0 - 7.0 * cosi2)) * cosi;
+        }
+    } // calculateRates
+
+    // osculating state from mean elements with the first order J2 short-period terms (see SGP4 sgp4 function)
+    private static double[] shortPeriodState(double[] kep)
+    {
+        double a = kep[0];
+        double e = kep[1];
+        double inc = kep[2];
+        double node = kep[3];
+
+        double E = Kepler.EccAnom(kep[5], e);
+        double cosE = Math.cos(E);
+        double sinE = Math.sin(E);
+
+        double p = a * (1.0 - e * e);
+        double beta = Math.sqrt(1.0 - e * e);
+        double r = a * (1.0 - e * cosE);
+        double rdot = Math.sqrt(GM * a) * e * sinE / r;
+        double rudot = Math.sqrt(GM * p) / r;
+        double n = Math.sqrt(GM / (a * a * a));
+
+        double nu = Math.atan2(beta * sinE, cosE - e); // true anomaly
+        double u = kep[4] + nu; // argument of latitude
+        double sin2u = Math.sin(2.0 * u);
+        double cos2u = Math.cos(2.0 * u);
+
+        double cosi = Math.cos(inc);
+        double sini = Math.sin(inc);
+        double con41 = 3.0 * cosi * cosi - 1.0;
+        double x1mth2 = 1.0 - cosi * cosi;
+        double x7thm1 = 7.0 * cosi * cosi - 1.0;
+
+        double temp1 = 0.5 * J2 * RE * RE / p; // [m]
+        double temp2 = temp1 / p;
+
+        double rk = r * (1.0 - 1.5 * temp2 * beta * con41) + 0.5 * temp1 * x1mth2 * cos2u;
+        double uk = u - 0.25 * temp2 * x7thm1 * sin2u;
+        double nodek = node + 1.5 * temp2 * cosi * sin2u;
+        double inck = inc + 1.5 * temp2 * cosi * sini * cos2u;
+        double rdotk = rdot - n * temp1 * x1mth2 * sin2u;
+        double rudotk = rudot + n * temp1 * (x1mth2 * cos2u + 1.5 * con41);
+
+        // orientation vectors
+        double sinsu = Math.sin(uk);
+        double cossu = Math.cos(uk);
+        double snod = Math.sin(nodek);
+        double cnod = Math.cos(nodek);
+        double sinik = Math.sin(inck);
+        double cosik = Math.cos(inck);
+        double xmx = -snod * cosik;
+        double xmy = cnod * cosik;
+        double ux = xmx * sinsu + cnod * cossu;
+        double uy = xmy * sinsu + snod * cossu;
+        double uz = sinik * sinsu;
+        double vx = xmx * cossu - cnod * sinsu;
+        double vy = xmy * cossu - snod * sinsu;
+        double vz = sinik * cossu;
+
+        return new double[] {rk * ux, rk * uy, rk * uz,
+                    rdotk * ux + rudotk * vx, rdotk * uy + rudotk * vy, rdotk * uz + rudotk * vz};
+    } // shortPeriodState
+
+    // mean elements whose short-period state matches the given osculating state
+    private static double[] calculateMeanElements(double[] x0)
+    {
+        double[] xMean = x0.clone();
+        double[] kep = Kepler.SingularOsculatingElements(GM, xMean);
+
+        for (int iter = 0; iter < 50; iter++)
+        {
+            double[] x = shortPeriodState(kep);
+
+            double err = 0;
+            for (int i = 0; i < 6; i++)
+            {
+                double d = x0[i] - x[i];
+                xMean[i] += d;
+                err = Math.max(err, Math.abs(i < 3 ? d : d * 1000.0)); // m and mm/s
+            }
+
+            kep = Kepler.SingularOsculatingElements(GM, xMean);
+
+            if (err < 1.0E-6)
+            {
+                return kep;
+            }
+        }
+
+        System.out.println("Error calculating mean elements (not converged), J2 analytic propogator may be inaccurate");
+        return kep;
+    } // calculateMeanElements
+
+    // orbit averaged semimajor axis, first order J2 short-period terms of a (Kozai/Brouwer)
+    private static double meanSemimajorAxis(double[] x0)
+    {
+        double[] kep = Kepler.SingularOsculatingElements(GM, x0);
+        double a = kep[0];
+        double e = kep[1];
+        double E = Kepler.EccAnom(kep[5], e);
+        double beta = Math.sqrt(1.0 - e * e);
+        double aOverR = 1.0 / (1.0 - e * Math.cos(E));
+        double nu = Math.atan2(beta * Math.sin(E), Math.cos(E) - e);
+        double sini = Math.sin(kep[2]);
+        double cosi = Math.cos(kep[2]);
+        double aOverR3 = aOverR * aOverR * aOverR;
+
+        double da = J2 * RE * RE / a * (0.5 * (3.0 * cosi * cosi - 1.0) * (aOverR3 - 1.0 / (beta * beta * beta))
+                + 1.5 * sini * sini * aOverR3 * Math.cos(2.0 * (kep[4] + nu)));
+
+        return a - da;
+    } // meanSemimajorAxis
+
+    /**
+     * Add a stopping condition to this propogator
+     * @param sc stopping condition.
+     */
+    public void addStoppingCondition(StoppingCondition sc)
+    {
+        stopConditionsVec.add(sc);
+    }
+
+    /**
+     * Add an event detector to this propogator (same detectors as RungeKutta4 / RungeKutta78)
+     * @param ed event detector
+     */
+    public void addEventDetector(EventDetector ed)
+    {
+        eventDetectorsVec.add(ed);
+    }
+
+    /**
+     * @return handler used for the event detectors (e.g. to set the max check interval)
+     */
+    public EventHandler getEventHandler()
+    {
+        return eventHandler;
+    }
+
+    /**
+     * @return mean elements at the start time (a,e,i,Omega,omega,M)
+     */
+    public double[] getMeanElements()
+    {
+        return meanElements.clone();
+    }
+
+    /**
+     * @return secular rates of (Omega, omega, M) [rad/s]
+     */
+    public double[] getSecularRates()
+    {
+        return new double[] {nodeDot, argpDot, mDot};
+    }
+
+} // AnalyticJ2Propagator
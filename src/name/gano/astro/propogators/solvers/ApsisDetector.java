@@ -0,0 +1,50 @@
+/*
+ * Event detector for periapsis / apoapsis (zero of the radial velocity)
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class ApsisDetector extends AbstractEventDetector
+{
+    public static final int APOAPSIS = -1; // same as ApsisStopCond
+    public static final int PERIAPSIS = 1;
+
+    /**
+     * @param apoOrPeri ApsisDetector.APOAPSIS, ApsisDetector.PERIAPSIS or EventDetector.BOTH
+     * @param stopOnEvent stop the propogation at the first apsis
+     */
+    public ApsisDetector(int apoOrPeri, boolean stopOnEvent)
+    {
+        // radial velocity goes from - to + at periapsis
+        super(apoOrPeri == PERIAPSIS ? EventDetector.INCREASING : (apoOrPeri == APOAPSIS ? EventDetector.DECREASING : EventDetector.BOTH), stopOnEvent);
+    }
+
+    // radial velocity [m/s]
+    public double g(double t, double[] x, double[] dx)
+    {
+        double r = Math.sqrt(x[0] * x[0] + x[1] * x[1] + x[2] * x[2]);
+        return (x[0] * dx[0] + x[1] * dx[1] + x[2] * dx[2]) / r;
+    }
+
+} // ApsisDetector
@@ -0,0 +1,97 @@
+/*
+ * Event detector for eclipse entry / exit (conical Earth shadow)
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+import name.gano.astro.AstroConst;
+import name.gano.astro.bodies.Sun;
+
+/**
+ * Conical shadow model (spherical Earth and Sun): g is the angle between the
+ * Sun and the Earth's center seen from the satellite minus the sum (penumbra)
+ * or difference (umbra) of their apparent radii, so it is negative in the
+ * shadow. Eclipse entry is DECREASING, exit INCREASING.
+ *
+ * @author Shawn E. Gano
+ */
+public class EclipseDetector extends AbstractEventDetector
+{
+    public static final int ENTRY = EventDetector.DECREASING;
+    public static final int EXIT = EventDetector.INCREASING;
+
+    private static final double R_SUN = 6.96e8; // [m]
+
+    private double julDateTT0;
+    private boolean umbra;
+
+    /**
+     * @param julDateTT0 julian date (TT) of integrator time 0
+     * @param umbra true: umbra (full shadow), false: penumbra (any shadow)
+     * @param direction EclipseDetector.ENTRY, EclipseDetector.EXIT or EventDetector.BOTH
+     * @param stopOnEvent stop the propogation at the first entry/exit
+     */
+    public EclipseDetector(double julDateTT0, boolean umbra, int direction, boolean stopOnEvent)
+    {
+        super(direction, stopOnEvent);
+        this.julDateTT0 = julDateTT0;
+        this.umbra = umbra;
+    }
+
+    public double g(double t, double[] x, double[] dx)
+    {
+        double mjdTT = julDateTT0 + t / 86400.0 - AstroConst.JDminusMJD;
+        double[] rSun = Sun.calculateSunPositionLowTT(mjdTT);
+
+        return shadowFunction(x, rSun, umbra);
+    } // g
+
+    /**
+     * Conical shadow function, negative when the satellite is in the shadow
+     * @param x j2k position of the satellite [m]
+     * @param rSun j2k position of the Sun [m]
+     * @param umbra true: umbra (full shadow), false: penumbra (any shadow)
+     * @return angle between the Sun and the Earth's center seen from the satellite minus
+     *         the sum (penumbra) or difference (umbra) of their apparent radii [rad]
+     */
+    public static double shadowFunction(double[] x, double[] rSun, boolean umbra)
+    {
+        // Sun and Earth center seen from the satellite
+        double sx = rSun[0] - x[0];
+        double sy = rSun[1] - x[1];
+        double sz = rSun[2] - x[2];
+        double sNorm = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        double rNorm = Math.sqrt(x[0] * x[0] + x[1] * x[1] + x[2] * x[2]);
+
+        double cosSep = -(sx * x[0] + sy * x[1] + sz * x[2]) / (sNorm * rNorm);
+        double sep = Math.acos(Math.max(-1.0, Math.min(1.0, cosSep)));
+
+        double earthRadius = Math.asin(Math.min(1.0, AstroConst.R_Earth / rNorm));
+        double sunRadius = Math.asin(R_SUN / sNorm);
+
+        return umbra ? sep - (earthRadius - sunRadius) : sep - (earthRadius + sunRadius);
+    } // shadowFunction
+
+    public boolean isUmbra()
+    {
+        return umbra;
+    }
+
+} // EclipseDetector
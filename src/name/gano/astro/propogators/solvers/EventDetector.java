@@ -0,0 +1,64 @@
+/*
+ * Event found by the integrators (RungeKutta4, RungeKutta78) as a zero of a switching function
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+/**
+ * Unlike a StoppingCondition, which is only checked at the end of each step,
+ * the sign changes of g are bracketed between (and inside) the steps and the
+ * zero is found on the interpolated (dense output) trajectory, see
+ * EventHandler. So the steps can stay large without losing event accuracy.
+ *
+ * For a user defined event extend AbstractEventDetector and implement g.
+ *
+ * @author Shawn E. Gano
+ */
+public interface EventDetector
+{
+    // which sign changes of g are events
+    public static final int INCREASING = 1; // g goes from - to +
+    public static final int DECREASING = -1; // g goes from + to -
+    public static final int BOTH = 0;
+
+    /**
+     * Switching function, events are the zeros of g (must be continuous)
+     * @param t time [sec] (integrator time)
+     * @param x j2k position [m]
+     * @param dx j2k velocity [m/s]
+     * @return value of the switching function
+     */
+    public double g(double t, double[] x, double[] dx);
+
+    /**
+     * @return INCREASING, DECREASING or BOTH
+     */
+    public int getDirection();
+
+    /**
+     * Called (in time order) for each event found
+     * @param t time of the event [sec]
+     * @param x j2k position at the event [m]
+     * @param dx j2k velocity at the event [m/s]
+     * @param increasing true if g goes from - to +
+     * @return true to stop the propogation at this event
+     */
+    public boolean eventOccurred(double t, double[] x, double[] dx, boolean increasing);
+}
@@ -0,0 +1,358 @@
+/*
+ * Finds the events of a set of event detectors on each integrator step using dense output
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Dense output over a step is a quintic Hermite interpolation of the position
+ * using the position, velocity and acceleration at both ends of the step
+ * (position error O(h^6), one extra function evaluation per step). Each
+ * step is split into intervals of at most maxCheckInterval seconds where the
+ * sign of g is checked (so an event pair inside one large step is not missed)
+ * and each sign change is refined with Brent's method on the interpolated
+ * trajectory. The events are handed to the detectors in time order; if one
+ * asks to stop, the end of the step is moved to the event.
+ *
+ * Usage (inside an integrator):
+ *
+ *   handler.init(t, x, v);
+ *   ... after each step to (t1, x1, v1)
+ *   if(handler.step(t1, x1, v1)) { t1 = handler.getStopTime(); stop; } // x1, v1 now the event state
+ *
+ * @author Shawn E. Gano
+ */
+public class EventHandler
+{
+    private OrbitProblem func;
+    private Vector<EventDetector> detectors;
+
+    private double maxCheckInterval = 60.0; // [sec]
+    private double convergence = 1.0e-6; // [sec] time accuracy of the events
+
+    // start of the current step
+    private double tStart; // start of the propogation
+    private double t0;
+    private double[] x0, v0, a0;
+    private double[] g0;
+
+    // end of the current step
+    private double t1;
+    private double[] x1, v1, a1;
+
+    private double stopTime;
+
+    public EventHandler(OrbitProblem func, Vector<EventDetector> detectors)
+    {
+        this.func = func;
+        this.detectors = detectors;
+    }
+
+    /**
+     * Initialize at the start of the propogation
+     */
+    public void init(double t, double[] x, double[] v)
+    {
+        tStart = t;
+        t0 = t;
+        x0 = x.clone();
+        v0 = v.clone();
+        a0 = acceleration(t0, x0, v0);
+
+        g0 = new double[detectors.size()];
+        for(int i = 0; i < detectors.size(); i++)
+        {
+            g0[i] = detectors.get(i).g(t0, x0, v0);
+        }
+    } // init
+
+    /**
+     * Checks the step just taken for events
+     * @param t end time of the step [sec]
+     * @param x position at the end of the step, replaced by the event position if stopped
+     * @param v velocity at the end of the step, replaced by the event velocity if stopped
+     * @return true if the propogation should stop (at getStopTime())
+     */
+    public boolean step(double t, double[] x, double[] v)
+    {
+        t1 = t;
+        x1 = x.clone();
+        v1 = v.clone();
+        a1 = acceleration(t1, x1, v1);
+
+        // find all the events in the step
+        List<double[]> found = new ArrayList<double[]>(); // (time, detector index, increasing)
+        double[] g1 = new double[detectors.size()];
+        int nIntervals = (int) Math.max(1, Math.ceil(Math.abs(t1 - t0) / maxCheckInterval));
+        double[] xi = new double[3];
+        double[] vi = new double[3];
+        for(int i = 0; i < detectors.size(); i++)
+        {
+            EventDetector det = detectors.get(i);
+            double ta = t0;
+            double ga = g0[i];
+            for(int k = 1; k <= nIntervals; k++)
+            {
+                double tb;
+                double gb;
+                if(k == nIntervals)
+                {
+                    tb = t1;
+                    gb = det.g(t1, x1, v1);
+                    g1[i] = gb;
+                }
+                else
+                {
+                    tb = t0 + (t1 - t0) * k / nIntervals;
+                    interpolate(tb, xi, vi);
+                    gb = det.g(tb, xi, vi);
+                }
+
+                // sign change (a zero at the start of the interval was handled in the previous one)
+                if(ga != 0.0 && (ga < 0.0) != (gb < 0.0) || ga != 0.0 && gb == 0.0)
+                {
+                    boolean increasing = ga < 0.0;
+                    int dir = det.getDirection();
+                    if(dir == EventDetector.BOTH || (dir == EventDetector.INCREASING) == increasing)
+                    {
+                        double te = (gb == 0.0) ? tb : findRoot(det, ta, ga, tb, gb);
+                        if(Math.abs(te - tStart) > 10.0 * convergence) // not the event the propogation started on
+                        {
+                            found.add(new double[] {te, i, increasing ? 1.0 : 0.0});
+                        }
+                    }
+                }
+
+                ta = tb;
+                ga = gb;
+            }
+        } // for each detector
+
+        // hand the events to the detectors in time order
+        final double direction = (t1 >= t0) ? 1.0 : -1.0;
+        Collections.sort(found, new Comparator<double[]>()
+        {
+            public int compare(double[] e1, double[] e2)
+            {
+                return Double.compare(direction * e1[0], direction * e2[0]);
+            }
+        });
+
+        for(double[] e : found)
+        {
+            double te = e[0];
+            interpolate(te, xi, vi);
+            if(detectors.get((int) e[1]).eventOccurred(te, xi.clone(), vi.clone(), e[2] == 1.0))
+            {
+                // stop at the event
+                stopTime = te;
+                System.arraycopy(xi, 0, x, 0, 3);
+                System.arraycopy(vi, 0, v, 0, 3);
+                return true;
+            }
+        }
+
+        // next step starts here
+        t0 = t1;
+        x0 = x1;
+        v0 = v1;
+        a0 = a1;
+        g0 = g1;
+
+        return false;
+    } // step
+
+    /**
+     * Acceleration used by the dense output (override with interpolate for a
+     * propogator whose state is known at any time, e.g. AnalyticJ2Propagator)
+     */
+    protected double[] acceleration(double t, double[] x, double[] v)
+    {
+        return func.deriv(x, v, t);
+    }
+
+    /**
+     * Interpolated (dense output) state inside the current step
+     * @param t time between the start and end of the step [sec]
+     * @param x position (output)
+     * @param v velocity (output)
+     */
+    public void interpolate(double t, double[] x, double[] v)
+    {
+        double h = t1 - t0;
+        double s = (t - t0) / h;
+        double s2 = s * s;
+        double s3 = s2 * s;
+        double s4 = s3 * s;
+        double s5 = s4 * s;
+
+        // quintic Hermite basis and derivatives (d/ds)
+        double h0 = 1.0 - 10.0 * s3 + 15.0 * s4 - 6.0 * s5;
+        double h1 = s - 6.0 * s3 + 8.0 * s4 - 3.0 * s5;
+        double h2 = 0.5 * s2 - 1.5 * s3 + 1.5 * s4 - 0.5 * s5;
+        double h3 = 0.5 * s3 - s4 + 0.5 * s5;
+        double h4 = -4.0 * s3 + 7.0 * s4 - 3.0 * s5;
+        double h5 = 10.0 * s3 - 15.0 * s4 + 6.0 * s5;
+
+        double d0 = -30.0 * s2 + 60.0 * s3 - 30.0 * s4;
+        double d1 = 1.0 - 18.0 * s2 + 32.0 * s3 - 15.0 * s4;
+        double d2 = s - 4.5 * s2 + 6.0 * s3 - 2.5 * s4;
+        double d3 = 1.5 * s2 - 4.0 * s3 + 2.5 * s4;
+        double d4 = -12.0 * s2 + 28.0 * s3 - 15.0 * s4;
+        double d5 = -d0;
+
+        for(int i = 0; i < 3; i++)
+        {
+            x[i] = h0 * x0[i] + h1 * h * v0[i] + h2 * h * h * a0[i] + h3 * h * h * a1[i] + h4 * h * v1[i] + h5 * x1[i];
+            v[i] = (d0 * x0[i] + d1 * h * v0[i] + d2 * h * h * a0[i] + d3 * h * h * a1[i] + d4 * h * v1[i] + d5 * x1[i]) / h;
+        }
+    } // interpolate
+
+    // Brent's method for the zero of g on the interpolated trajectory between a and b (g(a), g(b) of opposite signs)
+    private double findRoot(EventDetector det, double a, double fa, double b, double fb)
+    {
+        double[] x = new double[3];
+        double[] v = new double[3];
+
+        double c = a;
+        double fc = fa;
+        double d = b - a;
+        double e = d;
+
+        for(int iter = 0; iter < 100; iter++)
+        {
+            if((fb > 0.0) == (fc > 0.0))
+            {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if(Math.abs(fc) < Math.abs(fb))
+            {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+
+            double tol = 2.0 * Math.ulp(b) + 0.5 * convergence;
+            double m = 0.5 * (c - b);
+            if(Math.abs(m) <= tol || fb == 0.0)
+            {
+                return b;
+            }
+
+            if(Math.abs(e) < tol || Math.abs(fa) <= Math.abs(fb))
+            {
+                // bisection
+                d = m;
+                e = m;
+            }
+            else
+            {
+                double p, q, r;
+                double s = fb / fa;
+                if(a == c)
+                {
+                    // secant
+                    p = 2.0 * m * s;
+                    q = 1.0 - s;
+                }
+                else
+                {
+                    // inverse quadratic interpolation
+                    q = fa / fc;
+                    r = fb / fc;
+                    p = s * (2.0 * m * q * (q - r) - (b - a) * (r - 1.0));
+                    q = (q - 1.0) * (r - 1.0) * (s - 1.0);
+                }
+                if(p > 0.0)
+                {
+                    q = -q;
+                }
+                else
+                {
+                    p = -p;
+                }
+
+                if(2.0 * p < Math.min(3.0 * m * q - Math.abs(tol * q), Math.abs(e * q)))
+                {
+                    e = d;
+                    d = p / q;
+                }
+                else
+                {
+                    d = m;
+                    e = m;
+                }
+            }
+
+            a = b;
+            fa = fb;
+            b += (Math.abs(d) > tol) ? d : ((m > 0.0) ? tol : -tol);
+
+            interpolate(b, x, v);
+            fb = det.g(b, x, v);
+        }
+
+        return b;
+    } // findRoot
+
+    public double getStopTime()
+    {
+        return stopTime;
+    }
+
+    public double getMaxCheckInterval()
+    {
+        return maxCheckInterval;
+    }
+
+    /**
+     * @param maxCheckInterval max time between the checks of the sign of g [sec], events closer together than this can be missed
+     */
+    public void setMaxCheckInterval(double maxCheckInterval)
+    {
+        this.maxCheckInterval = maxCheckInterval;
+    }
+
+    public double getConvergence()
+    {
+        return convergence;
+    }
+
+    /**
+     * @param convergence time accuracy of the events [sec]
+     */
+    public void setConvergence(double convergence)
+    {
+        this.convergence = convergence;
+    }
+
+} // EventHandler
@@ -0,0 +1,77 @@
+/*
+ * Base class for event detectors using geodetic latitude / altitude
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+import name.gano.astro.AstroConst;
+import name.gano.astro.GeoFunctions;
+import name.gano.astro.coordinates.J2kCoordinateConversion;
+
+/**
+ * Geodetic latitude and altitude (as CustomSatellite calculates them, from the
+ * TEME position). The J2000 to TEME rotation changes very slowly, so it is
+ * only recalculated once a day of propogation.
+ *
+ * @author Shawn E. Gano
+ */
+public abstract class GeodeticEventDetector extends AbstractEventDetector
+{
+    private static final double MATRIX_UPDATE_TIME = 86400.0; // [sec]
+
+    private double julDateTT0; // julian date (TT) of integrator time 0
+
+    private double matrixTime = Double.NaN;
+    private double[][] j2k2teme;
+
+    /**
+     * @param julDateTT0 julian date (TT) of integrator time 0
+     */
+    public GeodeticEventDetector(double julDateTT0, int direction, boolean stopOnEvent)
+    {
+        super(direction, stopOnEvent);
+        this.julDateTT0 = julDateTT0;
+    }
+
+    /**
+     * @return geodetic latitude [rad], longitude [rad], altitude [m]
+     */
+    protected double[] calculateLLA(double t, double[] x)
+    {
+        double mjd = julDateTT0 + t / 86400.0 - AstroConst.JDminusMJD;
+
+        if(!(Math.abs(t - matrixTime) < MATRIX_UPDATE_TIME))
+        {
+            double ttt = (mjd - AstroConst.MJD_J2000) / 36525.0;
+            j2k2teme = J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.from, ttt, 24, 2, 'a');
+            matrixTime = t;
+        }
+
+        double[] posTEME = J2kCoordinateConversion.matvecmult(j2k2teme, x);
+
+        return GeoFunctions.GeodeticLLA(posTEME, mjd);
+    } // calculateLLA
+
+    public double getJulDateTT0()
+    {
+        return julDateTT0;
+    }
+
+} // GeodeticEventDetector
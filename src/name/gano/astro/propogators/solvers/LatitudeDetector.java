@@ -0,0 +1,57 @@
+/*
+ * Event detector for crossings of a geodetic latitude
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class LatitudeDetector extends GeodeticEventDetector
+{
+    private double latitude; // [rad]
+
+    /**
+     * @param latitude geodetic latitude [deg]
+     * @param julDateTT0 julian date (TT) of integrator time 0
+     * @param direction EventDetector.INCREASING (going north), DECREASING (going south) or BOTH
+     * @param stopOnEvent stop the propogation at the first crossing
+     */
+    public LatitudeDetector(double latitude, double julDateTT0, int direction, boolean stopOnEvent)
+    {
+        super(julDateTT0, direction, stopOnEvent);
+        this.latitude = latitude * Math.PI / 180.0;
+    }
+
+    public double g(double t, double[] x, double[] dx)
+    {
+        return calculateLLA(t, x)[0] - latitude;
+    }
+
+    /**
+     * @return latitude [deg]
+     */
+    public double getLatitude()
+    {
+        return latitude * 180.0 / Math.PI;
+    }
+
+} // LatitudeDetector
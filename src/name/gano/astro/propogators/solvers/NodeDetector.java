@@ -0,0 +1,49 @@
+/*
+ * Event detector for equator (node) crossings
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ */
+
+package name.gano.astro.propogators.solvers;
+
+/**
+ * Nodes are the crossings of the J2000 equator.
+ *
+ * @author Shawn E. Gano
+ */
+public class NodeDetector extends AbstractEventDetector
+{
+    public static final int ASCENDING = EventDetector.INCREASING;
+    public static final int DESCENDING = EventDetector.DECREASING;
+
+    /**
+     * @param direction NodeDetector.ASCENDING, NodeDetector.DESCENDING or EventDetector.BOTH
+     * @param stopOnEvent stop the propogation at the first node
+     */
+    public NodeDetector(int direction, boolean stopOnEvent)
+    {
+        super(direction, stopOnEvent);
+    }
+
+    // height above the equator plane [m]
+    public double g(double t, double[] x, double[] dx)
+    {
+        return x[2];
+    }
+
+} // NodeDetector
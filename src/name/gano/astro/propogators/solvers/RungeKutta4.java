@@ -40,6 +40,9 @@ public class RungeKutta4
     private DecimalFormat d12 = new DecimalFormat("0.00000000000E0"); // display format
     // vector of stopping conditions
     Vector<StoppingCondition> stopConditionsVec = new Vector<StoppingCondition>();
+    // vector of event detectors
+    Vector<EventDetector> eventDetectorsVec = new Vector<EventDetector>();
+    private EventHandler eventHandler;
 
     // create a constructor and a solver build in to this class
     // t0 should be TT (not UTC) (Mjd_TT)
@@ -66,6 +69,7 @@ public class RungeKutta4
 
         this.nSteps = nSteps;
         this.func = func;
+        eventHandler = new EventHandler(func, eventDetectorsVec);
 
     } // constructor
 
@@ -81,6 +85,11 @@ public class RungeKutta4
         {
             sc.iniStoppingCondition(t, var, vel);
         }
+        boolean checkEvents = !eventDetectorsVec.isEmpty();
+        if (checkEvents)
+        {
+            eventHandler.init(t, var, vel);
+        }
 
 
         checkOutputOptions();
@@ -91,6 +100,14 @@ public class RungeKutta4
             step();
             t = t0 + dt * (n + 1);
 
+            // check events - if one stops the propogation the state is moved back to the event
+            if (checkEvents && eventHandler.step(t, var, vel))
+            {
+                t = eventHandler.getStopTime();
+                checkOutputOptions();
+                break TIME_STEPPING;
+            }
+
             checkOutputOptions();
 
             // check stopping conditions - if met - fix last epehermis point and break
@@ -238,5 +255,22 @@ public class RungeKutta4
     {
         stopConditionsVec.add(sc);
     }
+
+    /**
+     * Add an event detector to this propogator (events are found on the dense output between the steps)
+     * @param ed event detector
+     */
+    public void addEventDetector(EventDetector ed)
+    {
+        eventDetectorsVec.add(ed);
+    }
+
+    /**
+     * @return handler used for the event detectors (e.g. to set the max check interval)
+     */
+    public EventHandler getEventHandler()
+    {
+        return eventHandler;
+    }
 } // RungeKutta4th
 
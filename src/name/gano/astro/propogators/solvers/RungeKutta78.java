@@ -72,6 +72,10 @@ public class RungeKutta78
     
     // vector of stopping conditions
     Vector<StoppingCondition> stopConditionsVec = new Vector<StoppingCondition>();
+    // vector of event detectors
+    Vector<EventDetector> eventDetectorsVec = new Vector<EventDetector>();
+    private EventHandler eventHandler;
+    private boolean checkEvents = false;
 
     /** Default constructor.
      */
@@ -92,6 +96,7 @@ public class RungeKutta78
 
         // problem
         this.func = func;
+        eventHandler = new EventHandler(func, eventDetectorsVec);
     }
 
     /** Explicit constructor.
@@ -100,6 +105,7 @@ public class RungeKutta78
     {
         // problem
         this.func = func;
+        eventHandler = new EventHandler(func, eventDetectorsVec);
 
         // inital state and times
         var = new double[var0.length];
@@ -159,6 +165,11 @@ public class RungeKutta78
         {
             sc.iniStoppingCondition(time, var, vel);
         }
+        checkEvents = !eventDetectorsVec.isEmpty();
+        if (checkEvents)
+        {
+            eventHandler.init(time, var, vel);
+        }
 
         if (adaptive)
         {
@@ -231,6 +242,14 @@ public class RungeKutta78
             x = start + (step + 1.0) * h; // update time
             time = x; // update global time
 
+            // check events - if one stops the propogation the state is moved back to the event
+            if (checkEvents && eventHandler.step(time, var, vel))
+            {
+                time = eventHandler.getStopTime();
+                checkOutputOptions();
+                break TIME_STEPPING;
+            }
+
             // print out results (debug)
             if (debug)
             {
@@ -313,6 +332,14 @@ public class RungeKutta78
             // update time
             time = x[0]; // update global time
 
+            // check events - if one stops the propogation the state is moved back to the event
+            if (checkEvents && eventHandler.step(time, var, vel))
+            {
+                time = eventHandler.getStopTime();
+                checkOutputOptions();
+                return;
+            }
+
             //  save results after a step
             if (debug)
             {
@@ -759,6 +786,23 @@ public class RungeKutta78
     {
         stopConditionsVec.add(sc);
     }
+
+    /**
+     * Add an event detector to this propogator (events are found on the dense output between the steps)
+     * @param ed event detector
+     */
+    public void addEventDetector(EventDetector ed)
+    {
+        eventDetectorsVec.add(ed);
+    }
+
+    /**
+     * @return handler used for the event detectors (e.g. to set the max check interval)
+     */
+    public EventHandler getEventHandler()
+    {
+        return eventHandler;
+    }
     
 }
 
@@ -28,7 +28,9 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.text.DecimalFormat;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
+import jsattrak.utilities.TickMetrics;
 
 /**
  *
@@ -39,6 +41,7 @@ public class MemoryStatusPanel extends javax.swing.JPanel implements MouseListen
     private Timer playTimer;
     private boolean stopTimer = false;
     private int updateRateMs = 2500;
+    private boolean showTickMetrics = false; // overlay animation tick timing (right click to toggle)
     
     DecimalFormat df = new DecimalFormat("#,##0.00");
 
@@ -107,9 +110,28 @@ public class MemoryStatusPanel extends javax.swing.JPanel implements MouseListen
         int usedMemPercent = (int) Math.round(100.0 * (usedMem1) / totMem1);
         memProgressBar.setValue(usedMemPercent);
 
-        memProgressBar.setString(df.format(usedMem1) + " MB / " + df.format(totMem1) + " MB");
+        String memString = df.format(usedMem1) + " MB / " + df.format(totMem1) + " MB";
+        String toolTip = "Free Memory: " + df.format(freeMem1) + " MB";
         
-        memProgressBar.setToolTipText("Free Memory: " + df.format(freeMem1) + " MB");
+        if(showTickMetrics)
+        {
+            TickMetrics metrics = TickMetrics.getInstance();
+            memString += " | " + metrics.getShortSummary();
+            
+            StringBuilder sb = new StringBuilder("<html>" + toolTip);
+            sb.append("<br>Sats propagated/sec: ").append(df.format(metrics.getSatellitesPropagatedPerSecond()));
+            sb.append("<br>Bytes allocated/tick: ").append(metrics.getAllocatedBytesPerTick());
+            for(String line : metrics.getStageSummary())
+            {
+                sb.append("<br>").append(line);
+            }
+            sb.append("</html>");
+            toolTip = sb.toString();
+        }
+        
+        memProgressBar.setString(memString);
+        
+        memProgressBar.setToolTipText(toolTip);
         
         if(!memProgressBar.isShowing())
         {
@@ -140,8 +162,26 @@ public class MemoryStatusPanel extends javax.swing.JPanel implements MouseListen
     {
     }
 
+    public boolean isShowTickMetrics()
+    {
+        return showTickMetrics;
+    }
+
+    public void setShowTickMetrics(boolean showTickMetrics)
+    {
+        this.showTickMetrics = showTickMetrics;
+        updateStatus();
+    }
+
     public void mouseClicked(MouseEvent e)
     {
+        if(SwingUtilities.isRightMouseButton(e))
+        {
+            // toggle tick metrics overlay
+            setShowTickMetrics(!showTickMetrics);
+            return;
+        }
+        
         System.gc();
         updateStatus();
         //System.out.println("GC");
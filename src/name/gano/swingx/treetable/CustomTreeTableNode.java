@@ -20,6 +20,9 @@
 
 package name.gano.swingx.treetable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Vector;
 import javax.swing.Icon;
@@ -28,6 +31,7 @@ import jsattrak.customsat.InputVariable;
 import jsattrak.gui.JSatTrak;
 import jsattrak.utilities.StateVector;
 import org.jdesktop.swingx.treetable.DefaultMutableTreeTableNode;
+import org.jdesktop.swingx.treetable.MutableTreeTableNode;
 
 /**
  *
@@ -201,4 +205,29 @@ public class CustomTreeTableNode extends DefaultMutableTreeTableNode implements
         this.startTTjulDate = startTTjulDate;
     }
     
+    // the swingx node classes are not Serializable, so the children (and the
+    // user object) are written here - used to copy mission trees (TradeStudy)
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeBoolean(getAllowsChildren());
+        out.writeInt(getChildCount());
+        for(int i = 0; i < getChildCount(); i++)
+        {
+            out.writeObject(getChildAt(i));
+        }
+    } // writeObject
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        super.setUserObject(userObject);
+        setAllowsChildren(in.readBoolean());
+        int numChildren = in.readInt();
+        for(int i = 0; i < numChildren; i++)
+        {
+            add((MutableTreeTableNode) in.readObject()); // also sets the child's parent
+        }
+    } // readObject
+    
 }
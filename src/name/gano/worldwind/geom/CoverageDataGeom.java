@@ -20,14 +20,13 @@
 
 package name.gano.worldwind.geom;
 
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.Renderable;
 import gov.nasa.worldwind.util.Logging;
 import java.awt.Color;
 import javax.media.opengl.GL;
 import jsattrak.coverage.CoverageAnalyzer;
+import jsattrak.utilities.TickMetrics;
 
 /**
  *
@@ -39,6 +38,9 @@ public class CoverageDataGeom implements Renderable
 //    Globe globe;
     CoverageAnalyzer ca;
     
+    // cached vertex and color data
+    private final CoverageGeomBuffers buffers = new CoverageGeomBuffers();
+    
     public CoverageDataGeom(CoverageAnalyzer ca)
     {
         this.ca = ca;
@@ -54,6 +56,8 @@ public class CoverageDataGeom implements Renderable
             throw new IllegalArgumentException(msg);
         }
 
+        long t0 = TickMetrics.start();
+
         javax.media.opengl.GL gl = dc.getGL();
 
         gl.glEnable(GL.GL_TEXTURE_2D);
@@ -64,111 +68,35 @@ public class CoverageDataGeom implements Renderable
         gl.glEnable(GL.GL_BLEND);
         gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
 
-        Color satColor;
-
-        Double nanDbl = new Double(Double.NaN);
-
         double alt = 100000;
 
         if(ca != null)
         {
+            // vertex/color data is only rebuilt when the coverage data or grid changes
+            buffers.update(ca, dc.getGlobe(), alt);
 
-            for(int i = 0; i < ca.getLongPanels(); i++)
+            gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+            gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+
+            // covered panels
+            if(buffers.getNumQuads() > 0)
+            {
+                gl.glEnableClientState(GL.GL_COLOR_ARRAY);
+                gl.glVertexPointer(3, GL.GL_FLOAT, 0, buffers.getQuadVertexBuffer().rewind());
+                gl.glColorPointer(4, GL.GL_FLOAT, 0, buffers.getQuadColorBuffer().rewind());
+                gl.glDrawArrays(GL.GL_QUADS, 0, buffers.getNumQuads() * 4);  // counter clock wise?
+                gl.glDisableClientState(GL.GL_COLOR_ARRAY);
+            }
+
+            // if drawing grid (all panels)
+            if(ca.isPlotCoverageGrid())
             {
-                for(int j = 0; j < ca.getLatPanels(); j++)
-                {
-
-                    if(ca.getCoverageCumTime()[j][i] > 0)
-                    {
-
-                        Vec4 pos1 = dc.getGlobe().computePointFromPosition(
-                                Angle.fromDegrees(ca.getLatGridPoints()[j]), // lat
-                                Angle.fromDegrees(ca.getLonGridPoints()[i]), // lon
-                                alt);
-                        Vec4 pos2 = dc.getGlobe().computePointFromPosition(
-                                Angle.fromDegrees(ca.getLatGridPoints()[j + 1]), // lat
-                                Angle.fromDegrees(ca.getLonGridPoints()[i]), // lon
-                                alt);
-                        Vec4 pos3 = dc.getGlobe().computePointFromPosition(
-                                Angle.fromDegrees(ca.getLatGridPoints()[j + 1]), // lat
-                                Angle.fromDegrees(ca.getLonGridPoints()[i + 1]), // lon
-                                alt);
-                        Vec4 pos4 = dc.getGlobe().computePointFromPosition(
-                                Angle.fromDegrees(ca.getLatGridPoints()[j]), // lat
-                                Angle.fromDegrees(ca.getLonGridPoints()[i + 1]), // lon
-                                alt);
-
-                        satColor = ca.getColorForIndex(j, i);
-                        gl.glColor4f(satColor.getRed() / 255.0f, satColor.getGreen() / 255.0f, satColor.getBlue() / 255.0f, ca.getAlpha() / 255.0f); // COLOR
-
-                        gl.glBegin(GL.GL_QUADS);  // counter clock wise?
-                        //gl.glTexCoord2f(0, 0);
-
-                        gl.glVertex3f((float)pos1.x, (float)pos1.y, (float)pos1.z);
-                        //gl.glTexCoord2f(0, 1);
-                        gl.glVertex3f((float)pos2.x, (float)pos2.y, (float)pos2.z);
-                        //gl.glTexCoord2f(1, 1);
-                        gl.glVertex3f((float)pos3.x, (float)pos3.y, (float)pos3.z);
-                        //gl.glTexCoord2f(1, 0);
-                        gl.glVertex3f((float)pos4.x, (float)pos4.y, (float)pos4.z);
-                        gl.glEnd();
-                        
-                        // if drawing grid
-                        if(ca.isPlotCoverageGrid())
-                        {
-                            gl.glColor4f(Color.GREEN.getRed() / 255.0f, Color.GREEN.getGreen() / 255.0f, Color.GREEN.getBlue() / 255.0f,0.2f);
-                            gl.glBegin(GL.GL_LINE_STRIP);
-                                gl.glVertex3f((float)pos1.x, (float)pos1.y, (float)pos1.z);
-                                gl.glVertex3f((float)pos2.x, (float)pos2.y, (float)pos2.z);
-                                gl.glVertex3f((float)pos3.x, (float)pos3.y, (float)pos3.z);
-                                gl.glVertex3f((float)pos4.x, (float)pos4.y, (float)pos4.z);
-                            gl.glEnd();
-                            
-                            // draw center?
-                            
-                        }// draw coverage grid with point in center
-                        
-                    } // time > 0
-                    else
-                    {
-                        // not, filled but still draw grid
-                        if(ca.isPlotCoverageGrid())
-                        {
-                            Vec4 pos1 = dc.getGlobe().computePointFromPosition(
-                                    Angle.fromDegrees(ca.getLatGridPoints()[j]), // lat
-                                    Angle.fromDegrees(ca.getLonGridPoints()[i]), // lon
-                                    alt);
-                            Vec4 pos2 = dc.getGlobe().computePointFromPosition(
-                                    Angle.fromDegrees(ca.getLatGridPoints()[j + 1]), // lat
-                                    Angle.fromDegrees(ca.getLonGridPoints()[i]), // lon
-                                    alt);
-                            Vec4 pos3 = dc.getGlobe().computePointFromPosition(
-                                    Angle.fromDegrees(ca.getLatGridPoints()[j + 1]), // lat
-                                    Angle.fromDegrees(ca.getLonGridPoints()[i + 1]), // lon
-                                    alt);
-                            Vec4 pos4 = dc.getGlobe().computePointFromPosition(
-                                    Angle.fromDegrees(ca.getLatGridPoints()[j]), // lat
-                                    Angle.fromDegrees(ca.getLonGridPoints()[i + 1]), // lon
-                                    alt);
-                            gl.glColor4f(Color.GREEN.getRed() / 255.0f, Color.GREEN.getGreen() / 255.0f, Color.GREEN.getBlue() / 255.0f,0.2f);
-                            gl.glBegin(GL.GL_LINE_STRIP);
-                                gl.glVertex3f((float)pos1.x, (float)pos1.y, (float)pos1.z);
-                                gl.glVertex3f((float)pos2.x, (float)pos2.y, (float)pos2.z);
-                                gl.glVertex3f((float)pos3.x, (float)pos3.y, (float)pos3.z);
-                                gl.glVertex3f((float)pos4.x, (float)pos4.y, (float)pos4.z);
-                            gl.glEnd();
-                        
-                            // draw center
-                            
-                        }// draw coverage grid with point in center
-                        
-                    }// else (time ==0)
-                    
-                    // 
-
-                } // for lat
-
-            } // for long
+                gl.glColor4f(Color.GREEN.getRed() / 255.0f, Color.GREEN.getGreen() / 255.0f, Color.GREEN.getBlue() / 255.0f, 0.2f);
+                gl.glVertexPointer(3, GL.GL_FLOAT, 0, buffers.getGridVertexBuffer().rewind());
+                gl.glDrawElements(GL.GL_LINES, buffers.getNumGridLineIndices(), GL.GL_UNSIGNED_INT, buffers.getGridLineIndexBuffer().rewind());
+            } // draw coverage grid
+
+            gl.glPopClientAttrib();
 
         } // not null
 
@@ -176,5 +104,6 @@ public class CoverageDataGeom implements Renderable
         
         gl.glPopAttrib();
         
+        TickMetrics.stop(TickMetrics.RENDER_COVERAGE, t0);
      } // render
 }
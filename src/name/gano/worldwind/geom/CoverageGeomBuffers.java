@@ -0,0 +1,330 @@
+/**
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * Vertex and color buffers for the 3D coverage overlay (CoverageDataGeom).
+ * No GL calls are made here, so the buffers can be built and checked without
+ * a GL context.
+ *
+ * - grid corner points are computed once per grid (and globe), not 4 times
+ *   per panel every frame
+ * - covered panels are packed into the quad buffers in the order they first
+ *   get coverage (coverage time only grows until the data is cleared), so a
+ *   new panel is just appended
+ * - when the data changes only panels whose value changed are recolored,
+ *   unless the color scale (min/max, alpha or color map) changed
+ */
+
+package name.gano.worldwind.geom;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import jsattrak.coverage.ColorMap;
+import jsattrak.coverage.CoverageAnalyzer;
+
+/**
+ *
+ * @author sgano
+ */
+public class CoverageGeomBuffers
+{
+    // grid corner points [((lonIndex*(latPanels+1)) + latIndex)*3]
+    private float[] corners;
+    private FloatBuffer gridVertexBuffer;
+    private IntBuffer gridLineIndexBuffer; // GL_LINES, 3 segments per panel (same as the old line strips)
+
+    // covered panels, packed (4 vertices each)
+    private FloatBuffer quadVertexBuffer; // x,y,z
+    private FloatBuffer quadColorBuffer;  // r,g,b,a
+    private int numQuads = 0;
+    private int[] panelSlot;        // [lonIndex*latPanels + latIndex] -> quad slot, -1 if not covered
+    private int[] slotPanel;        // quad slot -> panel index
+    private double[] panelValue;    // coverage value the panel was last colored with
+    private final int[] tmpCorners = new int[4];
+
+    // what the buffers were built from
+    private double[] builtLatGrid;
+    private double[] builtLonGrid;
+    private Globe builtGlobe;
+    private double builtAltitude;
+    private double[][] builtData;
+    private int builtDataVersion;
+    private double builtMin;
+    private double builtMax;
+    private int builtAlpha;
+    private ColorMap builtColorMap;
+
+    private int latPanels;
+    private int lonPanels;
+
+    private int panelsUpdated = 0; // panels rewritten by the last update (for checking the incremental path)
+
+    public CoverageGeomBuffers()
+    {
+    }
+
+    /**
+     * Brings the buffers up to date with the coverage data, does as little work as possible
+     * @param ca coverage data
+     * @param globe globe used to compute the 3D points
+     * @param altitude altitude of the overlay [m]
+     * @return true if any buffer changed
+     */
+    public boolean update(CoverageAnalyzer ca, Globe globe, double altitude)
+    {
+        panelsUpdated = 0;
+
+        boolean gridChanged = ca.getLatGridPoints() != builtLatGrid || ca.getLonGridPoints() != builtLonGrid
+                || globe != builtGlobe || altitude != builtAltitude;
+        if(gridChanged)
+        {
+            buildGrid(ca, globe, altitude);
+        }
+
+        boolean dataReset = gridChanged || ca.getCoverageCumTime() != builtData;
+        if(dataReset)
+        {
+            resetQuads();
+        }
+        else if(ca.getDataVersion() == builtDataVersion && ca.getAlpha() == builtAlpha && ca.getColorMap() == builtColorMap)
+        {
+            return false; // nothing new
+        }
+
+        boolean scaleChanged = dataReset || ca.getMinNotZeroVal() != builtMin || ca.getMaxVal() != builtMax
+                || ca.getAlpha() != builtAlpha || ca.getColorMap() != builtColorMap;
+
+        double[][] data = ca.getCoverageCumTime();
+        for(int i = 0; i < lonPanels; i++)
+        {
+            for(int j = 0; j < latPanels; j++)
+            {
+                int panel = i * latPanels + j;
+                double val = data[j][i];
+                if(val == panelValue[panel] && !scaleChanged)
+                {
+                    continue;
+                }
+                panelValue[panel] = val;
+
+                if(val > 0)
+                {
+                    int slot = panelSlot[panel];
+                    if(slot < 0)
+                    {
+                        slot = numQuads++;
+                        panelSlot[panel] = slot;
+                        slotPanel[slot] = panel;
+                        putQuadVertices(slot, j, i);
+                    }
+                    putQuadColor(slot, ca.getColorForIndex(j, i), ca.getAlpha());
+                    panelsUpdated++;
+                }
+            } // for lat
+        } // for lon
+
+        builtData = data;
+        builtDataVersion = ca.getDataVersion();
+        builtMin = ca.getMinNotZeroVal();
+        builtMax = ca.getMaxVal();
+        builtAlpha = ca.getAlpha();
+        builtColorMap = ca.getColorMap();
+
+        return true;
+    } // update
+
+    // corner points, grid line indices and room for all quads
+    private void buildGrid(CoverageAnalyzer ca, Globe globe, double altitude)
+    {
+        double[] latGrid = ca.getLatGridPoints();
+        double[] lonGrid = ca.getLonGridPoints();
+        latPanels = latGrid.length - 1;
+        lonPanels = lonGrid.length - 1;
+
+        int latPts = latPanels + 1;
+        corners = new float[latPts * (lonPanels + 1) * 3];
+        for(int i = 0; i <= lonPanels; i++)
+        {
+            Angle lon = Angle.fromDegrees(lonGrid[i]);
+            for(int j = 0; j <= latPanels; j++)
+            {
+                Vec4 p = globe.computePointFromPosition(Angle.fromDegrees(latGrid[j]), lon, altitude);
+                int k = (i * latPts + j) * 3;
+                corners[k] = (float) p.x;
+                corners[k + 1] = (float) p.y;
+                corners[k + 2] = (float) p.z;
+            }
+        }
+        gridVertexBuffer = newFloatBuffer(corners.length);
+        gridVertexBuffer.put(corners);
+        gridVertexBuffer.rewind();
+
+        // per panel line strip p1-p2-p3-p4 as 3 line segments
+        int numPanels = latPanels * lonPanels;
+        gridLineIndexBuffer = newIntBuffer(numPanels * 6);
+        int[] c = new int[4];
+        for(int i = 0; i < lonPanels; i++)
+        {
+            for(int j = 0; j < latPanels; j++)
+            {
+                panelCorners(j, i, c);
+                gridLineIndexBuffer.put(c[0]).put(c[1]);
+                gridLineIndexBuffer.put(c[1]).put(c[2]);
+                gridLineIndexBuffer.put(c[2]).put(c[3]);
+            }
+        }
+        gridLineIndexBuffer.rewind();
+
+        quadVertexBuffer = newFloatBuffer(numPanels * 4 * 3);
+        quadColorBuffer = newFloatBuffer(numPanels * 4 * 4);
+        panelSlot = new int[numPanels];
+        slotPanel = new int[numPanels];
+        panelValue = new double[numPanels];
+
+        builtLatGrid = latGrid;
+        builtLonGrid = lonGrid;
+        builtGlobe = globe;
+        builtAltitude = altitude;
+    } // buildGrid
+
+    private void resetQuads()
+    {
+        numQuads = 0;
+        Arrays.fill(panelSlot, -1);
+        Arrays.fill(panelValue, 0.0);
+    }
+
+    // corner vertex indices of a panel (same order as the old immediate mode quads)
+    private void panelCorners(int latIndex, int lonIndex, int[] c)
+    {
+        int latPts = latPanels + 1;
+        c[0] = lonIndex * latPts + latIndex;           // lat j,   lon i
+        c[1] = lonIndex * latPts + latIndex + 1;       // lat j+1, lon i
+        c[2] = (lonIndex + 1) * latPts + latIndex + 1; // lat j+1, lon i+1
+        c[3] = (lonIndex + 1) * latPts + latIndex;     // lat j,   lon i+1
+    }
+
+    private void putQuadVertices(int slot, int latIndex, int lonIndex)
+    {
+        panelCorners(latIndex, lonIndex, tmpCorners);
+        int pos = slot * 12;
+        for(int k = 0; k < 4; k++)
+        {
+            int c = tmpCorners[k] * 3;
+            quadVertexBuffer.put(pos++, corners[c]);
+            quadVertexBuffer.put(pos++, corners[c + 1]);
+            quadVertexBuffer.put(pos++, corners[c + 2]);
+        }
+    }
+
+    private void putQuadColor(int slot, Color color, int alpha)
+    {
+        float r = color.getRed() / 255.0f;
+        float g = color.getGreen() / 255.0f;
+        float b = color.getBlue() / 255.0f;
+        float a = alpha / 255.0f;
+        int pos = slot * 16;
+        for(int k = 0; k < 4; k++)
+        {
+            quadColorBuffer.put(pos++, r);
+            quadColorBuffer.put(pos++, g);
+            quadColorBuffer.put(pos++, b);
+            quadColorBuffer.put(pos++, a);
+        }
+    }
+
+    private static FloatBuffer newFloatBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static IntBuffer newIntBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    // ---- accessors -------------------------------------------------
+
+    /**
+     * @return covered panel vertices (x,y,z, 4 per panel) - draw as GL_QUADS with getNumQuads()*4 vertices
+     */
+    public FloatBuffer getQuadVertexBuffer()
+    {
+        return quadVertexBuffer;
+    }
+
+    /**
+     * @return covered panel colors (r,g,b,a per vertex)
+     */
+    public FloatBuffer getQuadColorBuffer()
+    {
+        return quadColorBuffer;
+    }
+
+    public int getNumQuads()
+    {
+        return numQuads;
+    }
+
+    /**
+     * @return grid corner points (x,y,z)
+     */
+    public FloatBuffer getGridVertexBuffer()
+    {
+        return gridVertexBuffer;
+    }
+
+    /**
+     * @return indices into the grid vertex buffer - draw as GL_LINES
+     */
+    public IntBuffer getGridLineIndexBuffer()
+    {
+        return gridLineIndexBuffer;
+    }
+
+    public int getNumGridLineIndices()
+    {
+        return gridLineIndexBuffer == null ? 0 : gridLineIndexBuffer.capacity();
+    }
+
+    /**
+     * @return number of panels written (vertices and/or color) by the last update
+     */
+    public int getPanelsUpdated()
+    {
+        return panelsUpdated;
+    }
+
+    /**
+     * @param slot quad slot (0 to getNumQuads()-1)
+     * @return {latIndex, lonIndex} of the panel drawn in that slot
+     */
+    public int[] getPanelForQuad(int slot)
+    {
+        int panel = slotPanel[slot];
+        return new int[] {panel % latPanels, panel / latPanels};
+    }
+
+} // CoverageGeomBuffers
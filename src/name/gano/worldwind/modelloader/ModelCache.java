@@ -0,0 +1,206 @@
+/*
+ * ModelCache.java
+ * =====================================================================
+ *   This file is part of JSatTrak.
+ *
+ *   Copyright 2007-2013 Shawn E. Gano
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * =====================================================================
+ *
+ * 3D models shared by the satellites that use them: each model file is loaded
+ * once (on a background loader thread), every satellite using the same file
+ * gets the same model (mesh and materials, the renderer also keeps one display
+ * list and set of textures per model) and puts it in its own WWModel3D_new for
+ * its position and attitude. The cache counts the satellites holding each
+ * model and forgets the model when the last one releases it.
+ *
+ * The loading is done by a ModelLoader, so the cache doesn't need OpenGL (the
+ * shared cache of .3ds models uses the joglutils loader, a cache of any other
+ * kind of object can be made for testing).
+ *
+ */
+
+package name.gano.worldwind.modelloader;
+
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import net.java.joglutils.model.geometry.Model;
+import net.java.joglutils.model.loader.LoaderFactory;
+
+/**
+ *
+ * @author Shawn E. Gano
+ */
+public class ModelCache<M>
+{
+    /**
+     * Loads a model file (called on the cache's loader thread)
+     */
+    public interface ModelLoader<M>
+    {
+        public M load(String path) throws Exception;
+    }
+
+    public static final String MODEL_ROOT = "data/models/"; // path to models root from user.dir
+
+    private static ModelCache<Model> sharedCache;
+
+    private final ModelLoader<M> loader;
+    private final ExecutorService loaderThread;
+
+    // entries by model path (guarded by this)
+    private final HashMap<String,Entry<M>> entries = new HashMap<String,Entry<M>>();
+    private int loadCount = 0; // models loaded (or tried) since created
+
+    /**
+     * @param loader loads the models, one at a time on a background thread
+     */
+    public ModelCache(ModelLoader<M> loader)
+    {
+        this.loader = loader;
+
+        loaderThread = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "ModelLoader");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY); // don't slow down rendering
+                return t;
+            }
+        });
+    } // constructor
+
+    /**
+     * @return cache of the .3ds models (paths relative to data/models/) shared by all satellites
+     */
+    public static synchronized ModelCache<Model> getSharedCache()
+    {
+        if(sharedCache == null)
+        {
+            // (not ModelFactory.createModel, its cache never forgets a model and isn't thread safe)
+            sharedCache = new ModelCache<Model>(new ModelLoader<Model>()
+            {
+                public Model load(String path) throws Exception
+                {
+                    return LoaderFactory.load(MODEL_ROOT + path);
+                }
+            });
+        }
+        return sharedCache;
+    } // getSharedCache
+
+    /**
+     * Adds a reference to the model, starting to load it if it isn't in the cache
+     * (each acquire needs a release when the model isn't used anymore)
+     * @param path model file
+     * @return the shared model, when loaded (get() throws the error if it couldn't be loaded)
+     */
+    public synchronized Future<M> acquire(final String path)
+    {
+        Entry<M> entry = entries.get(path);
+        if(entry == null)
+        {
+            entry = new Entry<M>();
+            entries.put(path, entry);
+        }
+
+        // load it, again if it failed before (the file may have been fixed)
+        if(entry.model == null || (entry.model.isDone() && entry.failed))
+        {
+            final Entry<M> e = entry;
+            FutureTask<M> task = new FutureTask<M>(new Callable<M>()
+            {
+                public M call() throws Exception
+                {
+                    try
+                    {
+                        return loader.load(path);
+                    }
+                    catch(Exception ex)
+                    {
+                        e.failed = true;
+                        throw ex;
+                    }
+                }
+            });
+            entry.model = task;
+            entry.failed = false;
+            loadCount++;
+            loaderThread.execute(task);
+        }
+
+        entry.references++;
+        return entry.model;
+    } // acquire
+
+    /**
+     * Removes a reference to the model, it is forgotten when it has none left
+     * @param path model file (same as given to acquire)
+     */
+    public synchronized void release(String path)
+    {
+        Entry<M> entry = entries.get(path);
+        if(entry == null)
+        {
+            return; // not held
+        }
+
+        entry.references--;
+        if(entry.references <= 0)
+        {
+            entries.remove(path);
+            entry.model.cancel(false); // if still waiting to load
+        }
+    } // release
+
+    /**
+     * @return number of references to the model (0 if not in the cache)
+     */
+    public synchronized int getReferenceCount(String path)
+    {
+        Entry<M> entry = entries.get(path);
+        return (entry == null) ? 0 : entry.references;
+    }
+
+    /**
+     * @return number of models in the cache
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return number of times a model was loaded (or tried) by this cache
+     */
+    public synchronized int getLoadCount()
+    {
+        return loadCount;
+    }
+
+    // a model and the number of satellites holding it
+    private static class Entry<M>
+    {
+        FutureTask<M> model;
+        volatile boolean failed = false; // set by the loader thread
+        int references = 0;
+    }
+
+} // ModelCache